@@ -78,6 +78,56 @@ public class Configuration {
 	public enum Visualise{text,graphical}
 
     public boolean CAREFUL_DETERMINIZATION = false;
+
+	/*
+	 * Store inferred state machines in array-backed automata (CompactTraceDFA)
+	 * instead of JGraphT graphs. Uses far less memory for large prefix trees.
+	 */
+	public boolean COMPACT_DFA = false;
+
+	/*
+	 * Number of threads used to compute state-pair scores during inference
+	 * (0 = one per available processor). Each inference run creates one pool of
+	 * this size, and shuts it down when it is finished.
+	 */
+	public int SCORING_THREADS = 0;
+
+	/*
+	 * Number of threads used to build the subtrees of the prefix tree that start
+	 * with different events (1 = build sequentially, 0 = one per available processor).
+	 * The prefix tree is the same either way.
+	 */
+	public int PREFIX_TREE_THREADS = 1;
+
+	/*
+	 * Number of the best-ranked merge candidates that are tried at the same time,
+	 * each on its own copy of the machine (1 = try one candidate at a time). The
+	 * copies only record their changes, and the changes of the best-ranked merge
+	 * that succeeds are made to the machine without merging again. The inferred
+	 * machine is the same either way.
+	 */
+	public int SPECULATIVE_MERGES = 1;
+
+	/*
+	 * Number of threads used to infer the functions of the transitions of a
+	 * machine with GP, one function at a time each (0 = one per available
+	 * processor). The inferred functions are the same either way.
+	 */
+	public int FUNCTION_THREADS = 0;
+
+	/*
+	 * Number of threads used to train the classifiers for the different events
+	 * (0 = one per available processor). The classifiers are the same either way.
+	 */
+	public int CLASSIFIER_THREADS = 0;
+
+	/*
+	 * Number of threads used to walk the traces of a set through a machine
+	 * (1 = walk sequentially, 0 = one per available processor). Only use more
+	 * than one if the data guards of the machine can be evaluated concurrently.
+	 * The results are the same either way.
+	 */
+	public int WALK_THREADS = 1;
 	
 	public String TOKENIZER = "[ \t]";
 	
@@ -126,6 +176,13 @@ public class Configuration {
 	public boolean DAIKON = false;
 		
 	public int MINDAIKON = 2;
+
+	/*
+	 * Number of Daikon jobs that the transitions are split into when their invariants
+	 * are computed. With 1, Daikon runs within this process; otherwise each job runs
+	 * concurrently in a separate JVM and directory. The invariants are the same either way.
+	 */
+	public int DAIKON_JOBS = 1;
 	
 	public String TARGET_EXECUTABLE = "";
 	
@@ -41,7 +41,9 @@ public class SimpleTraceElement implements TraceElement {
 			this.name = name;
 		else
 			this.name = "";
-		this.data = new HashSet<VariableAssignment<?>>();
+		// (sized as it would be after adding the variables one by one, so that the
+		// order of the variables is the same)
+		this.data = new HashSet<VariableAssignment<?>>(Math.max(16, (int) Math.ceil(data.length / 0.75)));
 		for (VariableAssignment<?> variableAssignment : data) {
 			this.data.add(variableAssignment);
 		}
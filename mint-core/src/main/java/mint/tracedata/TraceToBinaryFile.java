@@ -0,0 +1,322 @@
+package mint.tracedata;
+
+import org.apache.log4j.Logger;
+import mint.Configuration;
+import mint.tracedata.readers.StreamingTraceReader;
+import mint.tracedata.types.BooleanVariableAssignment;
+import mint.tracedata.types.DoubleVariableAssignment;
+import mint.tracedata.types.IntegerVariableAssignment;
+import mint.tracedata.types.StringVariableAssignment;
+import mint.tracedata.types.VariableAssignment;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.*;
+
+/**
+ * Outputs a set of traces to a compact binary trace file, which can be read
+ * (much faster than a textual trace file) by BinaryTraceReader.
+ *
+ * The file is columnar: after a header with the string dictionary and the
+ * type declaration of each event, come the length of each trace, the event of
+ * each element, and then, for each event and each of its variables, a null
+ * bitmap and the values of that variable in every element of the event (packed
+ * as doubles, ints, string dictionary indices or bits). Positive traces are
+ * followed by negative traces. All numbers are big-endian:
+ *
+ * <pre>
+ * int MAGIC, int VERSION
+ * int strings, {int length, UTF-8 bytes}*
+ * int events, {int name, long elements, int variables, {int name, byte type, byte parameter, [min, max]}*}*
+ * int positive traces, int negative traces, long elements
+ * int[traces] trace lengths
+ * (byte|short|int)[elements] event of each element
+ * for each event, for each variable: long[] null bitmap, values
+ * </pre>
+ *
+ * Only the variable types that can be declared in a textual trace file (doubles,
+ * integers, strings and booleans) are supported.
+ */
+
+public class TraceToBinaryFile {
+
+    public static final int MAGIC = 0x4D494E54; // "MINT"
+    public static final int VERSION = 1;
+
+    public static final byte DOUBLE = 'D', INTEGER = 'I', STRING = 'S', BOOLEAN = 'B';
+
+    public static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final static Logger LOGGER = Logger.getLogger(TraceToBinaryFile.class.getName());
+
+    /*
+     * The declaration of an event, and the values of its variables in all of
+     * its elements.
+     */
+    private class Event {
+        final int name;
+        final String[] varNames;
+        final byte[] types;
+        final boolean[] parameters;
+        final double[] doubleMin, doubleMax;
+        final int[] intMin, intMax;
+        final Column[] columns;
+        long elements = 0;
+
+        Event(TraceElement element) throws IOException {
+            name = intern(element.getName());
+            List<VariableAssignment<?>> vars = new ArrayList<VariableAssignment<?>>(element.getData());
+            varNames = new String[vars.size()];
+            types = new byte[vars.size()];
+            parameters = new boolean[vars.size()];
+            doubleMin = new double[vars.size()];
+            doubleMax = new double[vars.size()];
+            intMin = new int[vars.size()];
+            intMax = new int[vars.size()];
+            columns = new Column[vars.size()];
+            for (int i = 0; i < vars.size(); i++) {
+                VariableAssignment<?> var = vars.get(i);
+                varNames[i] = var.getName();
+                parameters[i] = var.isParameter();
+                if (var instanceof DoubleVariableAssignment) {
+                    types[i] = DOUBLE;
+                    doubleMin[i] = ((DoubleVariableAssignment) var).getMin();
+                    doubleMax[i] = ((DoubleVariableAssignment) var).getMax();
+                } else if (var instanceof IntegerVariableAssignment) {
+                    types[i] = INTEGER;
+                    intMin[i] = ((IntegerVariableAssignment) var).getMin();
+                    intMax[i] = ((IntegerVariableAssignment) var).getMax();
+                } else if (var instanceof StringVariableAssignment)
+                    types[i] = STRING;
+                else if (var instanceof BooleanVariableAssignment)
+                    types[i] = BOOLEAN;
+                else
+                    throw new IOException("Variable " + var.getName() + " of " + element.getName()
+                            + " has a type that cannot be written to a binary trace file: " + var.getClass().getSimpleName());
+                intern(varNames[i]);
+                columns[i] = new Column(types[i]);
+            }
+        }
+
+        void add(TraceElement element) {
+            Set<VariableAssignment<?>> data = element.getData();
+            for (int i = 0; i < varNames.length; i++) {
+                Object value = null;
+                for (VariableAssignment<?> var : data) {
+                    if (var.getName().equals(varNames[i])) {
+                        value = var.getValue();
+                        break;
+                    }
+                }
+                columns[i].add(value);
+            }
+            elements++;
+        }
+    }
+
+    /*
+     * The values of a variable, packed by type.
+     */
+    private class Column {
+        final byte type;
+        long[] nulls = new long[1];
+        double[] doubles;
+        int[] ints; // integers and string indices
+        long[] bits;
+        int size = 0;
+
+        Column(byte type) {
+            this.type = type;
+            if (type == DOUBLE)
+                doubles = new double[16];
+            else if (type == BOOLEAN)
+                bits = new long[1];
+            else
+                ints = new int[16];
+        }
+
+        void add(Object value) {
+            if (size == Integer.MAX_VALUE - 64)
+                throw new IllegalStateException("Too many elements for a single event");
+            if ((size >> 6) == nulls.length) {
+                nulls = Arrays.copyOf(nulls, nulls.length * 2);
+                if (bits != null)
+                    bits = Arrays.copyOf(bits, bits.length * 2);
+            }
+            if (doubles != null && size == doubles.length)
+                doubles = Arrays.copyOf(doubles, size * 2);
+            if (ints != null && size == ints.length)
+                ints = Arrays.copyOf(ints, size * 2);
+            if (value == null)
+                nulls[size >> 6] |= 1L << size;
+            else if (type == DOUBLE)
+                doubles[size] = value instanceof Number ? ((Number) value).doubleValue() : Double.parseDouble(value.toString());
+            else if (type == INTEGER)
+                ints[size] = value instanceof Number ? ((Number) value).intValue() : Double.valueOf(value.toString()).intValue();
+            else if (type == STRING)
+                ints[size] = intern(value.toString());
+            else if (Boolean.TRUE.equals(value))
+                bits[size >> 6] |= 1L << size;
+            size++;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            writeBits(out, nulls, size);
+            if (type == DOUBLE) {
+                for (int i = 0; i < size; i++)
+                    out.writeDouble(doubles[i]);
+            } else if (type == BOOLEAN)
+                writeBits(out, bits, size);
+            else {
+                for (int i = 0; i < size; i++)
+                    out.writeInt(ints[i]);
+            }
+        }
+
+        private void writeBits(DataOutputStream out, long[] bitmap, int size) throws IOException {
+            for (int i = 0; i < (size + 63) >> 6; i++)
+                out.writeLong(bitmap[i]);
+        }
+    }
+
+    private final List<String> strings = new ArrayList<String>();
+    private final Map<String, Integer> stringIndex = new HashMap<String, Integer>();
+    private final Map<String, Integer> eventIndex = new HashMap<String, Integer>();
+    private final List<Event> events = new ArrayList<Event>();
+    private final int[] traceLengths;
+    private final int positive, negative;
+    private final int[] elementEvents;
+
+    public TraceToBinaryFile(TraceSet traces) throws IOException {
+        this(traces.getPos(), traces.getNeg());
+    }
+
+    public TraceToBinaryFile(Collection<List<TraceElement>> pos, Collection<List<TraceElement>> neg) throws IOException {
+        positive = pos.size();
+        negative = neg.size();
+        traceLengths = new int[positive + negative];
+        long elements = 0;
+        int t = 0;
+        for (List<TraceElement> trace : pos) {
+            traceLengths[t++] = trace.size();
+            elements += trace.size();
+        }
+        for (List<TraceElement> trace : neg) {
+            traceLengths[t++] = trace.size();
+            elements += trace.size();
+        }
+        if (elements > Integer.MAX_VALUE - 8)
+            throw new IOException("Too many trace elements for a binary trace file: " + elements);
+        elementEvents = new int[(int) elements];
+        int e = 0;
+        for (List<TraceElement> trace : pos)
+            e = addTrace(trace, e);
+        for (List<TraceElement> trace : neg)
+            e = addTrace(trace, e);
+    }
+
+    private int addTrace(List<TraceElement> trace, int e) throws IOException {
+        for (TraceElement element : trace) {
+            Integer index = eventIndex.get(element.getName());
+            if (index == null) {
+                index = events.size();
+                events.add(new Event(element));
+                eventIndex.put(element.getName(), index);
+            }
+            events.get(index).add(element);
+            elementEvents[e++] = index;
+        }
+        return e;
+    }
+
+    private int intern(String s) {
+        Integer index = stringIndex.get(s);
+        if (index == null) {
+            index = strings.size();
+            strings.add(s);
+            stringIndex.put(s, index);
+        }
+        return index;
+    }
+
+    public void writeToFile(File f) throws IOException {
+        LOGGER.debug("Writing to: " + f.getPath());
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(f), 1 << 16));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(strings.size());
+            for (String s : strings) {
+                byte[] bytes = s.getBytes(UTF8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            out.writeInt(events.size());
+            for (Event event : events) {
+                out.writeInt(event.name);
+                out.writeLong(event.elements);
+                out.writeInt(event.varNames.length);
+                for (int i = 0; i < event.varNames.length; i++) {
+                    out.writeInt(stringIndex.get(event.varNames[i]));
+                    out.writeByte(event.types[i]);
+                    out.writeBoolean(event.parameters[i]);
+                    if (event.types[i] == DOUBLE) {
+                        out.writeDouble(event.doubleMin[i]);
+                        out.writeDouble(event.doubleMax[i]);
+                    } else if (event.types[i] == INTEGER) {
+                        out.writeInt(event.intMin[i]);
+                        out.writeInt(event.intMax[i]);
+                    }
+                }
+            }
+            out.writeInt(positive);
+            out.writeInt(negative);
+            out.writeLong(elementEvents.length);
+            for (int length : traceLengths)
+                out.writeInt(length);
+            int width = eventWidth(events.size());
+            for (int event : elementEvents) {
+                if (width == 1)
+                    out.writeByte(event);
+                else if (width == 2)
+                    out.writeShort(event);
+                else
+                    out.writeInt(event);
+            }
+            for (Event event : events) {
+                for (Column column : event.columns)
+                    column.write(out);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * The number of bytes used for the event of each element.
+     */
+    public static int eventWidth(int events) {
+        if (events <= 256)
+            return 1;
+        else if (events <= 65536)
+            return 2;
+        return 4;
+    }
+
+    /**
+     * Converts a textual trace file (args[0]) to a binary trace file (args[1]).
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: TraceToBinaryFile <trace file> <binary trace file>");
+            return;
+        }
+        TraceSet traces = StreamingTraceReader.readTraceFile(args[0], Configuration.getInstance().TOKENIZER);
+        new TraceToBinaryFile(traces).writeToFile(new File(args[1]));
+    }
+
+}
@@ -0,0 +1,332 @@
+/*******************************************************************************
+ * EFSMTool is an Extended Finite State Machine (EFSM) inference tool. Copyright (C) 2013 Neil Walkinshaw.
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package mint.tracedata.readers;
+
+import mint.tracedata.SimpleTraceElement;
+import mint.tracedata.TraceElement;
+import mint.tracedata.TraceSet;
+import mint.tracedata.TraceToBinaryFile;
+import mint.tracedata.types.BooleanVariableAssignment;
+import mint.tracedata.types.DoubleVariableAssignment;
+import mint.tracedata.types.IntegerVariableAssignment;
+import mint.tracedata.types.StringVariableAssignment;
+import mint.tracedata.types.VariableAssignment;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the binary trace files that are written by TraceToBinaryFile.
+ *
+ * The file is memory-mapped, in windows so that files larger than 2GB can be
+ * read. Each column of the file is read with its own cursor, so the elements
+ * can be reconstructed in trace order in a single pass over the file.
+ */
+public class BinaryTraceReader {
+
+	// size of the mapped window of each cursor.
+	private static final int WINDOW = 1 << 24;
+
+	public static TraceSet readTraceFile(String traceFile) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(new File(traceFile), "r");
+		try {
+			return readTrace(file.getChannel());
+		} finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * Does the file start with the header of a binary trace file?
+	 */
+	public static boolean isBinaryTraceFile(String traceFile) {
+		File f = new File(traceFile);
+		if (!f.isFile() || f.length() < 8)
+			return false;
+		try {
+			DataInputStream in = new DataInputStream(new FileInputStream(f));
+			try {
+				return in.readInt() == TraceToBinaryFile.MAGIC;
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	protected static TraceSet readTrace(FileChannel channel) throws IOException {
+		Cursor header = new Cursor(channel, 0, channel.size());
+		if (header.getInt() != TraceToBinaryFile.MAGIC)
+			throw new IOException("Not a binary trace file");
+		int version = header.getInt();
+		if (version != TraceToBinaryFile.VERSION)
+			throw new IOException("Unsupported binary trace file version: " + version);
+
+		String[] strings = new String[header.getInt()];
+		for (int i = 0; i < strings.length; i++) {
+			byte[] bytes = new byte[header.getInt()];
+			header.get(bytes);
+			strings[i] = new String(bytes, TraceToBinaryFile.UTF8);
+		}
+
+		Event[] events = new Event[header.getInt()];
+		for (int i = 0; i < events.length; i++) {
+			events[i] = new Event(strings[header.getInt()], header.getLong(), header.getInt());
+			for (int v = 0; v < events[i].types.length; v++) {
+				events[i].varNames[v] = strings[header.getInt()];
+				events[i].types[v] = header.get();
+				events[i].parameters[v] = header.get() != 0;
+				if (events[i].types[v] == TraceToBinaryFile.DOUBLE) {
+					events[i].doubleMin[v] = header.getDouble();
+					events[i].doubleMax[v] = header.getDouble();
+				} else if (events[i].types[v] == TraceToBinaryFile.INTEGER) {
+					events[i].intMin[v] = header.getInt();
+					events[i].intMax[v] = header.getInt();
+				}
+			}
+		}
+
+		int positive = header.getInt();
+		int negative = header.getInt();
+		long elements = header.getLong();
+		int width = TraceToBinaryFile.eventWidth(events.length);
+
+		// position the cursors of the columns.
+		long position = header.position();
+		Cursor lengths = new Cursor(channel, position, position + 4L * (positive + negative));
+		position = lengths.end;
+		Cursor elementEvents = new Cursor(channel, position, position + width * elements);
+		position = elementEvents.end;
+		for (Event event : events) {
+			for (int v = 0; v < event.types.length; v++) {
+				long bitmap = 8L * ((event.elements + 63) >> 6);
+				event.nulls[v] = new BitCursor(new Cursor(channel, position, position + bitmap));
+				position += bitmap;
+				long size;
+				if (event.types[v] == TraceToBinaryFile.DOUBLE)
+					size = 8L * event.elements;
+				else if (event.types[v] == TraceToBinaryFile.BOOLEAN)
+					size = bitmap;
+				else
+					size = 4L * event.elements;
+				Cursor values = new Cursor(channel, position, position + size);
+				if (event.types[v] == TraceToBinaryFile.BOOLEAN)
+					event.bits[v] = new BitCursor(values);
+				else
+					event.values[v] = values;
+				position += size;
+			}
+		}
+		if (position > channel.size())
+			throw new IOException("Binary trace file is truncated");
+
+		TraceSet traces = new TraceSet();
+		for (int t = 0; t < positive + negative; t++) {
+			int length = lengths.getInt();
+			List<TraceElement> trace = new ArrayList<TraceElement>(length);
+			TraceElement last = null;
+			for (int i = 0; i < length; i++) {
+				int e;
+				if (width == 1)
+					e = elementEvents.get() & 0xFF;
+				else if (width == 2)
+					e = elementEvents.getShort() & 0xFFFF;
+				else
+					e = elementEvents.getInt();
+				SimpleTraceElement el = events[e].next(strings);
+				trace.add(el);
+				if (last != null)
+					last.setNext(el);
+				last = el;
+			}
+			if (t < positive)
+				traces.addPos(trace);
+			else
+				traces.addNeg(trace);
+		}
+		return traces;
+	}
+
+	/*
+	 * The declaration of an event, and the cursors over the columns of its variables.
+	 */
+	private static class Event {
+		final String name;
+		final long elements;
+		final String[] varNames;
+		final byte[] types;
+		final boolean[] parameters;
+		final double[] doubleMin, doubleMax;
+		final int[] intMin, intMax;
+		final BitCursor[] nulls, bits;
+		final Cursor[] values;
+
+		Event(String name, long elements, int variables) {
+			this.name = name;
+			this.elements = elements;
+			varNames = new String[variables];
+			types = new byte[variables];
+			parameters = new boolean[variables];
+			doubleMin = new double[variables];
+			doubleMax = new double[variables];
+			intMin = new int[variables];
+			intMax = new int[variables];
+			nulls = new BitCursor[variables];
+			bits = new BitCursor[variables];
+			values = new Cursor[variables];
+		}
+
+		/*
+		 * Create the next element of this event from the columns.
+		 */
+		SimpleTraceElement next(String[] strings) throws IOException {
+			VariableAssignment<?>[] params = new VariableAssignment[types.length];
+			for (int v = 0; v < types.length; v++) {
+				boolean isNull = nulls[v].next();
+				VariableAssignment<?> var;
+				switch (types[v]) {
+				case TraceToBinaryFile.DOUBLE:
+					DoubleVariableAssignment dva = new DoubleVariableAssignment(varNames[v], doubleMin[v], doubleMax[v]);
+					double d = values[v].getDouble();
+					if (!isNull)
+						dva.setValue(d);
+					var = dva;
+					break;
+				case TraceToBinaryFile.INTEGER:
+					IntegerVariableAssignment iva = new IntegerVariableAssignment(varNames[v], intMin[v], intMax[v]);
+					int i = values[v].getInt();
+					if (!isNull)
+						iva.setValue(i);
+					var = iva;
+					break;
+				case TraceToBinaryFile.STRING:
+					StringVariableAssignment sva = new StringVariableAssignment(varNames[v]);
+					int s = values[v].getInt();
+					if (!isNull)
+						sva.setStringValue(strings[s]);
+					var = sva;
+					break;
+				case TraceToBinaryFile.BOOLEAN:
+					BooleanVariableAssignment bva = new BooleanVariableAssignment(varNames[v]);
+					boolean b = bits[v].next();
+					if (!isNull)
+						bva.setValue(b);
+					var = bva;
+					break;
+				default:
+					throw new IOException("Unknown variable type in binary trace file: " + types[v]);
+				}
+				var.setParameter(parameters[v]);
+				params[v] = var;
+			}
+			return new SimpleTraceElement(name, params);
+		}
+	}
+
+	/*
+	 * Sequential reads from a region of the file, through a mapped window that
+	 * is moved along as the region is read.
+	 */
+	private static class Cursor {
+		final FileChannel channel;
+		final long end;
+		MappedByteBuffer window;
+		long windowStart;
+
+		Cursor(FileChannel channel, long start, long end) throws IOException {
+			this.channel = channel;
+			this.end = end;
+			map(start);
+		}
+
+		private void map(long start) throws IOException {
+			long size = Math.min(WINDOW, Math.min(end, channel.size()) - start);
+			if (size < 0)
+				throw new IOException("Binary trace file is truncated");
+			window = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+			windowStart = start;
+		}
+
+		long position() {
+			return windowStart + window.position();
+		}
+
+		private void ensure(int bytes) throws IOException {
+			if (window.remaining() < bytes) {
+				long position = position();
+				if (position + bytes > end)
+					throw new IOException("Binary trace file is truncated");
+				map(position);
+			}
+		}
+
+		byte get() throws IOException {
+			ensure(1);
+			return window.get();
+		}
+
+		void get(byte[] bytes) throws IOException {
+			int offset = 0;
+			while (offset < bytes.length) {
+				ensure(1);
+				int length = Math.min(window.remaining(), bytes.length - offset);
+				window.get(bytes, offset, length);
+				offset += length;
+			}
+		}
+
+		short getShort() throws IOException {
+			ensure(2);
+			return window.getShort();
+		}
+
+		int getInt() throws IOException {
+			ensure(4);
+			return window.getInt();
+		}
+
+		long getLong() throws IOException {
+			ensure(8);
+			return window.getLong();
+		}
+
+		double getDouble() throws IOException {
+			ensure(8);
+			return window.getDouble();
+		}
+	}
+
+	private static class BitCursor {
+		final Cursor words;
+		long word;
+		int bit = 64;
+
+		BitCursor(Cursor words) {
+			this.words = words;
+		}
+
+		boolean next() throws IOException {
+			if (bit == 64) {
+				word = words.getLong();
+				bit = 0;
+			}
+			return (word & (1L << bit++)) != 0;
+		}
+	}
+
+}
@@ -0,0 +1,512 @@
+/*******************************************************************************
+ * EFSMTool is an Extended Finite State Machine (EFSM) inference tool. Copyright (C) 2013 Neil Walkinshaw.
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package mint.tracedata.readers;
+
+import mint.tracedata.SimpleTraceElement;
+import mint.tracedata.TraceElement;
+import mint.tracedata.TraceSet;
+import mint.tracedata.types.VariableAssignment;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads trace files in the format described in TraceReader, one trace at a time,
+ * so that large trace files can be processed without holding them in memory.
+ *
+ * Traces can be read either with a cursor:
+ *
+ * <pre>
+ * StreamingTraceReader reader = StreamingTraceReader.open(file, splitter);
+ * while(reader.next()){
+ *     process(reader.getTrace(), reader.isPositive());
+ * }
+ * reader.close();
+ * </pre>
+ *
+ * or by passing a TraceHandler to read(). readAll() collects all of the traces
+ * into a TraceSet, with the same result as TraceReader.readTraceFile().
+ *
+ * Lines are read into a reusable character buffer and tokenized in place. For the
+ * usual splitters (a single character, or a class of characters such as the default
+ * "[ \t]") this is done without regular expressions; other splitters are compiled
+ * once. Trace elements of the same event share the event name and the variable
+ * names of the type signature in the types section.
+ */
+public class StreamingTraceReader implements Closeable {
+
+	public interface TraceHandler {
+
+		/**
+		 * Called for each trace in the file, in order.
+		 */
+		void trace(List<TraceElement> trace, boolean positive) throws IOException;
+	}
+
+	private static final int NONE = 0, POSITIVE = 1, NEGATIVE = 2;
+
+	protected final Reader in;
+	protected final Tokenizer tokenizer;
+
+	// input buffer
+	protected char[] buffer = new char[1 << 16];
+	protected int position, limit;
+
+	// current line
+	protected char[] line = new char[256];
+	protected int lineLength;
+
+	protected Schemas schemas = new Schemas();
+
+	// a trace header that has been read, but whose trace has not been returned yet.
+	protected int pendingHeader = NONE;
+
+	protected List<TraceElement> trace;
+	protected boolean positive;
+	protected long lineNumber = 0;
+
+	public StreamingTraceReader(Reader in, String splitter) {
+		this.in = in;
+		this.tokenizer = Tokenizer.compile(splitter);
+	}
+
+	public static StreamingTraceReader open(String traceFile, String splitter) throws IOException {
+		Reader r = new InputStreamReader(new FileInputStream(new File(traceFile)), Charset.defaultCharset());
+		return new StreamingTraceReader(r, splitter);
+	}
+
+	public static TraceSet readTraceFile(String traceFile, String splitter) throws IOException {
+		StreamingTraceReader reader = open(traceFile, splitter);
+		try {
+			return reader.readAll();
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Advance to the next trace.
+	 *
+	 * @return false if there are no more traces.
+	 * @throws IOException
+	 */
+	public boolean next() throws IOException {
+		List<TraceElement> current = null;
+		boolean currentPositive = false;
+		if (pendingHeader != NONE) {
+			current = new ArrayList<TraceElement>();
+			currentPositive = pendingHeader == POSITIVE;
+			pendingHeader = NONE;
+		}
+		TraceElement last = null;
+		while (readLine()) {
+			if (startsWith("#"))
+				continue;
+			if (startsWith("types")) {
+				readTypes();
+				if (lineLength < 0)
+					break;
+			}
+			int header = header();
+			if (header != NONE) {
+				if (current != null) {
+					pendingHeader = header;
+					break;
+				}
+				current = new ArrayList<TraceElement>();
+				currentPositive = header == POSITIVE;
+				last = null;
+				continue;
+			}
+			SimpleTraceElement el = readElement();
+			if (el == null)
+				continue;
+			// (elements before the first trace header are not part of any trace)
+			if (current != null)
+				current.add(el);
+			if (last != null)
+				last.setNext(el);
+			last = el;
+		}
+		trace = current;
+		positive = currentPositive;
+		return current != null;
+	}
+
+	public List<TraceElement> getTrace() {
+		return trace;
+	}
+
+	public boolean isPositive() {
+		return positive;
+	}
+
+	/**
+	 * Pass each of the remaining traces to handler.
+	 */
+	public void read(TraceHandler handler) throws IOException {
+		while (next()) {
+			handler.trace(trace, positive);
+		}
+	}
+
+	public TraceSet readAll() throws IOException {
+		TraceSet traces = new TraceSet();
+		while (next()) {
+			if (positive)
+				traces.addPos(trace);
+			else
+				traces.addNeg(trace);
+		}
+		return traces;
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+
+	/*
+	 * Read the type signatures that follow a "types" line. Stops at the next trace
+	 * header, which is left in the line buffer (lineLength is -1 at the end of the
+	 * input).
+	 */
+	private void readTypes() throws IOException {
+		schemas = new Schemas();
+		while (readLine()) {
+			if (header() != NONE)
+				return;
+			String typeLine = new String(line, 0, lineLength).trim();
+			if (typeLine.startsWith("#") || typeLine.length() == 0)
+				continue; // Skip comments in type definitions.
+			String[] tokens = typeLine.split(" ");
+			schemas.put(tokens[0], TraceReader.getTypes(Arrays.copyOfRange(tokens, 1, tokens.length)));
+		}
+		lineLength = -1;
+	}
+
+	private int header() {
+		if (startsWith("trace"))
+			return POSITIVE;
+		else if (startsWith("negtrace"))
+			return NEGATIVE;
+		return NONE;
+	}
+
+	private SimpleTraceElement readElement() throws IOException {
+		int tokens = tokenizer.tokenize(line, lineLength);
+		if (tokens == 0 || tokenizer.end(0) == tokenizer.start(0))
+			return null;
+		int nameStart = tokenizer.start(0);
+		int nameLength = tokenizer.end(0) - nameStart;
+		Schema schema = schemas.get(line, nameStart, nameLength);
+		if (schema == null)
+			throw new IOException("There is no type signature for event \"" + new String(line, nameStart, nameLength)
+					+ "\" (line " + lineNumber + "). Make sure that you included a line with the word \"types\" above your type declarations.");
+		VariableAssignment<?>[] sig = schema.signature;
+		VariableAssignment<?>[] params = new VariableAssignment[sig.length];
+		if (tokens > 1 && tokens <= sig.length)
+			throw new IOException("There has been a mismatch between the specified types and the trace contents (line "
+					+ lineNumber + "): " + new String(line, 0, lineLength));
+		for (int i = 0; i < sig.length; i++) {
+			String value = null;
+			if (tokens > 1)
+				value = new String(line, tokenizer.start(i + 1), tokenizer.end(i + 1) - tokenizer.start(i + 1));
+			try {
+				params[i] = sig[i].createNew(sig[i].getName(), value);
+			} catch (RuntimeException e) {
+				throw new IOException("There has been a mismatch between the specified types and the trace contents (line "
+						+ lineNumber + "): element " + i + " was not expected in " + new String(line, 0, lineLength), e);
+			}
+		}
+		return new SimpleTraceElement(schema.name, params);
+	}
+
+	private boolean startsWith(String prefix) {
+		if (lineLength < prefix.length())
+			return false;
+		for (int i = 0; i < prefix.length(); i++) {
+			if (line[i] != prefix.charAt(i))
+				return false;
+		}
+		return true;
+	}
+
+	/*
+	 * Read the next line into the line buffer (without its terminator), as
+	 * BufferedReader.readLine() would.
+	 */
+	private boolean readLine() throws IOException {
+		lineLength = 0;
+		boolean read = false;
+		while (true) {
+			if (position >= limit) {
+				limit = in.read(buffer, 0, buffer.length);
+				position = 0;
+				if (limit <= 0) {
+					limit = 0;
+					if (read)
+						lineNumber++;
+					return read;
+				}
+			}
+			read = true;
+			int start = position;
+			while (position < limit && buffer[position] != '\n' && buffer[position] != '\r')
+				position++;
+			append(start, position);
+			if (position < limit) {
+				char terminator = buffer[position++];
+				if (terminator == '\r') {
+					if (position >= limit) {
+						limit = in.read(buffer, 0, buffer.length);
+						position = 0;
+						if (limit < 0)
+							limit = 0;
+					}
+					if (position < limit && buffer[position] == '\n')
+						position++;
+				}
+				lineNumber++;
+				return true;
+			}
+		}
+	}
+
+	private void append(int start, int end) {
+		int length = end - start;
+		if (lineLength + length > line.length)
+			line = Arrays.copyOf(line, Math.max(line.length * 2, lineLength + length));
+		System.arraycopy(buffer, start, line, lineLength, length);
+		lineLength += length;
+	}
+
+	/*
+	 * The type signature of an event, and its (shared) name.
+	 */
+	protected static class Schema {
+		final String name;
+		final VariableAssignment<?>[] signature;
+
+		Schema(String name, VariableAssignment<?>[] signature) {
+			this.name = name;
+			this.signature = signature;
+		}
+	}
+
+	/*
+	 * Event names to schemas, looked up directly from the line buffer.
+	 */
+	protected static class Schemas {
+		private Schema[] table = new Schema[16];
+		private int size = 0;
+
+		void put(String name, VariableAssignment<?>[] signature) {
+			if ((size + 1) * 2 > table.length) {
+				Schema[] old = table;
+				table = new Schema[old.length * 2];
+				size = 0;
+				for (Schema s : old) {
+					if (s != null)
+						insert(s);
+				}
+			}
+			char[] chars = name.toCharArray();
+			int i = slot(chars, 0, chars.length);
+			while (table[i] != null) {
+				if (table[i].name.equals(name)) {
+					table[i] = new Schema(name, signature);
+					return;
+				}
+				i = (i + 1) & (table.length - 1);
+			}
+			table[i] = new Schema(name, signature);
+			size++;
+		}
+
+		private void insert(Schema s) {
+			int i = slot(s.name.toCharArray(), 0, s.name.length());
+			while (table[i] != null)
+				i = (i + 1) & (table.length - 1);
+			table[i] = s;
+			size++;
+		}
+
+		Schema get(char[] chars, int start, int length) {
+			int i = slot(chars, start, length);
+			while (table[i] != null) {
+				if (matches(table[i].name, chars, start, length))
+					return table[i];
+				i = (i + 1) & (table.length - 1);
+			}
+			return null;
+		}
+
+		private int slot(char[] chars, int start, int length) {
+			int h = 0;
+			for (int i = start; i < start + length; i++)
+				h = 31 * h + chars[i];
+			h ^= (h >>> 16);
+			return h & (table.length - 1);
+		}
+
+		private static boolean matches(String name, char[] chars, int start, int length) {
+			if (name.length() != length)
+				return false;
+			for (int i = 0; i < length; i++) {
+				if (name.charAt(i) != chars[start + i])
+					return false;
+			}
+			return true;
+		}
+	}
+
+	/*
+	 * Splits a line into tokens, with the same results as String.split(splitter).
+	 * Tokens are returned as ranges of the line.
+	 */
+	protected static class Tokenizer {
+
+		// for single-character delimiters (null if a regular expression is needed).
+		private final boolean[] delimiter;
+		private final boolean runs;
+		private final Matcher matcher;
+
+		private int[] starts = new int[16], ends = new int[16];
+		private int count;
+
+		private Tokenizer(boolean[] delimiter, boolean runs, Pattern pattern) {
+			this.delimiter = delimiter;
+			this.runs = runs;
+			this.matcher = pattern == null ? null : pattern.matcher("");
+		}
+
+		static Tokenizer compile(String splitter) {
+			boolean runs = splitter.endsWith("+") && splitter.length() > 1;
+			String set = runs ? splitter.substring(0, splitter.length() - 1) : splitter;
+			boolean[] delimiter = null;
+			if (set.length() > 2 && set.startsWith("[") && set.endsWith("]") && set.charAt(1) != '^')
+				delimiter = literals(set.substring(1, set.length() - 1), true);
+			else if (!runs || set.length() == 1 || set.startsWith("\\"))
+				delimiter = literals(set, false);
+			if (delimiter != null)
+				return new Tokenizer(delimiter, runs, null);
+			return new Tokenizer(null, false, Pattern.compile(splitter));
+		}
+
+		/*
+		 * Returns the characters matched by s (a single character if !inClass, or
+		 * the contents of a character class), or null if s is not a simple
+		 * list of (escaped) ASCII characters.
+		 */
+		private static boolean[] literals(String s, boolean inClass) {
+			boolean[] chars = new boolean[128];
+			int count = 0;
+			for (int i = 0; i < s.length(); i++) {
+				char c = s.charAt(i);
+				if (c == '\\') {
+					if (++i == s.length())
+						return null;
+					char e = s.charAt(i);
+					if (e == 't')
+						chars['\t'] = true;
+					else if (e == 's') {
+						chars[' '] = chars['\t'] = chars['\n'] = chars['\r'] = chars['\f'] = chars[0x0B] = true;
+					} else if (!Character.isLetterOrDigit(e) && e < 128)
+						chars[e] = true;
+					else
+						return null;
+				} else if (c >= 128 || (inClass ? "[]^-&".indexOf(c) >= 0 : ".$|()[]{}^?*+\\".indexOf(c) >= 0))
+					return null;
+				else
+					chars[c] = true;
+				count++;
+			}
+			if (count == 0 || (!inClass && count > 1))
+				return null;
+			return chars;
+		}
+
+		int tokenize(char[] line, int length) {
+			count = 0;
+			int index = 0;
+			boolean matched = false;
+			if (delimiter != null) {
+				int i = 0;
+				while (i < length) {
+					char c = line[i];
+					if (c < 128 && delimiter[c]) {
+						int end = i + 1;
+						if (runs) {
+							while (end < length && line[end] < 128 && delimiter[line[end]])
+								end++;
+						}
+						add(index, i);
+						matched = true;
+						index = end;
+						i = end;
+					} else
+						i++;
+				}
+			} else {
+				matcher.reset(CharBuffer.wrap(line, 0, length));
+				while (matcher.find()) {
+					// a zero-width match at the beginning never produces an empty leading token
+					if (index == 0 && matcher.start() == 0 && matcher.end() == 0)
+						continue;
+					add(index, matcher.start());
+					matched = true;
+					index = matcher.end();
+				}
+			}
+			if (!matched) {
+				count = 0;
+				add(0, length);
+				return count;
+			}
+			add(index, length);
+			// trailing empty tokens are removed
+			while (count > 0 && starts[count - 1] == ends[count - 1])
+				count--;
+			return count;
+		}
+
+		private void add(int start, int end) {
+			if (count == starts.length) {
+				starts = Arrays.copyOf(starts, count * 2);
+				ends = Arrays.copyOf(ends, count * 2);
+			}
+			starts[count] = start;
+			ends[count] = end;
+			count++;
+		}
+
+		int start(int token) {
+			return starts[token];
+		}
+
+		int end(int token) {
+			return ends[token];
+		}
+	}
+
+}
@@ -128,7 +128,7 @@ public class TraceReader {
 		return traces;
 	}
 
-	private static VariableAssignment<?>[] getTypes(String[] strings) {
+	static VariableAssignment<?>[] getTypes(String[] strings) {
 		VariableAssignment<?>[] typeArray = new VariableAssignment[strings.length];
 		for (int i = 0; i<strings.length;i++) {
 			String current = strings[i];
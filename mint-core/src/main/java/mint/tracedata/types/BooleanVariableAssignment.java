@@ -2,6 +2,7 @@ package mint.tracedata.types;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 
 public class BooleanVariableAssignment extends VariableAssignment<Boolean> {
 
@@ -52,7 +53,7 @@ public class BooleanVariableAssignment extends VariableAssignment<Boolean> {
 	}
 
 	@Override
-	protected Boolean generateRandom() {
+	protected Boolean generateRandom(Random rand) {
 		int bool = rand.nextInt(2);
 		if (bool == 1)
 			return true;
@@ -15,6 +15,7 @@ import java.math.RoundingMode;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Random;
 
 import org.apache.log4j.Logger;
 
@@ -101,7 +102,7 @@ public class DoubleVariableAssignment extends NumberVariableAssignment<Double> {
 	}
 
 	@Override
-	protected Double generateRandom() {
+	protected Double generateRandom(Random rand) {
 		return min + (max - min) * rand.nextDouble();
 	}
 
@@ -118,17 +119,65 @@ public class DoubleVariableAssignment extends NumberVariableAssignment<Double> {
 		}
 	}
 
+	private static final double[] POWERS_OF_TEN = { 1, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6 };
+
 	public static double round(double value, int places) {
 		if (places < 0)
 			throw new IllegalArgumentException();
 
-		if (Double.isNaN(value) || Double.isInfinite(value))
+		if (Double.isNaN(value) || Double.isInfinite(value) || value == 0)
 			return 0D;
+		// Values that are already rounded (e.g. those read back from a trace) are
+		// returned as they are. If value is the closest double to n / 10^places it
+		// is also what the BigDecimal rounding below would return, as long as its
+		// precision is well within the number of places.
+		if (places <= 6 && Math.abs(value) < 1e9) {
+			double scale = POWERS_OF_TEN[places];
+			if (Math.rint(value * scale) / scale == value)
+				return value;
+		}
+		if (places <= 3) {
+			long rounded = roundToScale(value, (int) POWERS_OF_TEN[places]);
+			if (rounded != Long.MIN_VALUE)
+				return rounded / POWERS_OF_TEN[places];
+		}
 		BigDecimal bd = new BigDecimal(value);
 		bd = bd.setScale(places, RoundingMode.HALF_UP);
 		return bd.doubleValue();
 	}
 
+	/*
+	 * value * scale rounded half-up to a whole number, computed exactly on the
+	 * mantissa of value (so without the BigDecimal above), or Long.MIN_VALUE if
+	 * the result is too large to be divided by scale exactly as BigDecimal does.
+	 * The scale must be below 2^10, so that the mantissa times the scale fits
+	 * into a long.
+	 */
+	private static long roundToScale(double value, int scale) {
+		long bits = Double.doubleToRawLongBits(Math.abs(value));
+		int exponent = (int) (bits >>> 52);
+		long mantissa = bits & 0xFFFFFFFFFFFFFL;
+		if (exponent == 0)
+			exponent = 1; // subnormal
+		else
+			mantissa |= 1L << 52;
+		long scaled = mantissa * scale;
+		int shift = 1075 - exponent;
+		long rounded;
+		if (shift <= 0) {
+			return Long.MIN_VALUE;
+		} else if (shift >= 64) {
+			rounded = 0; // scaled < 2^63, so value * scale < 1/2
+		} else {
+			rounded = scaled >>> shift;
+			if (((scaled >>> (shift - 1)) & 1) != 0)
+				rounded++;
+		}
+		if (rounded >= 1L << 52)
+			return Long.MIN_VALUE;
+		return value < 0 ? -rounded : rounded;
+	}
+
 	@Override
 	public List<Double> getValues() {
 		return values;
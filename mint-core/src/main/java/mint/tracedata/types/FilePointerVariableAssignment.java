@@ -1,6 +1,7 @@
 package mint.tracedata.types;
 
 import java.io.File;
+import java.util.Random;
 
 /**
  *
@@ -41,7 +42,7 @@ public class FilePointerVariableAssignment extends StringVariableAssignment {
     }
 
     @Override
-    protected String generateRandom() {
+    protected String generateRandom(Random rand) {
        File redirectFile = new File(value);
         assert(redirectFile.isDirectory());
         File[] files = redirectFile.listFiles();
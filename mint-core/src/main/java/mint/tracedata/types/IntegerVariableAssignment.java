@@ -5,6 +5,7 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 
 import org.apache.log4j.Logger;
 
@@ -38,6 +39,18 @@ public class IntegerVariableAssignment extends NumberVariableAssignment<Integer>
 		return constMap;
 	}
 
+	/**
+	 * The bounds that enforcing variables are clamped to when set (the static
+	 * defaults, not the min and max of the variable).
+	 */
+	public static int getEnforcedMin() {
+		return min;
+	}
+
+	public static int getEnforcedMax() {
+		return max;
+	}
+
 	public IntegerVariableAssignment(String name, Integer value) {
 		super(name, value, getMinVal(min), getMaxVal(max));
 		assert max > 0;
@@ -137,7 +150,7 @@ public class IntegerVariableAssignment extends NumberVariableAssignment<Integer>
 	}
 
 	@Override
-	protected Integer generateRandom() {
+	protected Integer generateRandom(Random rand) {
 		if (!values.isEmpty())
 			return values.get(rand.nextInt(values.size()));
 		System.out.println("max:" + max + " min: " + min);
@@ -2,6 +2,7 @@ package mint.tracedata.types;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 import java.util.StringTokenizer;
 
 /**
@@ -93,7 +94,7 @@ public class ListVariableAssignment extends VariableAssignment<List<?>> {
 	 * @return
 	 */
 	@Override
-	protected List<?> generateRandom() {
+	protected List<?> generateRandom(Random rand) {
 		return null;
 	}
 
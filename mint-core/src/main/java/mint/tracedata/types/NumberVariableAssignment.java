@@ -39,6 +39,10 @@ public abstract class NumberVariableAssignment<T extends Number> extends Variabl
 		this.enforcing = e;
 	}
 
+	public boolean isEnforcing() {
+		return enforcing;
+	}
+
 	public T getMin() {
 		return min;
 	}
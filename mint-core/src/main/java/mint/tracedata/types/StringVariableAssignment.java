@@ -3,6 +3,7 @@ package mint.tracedata.types;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Random;
 
 public class StringVariableAssignment extends VariableAssignment<String> {
 
@@ -59,13 +60,14 @@ public class StringVariableAssignment extends VariableAssignment<String> {
 	public VariableAssignment<String> copy() {
 		StringVariableAssignment copied = new StringVariableAssignment(name, value);
 		copied.setParameter(isParameter());
-		copied.setRange(from);
+		// (allocated here if need be, so that the values recorded are shared with the copy)
+		copied.setRange(getPriors());
 		assert (copied.isNull() == isNull());
 		return copied;
 	}
 
 	@Override
-	protected String generateRandom() {
+	protected String generateRandom(Random rand) {
 		// TODO Auto-generated method stub
 		return null;
 	}
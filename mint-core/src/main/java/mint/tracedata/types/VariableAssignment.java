@@ -60,7 +60,7 @@ public abstract class VariableAssignment<T> {
 			this.isNull = false;
 		else
 			this.isNull = true;
-		this.from = new HashSet<T>();
+		this.from = null; // allocated when a value is recorded
 		this.parameter = false;
 		this.restricted = false;
 		setValue(value);
@@ -82,7 +82,7 @@ public abstract class VariableAssignment<T> {
 			this.isNull = false;
 		else
 			this.isNull = true;
-		this.from = new HashSet<T>();
+		this.from = null; // allocated when a value is recorded
 		this.parameter = false;
 		this.restricted = false;
 		setValue(value);
@@ -97,7 +97,7 @@ public abstract class VariableAssignment<T> {
 		this.name = name;
 		this.id = idcounter++;
 		this.isNull = true;
-		this.from = new HashSet<T>();
+		this.from = null; // allocated when a value is recorded
 		this.parameter = false;
 		this.restricted = false;
 	}
@@ -140,7 +140,7 @@ public abstract class VariableAssignment<T> {
 	 * 
 	 * @return
 	 */
-	protected boolean isRestricted() {
+	public boolean isRestricted() {
 		return restricted;
 	}
 
@@ -151,12 +151,23 @@ public abstract class VariableAssignment<T> {
 	 * function.
 	 */
 	public void setToRandom() {
+		setToRandom(rand);
+	}
+
+	/**
+	 * Set variable to a random value, chosen with the given random number
+	 * generator (so that the values do not depend on what else uses the
+	 * shared one).
+	 *
+	 * @param rand
+	 */
+	public void setToRandom(Random rand) {
 		if (isRestricted()) {
 			List<T> fromList = new ArrayList<T>();
 			fromList.addAll(from);
 			setValue(fromList.get(rand.nextInt(fromList.size())));
 		} else
-			setValue(generateRandom());
+			setValue(generateRandom(rand));
 
 	}
 
@@ -277,7 +288,7 @@ public abstract class VariableAssignment<T> {
 
 	public abstract VariableAssignment<T> copy();
 
-	protected abstract T generateRandom();
+	protected abstract T generateRandom(Random rand);
 
 	public boolean withinLimits() {
 		return true;
@@ -292,10 +303,14 @@ public abstract class VariableAssignment<T> {
 	 * @param value
 	 */
 	public void recordValue(T value) {
+		if (from == null)
+			from = new HashSet<T>();
 		from.add(value);
 	}
 
 	public Collection<T> getPriors() {
+		if (from == null)
+			from = new HashSet<T>();
 		return from;
 	}
 
@@ -0,0 +1,141 @@
+package mint.tracedata;
+
+import mint.Configuration;
+import mint.tracedata.readers.StreamingTraceReader;
+import mint.tracedata.readers.TraceReader;
+import mint.tracedata.types.VariableAssignment;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that StreamingTraceReader reads the same traces as TraceReader.
+ */
+public class StreamingTraceReaderTest {
+
+    Configuration configuration;
+
+    @Before
+    public void setup() {
+        Configuration.reset();
+        configuration = Configuration.getInstance();
+    }
+
+    private static final String[] TRACES = {
+            "types\nfoo a:S b:N\nbar x:N y:S\ntrace\nfoo abc 2\nfoo abc 2\nbar 400 abc\n",
+            "#a comment\ntypes\nfoo a:S b:N\n# a type comment\n\nbar x:N y:S\ntrace\nfoo abc 2\n#foo abc 2\nfoo abc 2\nbar 400 abc\n"
+                    + "negtrace\nfoo abc 2\nbar 2 abc\n\ntrace\ntrace\nbar 1 z\n",
+            "types\nfoo a:I[0:10] b:D\nbaz\ntrace\nfoo\tx 2\t3.5\nbaz\r\nfoo 1 2 3\r\ntypes\nbaz v:B\ntrace\nbaz true",
+            "trace\ntypes\nop a:S\nnegtrace\nop  x\nop y  \n  op z\n"
+    };
+
+    @Test
+    public void testSameTracesAsTraceReader() throws Exception {
+        for (String traces : TRACES) {
+            assertSameTraces(traces, configuration.TOKENIZER);
+            // (TraceReader exits if an event name is not declared, so there are no tabs for this splitter)
+            assertSameTraces(traces.replace('\t', ' '), " ");
+            assertSameTraces(traces, "\\s+");
+            assertSameTraces(traces, "[ \t]+");
+        }
+    }
+
+    @Test
+    public void testRegularExpressionSplitter() throws Exception {
+        String traces = "types\nfoo a:S b:N\ntrace\nfoo,abc;2\nfoo;;abc,,2\n";
+        assertSameTraces(traces, "[,;]+");
+        assertSameTraces(traces, ",|;");
+        assertSameTraces(traces, "(?=;)|,");
+    }
+
+    @Test
+    public void testCursor() throws Exception {
+        StreamingTraceReader reader = new StreamingTraceReader(new StringReader(TRACES[1]), configuration.TOKENIZER);
+        assertTrue(reader.next());
+        assertTrue(reader.isPositive());
+        assertEquals(3, reader.getTrace().size());
+        assertSame(reader.getTrace().get(1), reader.getTrace().get(0).getNext());
+        assertTrue(reader.next());
+        assertFalse(reader.isPositive());
+        assertEquals(2, reader.getTrace().size());
+        assertTrue(reader.next());
+        assertTrue(reader.getTrace().isEmpty());
+        assertTrue(reader.next());
+        assertEquals(1, reader.getTrace().size());
+        assertFalse(reader.next());
+        reader.close();
+    }
+
+    @Test
+    public void testHandler() throws Exception {
+        final List<Boolean> positive = new ArrayList<Boolean>();
+        StreamingTraceReader reader = new StreamingTraceReader(new StringReader(TRACES[1]), configuration.TOKENIZER);
+        reader.read(new StreamingTraceReader.TraceHandler() {
+            @Override
+            public void trace(List<TraceElement> trace, boolean pos) {
+                positive.add(pos);
+            }
+        });
+        assertEquals(4, positive.size());
+        assertFalse(positive.get(1));
+    }
+
+    @Test
+    public void testSharedNames() throws Exception {
+        StreamingTraceReader reader = new StreamingTraceReader(new StringReader(TRACES[0]), configuration.TOKENIZER);
+        assertTrue(reader.next());
+        List<TraceElement> trace = reader.getTrace();
+        assertSame(trace.get(0).getName(), trace.get(1).getName());
+    }
+
+    @Test(expected = IOException.class)
+    public void testMissingType() throws Exception {
+        StreamingTraceReader reader = new StreamingTraceReader(new StringReader("types\nfoo a:S\ntrace\nbar x\n"), configuration.TOKENIZER);
+        reader.readAll();
+    }
+
+    @Test(expected = IOException.class)
+    public void testMismatch() throws Exception {
+        StreamingTraceReader reader = new StreamingTraceReader(new StringReader("types\nfoo a:S b:N\ntrace\nfoo x\n"), configuration.TOKENIZER);
+        reader.readAll();
+    }
+
+    private void assertSameTraces(String traces, String splitter) throws IOException {
+        File tempFile = File.createTempFile("testtrace", ".txt");
+        tempFile.deleteOnExit();
+        PrintWriter file = new PrintWriter(tempFile);
+        file.print(traces);
+        file.close();
+
+        TraceSet expected = TraceReader.readTraceFile(tempFile.getPath(), splitter);
+        TraceSet actual = StreamingTraceReader.readTraceFile(tempFile.getPath(), splitter);
+        assertEquals(toString(expected.getPos()), toString(actual.getPos()));
+        assertEquals(toString(expected.getNeg()), toString(actual.getNeg()));
+    }
+
+    private static List<String> toString(List<List<TraceElement>> traces) {
+        List<String> strings = new ArrayList<String>();
+        for (List<TraceElement> trace : traces) {
+            StringBuilder sb = new StringBuilder();
+            for (TraceElement el : trace) {
+                List<String> data = new ArrayList<String>();
+                for (VariableAssignment<?> va : el.getData()) {
+                    data.add(va.toString());
+                }
+                Collections.sort(data);
+                sb.append(el.getName()).append(data).append(';');
+            }
+            strings.add(sb.toString());
+        }
+        return strings;
+    }
+}
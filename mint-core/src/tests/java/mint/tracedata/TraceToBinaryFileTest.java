@@ -0,0 +1,154 @@
+package mint.tracedata;
+
+import mint.Configuration;
+import mint.tracedata.readers.BinaryTraceReader;
+import mint.tracedata.readers.StreamingTraceReader;
+import mint.tracedata.types.DoubleVariableAssignment;
+import mint.tracedata.types.IntegerVariableAssignment;
+import mint.tracedata.types.ListVariableAssignment;
+import mint.tracedata.types.VariableAssignment;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Writes traces to binary trace files, and checks that BinaryTraceReader reads
+ * the same traces back.
+ */
+public class TraceToBinaryFileTest {
+
+    Configuration configuration;
+
+    @Before
+    public void setup() {
+        Configuration.reset();
+        configuration = Configuration.getInstance();
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        TraceSet traces = read("types\nfoo a:S b:N c:B\nbar x:I[-5:5] y:SI z:NI\nbaz\n"
+                + "trace\nfoo abc 2.125 true\nfoo * -1.5 false\nbar 4 abc 0.1\nbaz\n"
+                + "negtrace\nfoo abc 2 true\nbar -3 d\u00e9f 7\n"
+                + "trace\ntrace\nbaz\nfoo x null false\nfoo\n");
+        TraceSet result = roundTrip(traces);
+        assertEquals(toString(traces.getPos()), toString(result.getPos()));
+        assertEquals(toString(traces.getNeg()), toString(result.getNeg()));
+        assertEquals(3, result.getPos().size());
+        assertEquals(1, result.getNeg().size());
+
+        List<TraceElement> trace = result.getPos().get(0);
+        assertSame(trace.get(1), trace.get(0).getNext());
+        for (VariableAssignment<?> var : trace.get(2).getData()) {
+            assertEquals(!var.getName().equals("x"), var.isParameter());
+            if (var instanceof IntegerVariableAssignment) {
+                IntegerVariableAssignment original = null;
+                for (VariableAssignment<?> v : traces.getPos().get(0).get(2).getData()) {
+                    if (v.getName().equals("x"))
+                        original = (IntegerVariableAssignment) v;
+                }
+                assertEquals(original.getMin(), ((IntegerVariableAssignment) var).getMin());
+                assertEquals(original.getMax(), ((IntegerVariableAssignment) var).getMax());
+            }
+        }
+    }
+
+    @Test
+    public void testManyEvents() throws Exception {
+        StringBuilder sb = new StringBuilder("types\n");
+        for (int i = 0; i < 300; i++)
+            sb.append("e").append(i).append(" v:N\n");
+        sb.append("trace\n");
+        for (int i = 0; i < 1000; i++)
+            sb.append("e").append((i * 7) % 300).append(" ").append(i / 8.0).append("\n");
+        TraceSet traces = read(sb.toString());
+        TraceSet result = roundTrip(traces);
+        assertEquals(toString(traces.getPos()), toString(result.getPos()));
+    }
+
+    @Test(expected = IOException.class)
+    public void testTruncatedFile() throws Exception {
+        TraceSet traces = read("types\nfoo a:S b:N\ntrace\nfoo abc 2\nfoo abc 3\n");
+        File f = File.createTempFile("testtrace", ".bin");
+        f.deleteOnExit();
+        new TraceToBinaryFile(traces).writeToFile(f);
+        RandomAccessFile raf = new RandomAccessFile(f, "rw");
+        raf.setLength(raf.length() - 4);
+        raf.close();
+        BinaryTraceReader.readTraceFile(f.getPath());
+    }
+
+    @Test(expected = IOException.class)
+    public void testUnsupportedType() throws Exception {
+        List<VariableAssignment<?>> data = new ArrayList<VariableAssignment<?>>();
+        data.add(new ListVariableAssignment("l"));
+        List<TraceElement> trace = new ArrayList<TraceElement>();
+        trace.add(new SimpleTraceElement("foo", data));
+        TraceSet traces = new TraceSet();
+        traces.addPos(trace);
+        new TraceToBinaryFile(traces);
+    }
+
+    @Test
+    public void testDetection() throws Exception {
+        TraceSet traces = read("types\nfoo a:S\ntrace\nfoo abc\n");
+        File f = File.createTempFile("testtrace", ".bin");
+        f.deleteOnExit();
+        new TraceToBinaryFile(traces).writeToFile(f);
+        assertTrue(BinaryTraceReader.isBinaryTraceFile(f.getPath()));
+        File text = File.createTempFile("testtrace", ".txt");
+        text.deleteOnExit();
+        assertFalse(BinaryTraceReader.isBinaryTraceFile(text.getPath()));
+    }
+
+    @Test
+    public void testRoundingIsUnchanged() {
+        java.util.Random r = new java.util.Random(0);
+        for (int i = 0; i < 100000; i++) {
+            double value;
+            if (i % 2 == 0)
+                value = Math.rint(r.nextGaussian() * 1e6) / 1000;
+            else
+                value = r.nextGaussian() * Math.pow(10, r.nextInt(12) - 3);
+            double expected = new java.math.BigDecimal(value).setScale(3, java.math.RoundingMode.HALF_UP).doubleValue();
+            assertEquals(Double.doubleToLongBits(expected), Double.doubleToLongBits(DoubleVariableAssignment.round(value, 3)));
+        }
+    }
+
+    private TraceSet read(String traces) throws IOException {
+        return new StreamingTraceReader(new StringReader(traces), configuration.TOKENIZER).readAll();
+    }
+
+    private TraceSet roundTrip(TraceSet traces) throws IOException {
+        File f = File.createTempFile("testtrace", ".bin");
+        f.deleteOnExit();
+        new TraceToBinaryFile(traces).writeToFile(f);
+        return BinaryTraceReader.readTraceFile(f.getPath());
+    }
+
+    private static List<String> toString(List<List<TraceElement>> traces) {
+        List<String> strings = new ArrayList<String>();
+        for (List<TraceElement> trace : traces) {
+            StringBuilder sb = new StringBuilder();
+            for (TraceElement el : trace) {
+                List<String> data = new ArrayList<String>();
+                for (VariableAssignment<?> va : el.getData()) {
+                    data.add(va.toString() + ":" + va.isNull() + va.typeString());
+                }
+                Collections.sort(data);
+                sb.append(el.getName()).append(data).append(';');
+            }
+            strings.add(sb.toString());
+        }
+        return strings;
+    }
+}
@@ -0,0 +1,109 @@
+package mint.tracedata.readers;
+
+import mint.Configuration;
+import mint.tracedata.TraceElement;
+import mint.tracedata.TraceSet;
+import mint.tracedata.TraceToBinaryFile;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares TraceReader and StreamingTraceReader on a generated trace file,
+ * and the time it takes to read the same traces from a binary trace file
+ * (compared with reading the bytes of the file).
+ * Arguments (all optional): the size of the file in MB (2048 by default), and
+ * the file to use (a temporary file is generated if it is not given, or does
+ * not exist).
+ *
+ * TraceReader holds the whole file in memory, so it is only run if the file is
+ * small enough for the heap (otherwise just the streaming reader is timed). The
+ * binary trace file is written from the traces read by TraceReader, so it is
+ * only timed in that case too.
+ */
+public class TraceReaderBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        long megabytes = args.length > 0 ? Long.parseLong(args[0]) : 2048;
+        File file = args.length > 1 ? new File(args[1]) : File.createTempFile("benchmark", ".txt");
+        if (args.length < 2 || !file.exists() || file.length() == 0) {
+            file.deleteOnExit();
+            generate(file, megabytes * 1024 * 1024, new Random(0));
+        }
+        String splitter = Configuration.getInstance().TOKENIZER;
+        System.out.println(String.format("%s: %,d bytes", file, file.length()));
+        boolean runOld = file.length() * 50 < Runtime.getRuntime().maxMemory();
+        for (int i = 0; i < 3; i++) {
+            // the first iteration is a warm-up.
+            if (runOld) {
+                long start = System.nanoTime();
+                TraceSet traces = TraceReader.readTraceFile(file.getPath(), splitter);
+                report("TraceReader", System.nanoTime() - start, traces.getPos().size() + traces.getNeg().size(), file);
+            }
+            long start = System.nanoTime();
+            final long[] count = new long[1];
+            StreamingTraceReader reader = StreamingTraceReader.open(file.getPath(), splitter);
+            reader.read(new StreamingTraceReader.TraceHandler() {
+                @Override
+                public void trace(List<TraceElement> trace, boolean positive) {
+                    count[0]++;
+                }
+            });
+            reader.close();
+            report("StreamingTraceReader", System.nanoTime() - start, count[0], file);
+        }
+        if (runOld) {
+            File binary = File.createTempFile("benchmark", ".bin");
+            binary.deleteOnExit();
+            new TraceToBinaryFile(TraceReader.readTraceFile(file.getPath(), splitter)).writeToFile(binary);
+            System.out.println(String.format("%s: %,d bytes", binary, binary.length()));
+            for (int i = 0; i < 3; i++) {
+                long start = System.nanoTime();
+                long bytes = 0;
+                byte[] buffer = new byte[1 << 16];
+                InputStream in = new FileInputStream(binary);
+                for (int read = in.read(buffer); read >= 0; read = in.read(buffer))
+                    bytes += read;
+                in.close();
+                report("raw read", System.nanoTime() - start, bytes, binary);
+                start = System.nanoTime();
+                TraceSet traces = BinaryTraceReader.readTraceFile(binary.getPath());
+                report("BinaryTraceReader", System.nanoTime() - start, traces.getPos().size() + traces.getNeg().size(), binary);
+            }
+        }
+    }
+
+    private static void generate(File file, long bytes, Random r) throws IOException {
+        String[] events = {"open", "read", "write", "seek", "close"};
+        BufferedWriter w = new BufferedWriter(new FileWriter(file), 1 << 16);
+        StringBuilder sb = new StringBuilder();
+        sb.append("types\n");
+        for (String event : events)
+            sb.append(event).append(" fd:I size:N name:S\n");
+        long written = 0;
+        while (written < bytes) {
+            sb.append(r.nextInt(10) == 0 ? "negtrace\n" : "trace\n");
+            int length = 10 + r.nextInt(40);
+            for (int i = 0; i < length; i++) {
+                sb.append(events[r.nextInt(events.length)]).append(' ').append(r.nextInt(64)).append(' ')
+                        .append(r.nextInt(100000) / 10.0).append(" file").append(r.nextInt(1000)).append('\n');
+            }
+            written += sb.length();
+            w.append(sb);
+            sb.setLength(0);
+        }
+        w.close();
+    }
+
+    private static void report(String name, long nanos, long traces, File file) {
+        System.out.println(String.format("%-22s %,d: %8.2f s (%.1f MB/s)", name, traces, nanos / 1e9,
+                file.length() / 1048576.0 / (nanos / 1e9)));
+    }
+
+}
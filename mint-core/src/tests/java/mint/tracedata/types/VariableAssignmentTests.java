@@ -4,9 +4,14 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.Random;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 public class VariableAssignmentTests {
@@ -39,6 +44,23 @@ public class VariableAssignmentTests {
         assertTrue(dva.value == 2D);
 	}
 
+    @Test
+    public void testCopiesShareRecordedValues() {
+        StringVariableAssignment original = new StringVariableAssignment("s");
+        StringVariableAssignment copy = (StringVariableAssignment) original.copy();
+        original.recordValue("a");
+        copy.recordValue("b");
+        assertEquals(2, original.getPriors().size());
+        assertTrue(copy.getPriors().contains("a"));
+        assertTrue(original.getPriors().contains("b"));
+
+        IntegerVariableAssignment restricted = new IntegerVariableAssignment("i");
+        restricted.setRange(new HashSet<Integer>(Arrays.asList(1, 2)));
+        IntegerVariableAssignment copied = (IntegerVariableAssignment) restricted.copy();
+        restricted.recordValue(3);
+        assertTrue(copied.getPriors().contains(3));
+    }
+
     @Test
     public void testRestrictedStringTypes() {
         Collection<String> restriction = new HashSet<String>();
@@ -57,4 +79,19 @@ public class VariableAssignmentTests {
         assertTrue(exceptionThrown);
     }
 
+    @Test
+    public void testRoundIsSameAsBigDecimal() {
+        Random r = new Random(0);
+        for (int i = 0; i < 200000; i++) {
+            double value = (r.nextDouble() - 0.5) * Math.pow(10, r.nextInt(30) - 12);
+            if (i % 4 == 0)
+                value = (r.nextInt(2000001) - 1000000) / 1000D + 0.0005; // ties
+            for (int places = 0; places <= 3; places++) {
+                double expected = value == 0 ? 0D : new BigDecimal(value).setScale(places, RoundingMode.HALF_UP).doubleValue();
+                assertEquals(value + " to " + places, Double.doubleToLongBits(expected),
+                        Double.doubleToLongBits(DoubleVariableAssignment.round(value, places)));
+            }
+        }
+    }
+
 }
@@ -37,6 +37,7 @@ import mint.model.Machine;
 import mint.model.WekaGuardMachineDecorator;
 import mint.tracedata.TraceElement;
 import mint.tracedata.TraceSet;
+import mint.tracedata.readers.BinaryTraceReader;
 import mint.tracedata.readers.TraceReader;
 import mint.visualise.d3.Machine2JSONTransformer;
 import mint.visualise.dot.DotGraphWithLabels;
@@ -77,6 +78,30 @@ public class Mint {
 				.create("gp");
 		Option carefulDet = OptionBuilder.withArgName("carefulDet")
 				.withDescription("Determinize to prevent overgeneralisation.").create("carefulDet");
+		Option compactDFA = OptionBuilder.withArgName("compactDFA")
+				.withDescription("Use the array-backed automaton representation (for large trace sets).")
+				.create("compactDFA");
+		Option threads = OptionBuilder.withArgName("threads").hasArg()
+				.withDescription("Number of threads used to score merge candidates (defaults to the number of processors).")
+				.create("threads");
+		Option prefixTreeThreads = OptionBuilder.withArgName("prefixTreeThreads").hasArg()
+				.withDescription("Number of threads used to build the prefix tree (0 = the number of processors).")
+				.create("prefixTreeThreads");
+		Option speculativeMerges = OptionBuilder.withArgName("speculativeMerges").hasArg()
+				.withDescription("Number of merge candidates to try in parallel (defaults to 1).")
+				.create("speculativeMerges");
+		Option functionThreads = OptionBuilder.withArgName("functionThreads").hasArg()
+				.withDescription("Number of threads used to infer transition functions with GP (0 = the number of processors).")
+				.create("functionThreads");
+		Option daikonJobs = OptionBuilder.withArgName("daikonJobs").hasArg()
+				.withDescription("Number of Daikon jobs to run concurrently, each in a separate JVM (defaults to 1, within this process).")
+				.create("daikonJobs");
+		Option classifierThreads = OptionBuilder.withArgName("classifierThreads").hasArg()
+				.withDescription("Number of threads used to train the data classifiers (0 = the number of processors).")
+				.create("classifierThreads");
+		Option walkThreads = OptionBuilder.withArgName("walkThreads").hasArg()
+				.withDescription("Number of threads used to walk trace sets through a machine (defaults to 1).")
+				.create("walkThreads");
 
 		options.addOption(help);
 		options.addOption(csv);
@@ -91,6 +116,14 @@ public class Mint {
 		options.addOption(strategy);
 		options.addOption(gp);
 		options.addOption(carefulDet);
+		options.addOption(compactDFA);
+		options.addOption(threads);
+		options.addOption(prefixTreeThreads);
+		options.addOption(speculativeMerges);
+		options.addOption(functionThreads);
+		options.addOption(classifierThreads);
+		options.addOption(daikonJobs);
+		options.addOption(walkThreads);
 		// create the parser
 		CommandLineParser parser = new GnuParser();
 		Configuration configuration = Configuration.getInstance();
@@ -120,6 +153,22 @@ public class Mint {
 				configuration.GP = true;
 			if (line.hasOption("carefulDet"))
 				configuration.CAREFUL_DETERMINIZATION = true;
+			if (line.hasOption("compactDFA"))
+				configuration.COMPACT_DFA = true;
+			if (line.hasOption("threads"))
+				configuration.SCORING_THREADS = Integer.valueOf(line.getOptionValue("threads"));
+			if (line.hasOption("prefixTreeThreads"))
+				configuration.PREFIX_TREE_THREADS = Integer.valueOf(line.getOptionValue("prefixTreeThreads"));
+			if (line.hasOption("speculativeMerges"))
+				configuration.SPECULATIVE_MERGES = Integer.valueOf(line.getOptionValue("speculativeMerges"));
+			if (line.hasOption("functionThreads"))
+				configuration.FUNCTION_THREADS = Integer.valueOf(line.getOptionValue("functionThreads"));
+			if (line.hasOption("daikonJobs"))
+				configuration.DAIKON_JOBS = Integer.valueOf(line.getOptionValue("daikonJobs"));
+			if (line.hasOption("classifierThreads"))
+				configuration.CLASSIFIER_THREADS = Integer.valueOf(line.getOptionValue("classifierThreads"));
+			if (line.hasOption("walkThreads"))
+				configuration.WALK_THREADS = Integer.valueOf(line.getOptionValue("walkThreads"));
 			if (line.hasOption("wekaOptions")) {
 				String[] opt = line.getOptionValues("wekaOptions");
 				configuration.WEKA_OPTIONS = opt;
@@ -145,7 +194,11 @@ public class Mint {
 	protected void infer() throws IOException {
 		LOGGER.info("Parsing input file");
 		Configuration configuration = Configuration.getInstance();
-		TraceSet posSet = TraceReader.readTraceFile(configuration.INPUT, configuration.TOKENIZER);
+		TraceSet posSet;
+		if (BinaryTraceReader.isBinaryTraceFile(configuration.INPUT))
+			posSet = BinaryTraceReader.readTraceFile(configuration.INPUT);
+		else
+			posSet = TraceReader.readTraceFile(configuration.INPUT, configuration.TOKENIZER);
 		InferenceBuilder ib = new InferenceBuilder(configuration);
 		AbstractMerger<?, ?> inference = ib.getInference(posSet);
 
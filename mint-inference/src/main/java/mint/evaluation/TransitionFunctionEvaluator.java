@@ -231,7 +231,7 @@ public class TransitionFunctionEvaluator {
         AbstractMerger<?,?> inference = null;
         BaseClassifierInference bci = new BaseClassifierInference(posSet,evalSet, Configuration.Data.J48);
 
-        EFSMPrefixTreeFactory tptg = new EFSMPrefixTreeFactory(new GPFunctionMachineDecorator(new PayloadMachine(),2, new GPConfiguration(600,0.9,0.1,8,6),25),bci.getClassifiers(),bci.getElementsToInstances());
+        EFSMPrefixTreeFactory tptg = new EFSMPrefixTreeFactory(new GPFunctionMachineDecorator(new PayloadMachine(),2, new GPConfiguration(600,0.9,0.1,8,6),25),bci.getClassifiers(),bci.getElementsToInstances(),bci.getPredictedClasses());
 
         RedBlueMergingState<WekaGuardMachineDecorator> ms = new RedBlueMergingState<WekaGuardMachineDecorator>(tptg.createPrefixTree(posSet));
         Scorer<RedBlueMergingState<WekaGuardMachineDecorator>> scorer  = new RedBlueScorer<RedBlueMergingState<WekaGuardMachineDecorator>>(Configuration.getInstance().K, new ComputeScore());
@@ -27,6 +27,8 @@ import mint.model.WekaGuardMachineDecorator;
 import mint.model.prefixtree.EFSMPrefixTreeFactory;
 import mint.model.prefixtree.FSMPrefixTreeFactory;
 import mint.model.prefixtree.PrefixTreeFactory;
+import mint.model.dfa.TraceDFA;
+import mint.model.walk.BatchWalkResult;
 import mint.model.walk.EFSMAnalysis;
 import mint.model.walk.SimpleMachineAnalysis;
 import mint.tracedata.TraceElement;
@@ -200,10 +202,11 @@ public class Experiment implements Callable<List<Result>> {
 		}
 		else
 			analysis = new SimpleMachineAnalysis<Machine<Set<TraceElement>>>(model);
-		for (List<TraceElement> trace : pos.getPos()) {
-			assert(model.getAutomaton().consistentTransitions());
-			
-			boolean accepted = analysis.walk(trace, true,model.getAutomaton());
+		assert(model.getAutomaton().consistentTransitions());
+		BatchWalkResult posWalks = analysis.walkAll(pos.getPos());
+		for (int i = 0; i < pos.getPos().size(); i++) {
+			List<TraceElement> trace = pos.getPos().get(i);
+			boolean accepted = posWalks.getAccept(i) == TraceDFA.Accept.ACCEPT;
 			if(accepted)
 				tp++;
 			else{
@@ -213,8 +216,10 @@ public class Experiment implements Callable<List<Result>> {
 				fn++;
 			}
 		}
-		for (List<TraceElement> trace : neg.getPos()) {
-			boolean accepted = analysis.walk(trace,true,model.getAutomaton());
+		BatchWalkResult negWalks = analysis.walkAll(neg.getPos());
+		for (int i = 0; i < neg.getPos().size(); i++) {
+			List<TraceElement> trace = neg.getPos().get(i);
+			boolean accepted = negWalks.getAccept(i) == TraceDFA.Accept.ACCEPT;
 			if(accepted) {
                 if(data && algo == Data.J48){
                     LOGGER.debug("FP: "+trace);
@@ -283,7 +288,7 @@ public class Experiment implements Callable<List<Result>> {
 		if(this.data){
 			BaseClassifierInference bci = new BaseClassifierInference(posSet,eval, algo);
 			
-			PrefixTreeFactory<WekaGuardMachineDecorator> tptg = new EFSMPrefixTreeFactory(new PayloadMachine(),bci.getClassifiers(),bci.getElementsToInstances());
+			PrefixTreeFactory<WekaGuardMachineDecorator> tptg = new EFSMPrefixTreeFactory(new PayloadMachine(),bci.getClassifiers(),bci.getElementsToInstances(),bci.getPredictedClasses());
 
 			RedBlueMergingState<WekaGuardMachineDecorator> ms = new RedBlueMergingState<WekaGuardMachineDecorator>(tptg.createPrefixTree(posSet));
 			Scorer<RedBlueMergingState<WekaGuardMachineDecorator>> scorer  = new RedBlueScorer<RedBlueMergingState<WekaGuardMachineDecorator>>(tail, new ComputeScore());
@@ -10,6 +10,7 @@
 package mint.inference;
 
 import org.apache.log4j.Logger;
+import mint.Configuration;
 import mint.Configuration.Data;
 import mint.tracedata.SimpleTraceElement;
 import mint.tracedata.TraceElement;
@@ -25,10 +26,18 @@ import weka.filters.unsupervised.attribute.RemoveUseless;
 import weka.filters.unsupervised.attribute.StringToWordVector;
 
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /*
  * This will infer a set of classifiers (with WEKA) for a given trace. Intended for use in conjunction with EFSM 
- * inference - uses the subsequent event as an outcome label.
+ * inference - uses the subsequent event as an outcome label. The classifiers for the different events are
+ * trained in parallel, on Configuration.CLASSIFIER_THREADS threads.
  */
 
 public class BaseClassifierInference extends WekaClassifierInstantiator{
@@ -45,12 +54,23 @@ public class BaseClassifierInference extends WekaClassifierInstantiator{
 	protected Map<String,Classifier> classifiers;
 	protected HashMap<TraceElement,Instance> elementsToInstances;
 	protected Map<Instance,TraceElement> instancesToElements;
+	protected Map<TraceElement,Integer> predictedClasses;
+	protected Set<TraceElement> evalElements;
 	protected Map<String,Instances> testingData;
 	protected Data inferenceAlgorithm;
 	
 	public HashMap<TraceElement, Instance> getElementsToInstances() {
 		return elementsToInstances;
 	}
+
+	/**
+	 * The index of the class predicted for each trace element (by the classifier
+	 * for its name), for those elements that have an instance and a classifier.
+	 * @return
+	 */
+	public Map<TraceElement, Integer> getPredictedClasses() {
+		return predictedClasses;
+	}
 	
 	/**
 	 * Infers the relevant data models for trace.
@@ -63,6 +83,7 @@ public class BaseClassifierInference extends WekaClassifierInstantiator{
 		Map<String,Instances> trainingData = new HashMap<String,Instances>();
 		elementsToInstances = new HashMap<TraceElement,Instance>();
 		evalSet = new TraceSet();
+		evalElements = new HashSet<TraceElement>();
 		testingData = new HashMap<String,Instances>();
 		instancesToElements = new HashMap<Instance,TraceElement>();
 		Map<String,Set<TraceElement>> functionsToTraceElements = new HashMap<String,Set<TraceElement>>();
@@ -71,6 +92,7 @@ public class BaseClassifierInference extends WekaClassifierInstantiator{
 		}
 		addTrainingData(functionsToTraceElements,trainingData);
 		buildClassifiers(trainingData);
+		predictedClasses = predictClasses(elementsToInstances, classifiers);
 	}
 
 	/**
@@ -92,12 +114,15 @@ public class BaseClassifierInference extends WekaClassifierInstantiator{
 		for (List<TraceElement> simpleTrace : trace.getPos()) {
 			mapFunctionsToTraceElements(simpleTrace, functionsToTraceElements);
 		}
+		evalElements = new HashSet<TraceElement>();
 		for (List<TraceElement> simpleTrace : evalSet.getPos()) {
 			mapFunctionsToTraceElements(simpleTrace, functionsToTraceElements);
+			evalElements.addAll(simpleTrace);
 		}
 		addTrainingData(functionsToTraceElements,trainingData);
 
 		buildClassifiers(trainingData);
+		predictedClasses = predictClasses(elementsToInstances, classifiers);
 	}
 	
 	public Map<String,Classifier> getClassifiers(){
@@ -122,80 +147,127 @@ public class BaseClassifierInference extends WekaClassifierInstantiator{
 	}
 
 
+	/*
+	 * Moves the instances of the elements of the evaluation set (looked up in
+	 * evalElements) to the testing data.
+	 */
 	private void transferToTestingData(Instances i, String element) {
-		Iterator<Instance> instanceIt = i.iterator();
+		if(evalElements.isEmpty())
+			return;
 		Set<Instance> toBeRemoved = new HashSet<Instance>();
-		while(instanceIt.hasNext()){
-			Instance ins = instanceIt.next();
+		for(Instance ins : i){
 			TraceElement el = instancesToElements.get(ins);
-			if(contains(evalSet.getPos(),el)){
-				
-				if(testingData.containsKey(element)){
-					testingData.get(element).add(ins);
-					toBeRemoved.add(ins);
-				}
-				else{
-					int index = i.indexOf(ins);
-					Instances instances = new Instances(i,index,1);
-					testingData.put(element, instances);
-					toBeRemoved.add(ins);
+			if(evalElements.contains(el)){
+				Instances testing = testingData.get(element);
+				if(testing == null){
+					testing = new Instances(i,1);
+					testingData.put(element, testing);
 				}
-				
+				testing.add(ins);
+				toBeRemoved.add(ins);
 			}
-			
 		}
-		i.removeAll(toBeRemoved);
-			
-		
+		if(!toBeRemoved.isEmpty())
+			i.removeAll(toBeRemoved);
 	}
 
-	private boolean contains(Collection<List<TraceElement>> traceSet, TraceElement el) {
-		for (List<TraceElement> simpleTrace : traceSet) {
-			if(simpleTrace.contains(el))
-				return true;
+	/*
+	 * Trains a classifier for each function on a bounded pool. A function whose
+	 * classifier cannot be trained (because it is only ever followed by one
+	 * function) is left without one.
+	 */
+	private void buildClassifiers(Map<String, Instances> trainingData) {
+		classifiers = new HashMap<String,Classifier>();
+		if(trainingData.isEmpty())
+			return;
+		int threads = Configuration.getInstance().CLASSIFIER_THREADS;
+		if(threads <= 0)
+			threads = Runtime.getRuntime().availableProcessors();
+		threads = Math.min(threads, trainingData.size());
+		LOGGER.debug("Training "+trainingData.size()+" classifiers on "+threads+" threads");
+		ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "classifier-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		Map<String,Future<Classifier>> trained = new LinkedHashMap<String,Future<Classifier>>();
+		for(Map.Entry<String,Instances> entry : trainingData.entrySet()){
+			final String function = entry.getKey();
+			final Instances instances = entry.getValue();
+			final Classifier algo = makeClassifier(inferenceAlgorithm);
+			trained.put(function, executor.submit(new Callable<Classifier>() {
+				@Override
+				public Classifier call() {
+					try {
+						algo.buildClassifier(instances);
+						return algo;
+					} catch (Exception e) {
+						LOGGER.debug(function+" only has one possible following function, no need for classifier.");
+						return null;
+					}
+				}
+			}));
+		}
+		try {
+			for(Map.Entry<String,Future<Classifier>> entry : trained.entrySet()){
+				Classifier algo = entry.getValue().get();
+				if(algo != null)
+					classifiers.put(entry.getKey(), algo);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while training classifiers", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Failed to train classifiers", e.getCause());
+		} finally {
+			executor.shutdownNow();
 		}
-		return false;
 	}
 
-	private void buildClassifiers(Map<String, Instances> trainingData) {
-		classifiers = new HashMap<String,Classifier>();
-		Iterator<String> functionIterator = trainingData.keySet().iterator();
-		while(functionIterator.hasNext()){
-			String function = functionIterator.next();
-			Instances instances = trainingData.get(function);
+	/**
+	 * Classifies the instance of every element with the classifier for its name,
+	 * and returns the index of the predicted class of each element. Elements
+	 * without a classifier (or whose classification fails) are left out.
+	 * @param elementsToInstances
+	 * @param classifiers
+	 * @return
+	 */
+	public static Map<TraceElement,Integer> predictClasses(Map<TraceElement,Instance> elementsToInstances, Map<String,Classifier> classifiers) {
+		Map<TraceElement,Integer> predictions = new HashMap<TraceElement,Integer>();
+		for (Map.Entry<TraceElement,Instance> entry : elementsToInstances.entrySet()) {
+			Classifier c = classifiers.get(entry.getKey().getName());
+			if(c == null)
+				continue;
 			try {
-				Classifier algo = makeClassifier(inferenceAlgorithm);
-				algo.buildClassifier(instances);
-				classifiers.put(function, algo);
+				predictions.put(entry.getKey(), (int) c.classifyInstance(entry.getValue()));
 			} catch (Exception e) {
-				LOGGER.debug(function+" only has one possible following function, no need for classifier.");
+				LOGGER.error("Error with classifier when predicting the class of "+entry.getKey()+": "+e);
 			}
 		}
+		return predictions;
 	}
-	
-
-	
 
 	public Instances buildInstances(Set<TraceElement> elementSet) {
-		SimpleTraceElement first = (SimpleTraceElement)elementSet.toArray()[0];
+		SimpleTraceElement first = (SimpleTraceElement)elementSet.iterator().next();
 		ArrayList<Attribute> attributes = buildAttributeList(first.getData());
 		Attribute a = new Attribute(final_name,(List) null);
 		attributes.add(a);
 		Instances ret = new Instances(first.getName(),attributes,elementSet.size());
-		Iterator<TraceElement> listIt = elementSet.iterator();
-		List<TraceElement> addedElements = new ArrayList<TraceElement>();
-		while(listIt.hasNext()){
-			TraceElement element = listIt.next();
-			if(element.getNext()!=null){
-				Set<VariableAssignment<?>> vars = element.getData();
-				Instance ins = new DenseInstance(vars.size()+1);
-				if(element.getNext() == null)
-					continue;
-				convertToInstance(vars,element.getNext(),ins,attributes);
-				ret.add(ins);
-				addedElements.add(element);
-			}
-			
+		List<TraceElement> addedElements = new ArrayList<TraceElement>(elementSet.size());
+		for(TraceElement element : elementSet){
+			if(element.getNext()==null)
+				continue;
+			Set<VariableAssignment<?>> vars = element.getData();
+			Instance ins = new DenseInstance(vars.size()+1);
+			convertToInstance(vars,element.getNext(),ins,attributes);
+			ret.add(ins);
+			addedElements.add(element);
 		}
 		try {
 			String range = getStringAttributeIndices(ret,false);
@@ -207,11 +279,12 @@ public class BaseClassifierInference extends WekaClassifierInstantiator{
 			//Filter f = createStringToWordFilter(range);
 			//Instances filtered = filterStringToWordSequence(ret);
 			Instances filtered = filterStringToNominal(ret, range);
-			for(int i = 0; i< filtered.size();i++){
-				TraceElement el = addedElements.get(i);
-				assert(el!=null);
-				elementsToInstances.put(el, filtered.get(i));
-				instancesToElements.put(filtered.get(i), el);
+			// the filtered instances are in the order of the elements they were made from
+			Iterator<TraceElement> elementIt = addedElements.iterator();
+			for(Instance ins : filtered){
+				TraceElement el = elementIt.next();
+				elementsToInstances.put(el, ins);
+				instancesToElements.put(ins, el);
 			}
 			return filtered;
 		} catch (Exception e) {
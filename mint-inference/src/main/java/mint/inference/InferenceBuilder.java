@@ -17,8 +17,11 @@ import mint.model.*;
 import mint.model.prefixtree.EFSMPrefixTreeFactory;
 import mint.model.prefixtree.FSMPrefixTreeFactory;
 import mint.model.prefixtree.PrefixTreeFactory;
+import mint.tracedata.TraceElement;
 import mint.tracedata.TraceSet;
 
+import java.util.Set;
+
 /**
  * Created by neilwalkinshaw on 11/07/2017.
  */
@@ -38,10 +41,10 @@ public class InferenceBuilder {
 
             if(configuration.STRATEGY == Configuration.Strategy.exhaustive){
                 EFSMPrefixTreeFactory tptg;
-                Machine kernel = new PayloadMachine();
+                Machine<Set<TraceElement>> kernel = new PayloadMachine();
                 if(configuration.GP)
                     kernel = new GPFunctionMachineDecorator(kernel,1, new GPConfiguration(800,0.9,0.1,10,6),50);
-                tptg = new EFSMPrefixTreeFactory(kernel,bci.getClassifiers(),bci.getElementsToInstances());
+                tptg = new EFSMPrefixTreeFactory(kernel,bci.getClassifiers(),bci.getElementsToInstances(),bci.getPredictedClasses());
 
                 SimpleMergingState<WekaGuardMachineDecorator> ms = new SimpleMergingState<WekaGuardMachineDecorator>(tptg.createPrefixTree(posSet));
 
@@ -52,14 +55,14 @@ public class InferenceBuilder {
 
 
                 EFSMPrefixTreeFactory tptg;
-                Machine kernel = new PayloadMachine();
+                Machine<Set<TraceElement>> kernel = new PayloadMachine();
                 if(configuration.GP)
                     kernel = new GPFunctionMachineDecorator(kernel,1, new GPConfiguration(600,0.9,0.1,10,6),30);
                 //tptg = new EFSMPrefixTreeFactory(new DaikonMachineDecorator(kernel,configuration.MINDAIKON,true),bci.getClassifiers(),bci.getElementsToInstances());
                 //else
                 //  tptg = new EFSMPrefixTreeFactory(kernel,bci.getClassifiers(),bci.getElementsToInstances());
 
-                tptg = new EFSMPrefixTreeFactory(kernel,bci.getClassifiers(),bci.getElementsToInstances());
+                tptg = new EFSMPrefixTreeFactory(kernel,bci.getClassifiers(),bci.getElementsToInstances(),bci.getPredictedClasses());
 
 
                 RedBlueMergingState<WekaGuardMachineDecorator> ms = new RedBlueMergingState<WekaGuardMachineDecorator>(tptg.createPrefixTree(posSet));
@@ -0,0 +1,274 @@
+package mint.inference.constraints;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import daikon.inv.Invariant;
+import daikon.inv.binary.twoScalar.FloatEqual;
+import daikon.inv.binary.twoScalar.FloatGreaterEqual;
+import daikon.inv.binary.twoScalar.FloatGreaterThan;
+import daikon.inv.binary.twoScalar.FloatLessEqual;
+import daikon.inv.binary.twoScalar.FloatLessThan;
+import daikon.inv.binary.twoScalar.FloatNonEqual;
+import daikon.inv.binary.twoScalar.IntEqual;
+import daikon.inv.binary.twoScalar.IntGreaterEqual;
+import daikon.inv.binary.twoScalar.IntGreaterThan;
+import daikon.inv.binary.twoScalar.IntLessEqual;
+import daikon.inv.binary.twoScalar.IntLessThan;
+import daikon.inv.binary.twoScalar.IntNonEqual;
+import daikon.inv.binary.twoScalar.TwoFloat;
+import daikon.inv.binary.twoScalar.TwoScalar;
+import daikon.inv.unary.scalar.LowerBound;
+import daikon.inv.unary.scalar.LowerBoundFloat;
+import daikon.inv.unary.scalar.NonZero;
+import daikon.inv.unary.scalar.NonZeroFloat;
+import daikon.inv.unary.scalar.OneOfFloat;
+import daikon.inv.unary.scalar.OneOfScalar;
+import daikon.inv.unary.scalar.UpperBound;
+import daikon.inv.unary.scalar.UpperBoundFloat;
+import daikon.inv.unary.string.OneOfString;
+import mint.tracedata.TraceElement;
+import mint.tracedata.types.VariableAssignment;
+
+/**
+ * A set of Daikon invariants compiled into checks that are evaluated directly
+ * against the (concrete) data of a trace element, so that no solver is needed
+ * to tell whether an element satisfies them.
+ *
+ * The invariants are those that InvariantsToZ3Constraints translates. Any
+ * invariant that fails on the data of an element rules the element out. If
+ * none fails, but some refer to variables that the element gives no (numeric
+ * or string) value for, the result depends on what those variables could be,
+ * which is left to the solver.
+ */
+public class InvariantPredicate {
+
+	public enum Outcome {
+		HOLDS, FAILS, UNKNOWN
+	}
+
+	/*
+	 * A comparison between two numeric variables.
+	 */
+	enum Relation {
+		EQUAL, GREATER_EQUAL, GREATER, LESS_EQUAL, LESS, NOT_EQUAL
+	}
+
+	/*
+	 * A single invariant, over the variables with the given names.
+	 */
+	static abstract class Check {
+
+		final String[] vars;
+
+		Check(String... vars) {
+			this.vars = vars;
+		}
+
+		abstract boolean holds(Object[] values);
+	}
+
+	private final List<Check> checks;
+
+	public InvariantPredicate(Set<Invariant> invariants) {
+		checks = new ArrayList<Check>();
+		for (Invariant inv : invariants) {
+			Check check = compile(inv);
+			if (check != null)
+				checks.add(check);
+		}
+	}
+
+	InvariantPredicate(List<Check> checks) {
+		this.checks = checks;
+	}
+
+	/**
+	 * Evaluates the invariants against the data of the given element.
+	 *
+	 * @param element
+	 * @return
+	 */
+	public Outcome evaluate(TraceElement element) {
+		Map<String, Object> values = new HashMap<String, Object>();
+		for (VariableAssignment<?> var : element.getData()) {
+			if (!var.isNull())
+				values.put(var.getName(), var.getValue());
+		}
+		Outcome outcome = Outcome.HOLDS;
+		for (Check check : checks) {
+			Object[] args = new Object[check.vars.length];
+			boolean bound = true;
+			for (int i = 0; i < args.length; i++) {
+				args[i] = values.get(check.vars[i]);
+				bound &= args[i] != null;
+			}
+			if (!bound)
+				outcome = Outcome.UNKNOWN;
+			else if (!check.holds(args))
+				return Outcome.FAILS;
+		}
+		return outcome;
+	}
+
+	public int size() {
+		return checks.size();
+	}
+
+	/*
+	 * The check for an invariant, or null for the invariants that do not
+	 * constrain the variables (as far as InvariantsToZ3Constraints goes).
+	 */
+	private static Check compile(Invariant i) {
+		if (i instanceof OneOfFloat) {
+			OneOfFloat inv = (OneOfFloat) i;
+			double[] elts = new double[inv.num_elts()];
+			System.arraycopy(inv.getElts(), 0, elts, 0, elts.length);
+			return oneOf(inv.var().java_name(), elts);
+		} else if (i instanceof UpperBoundFloat) {
+			return upperBound(((UpperBoundFloat) i).var().java_name(), ((UpperBoundFloat) i).max());
+		} else if (i instanceof LowerBoundFloat) {
+			return lowerBound(((LowerBoundFloat) i).var().java_name(), ((LowerBoundFloat) i).min());
+		} else if (i instanceof NonZeroFloat) {
+			return nonZero(((NonZeroFloat) i).var().java_name());
+		} else if (i instanceof OneOfScalar) {
+			OneOfScalar inv = (OneOfScalar) i;
+			double[] elts = new double[inv.num_elts()];
+			for (int j = 0; j < elts.length; j++) {
+				elts[j] = inv.getElts()[j];
+			}
+			return oneOf(inv.var().java_name(), elts);
+		} else if (i instanceof UpperBound) {
+			return upperBound(((UpperBound) i).var().java_name(), ((UpperBound) i).max());
+		} else if (i instanceof LowerBound) {
+			return lowerBound(((LowerBound) i).var().java_name(), ((LowerBound) i).min());
+		} else if (i instanceof NonZero) {
+			return nonZero(((NonZero) i).var().java_name());
+		} else if (i instanceof OneOfString) {
+			OneOfString inv = (OneOfString) i;
+			String[] elts = new String[inv.num_elts()];
+			System.arraycopy(inv.getElts(), 0, elts, 0, elts.length);
+			return oneOf(inv.var().java_name(), elts);
+		} else if (i instanceof TwoFloat) {
+			TwoFloat inv = (TwoFloat) i;
+			return compare(relation(inv), inv.var1().java_name(), inv.var2().java_name());
+		} else if (i instanceof TwoScalar) {
+			TwoScalar inv = (TwoScalar) i;
+			return compare(relation(inv), inv.var1().java_name(), inv.var2().java_name());
+		}
+		return null;
+	}
+
+	/*
+	 * The relation of a comparison invariant, or null if it is not one.
+	 */
+	static Relation relation(Invariant inv) {
+		if (inv instanceof FloatEqual || inv instanceof IntEqual)
+			return Relation.EQUAL;
+		else if (inv instanceof FloatGreaterEqual || inv instanceof IntGreaterEqual)
+			return Relation.GREATER_EQUAL;
+		else if (inv instanceof FloatGreaterThan || inv instanceof IntGreaterThan)
+			return Relation.GREATER;
+		else if (inv instanceof FloatLessEqual || inv instanceof IntLessEqual)
+			return Relation.LESS_EQUAL;
+		else if (inv instanceof FloatLessThan || inv instanceof IntLessThan)
+			return Relation.LESS;
+		else if (inv instanceof FloatNonEqual || inv instanceof IntNonEqual)
+			return Relation.NOT_EQUAL;
+		return null;
+	}
+
+	/*
+	 * The checks below hold for values of other types than they constrain (as
+	 * the solver would not relate those either).
+	 */
+
+	static Check oneOf(String var, final double[] elts) {
+		return new Check(var) {
+			@Override
+			boolean holds(Object[] values) {
+				if (!(values[0] instanceof Number))
+					return true;
+				double value = ((Number) values[0]).doubleValue();
+				for (double elt : elts) {
+					if (elt == value)
+						return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	static Check oneOf(String var, final String[] elts) {
+		return new Check(var) {
+			@Override
+			boolean holds(Object[] values) {
+				if (!(values[0] instanceof String))
+					return true;
+				for (String elt : elts) {
+					if (values[0].equals(elt))
+						return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	static Check upperBound(String var, final double max) {
+		return new Check(var) {
+			@Override
+			boolean holds(Object[] values) {
+				return !(values[0] instanceof Number) || ((Number) values[0]).doubleValue() <= max;
+			}
+		};
+	}
+
+	static Check lowerBound(String var, final double min) {
+		return new Check(var) {
+			@Override
+			boolean holds(Object[] values) {
+				return !(values[0] instanceof Number) || ((Number) values[0]).doubleValue() >= min;
+			}
+		};
+	}
+
+	static Check nonZero(String var) {
+		return new Check(var) {
+			@Override
+			boolean holds(Object[] values) {
+				return !(values[0] instanceof Number) || ((Number) values[0]).doubleValue() != 0D;
+			}
+		};
+	}
+
+	static Check compare(final Relation relation, String var1, String var2) {
+		if (relation == null)
+			return null;
+		return new Check(var1, var2) {
+			@Override
+			boolean holds(Object[] values) {
+				if (!(values[0] instanceof Number) || !(values[1] instanceof Number))
+					return true;
+				double a = ((Number) values[0]).doubleValue();
+				double b = ((Number) values[1]).doubleValue();
+				switch (relation) {
+				case EQUAL:
+					return a == b;
+				case GREATER_EQUAL:
+					return a >= b;
+				case GREATER:
+					return a > b;
+				case LESS_EQUAL:
+					return a <= b;
+				case LESS:
+					return a < b;
+				default:
+					return a != b;
+				}
+			}
+		};
+	}
+}
@@ -1,33 +1,21 @@
 package mint.inference.constraints;
 
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import com.microsoft.z3.ArithExpr;
-import com.microsoft.z3.ArrayExpr;
 import com.microsoft.z3.BoolExpr;
 import com.microsoft.z3.Context;
-import com.microsoft.z3.Expr;
-import com.microsoft.z3.IntNum;
-import com.microsoft.z3.RatNum;
+import com.microsoft.z3.IntExpr;
 import com.microsoft.z3.Solver;
 import com.microsoft.z3.Status;
 import com.microsoft.z3.Z3Exception;
 
 import daikon.inv.Invariant;
-import daikon.inv.binary.BinaryInvariant;
-import daikon.inv.binary.twoScalar.FloatEqual;
-import daikon.inv.binary.twoScalar.FloatGreaterEqual;
-import daikon.inv.binary.twoScalar.FloatGreaterThan;
-import daikon.inv.binary.twoScalar.FloatLessEqual;
-import daikon.inv.binary.twoScalar.FloatLessThan;
-import daikon.inv.binary.twoScalar.FloatNonEqual;
-import daikon.inv.binary.twoScalar.IntEqual;
-import daikon.inv.binary.twoScalar.IntGreaterEqual;
-import daikon.inv.binary.twoScalar.IntGreaterThan;
-import daikon.inv.binary.twoScalar.IntLessEqual;
-import daikon.inv.binary.twoScalar.IntLessThan;
-import daikon.inv.binary.twoScalar.IntNonEqual;
 import daikon.inv.binary.twoScalar.TwoFloat;
 import daikon.inv.binary.twoScalar.TwoScalar;
 import daikon.inv.binary.twoString.TwoString;
@@ -45,6 +33,7 @@ import daikon.inv.unary.string.OneOfString;
 import daikon.inv.unary.string.SingleString;
 import mint.tracedata.types.BooleanVariableAssignment;
 import mint.tracedata.types.DoubleVariableAssignment;
+import mint.tracedata.types.IntegerVariableAssignment;
 import mint.tracedata.types.StringVariableAssignment;
 import mint.tracedata.types.VariableAssignment;
 
@@ -92,155 +81,131 @@ public class InvariantsToZ3Constraints {
 	}
 
 	public void addBinaryFloatConstraint(TwoFloat inv) {
-		ArithExpr var1 = getReal(inv.var1().java_name());
-		ArithExpr var2 = getReal(inv.var2().java_name());
-		addFunction(inv, var1, var2);
+		addComparison(InvariantPredicate.relation(inv), inv.var1().java_name(), inv.var2().java_name(), true);
 	}
 
 	public void addBinaryScalarConstraint(TwoScalar inv) {
-		ArithExpr var1 = getScalar(inv.var1().java_name());
-		ArithExpr var2 = getScalar(inv.var2().java_name());
-		addFunction(inv, var1, var2);
+		addComparison(InvariantPredicate.relation(inv), inv.var1().java_name(), inv.var2().java_name(), false);
 	}
 
 	public void addBinaryStringConstraint(TwoString inv) {
-		ArithExpr var1 = getScalar(inv.var1().java_name());
-		ArithExpr var2 = getScalar(inv.var1().java_name());
-		addFunction(inv, var1, var2);
+		// comparisons between strings are not translated (nor checked by InvariantPredicate)
 	}
 
 	public void addUnaryConstraint(SingleFloat inv) {
-		ArithExpr var1 = getReal(inv.var().java_name());
+		String var = inv.var().java_name();
 		if (inv instanceof OneOfFloat) {
 			OneOfFloat finv = (OneOfFloat) inv;
-			addFunction(finv, var1);
+			double[] elts = new double[finv.num_elts()];
+			System.arraycopy(finv.getElts(), 0, elts, 0, elts.length);
+			addOneOf(var, elts, true);
 		} else if (inv instanceof UpperBoundFloat) {
-			UpperBoundFloat finv = (UpperBoundFloat) inv;
-			addFunction(finv, var1);
+			addUpperBound(var, ((UpperBoundFloat) inv).max(), true);
 		} else if (inv instanceof NonZeroFloat) {
-			NonZeroFloat finv = (NonZeroFloat) inv;
-			addFunction(finv, var1);
+			addNonZero(var, true);
 		} else if (inv instanceof LowerBoundFloat) {
-			LowerBoundFloat finv = (LowerBoundFloat) inv;
-			addFunction(finv, var1);
+			addLowerBound(var, ((LowerBoundFloat) inv).min(), true);
 		}
 	}
 
-	private void addFunction(OneOfFloat inv, Expr var) {
-		double[] elts = inv.getElts();
-		ArrayExpr set = ctx.mkEmptySet(ctx.mkRealSort());
-		for (int i = 0; i < inv.num_elts(); i++) {
-			Double d = elts[i];
-			RatNum dub = ctx.mkReal(d.toString());
-			ctx.mkSetAdd(set, dub);
-		}
-		addConstraint(ctx.mkSetMembership(var, set));
-	}
-
-	private void addFunction(UpperBoundFloat inv, ArithExpr var) {
-		Double max = inv.max();
-		ArithExpr var1 = ctx.mkReal(max.toString());
-		addConstraint(ctx.mkLe(var, var1));
-
-	}
-
-	private void addFunction(LowerBoundFloat inv, ArithExpr var) {
-		Double max = inv.min();
-		ArithExpr var1 = ctx.mkReal(max.toString());
-		addConstraint(ctx.mkGe(var, var1));
-	}
-
-	private void addFunction(NonZeroFloat inv, ArithExpr var) {
-		addConstraint(ctx.mkNot(ctx.mkEq(var, ctx.mkReal("0.0"))));
-	}
-
 	public void addUnaryConstraint(SingleScalar inv) {
-		ArithExpr var1 = getScalar(inv.var().java_name());
+		String var = inv.var().java_name();
 		if (inv instanceof OneOfScalar) {
 			OneOfScalar finv = (OneOfScalar) inv;
-			addFunction(finv, var1);
+			double[] elts = new double[finv.num_elts()];
+			for (int i = 0; i < elts.length; i++)
+				elts[i] = finv.getElts()[i];
+			addOneOf(var, elts, false);
 		} else if (inv instanceof UpperBound) {
-			UpperBound finv = (UpperBound) inv;
-			addFunction(finv, var1);
+			addUpperBound(var, ((UpperBound) inv).max(), false);
 		} else if (inv instanceof NonZero) {
-			NonZero finv = (NonZero) inv;
-			addFunction(finv, var1);
+			addNonZero(var, false);
 		} else if (inv instanceof LowerBound) {
-			LowerBound finv = (LowerBound) inv;
-			addFunction(finv, var1);
+			addLowerBound(var, ((LowerBound) inv).min(), false);
 		}
 	}
 
-	private void addFunction(OneOfScalar inv, Expr var) {
-		long[] elts = inv.getElts();
-		ArrayExpr set = ctx.mkEmptySet(ctx.mkIntSort());
-		for (int i = 0; i < inv.num_elts(); i++) {
-			Long d = elts[i];
-			IntNum dub = ctx.mkInt(d.toString());
-			ctx.mkSetAdd(set, dub);
+	public void addUnaryConstraint(SingleString inv) {
+		if (inv instanceof OneOfString) {
+			OneOfString finv = (OneOfString) inv;
+			String[] elts = new String[finv.num_elts()];
+			System.arraycopy(finv.getElts(), 0, elts, 0, elts.length);
+			addOneOf(inv.var().java_name(), elts);
 		}
-		addConstraint(ctx.mkSetMembership(var, set));
-
 	}
 
-	private void addFunction(UpperBound inv, ArithExpr var) {
-		Long max = inv.max();
-		ArithExpr var1 = ctx.mkInt(max.toString());
-		addConstraint(ctx.mkLe(var, var1));
-
+	/*
+	 * The constraints for each kind of invariant, over real or integer variables
+	 * (as InvariantPredicate builds its checks).
+	 */
+
+	void addOneOf(String var, double[] elts, boolean real) {
+		ArithExpr v = getVariable(var, real);
+		BoolExpr[] options = new BoolExpr[elts.length];
+		for (int i = 0; i < elts.length; i++)
+			options[i] = ctx.mkEq(v, number(elts[i], real));
+		addConstraint(ctx.mkOr(options));
 	}
 
-	private void addFunction(LowerBound inv, ArithExpr var) {
-		Long min = inv.min();
-		ArithExpr var1 = ctx.mkInt(min.toString());
-		addConstraint(ctx.mkLe(var, var1));
-
+	void addOneOf(String var, String[] elts) {
+		ArithExpr v = getScalar(var);
+		List<BoolExpr> options = new ArrayList<BoolExpr>();
+		for (String elt : elts) {
+			if (elt != null)
+				options.add(ctx.mkEq(v, ctx.mkInt(hash(elt))));
+		}
+		addConstraint(ctx.mkOr(options.toArray(new BoolExpr[options.size()])));
 	}
 
-	private void addFunction(NonZero inv, ArithExpr var) {
-		addConstraint(ctx.mkNot(ctx.mkEq(var, ctx.mkInt("0"))));
+	void addUpperBound(String var, double max, boolean real) {
+		ArithExpr v = getVariable(var, real);
+		addConstraint(ctx.mkLe(v, number(max, real)));
+	}
 
+	void addLowerBound(String var, double min, boolean real) {
+		ArithExpr v = getVariable(var, real);
+		addConstraint(ctx.mkGe(v, number(min, real)));
 	}
 
-	public void addUnaryConstraint(SingleString inv) {
-		Expr varint = getScalar(inv.var().java_name());
-		if (inv instanceof OneOfString) {
-			OneOfString finv = (OneOfString) inv;
-			addFunction(finv, varint);
-		}
+	void addNonZero(String var, boolean real) {
+		ArithExpr v = getVariable(var, real);
+		addConstraint(ctx.mkNot(ctx.mkEq(v, number(0D, real))));
 	}
 
-	private void addFunction(OneOfString inv, Expr var) {
-		String[] elts = inv.getElts();
-		ArrayExpr set = ctx.mkEmptySet(ctx.mkIntSort());
-		for (int i = 0; i < inv.num_elts(); i++) {
-			String s = elts[i];
-			if (s == null)
-				continue;
-			Integer h = hash(s);
-			IntNum dub = ctx.mkInt(h.toString());
-			ctx.mkSetAdd(set, dub);
+	void addComparison(InvariantPredicate.Relation relation, String var1, String var2, boolean real) {
+		if (relation == null)
+			return;
+		ArithExpr a = getVariable(var1, real);
+		ArithExpr b = getVariable(var2, real);
+		switch (relation) {
+		case EQUAL:
+			addConstraint(ctx.mkEq(a, b));
+			break;
+		case GREATER_EQUAL:
+			addConstraint(ctx.mkGe(a, b));
+			break;
+		case GREATER:
+			addConstraint(ctx.mkGt(a, b));
+			break;
+		case LESS_EQUAL:
+			addConstraint(ctx.mkLe(a, b));
+			break;
+		case LESS:
+			addConstraint(ctx.mkLt(a, b));
+			break;
+		default:
+			addConstraint(ctx.mkNot(ctx.mkEq(a, b)));
 		}
-		addConstraint(ctx.mkSetMembership(var, set));
-
 	}
 
-	private void addFunction(BinaryInvariant inv, ArithExpr var1, ArithExpr var2) {
-		BoolExpr expression = null;
-		if (inv instanceof FloatEqual || inv instanceof IntEqual)
-			expression = ctx.mkEq(var1, var2);
-		else if (inv instanceof FloatGreaterEqual || inv instanceof IntGreaterEqual)
-			expression = ctx.mkGe(var1, var2);
-		else if (inv instanceof FloatGreaterThan || inv instanceof IntGreaterThan) {
-			expression = ctx.mkGt(var1, var2);
-		} else if (inv instanceof FloatLessEqual || inv instanceof IntLessEqual) {
-			expression = ctx.mkLe(var1, var2);
-		} else if (inv instanceof FloatLessThan || inv instanceof IntLessThan) {
-			expression = ctx.mkLt(var1, var2);
-		} else if (inv instanceof FloatNonEqual || inv instanceof IntNonEqual) {
-			expression = ctx.mkNot(ctx.mkEq(var1, var2));
-		}
-		addConstraint(expression);
+	/*
+	 * The exact value of d, as a real or (rounded down) as an integer.
+	 */
+	private ArithExpr number(double d, boolean real) {
+		BigDecimal value = new BigDecimal(d);
+		if (real)
+			return ctx.mkReal(value.toPlainString());
+		return ctx.mkInt(value.setScale(0, RoundingMode.FLOOR).toPlainString());
 	}
 
 	public void addVariableAssignment(String varName, Boolean i) {
@@ -248,17 +213,20 @@ public class InvariantsToZ3Constraints {
 	}
 
 	public void addVariableAssignment(String varName, Double i) {
-		ArithExpr var = getScalar(varName);
-		addConstraint(ctx.mkEq(var, ctx.mkReal(i.toString())));
+		ArithExpr var = getReal(varName);
+		if (var.isInt())
+			var = ctx.mkInt2Real((IntExpr) var);
+		addConstraint(ctx.mkEq(var, number(i, true)));
 	}
 
 	public void addVariableAssignment(String varName, String i) {
 		ArithExpr var = getScalar(varName);
-		Integer h = hash(i);
-		addConstraint(ctx.mkEq(var, ctx.mkInt(h.toString())));
+		addConstraint(ctx.mkEq(var, ctx.mkInt(hash(i))));
 	}
 
 	public void addVariableAssignment(VariableAssignment<?> va) {
+		if (va.isNull())
+			return;
 		if (va instanceof BooleanVariableAssignment) {
 			BooleanVariableAssignment b = (BooleanVariableAssignment) va;
 			addVariableAssignment(va.getName(), b.getValue());
@@ -268,15 +236,27 @@ public class InvariantsToZ3Constraints {
 		} else if (va instanceof DoubleVariableAssignment) {
 			DoubleVariableAssignment d = (DoubleVariableAssignment) va;
 			addVariableAssignment(va.getName(), d.getValue());
+		} else if (va instanceof IntegerVariableAssignment) {
+			IntegerVariableAssignment n = (IntegerVariableAssignment) va;
+			addVariableAssignment(va.getName(), n.getValue().doubleValue());
 		}
 	}
 
 	public boolean solve() {
 		Solver s = ctx.mkSolver();
+		if (current != null)
+			s.add(current);
 		Status stat = s.check();
 		return stat == Status.SATISFIABLE;
 	}
 
+	/**
+	 * Releases the Z3 context (which is held outside the Java heap).
+	 */
+	public void close() {
+		ctx.close();
+	}
+
 	private ArithExpr getScalar(String var1) {
 		ArithExpr var = null;
 		if (variables.containsKey(var1))
@@ -288,6 +268,10 @@ public class InvariantsToZ3Constraints {
 		return var;
 	}
 
+	private ArithExpr getVariable(String var, boolean real) {
+		return real ? getReal(var) : getScalar(var);
+	}
+
 	private ArithExpr getReal(String var1) {
 		ArithExpr var = null;
 		if (variables.containsKey(var1))
@@ -4,7 +4,10 @@ import org.apache.log4j.Logger;
 import mint.Configuration;
 import mint.inference.efsm.mergingstate.SimpleMergingState;
 import mint.inference.efsm.scoring.Scorer;
+import mint.inference.efsm.scoring.ScoringPool;
 import mint.model.Machine;
+import mint.model.PayloadMachine;
+import mint.model.dfa.OverlayTraceDFA;
 import mint.model.dfa.TraceDFA;
 import mint.model.dfa.TransitionData;
 import mint.model.statepair.OrderedStatePair;
@@ -13,10 +16,16 @@ import mint.tracedata.TraceElement;
 import org.jgrapht.graph.DefaultEdge;
 
 import java.text.DecimalFormat;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /*
  * Descendents of the AbstractMerging class orchestrate the entire state-merging process.
@@ -35,6 +44,18 @@ public abstract class  AbstractMerger<U extends Machine, T extends SimpleMerging
 	protected int initSize;
 	protected int maxPhase = 1;
 
+	/*
+	 * Number of the best-ranked candidate pairs to try at the same time (see
+	 * speculate()).
+	 */
+	protected int speculativeMerges = 1;
+
+	/*
+	 * The pool of the current run of infer(), which is also used to try merges
+	 * speculatively (null outside of a run).
+	 */
+	protected ExecutorService pool = null;
+
     /*firstStates is a set of "root" states belonging to ongoing merges which *must* be retained. I.e., if they are
     merged into another state, the whole merge sequence will be invalidated.
      */
@@ -51,6 +72,7 @@ public abstract class  AbstractMerger<U extends Machine, T extends SimpleMerging
 		progress = 0D;
 		this.scorer = scorer;
 		this.state = state;
+		this.speculativeMerges = Configuration.getInstance().SPECULATIVE_MERGES;
         //firstStates.add(state.getCurrent().getInitialState());
 	}
 
@@ -66,6 +88,10 @@ public abstract class  AbstractMerger<U extends Machine, T extends SimpleMerging
 		this.maxPhase = phase;
 	}
 
+	public void setSpeculativeMerges(int merges){
+		this.speculativeMerges = merges;
+	}
+
 	protected void calculateProgress() {
 		double processed =  (initSize - state.getCurrent().getStates().size());
 		double newProgress = ((double)processed/initSize)*100;
@@ -90,7 +116,28 @@ public abstract class  AbstractMerger<U extends Machine, T extends SimpleMerging
 	}
 
 
+	/**
+	 * Infer a machine by merging states. Candidate pairs are scored in a pool of
+	 * Configuration.SCORING_THREADS threads that belongs to this run, and is shut
+	 * down when the run is finished.
+	 * @return
+	 */
 	public U infer() {
+		ExecutorService runPool = ScoringPool.newPool();
+		pool = runPool;
+		scorer.setExecutor(runPool);
+		try {
+			return doInfer();
+		}
+		finally {
+			LOGGER.debug("Score cache - "+state.getScoreCache());
+			scorer.setExecutor(null);
+			pool = null;
+			runPool.shutdownNow();
+		}
+	}
+
+	protected U doInfer() {
         LOGGER.debug("0% (" + state.getCurrent().getStates().size() + " total, " + state.getConfirmedSuccessfulPairs() + " successful merges, " + failedDeterminisations + " failed merges" + "\r");
         LinkedList<OrderedStatePairWithScore> possibleMerges = calculatePossibleMerges(state.getCurrent().getStates());
         assert(state.getCurrent().getAutomaton().consistentStates());
@@ -103,7 +150,29 @@ public abstract class  AbstractMerger<U extends Machine, T extends SimpleMerging
             if(Thread.currentThread().isInterrupted()){
                 return null;
             }
-			TraceDFA cloned = state.getCurrent().getAutomaton().clone();
+			Speculation<T> speculation = null;
+			if(speculativeMerges > 1)
+				speculation = speculate(possibleMerges);
+			if(speculation != null && !speculation.failed.isEmpty()){
+				// the candidates before the first one that can be merged all fail.
+				for(OrderedStatePair failedPair : speculation.failed){
+					possibleMerges.poll();
+					failedDeterminisations++;
+					state.addConfirmedFailedPair(failedPair);
+				}
+				pairsProcessed += speculation.failed.size();
+				state.clearTemps();
+				state.postProcess();
+				calculateProgress();
+				if(speculation.merged == null){
+					if(possibleMerges.isEmpty()) {
+						pairsProcessed = 0;
+						possibleMerges = calculatePossibleMerges(state.getCurrent().getAutomaton().getStates());
+					}
+					continue;
+				}
+			}
+			state.getCurrent().getAutomaton().beginTransaction();
 			OrderedStatePair currentPair = possibleMerges.poll();
 
             //LOGGER.debug("Merging pair "+currentPair);
@@ -126,7 +195,15 @@ public abstract class  AbstractMerger<U extends Machine, T extends SimpleMerging
 					state.getCurrent().getStates().contains(currentPair.getSecondState()));
 			pairsProcessed++;
 
-            boolean merged = merge(equivPair);
+            boolean merged;
+			if(speculation != null && speculation.merged != null){
+				// it has already been merged on a copy, so make the same changes.
+				assert(currentPair == speculation.pair);
+				speculation.apply(state);
+				merged = true;
+			}
+			else
+				merged = merge(equivPair);
 
 			if(merged){
 				if(configuration.STRATEGY != Configuration.Strategy.gktails)
@@ -134,12 +211,13 @@ public abstract class  AbstractMerger<U extends Machine, T extends SimpleMerging
 				state.addConfirmedSuccessfulPair(currentPair);
 				state.setMerged(equivPair.getSecondState());
 				state.confirmTemps();
+				state.getCurrent().getAutomaton().commit();
 			}
 			else{
                 failedDeterminisations++;
 				//ORIGINAL
 				state.addConfirmedFailedPair(currentPair);
-				state.getCurrent().setAutomaton(cloned);
+				state.getCurrent().getAutomaton().rollback();
 				state.clearTemps();
 			}
             //clearFirstStates();
@@ -167,6 +245,118 @@ public abstract class  AbstractMerger<U extends Machine, T extends SimpleMerging
 		return result;
 	}
 	
+	/**
+	 * Try to merge the first speculativeMerges candidates in possibleMerges at the
+	 * same time, each on its own copy of the machine and merging state. Each copy
+	 * is put in the state that the candidate would be tried in if the candidates
+	 * before it were tried one at a time and failed, so the first candidate that
+	 * can be merged on its copy is the one that would be merged next, and its
+	 * copy holds the outcome. Returns null if merges cannot be tried this way.
+	 * @param possibleMerges
+	 * @return
+	 */
+	protected Speculation<T> speculate(LinkedList<OrderedStatePairWithScore> possibleMerges) {
+		if(possibleMerges.size() < 2 || pool == null)
+			return null;
+		T probe = copyState();
+		if(probe == null || newMerger(probe) == null) {
+			LOGGER.debug("Merges cannot be tried speculatively with "+getClass().getSimpleName()+" for "+state.getCurrent().getClass().getSimpleName());
+			speculativeMerges = 1;
+			return null;
+		}
+		final List<OrderedStatePair> candidates = new ArrayList<OrderedStatePair>();
+		List<Callable<T>> toRun = new ArrayList<Callable<T>>();
+		Iterator<OrderedStatePairWithScore> pairIt = possibleMerges.iterator();
+		while(pairIt.hasNext() && candidates.size() < speculativeMerges) {
+			final OrderedStatePair candidate = pairIt.next();
+			final int before = candidates.size();
+			candidates.add(candidate);
+			toRun.add(new Callable<T>() {
+				@Override
+				public T call() {
+					T copy = copyState();
+					if(before > 0) {
+						// as after the candidates before this one have failed.
+						for(OrderedStatePair failedPair : candidates.subList(0, before))
+							copy.addConfirmedFailedPair(failedPair);
+						copy.clearTemps();
+						copy.postProcess();
+					}
+					boolean merged = newMerger(copy).merge(copy.getMergedEquivalent(candidate));
+					return merged ? copy : null;
+				}
+			});
+		}
+		Speculation<T> speculation = new Speculation<T>();
+		try {
+			List<Future<T>> results = pool.invokeAll(toRun);
+			for(int i = 0; i<results.size(); i++) {
+				T merged = results.get(i).get();
+				if(merged != null) {
+					speculation.pair = candidates.get(i);
+					speculation.merged = merged;
+					break;
+				}
+				speculation.failed.add(candidates.get(i));
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Speculative merge failed", e.getCause());
+		}
+		return speculation;
+	}
+
+	/*
+	 * The outcome of speculate(): the candidates that fail before the first one
+	 * that can be merged, and that candidate with the copy of the merging state
+	 * that it has been merged in (both null if none of the candidates can be
+	 * merged).
+	 */
+	protected static class Speculation<T extends SimpleMergingState<?>> {
+
+		protected final List<OrderedStatePair> failed = new ArrayList<OrderedStatePair>();
+		protected OrderedStatePair pair;
+		protected T merged;
+
+		/*
+		 * Make the changes of the merge to state (the one that the merge was
+		 * tried on a copy of) and its machine.
+		 */
+		@SuppressWarnings({ "rawtypes", "unchecked" })
+		protected void apply(T state) {
+			OverlayTraceDFA automaton = (OverlayTraceDFA) merged.getCurrent().getAutomaton();
+			automaton.applyTo(state.getCurrent().getAutomaton());
+			((SimpleMergingState) state).repeatTemps(merged);
+		}
+	}
+
+	/**
+	 * Returns a merger of the same kind (and with the same settings) as this one for
+	 * the given copy of the merging state, or null if merges cannot be tried
+	 * speculatively with this kind of merger.
+	 * @param copy
+	 * @return
+	 */
+	protected AbstractMerger<U,T> newMerger(T copy) {
+		return null;
+	}
+
+	/*
+	 * A copy of the current merging state, for a copy of the current machine, or
+	 * null if either cannot be copied. Only machines that can be copied without
+	 * copying their automaton or affecting the original (PayloadMachines) are
+	 * supported.
+	 */
+	@SuppressWarnings("unchecked")
+	protected T copyState() {
+		U machine = state.getCurrent();
+		if(machine.getClass() != PayloadMachine.class)
+			return null;
+		return (T) state.copy((U) ((PayloadMachine) machine).copy());
+	}
+
 	protected LinkedList<OrderedStatePairWithScore> calculatePossibleMerges(Collection<Integer> from){
 		//LOGGER.debug("Re-calculating possible merges.");
 		return scorer.possibleMerges(state,from);
@@ -59,6 +59,16 @@ public class EDSMMerger <S extends Machine, T extends SimpleMergingState<S>>  ex
 	public void setConsistentIOSequencing(boolean ioSeq){
 		consistentIOSequencing = ioSeq;
 	}
+
+	@Override
+	protected AbstractMerger<S,T> newMerger(T copy) {
+		if(getClass() != EDSMMerger.class)
+			return null;
+		EDSMMerger<S,T> merger = new EDSMMerger<S,T>(scorer, copy);
+		merger.consistentIOSequencing = consistentIOSequencing;
+		merger.carefulDet = carefulDet;
+		return merger;
+	}
 	
 	protected boolean simpleMerge(OrderedStatePair sp){
 		if(!sp.getFirstState().equals(sp.getSecondState()))
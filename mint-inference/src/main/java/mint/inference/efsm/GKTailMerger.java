@@ -95,6 +95,7 @@ public class GKTailMerger extends AbstractMerger<DaikonMachineDecorator,RedBlueM
 
 	@Override
 	protected boolean merge(OrderedStatePair p) {
+		state.registerMerge(p);
 		if(!state.allowed(p))
 			return false;
 		
@@ -5,7 +5,6 @@ import mint.inference.efsm.mergingstate.SimpleMergingState;
 import mint.inference.efsm.scoring.LinearScorer;
 import mint.inference.efsm.scoring.Scorer;
 import mint.model.Machine;
-import mint.model.dfa.TraceDFA;
 import mint.model.statepair.OrderedStatePairWithScore;
 import mint.model.statepair.StatePair;
 
@@ -23,7 +22,8 @@ public class GroupEDSMMerger<S extends Machine, T extends SimpleMergingState<S>>
         super(scorer, state);
     }
 
-    public S infer() {
+    @Override
+    protected S doInfer() {
         LOGGER.debug("0% (" + state.getCurrent().getStates().size() + " total, " + state.getConfirmedSuccessfulPairs() + " successful merges, " + failedDeterminisations + " failed merges" + "\r");
         LinkedList<OrderedStatePairWithScore> possibleMerges = calculatePossibleMerges(state.getCurrent().getStates());
         assert(state.getCurrent().getAutomaton().consistentStates());
@@ -103,7 +103,7 @@ public class GroupEDSMMerger<S extends Machine, T extends SimpleMergingState<S>>
     private boolean doMerge(Configuration configuration, OrderedStatePairWithScore currentPair) {
         assert(state.getCurrent().getStates().contains(currentPair.getFirstState()));
         LOGGER.debug("Merging pair "+currentPair);
-        TraceDFA cloned = state.getCurrent().getAutomaton().clone();
+        state.getCurrent().getAutomaton().beginTransaction();
         if(configuration.STRATEGY != Configuration.Strategy.gktails)
             assert(state.getCurrent().isDeterministic());
         boolean merged = merge(currentPair);
@@ -114,11 +114,12 @@ public class GroupEDSMMerger<S extends Machine, T extends SimpleMergingState<S>>
             state.addConfirmedSuccessfulPair(currentPair);
             state.setMerged(currentPair.getSecondState());
             state.confirmTemps();
+            state.getCurrent().getAutomaton().commit();
         }
         else{
             failedDeterminisations++;
             state.addConfirmedFailedPair(currentPair);
-            state.getCurrent().setAutomaton(cloned);
+            state.getCurrent().getAutomaton().rollback();
             state.clearTemps();
         }
         state.postProcess();
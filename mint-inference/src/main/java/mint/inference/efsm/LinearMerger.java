@@ -5,7 +5,6 @@ import mint.Configuration;
 import mint.inference.efsm.mergingstate.SimpleMergingState;
 import mint.inference.efsm.scoring.Scorer;
 import mint.model.Machine;
-import mint.model.dfa.TraceDFA;
 import mint.model.statepair.OrderedStatePair;
 import mint.model.statepair.OrderedStatePairWithScore;
 import org.jgrapht.graph.DefaultEdge;
@@ -26,7 +25,8 @@ public class LinearMerger <S extends Machine, T extends SimpleMergingState<S>> e
     final static Logger LOGGER = Logger.getLogger(LinearMerger.class.getName());
 
 
-    public S infer() {
+    @Override
+    protected S doInfer() {
         LOGGER.debug("0% (" + state.getCurrent().getStates().size() + " total, " + state.getConfirmedSuccessfulPairs() + " successful merges, " + failedDeterminisations + " failed merges" + "\r");
         LinkedList<OrderedStatePairWithScore> possibleMerges = calculatePossibleMerges(state.getCurrent().getStates());
         assert(state.getCurrent().getAutomaton().consistentStates());
@@ -39,7 +39,6 @@ public class LinearMerger <S extends Machine, T extends SimpleMergingState<S>> e
             if(Thread.currentThread().isInterrupted()){
                 return null;
             }
-            TraceDFA cloned = state.getCurrent().getAutomaton().clone();
             OrderedStatePair currentPair = possibleMerges.poll();
 
             //LOGGER.debug("Merging pair "+currentPair);
@@ -59,7 +58,7 @@ public class LinearMerger <S extends Machine, T extends SimpleMergingState<S>> e
                 assert (state.getCurrent().getStates().contains(equivPair.getFirstState()) &&
                         state.getCurrent().getStates().contains(equivPair.getSecondState()));
 
-
+                state.getCurrent().getAutomaton().beginTransaction();
                 merged = merge(equivPair);
 
                 if (merged) {
@@ -68,10 +67,11 @@ public class LinearMerger <S extends Machine, T extends SimpleMergingState<S>> e
                     state.addConfirmedSuccessfulPair(currentPair);
                     state.setMerged(equivPair.getSecondState());
                     state.confirmTemps();
+                    state.getCurrent().getAutomaton().commit();
                 } else {
                     failedDeterminisations++;
                     state.addConfirmedFailedPair(currentPair);
-                    state.getCurrent().setAutomaton(cloned);
+                    state.getCurrent().getAutomaton().rollback();
                     state.clearTemps();
                 }
                 //clearFirstStates();
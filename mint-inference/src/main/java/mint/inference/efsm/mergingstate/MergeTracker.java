@@ -2,38 +2,94 @@ package mint.inference.efsm.mergingstate;
 
 import mint.model.statepair.OrderedStatePair;
 
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
 
 /**
+ * Keeps track of which states have been merged into which during a merge
+ * (including the merges that follow from determinisation), so that pairs of
+ * states can be mapped to the states that they have been merged into.
+ *
+ * Implemented as a union-find structure over state ids, with path compression
+ * and union by rank. Each set is labelled with the state that its members have
+ * been merged into, i.e. the first state of the last merge that involved it.
+ * Only the entries touched since the last call to clear() are reset, so clearing
+ * costs time proportional to the number of merges, not the number of states.
+ *
  * Created by neilwalkinshaw on 23/02/2017.
  */
 public class MergeTracker {
 
-    // map from original states to destination states.
-    protected HashMap<Integer, Integer> merges;
+    private static final int UNUSED = -1;
 
-    public MergeTracker(){
-        merges = new HashMap<Integer,Integer>();
+    // parent in the union-find forest (UNUSED for states that have not been merged).
+    protected int[] parent;
+    protected byte[] rank;
+    // for each root, the state that the members of its set have been merged into.
+    protected int[] mergedTo;
+    // states whose entries are in use, so that they can be reset.
+    protected int[] touched;
+    protected int touchedCount;
 
+    public MergeTracker(){
+        parent = new int[64];
+        Arrays.fill(parent, UNUSED);
+        rank = new byte[64];
+        mergedTo = new int[64];
+        touched = new int[16];
+        touchedCount = 0;
     }
 
     public void registerMerge(OrderedStatePair sp){
-        merges.put(sp.getSecondState(),sp.getFirstState());
-        for(Integer f : merges.keySet()){
-            if(merges.get(f).equals(sp.getSecondState()))
-                merges.put(f,sp.getFirstState());
+        int first = sp.getFirstState();
+        int second = sp.getSecondState();
+        int rootFirst = find(use(first));
+        int rootSecond = find(use(second));
+        if(rootFirst == rootSecond)
+            return;
+        int root;
+        if(rank[rootFirst] < rank[rootSecond]) {
+            parent[rootFirst] = rootSecond;
+            root = rootSecond;
         }
+        else {
+            parent[rootSecond] = rootFirst;
+            if(rank[rootFirst] == rank[rootSecond])
+                rank[rootFirst]++;
+            root = rootFirst;
+        }
+        mergedTo[root] = first;
     }
 
     public Integer getMergedTo(Integer state){
-        Integer to = merges.get(state);
-        if(to == null)
-            to = state;
-        return to;
+        int s = state;
+        if(s < 0 || s >= parent.length || parent[s] == UNUSED)
+            return state;
+        return mergedTo[find(s)];
+    }
+
+    /**
+     * The states that the tracked merges have been merged into.
+     * @return
+     */
+    public Collection<Integer> getMergeTargets(){
+        Collection<Integer> targets = new HashSet<Integer>();
+        for(int i = 0; i<touchedCount; i++){
+            int s = touched[i];
+            if(parent[s] == s)
+                targets.add(mergedTo[s]);
+        }
+        return targets;
     }
 
     public void clear(){
-        merges.clear();
+        for(int i = 0; i<touchedCount; i++){
+            int s = touched[i];
+            parent[s] = UNUSED;
+            rank[s] = 0;
+        }
+        touchedCount = 0;
     }
 
     public OrderedStatePair getMergedEquivalent(OrderedStatePair sp){
@@ -41,4 +97,42 @@ public class MergeTracker {
         return osp;
     }
 
+    /*
+     * Make sure that state s has an entry (as a singleton set if it is new).
+     */
+    private int use(int s){
+        if(s < 0)
+            throw new IllegalArgumentException("State ids must not be negative: " + s);
+        if(s >= parent.length){
+            int capacity = Math.max(parent.length * 2, s + 1);
+            int oldLength = parent.length;
+            parent = Arrays.copyOf(parent, capacity);
+            Arrays.fill(parent, oldLength, capacity, UNUSED);
+            rank = Arrays.copyOf(rank, capacity);
+            mergedTo = Arrays.copyOf(mergedTo, capacity);
+        }
+        if(parent[s] == UNUSED){
+            parent[s] = s;
+            rank[s] = 0;
+            mergedTo[s] = s;
+            if(touchedCount == touched.length)
+                touched = Arrays.copyOf(touched, touchedCount * 2);
+            touched[touchedCount++] = s;
+        }
+        return s;
+    }
+
+    private int find(int s){
+        int root = s;
+        while(parent[root] != root)
+            root = parent[root];
+        // path compression
+        while(parent[s] != root){
+            int next = parent[s];
+            parent[s] = root;
+            s = next;
+        }
+        return root;
+    }
+
 }
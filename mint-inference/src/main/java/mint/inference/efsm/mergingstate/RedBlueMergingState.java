@@ -49,6 +49,20 @@ public class RedBlueMergingState <T extends Machine> extends SimpleMergingState<
 		tempRed.addAll(red);
 		calculateBlues();
 	}
+
+	protected RedBlueMergingState(RedBlueMergingState<T> other, T current) {
+		super(other, current);
+		this.red = new HashSet<Integer>(other.red);
+		this.tempRed = new HashSet<Integer>(other.tempRed);
+		this.tempBlue = new HashSet<Integer>(other.tempBlue);
+		this.toConsolidate = new HashSet<Integer>(other.toConsolidate);
+	}
+
+	public SimpleMergingState<T> copy(T copy){
+		if(getClass() != RedBlueMergingState.class)
+			return null;
+		return new RedBlueMergingState<T>(this, copy);
+	}
 	
 	/**
 	 * Add blue state that should be consolidated into a red one.
@@ -9,11 +9,16 @@
  ******************************************************************************/
 package mint.inference.efsm.mergingstate;
 
+import mint.inference.efsm.scoring.scoreComputation.ScoreCache;
 import mint.model.Machine;
 import mint.model.statepair.OrderedStatePair;
 import mint.model.statepair.StatePair;
 
+import java.util.AbstractSet;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 
 public class SimpleMergingState <T extends Machine> implements MergingState{
@@ -23,6 +28,25 @@ public class SimpleMergingState <T extends Machine> implements MergingState{
 	protected Set<StatePair> tempSucceeded;
 	protected MergeTracker mt = new MergeTracker();
 
+	/*
+	 * States whose suffixes have changed since takeChangedStates() was last called
+	 * (the states that confirmed merges were merged into, and the states of failed
+	 * pairs), or null if the machine may have changed in ways that were not tracked.
+	 */
+	protected Set<Integer> changed = null;
+
+	/*
+	 * Scores of state pairs for the current machine, shared by all of the score computations.
+	 */
+	protected ScoreCache scoreCache = new ScoreCache();
+
+	/*
+	 * For a copy (see copy()): the pairs passed to registerMerge() and to
+	 * addTempSuccessfulPair(), in order, as {pair, null} and {null, pair}
+	 * respectively, so that repeatTemps() can repeat them.
+	 */
+	protected List<StatePair[]> tempChanges = null;
+
 
     protected StatePair newStatePair(StatePair sp){
         return new StatePair(sp.getFirstState(),sp.getSecondState());
@@ -55,6 +79,7 @@ public class SimpleMergingState <T extends Machine> implements MergingState{
 	public void clearTemps(){
 		tempSucceeded.clear();
 		mt.clear();
+		scoreCache.clear();
 	}
 	
 	/**
@@ -63,6 +88,11 @@ public class SimpleMergingState <T extends Machine> implements MergingState{
 	public void addConfirmedFailedPair(StatePair sp){
         sp = newStatePair(sp);
         failed.add(sp);
+		scoreCache.advance();
+		if(changed != null){
+			changed.add(sp.getFirstState());
+			changed.add(sp.getSecondState());
+		}
 	}
 
 	
@@ -70,6 +100,8 @@ public class SimpleMergingState <T extends Machine> implements MergingState{
 	 * Add the hypothesised successful pair sp.
 	 */
 	public void addTempSuccessfulPair(StatePair sp){
+		if(tempChanges != null)
+			tempChanges.add(new StatePair[]{null, sp});
         sp = newStatePair(sp);
 		tempSucceeded.add(new StatePair(sp.getFirstState(),sp.getSecondState()));
 	}
@@ -98,6 +130,86 @@ public class SimpleMergingState <T extends Machine> implements MergingState{
 		tempSucceeded = new HashSet<StatePair>();
         succeeded = new HashSet<StatePair>();
 	}
+
+	/*
+	 * A copy of other for the machine current (a copy of other's machine), that
+	 * reads other's confirmed pairs but has its own temporary state, and keeps
+	 * the failed pairs that are added to it to itself.
+	 */
+	protected SimpleMergingState(SimpleMergingState<T> other, T current) {
+		this.current = current;
+		failed = new CopiedPairs(other.failed);
+		succeeded = other.succeeded;
+		tempSucceeded = new HashSet<StatePair>(other.tempSucceeded);
+		tempChanges = new ArrayList<StatePair[]>();
+	}
+
+	/**
+	 * Returns a copy of this state for the machine copy (a copy of the current
+	 * machine), in which merges can be tried without affecting this state, or null
+	 * if this kind of merging state cannot be copied. The copy only reads the
+	 * confirmed pairs, so no pairs may be confirmed while it is in use.
+	 * @param copy
+	 * @return
+	 */
+	public SimpleMergingState<T> copy(T copy){
+		if(getClass() != SimpleMergingState.class)
+			return null;
+		return new SimpleMergingState<T>(this, copy);
+	}
+
+	/**
+	 * Repeat the changes that a merge tried on copy (made with copy()) made to
+	 * its temporary state, once the same merge has been made to the current
+	 * machine. They are repeated (rather than the copy's sets taken over) so
+	 * that the sets of this state are the same as if it had made the merge
+	 * itself, down to the order in which they are iterated.
+	 * @param copy
+	 */
+	public void repeatTemps(SimpleMergingState<T> copy){
+		for(StatePair[] change : copy.tempChanges){
+			if(change[0] != null)
+				registerMerge((OrderedStatePair) change[0]);
+			else
+				addTempSuccessfulPair(change[1]);
+		}
+	}
+
+	/*
+	 * The failed pairs of a copy: those of the state it was copied from, which
+	 * are only read, and those that have been added to the copy.
+	 */
+	private static class CopiedPairs extends AbstractSet<StatePair> {
+
+		private final Set<StatePair> shared;
+		private final Set<StatePair> added = new HashSet<StatePair>();
+
+		CopiedPairs(Set<StatePair> shared) {
+			this.shared = shared;
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			return added.contains(o) || shared.contains(o);
+		}
+
+		@Override
+		public boolean add(StatePair sp) {
+			return !shared.contains(sp) && added.add(sp);
+		}
+
+		@Override
+		public Iterator<StatePair> iterator() {
+			Set<StatePair> all = new HashSet<StatePair>(shared);
+			all.addAll(added);
+			return all.iterator();
+		}
+
+		@Override
+		public int size() {
+			return shared.size() + added.size();
+		}
+	}
 	
 	
 
@@ -107,6 +219,25 @@ public class SimpleMergingState <T extends Machine> implements MergingState{
 	
 	public void setCurrent(T m) {
 		current = m;
+		changed = null;
+		scoreCache.clear();
+	}
+
+	public ScoreCache getScoreCache(){
+		return scoreCache;
+	}
+
+	/**
+	 * Returns the states whose suffixes have changed since this was last called, or
+	 * null if this is not known (in which case any state may have changed).
+	 * Used by scorers to work out which of their previously computed scores are
+	 * still valid.
+	 * @return
+	 */
+	public Set<Integer> takeChangedStates(){
+		Set<Integer> ret = changed;
+		changed = new HashSet<Integer>();
+		return ret;
 	}
 
     /**
@@ -114,6 +245,7 @@ public class SimpleMergingState <T extends Machine> implements MergingState{
      */
     public void addConfirmedSuccessfulPair(StatePair sp){
         succeeded.add(sp);
+        scoreCache.advance();
     }
 
 	@Override
@@ -121,7 +253,10 @@ public class SimpleMergingState <T extends Machine> implements MergingState{
 		for(StatePair sp: tempSucceeded){
             addConfirmedSuccessfulPair(sp);
         }
+		if(changed != null)
+			changed.addAll(mt.getMergeTargets());
 		mt.clear();
+		scoreCache.clear();
 	}
 
 	public double numTemps(){
@@ -134,6 +269,10 @@ public class SimpleMergingState <T extends Machine> implements MergingState{
 	}
 
 	public void registerMerge(OrderedStatePair sp){
+		if(tempChanges != null)
+			tempChanges.add(new StatePair[]{sp, null});
+		// the machine is about to change, so scores computed so far may no longer hold.
+		scoreCache.advance();
 		mt.registerMerge(sp);
 	}
 
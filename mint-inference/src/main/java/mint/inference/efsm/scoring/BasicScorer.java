@@ -4,6 +4,7 @@ import mint.Configuration;
 import mint.inference.efsm.mergingstate.SimpleMergingState;
 import mint.inference.efsm.scoring.scoreComputation.ComputeScore;
 import mint.inference.efsm.scoring.scoreComputation.Score;
+import mint.model.dfa.TraceDFA;
 import mint.model.statepair.OrderedStatePair;
 import mint.model.statepair.OrderedStatePairWithScore;
 import org.jgrapht.graph.DefaultEdge;
@@ -21,11 +22,19 @@ public class BasicScorer< T extends SimpleMergingState<?>, U extends ComputeScor
 
 
     protected int min_score;
-    protected int threads = Runtime.getRuntime().availableProcessors();
+    protected ExecutorService executor = null; // if null, compute scores in the calling thread
     protected U scorer;
-    protected int maxBacklog = 1000;
     protected boolean bestFirst = false; // more time consuming
 
+    /*
+     * Scores computed in earlier rounds for the merging state scoredState. A score
+     * remains valid until one of its states can reach a state that has been changed
+     * by a merge, so only those pairs are rescored in the next round.
+     */
+    protected Map<OrderedStatePair,Score> scoreIndex = new HashMap<OrderedStatePair,Score>();
+    protected T scoredState = null;
+    protected boolean inRound = false;
+
 	public BasicScorer( int min_score, U scorer){
 		this.min_score = min_score;
         this.scorer = scorer;
@@ -36,15 +45,20 @@ public class BasicScorer< T extends SimpleMergingState<?>, U extends ComputeScor
         this.bestFirst = bestFirst;
     }
 
-    public void setThreads(int threads){
-        this.threads = threads;
+    @Override
+    public void setExecutor(ExecutorService executor){
+        this.executor = executor;
     }
 
 
 
 
 	public int getScore(T rms,OrderedStatePair sp) {
-
+        if(inRound && rms == scoredState) {
+            Score indexed = getIndexedScore(sp);
+            if (indexed != null)
+                return indexed.getPrimaryScore();
+        }
         ComputeScore<T> scoreComputer = scorer.newInstance(rms,sp);
         Score score = new Score(0);
         try {
@@ -69,38 +83,119 @@ public class BasicScorer< T extends SimpleMergingState<?>, U extends ComputeScor
     public LinkedList<OrderedStatePairWithScore> possibleMerges(T rms, Collection<Integer> fromColl) {
         LinkedList<OrderedStatePairWithScore> possibleMerges = new LinkedList<OrderedStatePairWithScore>();
         List<Integer> from = getBFSStates(rms);
-        List<OrderedStatePairWithScore> pairScores = new ArrayList<OrderedStatePairWithScore>();
-        List<Callable<Score>> toRun = new ArrayList<Callable<Score>>();
+        List<OrderedStatePairWithScore> candidates = new ArrayList<OrderedStatePairWithScore>();
         for(Integer f : from) {
             for(Integer t : from){
                 if(f == t)
                     continue;
                 OrderedStatePairWithScore pair = new OrderedStatePairWithScore(f,t);
-                if(!rms.allowed(pair) || !compatible(rms,pair))
+                if(rms.allowed(pair))
+                    candidates.add(pair);
+            }
+        }
+        beginRound(rms);
+        try {
+            scoreAll(rms, candidates);
+            for (OrderedStatePairWithScore pair : candidates) {
+                if (!compatible(rms, pair))
                     continue;
-                else {
-                    Callable<Score> c = scorer.newInstance(rms, pair);
-                    pairScores.add(pair);
-                    toRun.add(c);
+                Score score = getIndexedScore(pair);
+                if (score != null && score.getPrimaryScore() >= getMinScore()) {
+                    pair.setScore(score);
+                    possibleMerges.add(pair);
                 }
-
-            }
-            if(toRun.size()>= this.maxBacklog) {
-                dispense(possibleMerges, pairScores, toRun,rms);
-                toRun.clear();
-                pairScores.clear();
             }
         }
-        if(toRun.size()>0) {
-            dispense(possibleMerges, pairScores, toRun,rms);
-            toRun.clear();
-            pairScores.clear();
+        finally {
+            inRound = false;
         }
         if(bestFirst)
             Collections.sort(possibleMerges);
         return possibleMerges;
     }
 
+    /**
+     * Start a round of score computations for rms, discarding the indexed scores
+     * that may have been invalidated by merges since the previous round.
+     * @param rms
+     */
+    protected void beginRound(T rms) {
+        Set<Integer> changed = rms.takeChangedStates();
+        if(rms != scoredState || changed == null) {
+            scoreIndex.clear();
+            scoredState = rms;
+        }
+        else if(!changed.isEmpty()) {
+            Set<Integer> affected = statesThatReach(rms.getCurrent().getAutomaton(), changed);
+            Iterator<OrderedStatePair> pairIt = scoreIndex.keySet().iterator();
+            while(pairIt.hasNext()){
+                OrderedStatePair pair = pairIt.next();
+                if(affected.contains(pair.getFirstState()) || affected.contains(pair.getSecondState()))
+                    pairIt.remove();
+            }
+        }
+        inRound = true;
+    }
+
+    protected Score getIndexedScore(OrderedStatePair sp) {
+        // OrderedStatePairWithScore is only equal to pairs with the same score, so use a plain key.
+        return scoreIndex.get(new OrderedStatePair(sp.getFirstState(), sp.getSecondState()));
+    }
+
+    /**
+     * Make sure that there is an indexed score for each of the candidate pairs.
+     * Scores that are not already indexed are computed as a single batch. Pairs
+     * that are not candidates are dropped from the index.
+     * @param rms
+     * @param candidates
+     */
+    protected void scoreAll(T rms, List<OrderedStatePairWithScore> candidates) {
+        Map<OrderedStatePair,Score> index = new HashMap<OrderedStatePair,Score>();
+        List<OrderedStatePair> toScore = new ArrayList<OrderedStatePair>();
+        List<Callable<Score>> toRun = new ArrayList<Callable<Score>>();
+        for(OrderedStatePairWithScore candidate : candidates){
+            OrderedStatePair pair = new OrderedStatePair(candidate.getFirstState(), candidate.getSecondState());
+            Score score = scoreIndex.get(pair);
+            if(score != null)
+                index.put(pair, score);
+            else if(!index.containsKey(pair)) {
+                index.put(pair, null);
+                toScore.add(pair);
+                toRun.add(scorer.newInstance(rms, pair));
+            }
+        }
+        List<Score> scores = computeScores(toRun);
+        for(int i = 0; i<scores.size(); i++){
+            index.put(toScore.get(i), scores.get(i));
+        }
+        scoreIndex = index;
+    }
+
+    /**
+     * Returns the states that can reach at least one of the given states
+     * (including those states themselves).
+     * @param automaton
+     * @param states
+     * @return
+     */
+    protected static Set<Integer> statesThatReach(TraceDFA<?> automaton, Collection<Integer> states) {
+        Set<Integer> reach = new HashSet<Integer>();
+        Queue<Integer> todo = new LinkedList<Integer>();
+        for(Integer s : states){
+            if(automaton.containsState(s) && reach.add(s))
+                todo.add(s);
+        }
+        while(!todo.isEmpty()){
+            Integer current = todo.poll();
+            for(DefaultEdge incoming : automaton.getIncomingTransitions(current)){
+                Integer source = automaton.getTransitionSource(incoming);
+                if(reach.add(source))
+                    todo.add(source);
+            }
+        }
+        return reach;
+    }
+
     protected List<Integer> getBFSStates(T rms){
         List<Integer> from = new ArrayList<Integer>();
         bfsStates(rms, from);
@@ -114,13 +209,14 @@ public class BasicScorer< T extends SimpleMergingState<?>, U extends ComputeScor
      */
     private void bfsStates(T rms, List<Integer> from) {
         Queue<Integer> todo = new LinkedList<Integer>();
+        TraceDFA<?> automaton = rms.getCurrent().getAutomaton();
         Integer initialState= rms.getCurrent().getInitialState();
         todo.add(initialState);
         from.add(initialState);
         while(!todo.isEmpty()){
             Integer current = todo.poll();
-            for(DefaultEdge outgoing : (Set<DefaultEdge>)rms.getCurrent().getAutomaton().getOutgoingTransitions(current)) {
-                Integer target = rms.getCurrent().getAutomaton().getTransitionTarget(outgoing);
+            for(DefaultEdge outgoing : automaton.getOutgoingTransitions(current)) {
+                Integer target = automaton.getTransitionTarget(outgoing);
                 if(!from.contains(target)) {
                     from.add(target);
                     todo.add(target);
@@ -138,25 +234,49 @@ public class BasicScorer< T extends SimpleMergingState<?>, U extends ComputeScor
      * @param rms
      */
     protected void dispense(Queue<OrderedStatePairWithScore> possibleMerges, List<OrderedStatePairWithScore> pairScores, List<Callable<Score>> toRun, T rms) {
-        ExecutorService pool = Executors.newFixedThreadPool(threads);
-        try {
-            List<Future<Score>> results = pool.invokeAll(toRun);
-            for(int i = 0; i<results.size();i++){
-                Future<Score> result = results.get(i);
-                Score score = result.get();
-                OrderedStatePairWithScore pair = pairScores.get(i);
-                if (score.getPrimaryScore() >= getMinScore()) {
-                    pair.setScore(score);
-                    possibleMerges.add(pair);
-                }
+        List<Score> scores = computeScores(toRun);
+        for(int i = 0; i<scores.size();i++){
+            Score score = scores.get(i);
+            OrderedStatePairWithScore pair = pairScores.get(i);
+            if (score != null && score.getPrimaryScore() >= getMinScore()) {
+                pair.setScore(score);
+                possibleMerges.add(pair);
+            }
+        }
+    }
 
+    /**
+     * Run the score computations in toRun on the executor (or in the calling thread
+     * if there is none), and return their results in the same order. A computation
+     * that fails is rethrown as an IllegalStateException. If the thread is
+     * interrupted, only the scores computed so far are returned (the merger stops
+     * when it sees the interrupt).
+     * @param toRun
+     * @return
+     */
+    protected List<Score> computeScores(List<Callable<Score>> toRun) {
+        List<Score> scores = new ArrayList<Score>(toRun.size());
+        if(executor == null) {
+            for(Callable<Score> computation : toRun){
+                try {
+                    scores.add(computation.call());
+                } catch (Exception e) {
+                    throw new IllegalStateException("Score computation failed", e);
+                }
+            }
+            return scores;
+        }
+        try {
+            List<Future<Score>> results = executor.invokeAll(toRun);
+            for(Future<Score> result : results){
+                scores.add(result.get());
             }
         } catch (InterruptedException e) {
-            e.printStackTrace();
+            Thread.currentThread().interrupt();
         } catch (ExecutionException e) {
-            e.printStackTrace();
+            throw new IllegalStateException("Score computation failed", e.getCause());
         }
-        pool.shutdown();
+        return scores;
     }
 
     public int getMinScore() {
@@ -89,17 +89,9 @@ public class LinearScorer<T extends SimpleMergingState<?>> extends BasicScorer<T
                 toRun.add(c);
 
             }
-            if(toRun.size()>= this.maxBacklog) {
-                dispense(possibleMerges, pairScores, toRun,rms);
-                toRun.clear();
-                pairScores.clear();
-            }
         }
-        if(toRun.size()>0) {
+        if(toRun.size()>0)
             dispense(possibleMerges, pairScores, toRun,rms);
-            toRun.clear();
-            pairScores.clear();
-        }
         Collections.sort(possibleMerges);
         return possibleMerges;
     }
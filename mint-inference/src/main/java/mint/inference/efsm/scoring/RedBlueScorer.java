@@ -38,56 +38,58 @@ public class RedBlueScorer<T extends RedBlueMergingState<?>> extends BasicScorer
             Iterator<Integer> blueIt = interimBlues.iterator();
 
             List<OrderedStatePairWithScore> pairScores = new ArrayList<OrderedStatePairWithScore>();
-            List<Callable<Score>> toRun = new ArrayList<Callable<Score>>();
+            List<Integer> blues = new ArrayList<Integer>();
+            // for each blue state, the index of its first pair in pairScores.
+            List<Integer> firstPair = new ArrayList<Integer>();
+            HashSet<Integer> red = new HashSet<Integer>();
+            red.addAll(rms.getReds());
             //For each blue state...
             while(blueIt.hasNext()){
 
                 Integer blue = blueIt.next();
-                HashSet<Integer> red = new HashSet<Integer>();
-                red.addAll(rms.getReds());
+                blues.add(blue);
+                firstPair.add(pairScores.size());
                 Iterator<Integer> redIt =  red.iterator();
-                int addedMerges = 0;
                 // ... pair it up with each red state...
                 while(redIt.hasNext()){
                     Integer r = redIt.next();
                     OrderedStatePairWithScore pair = new OrderedStatePairWithScore(r,blue);
-                    if(rms.alreadyAttempted(pair) || !compatible(rms,pair))
-                        continue;
                     // if not already attempted, prepare it for score computation.
-                    Callable<Score> c = scorer.newInstance(rms, pair);
-                    pairScores.add(pair);
-                    toRun.add(c);
-
+                    if(!rms.alreadyAttempted(pair))
+                        pairScores.add(pair);
                 }
-                ExecutorService pool = Executors.newFixedThreadPool(threads);
-                //Run all of the score computations for the candidate pairs...
-                try {
-                    List<Future<Score>> results = pool.invokeAll(toRun);
-                    for(int i = 0; i<results.size();i++){
-                        Future<Score> result = results.get(i);
-                        Score score = result.get();
+            }
+            firstPair.add(pairScores.size());
+            beginRound(rms);
+            try {
+                //Compute the scores of all of the candidate pairs that are not already known as a single batch...
+                scoreAll(rms, pairScores);
+                // The candidates are listed as they were when the pairs of each blue state were scored
+                // along with those of all of the blue states before it: after each blue state, all of the
+                // candidates so far are added again, and a blue state is only consolidated if there are none.
+                List<OrderedStatePairWithScore> candidates = new ArrayList<OrderedStatePairWithScore>();
+                for (int b = 0; b < blues.size(); b++) {
+                    for (int i = firstPair.get(b); i < firstPair.get(b + 1); i++) {
                         OrderedStatePairWithScore pair = pairScores.get(i);
+                        if (!compatible(rms, pair))
+                            continue;
+                        Score score = getIndexedScore(pair);
                         // and if the score is greater than the threshold, add it as a possible merge.
-                        if (score.getPrimaryScore() >= getMinScore()) {
+                        if (score != null && score.getPrimaryScore() >= getMinScore()) {
                             pair.setScore(score);
-                            possibleMerges.add(pair);
-                            addedMerges++;
+                            candidates.add(pair);
                         }
                     }
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                } catch (ExecutionException e) {
-                    e.printStackTrace();
-                }
-                finally{
-                    pool.shutdownNow();
-                }
-
-                if(addedMerges == 0){
-                    //If a blue state has no possible red states to merge to, mark it to be consolidated to a red state.
-                    rms.addToConsolidate(blue);
+                    possibleMerges.addAll(candidates);
+                    if (candidates.isEmpty()) {
+                        //If a blue state has no possible red states to merge to, mark it to be consolidated to a red state.
+                        rms.addToConsolidate(blues.get(b));
+                    }
                 }
             }
+            finally {
+                inRound = false;
+            }
             //If no merge candidates were found for any of the blue states
             if(possibleMerges.isEmpty()){
                 //consolidate all of the marked states into red states.
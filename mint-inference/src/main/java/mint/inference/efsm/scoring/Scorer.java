@@ -6,6 +6,7 @@ import mint.model.statepair.OrderedStatePairWithScore;
 
 import java.util.Collection;
 import java.util.LinkedList;
+import java.util.concurrent.ExecutorService;
 
 public interface Scorer <T extends SimpleMergingState<?>> {
 	
@@ -16,5 +17,13 @@ public interface Scorer <T extends SimpleMergingState<?>> {
     boolean compatible(T rms, OrderedStatePair pair);
 
 
+    /**
+     * Compute scores on the given executor, which is owned by the caller (null to
+     * compute them in the calling thread).
+     * @param executor
+     */
+    void setExecutor(ExecutorService executor);
+
+
 	
 }
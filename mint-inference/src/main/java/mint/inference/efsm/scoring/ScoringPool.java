@@ -0,0 +1,24 @@
+package mint.inference.efsm.scoring;
+
+import mint.Configuration;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Creates the work-stealing pools that scorers use to compute state-pair scores.
+ *
+ * Each inference run (AbstractMerger.infer()) creates one pool, which is shared
+ * by its scorer for every batch of candidate pairs, so that threads are created
+ * once rather than for every batch. The run shuts the pool down when it is
+ * finished. Its size is taken from Configuration.SCORING_THREADS.
+ */
+public class ScoringPool {
+
+    public static ForkJoinPool newPool() {
+        int threads = Configuration.getInstance().SCORING_THREADS;
+        if (threads <= 0)
+            threads = Runtime.getRuntime().availableProcessors();
+        return new ForkJoinPool(threads);
+    }
+
+}
@@ -25,6 +25,19 @@ public class ComputeScore< T extends SimpleMergingState<?>> implements Callable<
     private Map<StatePair,Score> checked;
     private boolean carefulDet;
 
+    /*
+    Scores that are shared with other score computations for the same merging state.
+    Only scores that were computed without cutting a cycle short (see seen) are shared,
+    because those do not depend on the pair they were reached from. cuts counts the
+    number of cycles cut so far, and tainted holds the pairs whose score depends on a cut.
+    Reading the (partial) score of a pair that is still being computed (inProgress)
+    also counts as a cut.
+     */
+    private ScoreCache cache;
+    private int cuts = 0;
+    private Set<StatePair> tainted;
+    private Set<StatePair> inProgress;
+
     /*
     In addition to computing a primary score, should we compute a secondary score?
     This would count the number of joint trace elements for pairs of transitions
@@ -43,6 +56,9 @@ public class ComputeScore< T extends SimpleMergingState<?>> implements Callable<
         this.sp = sp;
         checked = new HashMap<StatePair,Score>();
         carefulDet = Configuration.getInstance().CAREFUL_DETERMINIZATION;
+        cache = mergingState.getScoreCache();
+        tainted = new HashSet<StatePair>();
+        inProgress = new HashSet<StatePair>();
     }
 
     public ComputeScore newInstance(T mergingState,StatePair sp){
@@ -61,6 +77,11 @@ public class ComputeScore< T extends SimpleMergingState<?>> implements Callable<
         }
         else if(checked.keySet().contains(new StatePair(sp.getFirstState(),sp.getSecondState())))
             return true;
+        Score shared = cache.get(sp);
+        if(shared != null) {
+            checked.put(new StatePair(sp.getFirstState(),sp.getSecondState()),shared);
+            return true;
+        }
         return false;
     }
 
@@ -82,6 +103,25 @@ public class ComputeScore< T extends SimpleMergingState<?>> implements Callable<
      * @return
      */
     protected Score recurseScore(StatePair sp){
+        int cutsBefore = cuts;
+        StatePair key = new StatePair(sp.getFirstState(),sp.getSecondState());
+        boolean started = inProgress.add(key);
+        Score score;
+        try {
+            score = scorePair(sp);
+        }
+        finally {
+            if(started)
+                inProgress.remove(key);
+        }
+        if(cuts == cutsBefore)
+            cache.put(sp, score);
+        else
+            tainted.add(new StatePair(sp.getFirstState(),sp.getSecondState()));
+        return score;
+    }
+
+    protected Score scorePair(StatePair sp){
 
         if(scoreKnown(mergingState, sp)){
             return getKnownScore(mergingState,sp);
@@ -132,6 +172,8 @@ public class ComputeScore< T extends SimpleMergingState<?>> implements Callable<
                         StatePair p = new StatePair(currentDest,transDest);
                         Score recursiveScore;
                         if(scoreKnown(mergingState,p)) {
+                            if(tainted.contains(p) || inProgress.contains(p))
+                                cuts++;
                             Score knownSc = getKnownScore(mergingState,p);
                             if(knownSc.getPrimaryScore()<0)
                                 return new Score(-1);
@@ -140,8 +182,10 @@ public class ComputeScore< T extends SimpleMergingState<?>> implements Callable<
                             }
                         }
                         else {
-                            if(seen.contains(p))
+                            if(seen.contains(p)) {
+                                cuts++;
                                 continue;
+                            }
                             seen.add(p);
                             recursiveScore = recurseScore(p);
 
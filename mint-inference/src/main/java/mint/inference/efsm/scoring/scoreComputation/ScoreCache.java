@@ -0,0 +1,112 @@
+package mint.inference.efsm.scoring.scoreComputation;
+
+import mint.model.statepair.OrderedStatePair;
+import mint.model.statepair.StatePair;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Scores of state pairs that have been computed for the current version of a machine,
+ * shared between all of the ComputeScore instances (and threads) that score pairs for
+ * the same merging state.
+ *
+ * Every entry is stamped with the generation in which it was computed. Whenever the
+ * machine changes the generation is advanced, which makes all existing entries stale
+ * without having to remove them (or synchronise with threads that are still scoring).
+ * clear() also empties the map, and is used once a merge has been committed or rolled back.
+ */
+public class ScoreCache {
+
+    protected static class Entry {
+        final int generation;
+        final int primaryScore, secondaryScore;
+
+        Entry(int generation, Score score){
+            this.generation = generation;
+            this.primaryScore = score.getPrimaryScore();
+            this.secondaryScore = score.getSecondaryScore();
+        }
+    }
+
+    protected final ConcurrentMap<OrderedStatePair,Entry> scores = new ConcurrentHashMap<OrderedStatePair,Entry>();
+    protected volatile int generation = 0;
+    protected volatile boolean enabled = true;
+    protected final AtomicLong hits = new AtomicLong(), misses = new AtomicLong();
+
+    /**
+     * Turn sharing on or off (when it is off, every score is computed by the
+     * computation that needs it, as if there were no cache).
+     * @param enabled
+     */
+    public void setEnabled(boolean enabled){
+        this.enabled = enabled;
+    }
+
+    /**
+     * Returns a copy of the score of sp in the current generation, or null if
+     * it has not been computed.
+     * @param sp
+     * @return
+     */
+    public Score get(StatePair sp){
+        if(!enabled)
+            return null;
+        Entry e = scores.get(key(sp));
+        if(e == null || e.generation != generation) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return new Score(e.primaryScore, e.secondaryScore);
+    }
+
+    public void put(StatePair sp, Score score){
+        if(!enabled)
+            return;
+        scores.put(key(sp), new Entry(generation, score));
+    }
+
+    /**
+     * Make all existing entries stale.
+     */
+    public void advance(){
+        generation++;
+    }
+
+    /**
+     * Make all existing entries stale, and remove them.
+     */
+    public void clear(){
+        generation++;
+        scores.clear();
+    }
+
+    public long getHits(){
+        return hits.get();
+    }
+
+    public long getMisses(){
+        return misses.get();
+    }
+
+    /**
+     * The proportion of lookups that were hits (0 if there were none).
+     * @return
+     */
+    public double getHitRate(){
+        long h = hits.get(), lookups = h + misses.get();
+        return lookups == 0 ? 0D : (double) h / lookups;
+    }
+
+    @Override
+    public String toString(){
+        return "hits: " + getHits() + " misses: " + getMisses() + " hit rate: " + getHitRate();
+    }
+
+    private static OrderedStatePair key(StatePair sp){
+        return new OrderedStatePair(sp.getFirstState(), sp.getSecondState());
+    }
+
+}
@@ -1,8 +1,10 @@
 package mint.inference.evo;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Random;
 
 import org.apache.log4j.Logger;
 
@@ -14,7 +16,9 @@ public abstract class AbstractEvo {
 	protected GPConfiguration gpConf;
 	protected Collection<Chromosome> seeds;
 	protected List<Chromosome> population;
-	Chromosome fittest = null;
+	protected Chromosome fittest = null;
+	protected double bestFitness = Double.MAX_VALUE;
+	protected FitnessCache fitnessCache = new FitnessCache();
 
 	private final static Logger LOGGER = Logger.getLogger(AbstractEvo.class.getName());
 
@@ -52,34 +56,170 @@ public abstract class AbstractEvo {
 
 	public Chromosome evolve(int lim) {
 		assert (lim > 0);
+		if (getGPConf().getIslands() > 1) {
+			if (supportsIslands())
+				return new IslandModel(this, getRandom()).evolve(lim);
+			LOGGER.warn(getClass().getSimpleName() + " cannot be run as an island model, so it evolves "
+					+ "a single population instead of " + getGPConf().getIslands() + " islands");
+		}
+
+		initialise();
+		evolve(0, lim);
+		// TournamentSelection ts = (TournamentSelection) it.getLatestSelection();
+		LOGGER.debug("Fitness cache - " + fitnessCache);
+
+		return getFittest();
+	}
+
+	/**
+	 * Creates the initial population of a run.
+	 */
+	protected void initialise() {
+		fitnessCache = new FitnessCache();
+		bestFitness = Double.MAX_VALUE;
 		population = generatePopulation(getGPConf().getPopulationSize() - seeds.size());
 
 		population.addAll(seeds);
+	}
 
-		AbstractIterator it = getIterator(population);
-		for (int i = 0; i < lim; i++) {
-
+	/**
+	 * Evolves the population for (at most) the given number of generations,
+	 * counted from the given one, and returns true if it has found an individual
+	 * with a perfect fitness.
+	 *
+	 * @param from
+	 * @param generations
+	 * @return
+	 */
+	protected boolean evolve(int from, int generations) {
+		for (int i = from; i < from + generations; i++) {
+			AbstractIterator it = getIterator(population);
 			population = it.iterate(this);
 
 			TournamentSelection latestSelection = (TournamentSelection) it.getLatestSelection();
 			if (latestSelection != null) {
-				Double bestFitness = latestSelection.getBestFitness();
+				bestFitness = latestSelection.getBestFitness();
 				// LOGGER.debug(latestSelection.getBestFitnessSummary());
 				// LOGGER.debug("Best fitness: "+it.getLatestSelection().getBestFitness());
 				fittest = latestSelection.elite.get(0);
 				LOGGER.debug("GP iteration: " + i + " - best fitness: " + bestFitness);
 
 				if (bestFitness <= 0D)
-					break;
+					return true;
 			}
 
-			it = getIterator(population);
+			population = z3Simp(population, i + 1);
 		}
-		// TournamentSelection ts = (TournamentSelection) it.getLatestSelection();
+		return false;
+	}
 
+	/**
+	 * The best individual of the current (or last) run.
+	 *
+	 * @return
+	 */
+	public Chromosome getFittest() {
 		return fittest;
 	}
 
+	public double getBestFitness() {
+		return bestFitness;
+	}
+
+	/**
+	 * The random number generator that the seeds of the islands of an
+	 * island-model run of this GP are derived from (together with the index of
+	 * each island, so that the islands differ even if it always starts the same).
+	 *
+	 * @return
+	 */
+	protected Random getRandom() {
+		return new Random(0);
+	}
+
+	/**
+	 * Whether this GP can be run as an island model (see createIsland()). If
+	 * not, it evolves a single population whatever the number of islands.
+	 *
+	 * @return
+	 */
+	protected boolean supportsIslands() {
+		return false;
+	}
+
+	/**
+	 * Creates an island for an island-model run of this GP: a GP of the same
+	 * kind, with the same training set and seeds, that generates its individuals
+	 * with the given random number generator. Only called if supportsIslands().
+	 *
+	 * @param conf
+	 * @param rand
+	 * @return
+	 */
+	protected AbstractEvo createIsland(GPConfiguration conf, Random rand) {
+		return null;
+	}
+
+	/**
+	 * Copies of (at most) the given number of the best individuals of the
+	 * population, to send to other islands.
+	 *
+	 * @param number
+	 * @return
+	 */
+	protected List<Chromosome> getEmigrants(int number) {
+		List<Chromosome> emigrants = new ArrayList<Chromosome>();
+		if (getFittest() != null && number > 0)
+			emigrants.add(getFittest().copy());
+		return emigrants;
+	}
+
+	/**
+	 * Replaces the last individuals of the population with the given ones (from
+	 * other islands).
+	 *
+	 * @param immigrants
+	 */
+	protected void immigrate(List<Chromosome> immigrants) {
+		int replaced = Math.min(immigrants.size(), population.size());
+		for (int i = 0; i < replaced; i++) {
+			population.set(population.size() - 1 - i, immigrants.get(i));
+		}
+	}
+
+	/**
+	 * Makes the given population (and best individual) of an island-model run
+	 * those of this GP.
+	 *
+	 * @param population
+	 * @param fittest
+	 * @param bestFitness
+	 */
+	void setResult(List<Chromosome> population, Chromosome fittest, double bestFitness) {
+		this.population = population;
+		this.fittest = fittest;
+		this.bestFitness = bestFitness;
+	}
+
+	/**
+	 * Simplifies the population with Z3 if the given generation is one of
+	 * every getZ3Interval() generations of the configuration.
+	 *
+	 * @param population
+	 * @param generation
+	 * @return
+	 */
+	protected List<Chromosome> z3Simp(List<Chromosome> population, int generation) {
+		int interval = getGPConf().getZ3Interval();
+		if (interval == 0 || generation % interval != 0)
+			return population;
+		List<Chromosome> simplified = new ArrayList<Chromosome>();
+		for (Chromosome c : population) {
+			simplified.add(c.z3Simp());
+		}
+		return simplified;
+	}
+
 	protected abstract AbstractIterator getIterator(List<Chromosome> population);
 
 	/**
@@ -90,6 +230,16 @@ public abstract class AbstractEvo {
 	 */
 	public abstract List<Chromosome> generatePopulation(int i);
 
+	/**
+	 * The cache of fitness values that the selections of the current (or last)
+	 * run share.
+	 *
+	 * @return
+	 */
+	public FitnessCache getFitnessCache() {
+		return fitnessCache;
+	}
+
 	public GPConfiguration getGPConf() {
 		return gpConf;
 	}
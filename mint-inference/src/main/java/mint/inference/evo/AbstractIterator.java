@@ -38,13 +38,26 @@ public abstract class AbstractIterator {
 		}
 		int numberCrossover = (int) ((population.size() - elite.size()) * crossOver);
 		int numberMutation = (int) ((population.size() - elite.size()) * mutation);
+		// the individuals that parents are chosen from
+		List<Chromosome> candidates = population;
+		if (numberCrossover > 0 && !gp.getGPConf().isRacing()) {
+			// evaluate the generation as one batch, before the tournaments are drawn
+			// (with racing, the tournaments evaluate their individuals themselves, so
+			// semantic duplicates are not known in advance and are kept)
+			Selection batch = gp.getSelection(population);
+			if (batch instanceof TournamentSelection) {
+				((TournamentSelection) batch).evaluateAll(population);
+				if (gp.getGPConf().isSemanticDeduplication())
+					candidates = ((TournamentSelection) batch).removeSemanticDuplicates(population);
+			}
+		}
 		for (int crossOvers = 0; crossOvers < numberCrossover; crossOvers++) {
-			sel = gp.getSelection(population);
+			sel = gp.getSelection(candidates);
 			List<Chromosome> parents = sel.select(gp.getGPConf(), 2);
 			newPopulation.add(crossOver(parents.get(0), parents.get(1)));
 		}
 		for (int mutations = 0; mutations < numberMutation; mutations++) {
-			newPopulation.add(mutate(population.get(rand.nextInt(population.size()))));
+			newPopulation.add(mutate(candidates.get(rand.nextInt(candidates.size()))));
 		}
 
 		int remainder = gp.getGPConf().getPopulationSize() - newPopulation.size();
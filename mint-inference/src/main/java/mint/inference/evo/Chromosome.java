@@ -11,6 +11,33 @@ public interface Chromosome {
 
 	public Chromosome simp();
 
+	/**
+	 * Simplifies the chromosome with a solver, which is more thorough but much
+	 * more expensive than simp().
+	 *
+	 * @return
+	 */
+	public Chromosome z3Simp();
+
 	public boolean sameSyntax(Chromosome c);
 
+	/**
+	 * A hash of the structure of the chromosome, which is the same for
+	 * chromosomes that have the same fitness because they are the same (up to
+	 * trivial differences such as the order of commutative arguments).
+	 *
+	 * @return
+	 */
+	public long structuralHash();
+
+	/**
+	 * Whether the given chromosome has the same structure as this one, in the
+	 * sense of structuralHash (so chromosomes with the same structure always
+	 * have the same structural hash, but not the other way round).
+	 *
+	 * @param c
+	 * @return
+	 */
+	public boolean sameStructure(Chromosome c);
+
 }
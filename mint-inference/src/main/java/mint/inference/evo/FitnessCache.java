@@ -0,0 +1,223 @@
+package mint.inference.evo;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *
+ * A bounded cache of the fitness of the chromosomes that have been evaluated in
+ * a run, so that identical chromosomes (copies, or equivalent trees that are
+ * bred again) are evaluated only once per run. Entries are found by structural
+ * hash, and a copy of the chromosome is kept with each, so that a chromosome
+ * whose hash merely collides with that of another (see
+ * Chromosome.sameStructure) is a miss rather than given the other's fitness.
+ * When it is full, the least recently used entries are dropped.
+ *
+ * The cache is thread-safe, and counts its hits and misses, as well as the
+ * examples of the training set that the fitness evaluations of the run went
+ * through or skipped (see Fitness.setCutoff).
+ *
+ */
+public class FitnessCache {
+
+	public static final int DEFAULT_CAPACITY = 10000;
+
+	/**
+	 * A cached fitness, with the summary and the fingerprint (see
+	 * Fitness.getFingerprint) the fitness function produced.
+	 */
+	public static class Result {
+
+		private final Chromosome chromosome;
+		private final double fitness;
+		private final String summary;
+		private final long fingerprint;
+
+		Result(Chromosome chromosome, double fitness, String summary, long fingerprint) {
+			this.chromosome = chromosome;
+			this.fitness = fitness;
+			this.summary = summary;
+			this.fingerprint = fingerprint;
+		}
+
+		public double getFitness() {
+			return fitness;
+		}
+
+		public String getSummary() {
+			return summary;
+		}
+
+		public long getFingerprint() {
+			return fingerprint;
+		}
+	}
+
+	private final Map<Long, Result> results;
+	private final AtomicLong hits = new AtomicLong(), misses = new AtomicLong(), collisions = new AtomicLong();
+	private final AtomicLong evaluatedExamples = new AtomicLong(), skippedExamples = new AtomicLong();
+
+	public FitnessCache() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public FitnessCache(final int capacity) {
+		results = new LinkedHashMap<Long, Result>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, Result> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	/*
+	 * The result for the given chromosome, if there is one, counting the entries
+	 * that only have the same hash as collisions.
+	 */
+	private Result find(Chromosome c) {
+		Result result;
+		synchronized (results) {
+			result = results.get(c.structuralHash());
+		}
+		if (result != null && !result.chromosome.sameStructure(c)) {
+			collisions.incrementAndGet();
+			return null;
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the cached result for the given chromosome, or null (a miss) if
+	 * there is none.
+	 *
+	 * @param c
+	 * @return
+	 */
+	public Result get(Chromosome c) {
+		Result result = find(c);
+		if (result == null)
+			misses.incrementAndGet();
+		else
+			hits.incrementAndGet();
+		return result;
+	}
+
+	/**
+	 * Whether there is a cached result for the given chromosome (this is not
+	 * counted as a hit or a miss).
+	 *
+	 * @param c
+	 * @return
+	 */
+	public boolean contains(Chromosome c) {
+		return find(c) != null;
+	}
+
+	public void put(Chromosome c, double fitness, String summary) {
+		put(c, fitness, summary, 0L);
+	}
+
+	/**
+	 * Caches the result for the given chromosome (a copy of it is kept), in place
+	 * of any result for another chromosome with the same structural hash.
+	 *
+	 * @param c
+	 * @param fitness
+	 * @param summary
+	 * @param fingerprint
+	 */
+	public void put(Chromosome c, double fitness, String summary, long fingerprint) {
+		Result result = new Result(c.copy(), fitness, summary, fingerprint);
+		long hash = c.structuralHash();
+		synchronized (results) {
+			results.put(hash, result);
+		}
+	}
+
+	/**
+	 * Returns the cached result for the given chromosome, or null, without
+	 * counting it as a hit or a miss.
+	 *
+	 * @param c
+	 * @return
+	 */
+	public Result peek(Chromosome c) {
+		return find(c);
+	}
+
+	public int size() {
+		synchronized (results) {
+			return results.size();
+		}
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * The number of lookups that found the result of a different chromosome
+	 * with the same structural hash (and so were not given it).
+	 *
+	 * @return
+	 */
+	public long getCollisions() {
+		return collisions.get();
+	}
+
+	/**
+	 * The proportion of lookups that were hits (0 if there were none).
+	 *
+	 * @return
+	 */
+	public double getHitRate() {
+		long h = hits.get(), lookups = h + misses.get();
+		return lookups == 0 ? 0D : (double) h / lookups;
+	}
+
+	/**
+	 * Counts the examples that a fitness evaluation went through, and those it
+	 * skipped as it stopped early.
+	 *
+	 * @param evaluated
+	 * @param skipped
+	 */
+	public void countExamples(int evaluated, int skipped) {
+		evaluatedExamples.addAndGet(evaluated);
+		skippedExamples.addAndGet(skipped);
+	}
+
+	public long getEvaluatedExamples() {
+		return evaluatedExamples.get();
+	}
+
+	public long getSkippedExamples() {
+		return skippedExamples.get();
+	}
+
+	/**
+	 * The proportion of the examples of fitness evaluations that were skipped (0
+	 * if there were none).
+	 *
+	 * @return
+	 */
+	public double getSkipRate() {
+		long s = skippedExamples.get(), examples = s + evaluatedExamples.get();
+		return examples == 0 ? 0D : (double) s / examples;
+	}
+
+	@Override
+	public String toString() {
+		return "hits: " + getHits() + " misses: " + getMisses() + " hit rate: " + getHitRate() + " collisions: "
+				+ getCollisions() + " size: " + size() + " skipped examples: " + getSkippedExamples() + " skip rate: "
+				+ getSkipRate();
+	}
+}
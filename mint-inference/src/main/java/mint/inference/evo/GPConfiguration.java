@@ -1,24 +1,59 @@
 package mint.inference.evo;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * Data class to store GP configuration data.
  */
 public class GPConfiguration {
 
+	/**
+	 * How the islands of an island-model run exchange individuals: each island
+	 * sends its migrants to the next one (RING), or to every other island
+	 * (FULLY_CONNECTED).
+	 */
+	public enum Topology {
+		RING, FULLY_CONNECTED
+	}
+
 	private final int populationSize;
 	private final double crossOver;
 	private final double mutation;
 	private final int depth;
 	private final int tournamentSize;
+	private final int threads;
+	private ExecutorService executor;
+	private int z3Interval = 0;
+	private int islands = 1;
+	private int migrationInterval = 10;
+	private int migrants = 2;
+	private Topology topology = Topology.RING;
+	private boolean semanticDeduplication = false;
+	private boolean racing = false;
 
 	public GPConfiguration(int populationSize, double crossOver, double mutation, int depth, int tournamentSize) {
+		this(populationSize, crossOver, mutation, depth, tournamentSize, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param threads the number of threads that evaluate the fitness of the
+	 *                individuals of a generation in parallel.
+	 */
+	public GPConfiguration(int populationSize, double crossOver, double mutation, int depth, int tournamentSize,
+			int threads) {
 		if (tournamentSize > populationSize)
 			throw new IllegalArgumentException("Population size must be greater than tournament size");
+		if (threads < 1)
+			throw new IllegalArgumentException("There must be at least one evaluation thread");
 		this.populationSize = populationSize;
 		this.crossOver = crossOver;
 		this.mutation = mutation;
 		this.depth = depth;
 		this.tournamentSize = tournamentSize;
+		this.threads = threads;
 	}
 
 	public int getPopulationSize() {
@@ -40,4 +75,161 @@ public class GPConfiguration {
 	public int getTournamentSize() {
 		return tournamentSize;
 	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * The number of generations after which the population is simplified with
+	 * Z3 (on top of the cheaper simplification of every offspring), or 0 if it
+	 * is never simplified with Z3.
+	 *
+	 * @return
+	 */
+	public int getZ3Interval() {
+		return z3Interval;
+	}
+
+	public void setZ3Interval(int z3Interval) {
+		if (z3Interval < 0)
+			throw new IllegalArgumentException("The Z3 interval cannot be negative");
+		this.z3Interval = z3Interval;
+	}
+
+	/**
+	 * The number of islands (sub-populations that evolve concurrently, each on
+	 * its own thread) that the population is split into, or 1 if it is evolved
+	 * as a single population.
+	 *
+	 * @return
+	 */
+	public int getIslands() {
+		return islands;
+	}
+
+	public void setIslands(int islands) {
+		if (islands < 1)
+			throw new IllegalArgumentException("There must be at least one island");
+		this.islands = islands;
+	}
+
+	/**
+	 * The number of generations between two migrations between islands.
+	 *
+	 * @return
+	 */
+	public int getMigrationInterval() {
+		return migrationInterval;
+	}
+
+	public void setMigrationInterval(int migrationInterval) {
+		if (migrationInterval < 1)
+			throw new IllegalArgumentException("The migration interval must be at least one generation");
+		this.migrationInterval = migrationInterval;
+	}
+
+	/**
+	 * The number of its best individuals that an island sends to each of its
+	 * neighbours at a migration.
+	 *
+	 * @return
+	 */
+	public int getMigrants() {
+		return migrants;
+	}
+
+	public void setMigrants(int migrants) {
+		if (migrants < 0)
+			throw new IllegalArgumentException("The number of migrants cannot be negative");
+		this.migrants = migrants;
+	}
+
+	public Topology getTopology() {
+		return topology;
+	}
+
+	public void setTopology(Topology topology) {
+		if (topology == null)
+			throw new IllegalArgumentException("The topology cannot be null");
+		this.topology = topology;
+	}
+
+	/**
+	 * Whether individuals that are semantically the same as another of the
+	 * population (see TournamentSelection.removeSemanticDuplicates) are left out
+	 * of the selection of parents, and of mutation. This is off by default, as it
+	 * changes the search.
+	 *
+	 * Duplicates are found from the fitness of the generation, evaluated as one
+	 * batch before the tournaments, so they are not left out if there is no such
+	 * batch: with racing, or if no individuals are bred by crossover.
+	 *
+	 * @return
+	 */
+	public boolean isSemanticDeduplication() {
+		return semanticDeduplication;
+	}
+
+	public void setSemanticDeduplication(boolean semanticDeduplication) {
+		this.semanticDeduplication = semanticDeduplication;
+	}
+
+	/**
+	 * Whether each tournament evaluates its individuals one after another, each
+	 * only as far as it takes to tell that it is less fit than the fittest so
+	 * far (see TournamentSelection.setRacing). The generation is then not
+	 * evaluated as one parallel batch before the tournaments, so this pays off
+	 * when fitness is evaluated on one thread (or by islands).
+	 *
+	 * @return
+	 */
+	public boolean isRacing() {
+		return racing;
+	}
+
+	public void setRacing(boolean racing) {
+		this.racing = racing;
+	}
+
+	/**
+	 * The configuration of one island of an island-model run: an equal share of
+	 * the population (but no less than a tournament), evaluated on the thread of
+	 * the island.
+	 *
+	 * @return
+	 */
+	public GPConfiguration forIsland() {
+		int size = Math.max(tournamentSize, populationSize / islands);
+		GPConfiguration island = new GPConfiguration(size, crossOver, mutation, depth, tournamentSize, 1);
+		island.z3Interval = z3Interval;
+		island.semanticDeduplication = semanticDeduplication;
+		island.racing = racing;
+		return island;
+	}
+
+	/**
+	 * The executor that evaluates fitness in parallel, shared by every GP run
+	 * with this configuration. It is created on first use, and its threads are
+	 * daemons, so it need not be shut down. If there is only one thread it is
+	 * null, and fitness is evaluated on the calling thread.
+	 *
+	 * @return
+	 */
+	public synchronized ExecutorService getExecutor() {
+		if (threads > 1 && executor == null) {
+			executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+
+				private final AtomicInteger count = new AtomicInteger();
+
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "gp-fitness-" + count.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return executor;
+	}
 }
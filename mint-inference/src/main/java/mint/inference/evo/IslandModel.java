@@ -0,0 +1,190 @@
+package mint.inference.evo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Runs a GP as an island model: the population is split into islands that
+ * evolve concurrently, one thread each, and every getMigrationInterval()
+ * generations each island sends copies of its best individuals to its
+ * neighbours (as given by the topology of the configuration), where they
+ * replace some of the population.
+ *
+ * The islands evolve in step between migrations, and migrate in order, and
+ * each makes its random choices (including the values given to mutated
+ * constants) with its own generator, so a run does not depend on how the
+ * threads are scheduled. The run stops as soon as an island finds a perfect
+ * individual, and its result is the best individual of all islands (that of
+ * the first island if several are equally good).
+ */
+public class IslandModel {
+
+	private final static Logger LOGGER = Logger.getLogger(IslandModel.class.getName());
+
+	protected final AbstractEvo gp;
+	protected final List<AbstractEvo> islands;
+
+	/*
+	 * Spreads the seeds of the islands (as SplittableRandom spreads those of the
+	 * generators it splits off).
+	 */
+	private static final long SEED_INCREMENT = 0x9E3779B97F4A7C15L;
+
+	/**
+	 * Creates the islands of the given GP, which make their random choices with
+	 * generators seeded from the given random number generator and their index.
+	 *
+	 * @param gp
+	 * @param rand
+	 */
+	public IslandModel(AbstractEvo gp, Random rand) {
+		this.gp = gp;
+		GPConfiguration conf = gp.getGPConf().forIsland();
+		islands = new ArrayList<AbstractEvo>();
+		long seed = rand.nextLong();
+		for (int i = 0; i < gp.getGPConf().getIslands(); i++) {
+			islands.add(gp.createIsland(conf, new Random(seed + (i + 1) * SEED_INCREMENT)));
+		}
+	}
+
+	public List<AbstractEvo> getIslands() {
+		return islands;
+	}
+
+	/**
+	 * Evolves the islands for (at most) the given number of generations, and
+	 * returns the best individual.
+	 *
+	 * @param lim
+	 * @return
+	 */
+	public Chromosome evolve(int lim) {
+		ExecutorService executor = Executors.newFixedThreadPool(islands.size(), new ThreadFactory() {
+
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "gp-island-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		try {
+			List<Callable<Boolean>> initialisations = new ArrayList<Callable<Boolean>>();
+			for (final AbstractEvo island : islands) {
+				initialisations.add(new Callable<Boolean>() {
+					@Override
+					public Boolean call() {
+						island.initialise();
+						return false;
+					}
+				});
+			}
+			runAll(executor, initialisations);
+
+			int done = 0;
+			while (done < lim) {
+				final int from = done;
+				final int generations = Math.min(gp.getGPConf().getMigrationInterval(), lim - done);
+				List<Callable<Boolean>> epoch = new ArrayList<Callable<Boolean>>();
+				for (final AbstractEvo island : islands) {
+					epoch.add(new Callable<Boolean>() {
+						@Override
+						public Boolean call() {
+							return island.evolve(from, generations);
+						}
+					});
+				}
+				boolean perfect = runAll(executor, epoch);
+				done += generations;
+				LOGGER.debug("Island model: " + done + " generations - best fitness: " + best().getBestFitness());
+				if (perfect)
+					break;
+				if (done < lim)
+					migrate();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			executor.shutdownNow();
+		}
+
+		List<Chromosome> population = new ArrayList<Chromosome>();
+		for (AbstractEvo island : islands) {
+			LOGGER.debug("Fitness cache - " + island.getFitnessCache());
+			if (island.getPopulation() != null)
+				population.addAll(island.getPopulation());
+		}
+		AbstractEvo best = best();
+		gp.setResult(population, best.getFittest(), best.getBestFitness());
+		return best.getFittest();
+	}
+
+	/*
+	 * Runs the given tasks (one per island) to completion, and returns true if
+	 * any of them does.
+	 */
+	private boolean runAll(ExecutorService executor, List<Callable<Boolean>> tasks) throws InterruptedException {
+		boolean any = false;
+		for (Future<Boolean> result : executor.invokeAll(tasks)) {
+			try {
+				any |= result.get();
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("An island failed to evolve", e.getCause());
+			}
+		}
+		return any;
+	}
+
+	/**
+	 * Sends getMigrants() copies of the best individuals of each island to its
+	 * neighbours.
+	 */
+	protected void migrate() {
+		int migrants = gp.getGPConf().getMigrants();
+		if (migrants == 0)
+			return;
+		List<List<Chromosome>> emigrants = new ArrayList<List<Chromosome>>();
+		for (AbstractEvo island : islands) {
+			emigrants.add(island.getEmigrants(migrants));
+		}
+		int n = islands.size();
+		for (int i = 0; i < n; i++) {
+			List<Chromosome> immigrants = new ArrayList<Chromosome>();
+			for (int j = 0; j < n; j++) {
+				if (j == i)
+					continue;
+				if (gp.getGPConf().getTopology() == GPConfiguration.Topology.RING && j != (i + n - 1) % n)
+					continue;
+				for (Chromosome emigrant : emigrants.get(j)) {
+					immigrants.add(emigrant.copy());
+				}
+			}
+			islands.get(i).immigrate(immigrants);
+		}
+	}
+
+	/*
+	 * The island with the best individual (the first one, if several are equally
+	 * good).
+	 */
+	private AbstractEvo best() {
+		AbstractEvo best = islands.get(0);
+		for (AbstractEvo island : islands) {
+			if (island.getBestFitness() < best.getBestFitness())
+				best = island;
+		}
+		return best;
+	}
+}
@@ -1,17 +1,22 @@
 package mint.inference.evo;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import mint.inference.gp.fitness.Fitness;
 
@@ -27,6 +32,8 @@ import mint.inference.gp.fitness.Fitness;
 public abstract class TournamentSelection implements Selection {
 
 	protected Map<Chromosome, Double> fitnessCache;
+	protected FitnessCache sharedCache;
+	protected ExecutorService executor;
 	protected Map<Chromosome, String> summaryCache;
 	protected List<Chromosome> totalPopulation;
 	protected List<Chromosome> elite;
@@ -34,6 +41,7 @@ public abstract class TournamentSelection implements Selection {
 	protected double bestFitness;
 	protected int maxDepth;
 	protected Random rand;
+	protected boolean racing = false;
 
 	public List<Chromosome> getElite() {
 		return elite;
@@ -46,9 +54,47 @@ public abstract class TournamentSelection implements Selection {
 		this.bestFitness = Double.MAX_VALUE;
 		this.maxDepth = maxDepth;
 		this.fitnessCache = new HashMap<Chromosome, Double>();
+		this.sharedCache = new FitnessCache();
 		this.rand = rand;
 	}
 
+	/**
+	 * Shares the given cache (of structurally identical chromosomes) with the
+	 * other selections of a run, rather than starting from an empty one.
+	 *
+	 * @param cache
+	 */
+	public void setFitnessCache(FitnessCache cache) {
+		this.sharedCache = cache;
+	}
+
+	public FitnessCache getFitnessCache() {
+		return sharedCache;
+	}
+
+	/**
+	 * Sets the executor that evaluates the individuals of a batch in parallel
+	 * (see evaluateAll). If it is null, they are evaluated one by one.
+	 *
+	 * @param executor
+	 */
+	public void setExecutor(ExecutorService executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Makes each tournament pick its fittest individual (the first one, if
+	 * several are equally fit), and stop evaluating each of the others as soon
+	 * as it is certain to be less fit than the fittest so far (see
+	 * Fitness.setCutoff). The winners are the same as if every individual were
+	 * evaluated in full, and only exact fitness values are cached.
+	 *
+	 * @param racing
+	 */
+	public void setRacing(boolean racing) {
+		this.racing = racing;
+	}
+
 	@Override
 	public double getBestFitness() {
 		return bestFitness;
@@ -65,13 +111,114 @@ public abstract class TournamentSelection implements Selection {
 	public double computeFitness(Chromosome toEvaluate) throws InterruptedException {
 		if (fitnessCache.containsKey(toEvaluate))
 			return fitnessCache.get(toEvaluate);
-		else {
-			Fitness f = getFitness(toEvaluate);
-			double fitness = f.call();
-			fitnessCache.put(toEvaluate, fitness);
-			summaryCache.put(toEvaluate, f.getFitnessSummary());
-			return fitness;
+		else
+			return computeFitness(toEvaluate, getFitness(toEvaluate));
+	}
+
+	/*
+	 * Takes the fitness from the shared cache if a structurally identical
+	 * chromosome has been evaluated before, and otherwise computes it with f.
+	 */
+	protected double computeFitness(Chromosome toEvaluate, Fitness f) throws InterruptedException {
+		return computeFitness(toEvaluate, f, Double.POSITIVE_INFINITY);
+	}
+
+	/*
+	 * As above, but f may stop early and return a lower bound of the fitness
+	 * (which is not cached) if it is greater than the given cutoff.
+	 */
+	protected double computeFitness(Chromosome toEvaluate, Fitness f, double cutoff) throws InterruptedException {
+		FitnessCache.Result cached = sharedCache.get(toEvaluate);
+		double fitness;
+		String summary;
+		if (cached != null) {
+			fitness = cached.getFitness();
+			summary = cached.getSummary();
+		} else {
+			f.setCutoff(cutoff);
+			fitness = f.call();
+			sharedCache.countExamples(f.getEvaluated(), f.getSkipped());
+			if (!f.isExact())
+				return fitness;
+			summary = f.getFitnessSummary();
+			sharedCache.put(toEvaluate, fitness, summary, f.getFingerprint());
 		}
+		fitnessCache.put(toEvaluate, fitness);
+		summaryCache.put(toEvaluate, summary);
+		return fitness;
+	}
+
+	/**
+	 * Evaluates every individual of the collection whose fitness is not yet in
+	 * the shared cache as one batch on the executor, so that the tournaments
+	 * that are drawn from the collection afterwards find their fitness in the
+	 * cache. Individuals with the same structure are evaluated once, and the
+	 * results are cached in the order of the collection, so the outcome does not
+	 * depend on the number of threads. Individuals whose evaluation fails, or
+	 * whose structural hash collides with that of another individual of the
+	 * batch, are left to be evaluated (again) by their tournaments.
+	 *
+	 * @param individuals
+	 */
+	public void evaluateAll(Collection<Chromosome> individuals) {
+		Map<Long, Fitness> batch = new LinkedHashMap<Long, Fitness>();
+		Map<Long, Chromosome> evaluated = new HashMap<Long, Chromosome>();
+		for (Chromosome individual : individuals) {
+			long hash = individual.structuralHash();
+			// evaluate a copy, as evaluation changes the values of the terminals
+			if (!batch.containsKey(hash) && !sharedCache.contains(individual)) {
+				batch.put(hash, getFitness(individual.copy()));
+				evaluated.put(hash, individual);
+			}
+		}
+		Map<Long, Future<Double>> futures = new LinkedHashMap<Long, Future<Double>>();
+		for (Entry<Long, Fitness> entry : batch.entrySet()) {
+			if (executor == null) {
+				FutureTask<Double> task = new FutureTask<Double>(entry.getValue());
+				task.run();
+				futures.put(entry.getKey(), task);
+			} else
+				futures.put(entry.getKey(), executor.submit(entry.getValue()));
+		}
+		try {
+			for (Entry<Long, Future<Double>> entry : futures.entrySet()) {
+				try {
+					double fitness = entry.getValue().get();
+					Fitness f = batch.get(entry.getKey());
+					sharedCache.countExamples(f.getEvaluated(), f.getSkipped());
+					sharedCache.put(evaluated.get(entry.getKey()), fitness, f.getFitnessSummary(), f.getFingerprint());
+				} catch (ExecutionException e) {
+					e.printStackTrace();
+				}
+			}
+		} catch (InterruptedException e) {
+			for (Future<Double> future : futures.values()) {
+				future.cancel(true);
+			}
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Returns the given individuals without those that are semantically the same
+	 * as one before them: that have the same fitness, and compute the same
+	 * outputs for the sample of the training set that fingerprints are computed
+	 * over (see Fitness.getFingerprint). Individuals whose fitness is not in the
+	 * shared cache (see evaluateAll), or that have no fingerprint, are kept.
+	 *
+	 * @param individuals
+	 * @return
+	 */
+	public List<Chromosome> removeSemanticDuplicates(List<Chromosome> individuals) {
+		List<Chromosome> distinct = new ArrayList<Chromosome>();
+		Set<List<Long>> seen = new HashSet<List<Long>>();
+		for (Chromosome individual : individuals) {
+			FitnessCache.Result result = sharedCache.peek(individual);
+			if (result == null || result.getFingerprint() == 0L || seen.add(
+					Arrays.asList(result.getFingerprint(), Double.doubleToLongBits(result.getFitness()))))
+				distinct.add(individual);
+		}
+		return distinct;
 	}
 
 	public abstract Fitness getFitness(Chromosome toEvaluate);
@@ -114,48 +261,28 @@ public abstract class TournamentSelection implements Selection {
 		 */
 	}
 
+	/*
+	 * The fittest individual of the population (the first one, if several are
+	 * equally fit). With racing, each individual after the first is evaluated
+	 * with the fitness of the fittest so far as its cutoff.
+	 */
 	protected Chromosome evaluatePopulation(Collection<Chromosome> population) {
 		assert (!population.isEmpty());
-		double bestScore = Double.MAX_VALUE;
+		double bestScore = Double.POSITIVE_INFINITY;
 		Chromosome best = null;
-		Map<Double, Chromosome> solMap = new HashMap<Double, Chromosome>();
-		Set<Double> set = new HashSet<Double>();
-		ExecutorService pool = Executors.newFixedThreadPool(4);
-		Fitness fitness = null;
 		try {
 			for (Chromosome node : population) {
-				fitness = getFitness(node);
-				Double f = fitness.call();
-//				Future<Double> future = pool.submit(fitness);
-				solMap.put(f, node);
-				set.add(f);
-			}
-			for (Double sol : set) {
-				double score = 0D;
-				try {
-					processResult(solMap, sol, score, fitness);
-				} catch (Exception ex) {
-					ex.printStackTrace();
-					score = 1000D;
-					processResult(solMap, sol, score, fitness);
+				double cutoff = racing ? bestScore : Double.POSITIVE_INFINITY;
+				double f = computeFitness(node, getFitness(node), cutoff);
+				if (best == null || f < bestScore) {
+					bestScore = f;
+					best = node;
 				}
-				if (score < bestScore) {
-					bestScore = score;
-					best = solMap.get(sol);
-				} else if (best == null)
-					best = solMap.get(sol);
 			}
-
 		} catch (Exception e) {
 			e.printStackTrace();
-		} finally {
-			pool.shutdownNow();
 		}
 		return best.copy();
 	}
 
-	protected void processResult(Map<Double, Chromosome> solMap, Double sol, double score, Fitness fitness) {
-		fitnessCache.put(solMap.get(sol), score);
-	}
-
 }
@@ -0,0 +1,1160 @@
+package mint.inference.gp;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import mint.inference.gp.tree.Datatype;
+import mint.inference.gp.tree.Node;
+import mint.inference.gp.tree.Terminal;
+import mint.inference.gp.tree.nonterminals.booleans.AndBooleanOperator;
+import mint.inference.gp.tree.nonterminals.booleans.EQBooleanOperator;
+import mint.inference.gp.tree.nonterminals.booleans.GTBooleanDoublesOperator;
+import mint.inference.gp.tree.nonterminals.booleans.GTBooleanIntegersOperator;
+import mint.inference.gp.tree.nonterminals.booleans.LTBooleanDoublesOperator;
+import mint.inference.gp.tree.nonterminals.booleans.LTBooleanIntegersOperator;
+import mint.inference.gp.tree.nonterminals.booleans.NotBooleanOperator;
+import mint.inference.gp.tree.nonterminals.booleans.OrBooleanOperator;
+import mint.inference.gp.tree.nonterminals.doubles.AddDoublesOperator;
+import mint.inference.gp.tree.nonterminals.doubles.CastDoublesOperator;
+import mint.inference.gp.tree.nonterminals.doubles.CosDoublesOperator;
+import mint.inference.gp.tree.nonterminals.doubles.DivideDoublesOperator;
+import mint.inference.gp.tree.nonterminals.doubles.DoubleNonTerminal;
+import mint.inference.gp.tree.nonterminals.doubles.ExpDoublesOperator;
+import mint.inference.gp.tree.nonterminals.doubles.IfThenElseOperator;
+import mint.inference.gp.tree.nonterminals.doubles.LogDoublesOperator;
+import mint.inference.gp.tree.nonterminals.doubles.MultiplyDoublesOperator;
+import mint.inference.gp.tree.nonterminals.doubles.PwrDoublesOperator;
+import mint.inference.gp.tree.nonterminals.doubles.SubtractDoublesOperator;
+import mint.inference.gp.tree.nonterminals.integers.AddIntegersOperator;
+import mint.inference.gp.tree.nonterminals.integers.CastIntegersOperator;
+import mint.inference.gp.tree.nonterminals.integers.IfThenElseIntegerOperator;
+import mint.inference.gp.tree.nonterminals.integers.IntegerNonTerminal;
+import mint.inference.gp.tree.nonterminals.integers.MultiplyIntegersOperator;
+import mint.inference.gp.tree.nonterminals.integers.SubtractIntegersOperator;
+import mint.inference.gp.tree.terminals.BooleanVariableAssignmentTerminal;
+import mint.inference.gp.tree.terminals.DoubleVariableAssignmentTerminal;
+import mint.inference.gp.tree.terminals.IntegerVariableAssignmentTerminal;
+import mint.tracedata.types.BooleanVariableAssignment;
+import mint.tracedata.types.DoubleVariableAssignment;
+import mint.tracedata.types.IntegerVariableAssignment;
+import mint.tracedata.types.NumberVariableAssignment;
+import mint.tracedata.types.VariableAssignment;
+
+/**
+ *
+ * A GP tree compiled to a flat postfix program over primitive double, integer
+ * and boolean registers. The variables of the tree are resolved to registers
+ * once, when the tree is compiled, so that evaluating it for a set of inputs
+ * (bind, then run) neither walks the tree nor allocates VariableAssignments.
+ * A whole training set can be evaluated at once by binding the program to its
+ * EvaluationColumns (then runColumns), in which case each instruction processes
+ * a column of values, in a tight loop over primitive arrays.
+ *
+ * The program computes the same values as NodeExecutor, including the rounding
+ * and limits that the VariableAssignments of the tree apply to the values they
+ * are set to. Trees that use strings or lists, or that do not type check, are
+ * not compiled (compile returns null) and have to be evaluated by a
+ * NodeExecutor.
+ *
+ * A CompiledNode evaluates into its own registers and stacks, so it must only
+ * be used by one thread at a time.
+ *
+ */
+public class CompiledNode {
+
+	private static final int LOAD_D = 0, LOAD_I = 1, LOAD_B = 2, FALSE = 3, JUMP = 4, JUMP_IF_FALSE = 5;
+
+	private static final int ADD_D = 10, SUBTRACT_D = 11, MULTIPLY_D = 12, DIVIDE_D = 13, POWER_D = 14, COS_D = 15,
+			EXP_D = 16, LOG_D = 17, STORE_D = 18, CAST_ID = 19;
+
+	private static final int ADD_I = 20, SUBTRACT_I = 21, MULTIPLY_I = 22, CAST_DI = 23;
+
+	private static final int AND = 30, OR = 31, NOT = 32, GT_D = 33, LT_D = 34, GT_I = 35, LT_I = 36, EQ_D = 37,
+			EQ_I = 38, EQ_B = 39;
+
+	/*
+	 * A name that is bound to a constant. NodeExecutor would overwrite the
+	 * constant with the input of the same name, for good, so inputs that contain
+	 * such a name are not bound.
+	 */
+	private static final int CONSTANT = -1;
+
+	protected final Datatype returnType;
+
+	/*
+	 * The program: each opcode is followed by its operand, if it has one (a
+	 * register, limit or jump target).
+	 */
+	private final int[] code;
+
+	/*
+	 * For each name, the registers it is bound to, encoded as register * 4 +
+	 * type (0 = double, 1 = integer, 2 = boolean), or CONSTANT.
+	 */
+	private final Map<String, int[]> registersByName;
+
+	private final double[] doubles, resetDoubles;
+	private final int[] ints, resetInts;
+	private final boolean[] booleans, resetBooleans;
+
+	/*
+	 * The limits that are applied when a double (integer) is set, by the
+	 * VariableAssignment of a register or the result of an operator.
+	 */
+	private final boolean[] doubleEnforcing, intEnforcing;
+	private final double[] doubleMin, doubleMax;
+	private final int[] intMin, intMax;
+	private final int[] doubleLimit, intLimit;
+
+	private final double[] doubleStack;
+	private final int[] intStack;
+	private final boolean[] booleanStack;
+
+	/*
+	 * The number of conditionals in the program (which bounds how deeply they
+	 * are nested), and the heights of the stacks of columns (which also hold the
+	 * results of the then branches while the else branches are evaluated).
+	 */
+	private final int conditionals;
+	private final int doubleColumnHeight, intColumnHeight, booleanColumnHeight;
+
+	/*
+	 * For evaluating the rows of EvaluationColumns: the column of each register
+	 * (or null if it holds its reset value in every row), the stacks of
+	 * columns, the conditions of the conditionals that are being evaluated and
+	 * where their branches join (target, and the stack heights there).
+	 */
+	private int rows = -1;
+	private double[][] doubleColumns, doubleColumnStack;
+	private int[][] intColumns, intColumnStack;
+	private boolean[][] booleanColumns, booleanColumnStack, conditions;
+	private int[] joins;
+
+	private CompiledNode(Compiler c) {
+		returnType = c.returnType;
+		code = Arrays.copyOf(c.code, c.length);
+		registersByName = c.registersByName;
+		resetDoubles = Arrays.copyOf(c.resetDoubles, c.doubles);
+		resetInts = Arrays.copyOf(c.resetInts, c.ints);
+		resetBooleans = Arrays.copyOf(c.resetBooleans, c.booleans);
+		doubles = resetDoubles.clone();
+		ints = resetInts.clone();
+		booleans = resetBooleans.clone();
+		doubleLimit = Arrays.copyOf(c.doubleLimit, c.doubles);
+		intLimit = Arrays.copyOf(c.intLimit, c.ints);
+		doubleEnforcing = Arrays.copyOf(c.doubleEnforcing, c.doubleLimits);
+		doubleMin = Arrays.copyOf(c.doubleMin, c.doubleLimits);
+		doubleMax = Arrays.copyOf(c.doubleMax, c.doubleLimits);
+		intEnforcing = Arrays.copyOf(c.intEnforcing, c.intLimits);
+		intMin = Arrays.copyOf(c.intMin, c.intLimits);
+		intMax = Arrays.copyOf(c.intMax, c.intLimits);
+		doubleStack = new double[Math.max(1, c.maxDoubleHeight)];
+		intStack = new int[Math.max(1, c.maxIntHeight)];
+		booleanStack = new boolean[Math.max(1, c.maxBooleanHeight)];
+		conditionals = c.conditionals;
+		doubleColumnHeight = Math.max(1, c.maxDoubleColumns);
+		intColumnHeight = Math.max(1, c.maxIntColumns);
+		booleanColumnHeight = Math.max(1, c.maxBooleanColumns);
+	}
+
+	/**
+	 * Compiles the given tree, or returns null if it cannot be compiled. Resets
+	 * the tree.
+	 *
+	 * @param individual
+	 * @return
+	 */
+	public static CompiledNode compile(Node<?> individual) {
+		individual.reset();
+		Compiler c = new Compiler();
+		c.findConstants(individual);
+		c.returnType = c.emit(individual);
+		if (c.returnType == null)
+			return null;
+		return new CompiledNode(c);
+	}
+
+	public Datatype getReturnType() {
+		return returnType;
+	}
+
+	/**
+	 * Sets the registers to the given inputs (and those that are not given to
+	 * the values they are reset to). Returns false if the inputs cannot be
+	 * bound in the same way as NodeExecutor would assign them, in which case the
+	 * tree has to be evaluated by a NodeExecutor instead.
+	 *
+	 * @param inputs
+	 * @return
+	 */
+	public boolean bind(List<VariableAssignment<?>> inputs) {
+		System.arraycopy(resetDoubles, 0, doubles, 0, doubles.length);
+		System.arraycopy(resetInts, 0, ints, 0, ints.length);
+		System.arraycopy(resetBooleans, 0, booleans, 0, booleans.length);
+		for (VariableAssignment<?> var : inputs) {
+			int[] registers = registersByName.get(var.getName());
+			if (registers == null)
+				continue;
+			Object value = var.getValue();
+			for (int r : registers) {
+				if (r == CONSTANT)
+					return false;
+				int register = r >> 2;
+				switch (r & 3) {
+				case 0:
+					if (value instanceof Double)
+						doubles[register] = storeDouble(((Double) value).doubleValue(), doubleLimit[register]);
+					else if (value instanceof Integer)
+						doubles[register] = storeDouble(((Integer) value).intValue(), doubleLimit[register]);
+					break;
+				case 1:
+					if (value instanceof Integer)
+						ints[register] = storeInt(((Integer) value).intValue(), intLimit[register]);
+					break;
+				default:
+					if (value instanceof Boolean)
+						booleans[register] = ((Boolean) value).booleanValue();
+					else if (value != null)
+						return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Evaluates the program for the values that were last bound.
+	 */
+	public void run() {
+		int d = 0, i = 0, b = 0;
+		int pc = 0;
+		while (pc < code.length) {
+			switch (code[pc++]) {
+			case LOAD_D:
+				doubleStack[d++] = doubles[code[pc++]];
+				break;
+			case LOAD_I:
+				intStack[i++] = ints[code[pc++]];
+				break;
+			case LOAD_B:
+				booleanStack[b++] = booleans[code[pc++]];
+				break;
+			case FALSE:
+				booleanStack[b++] = false;
+				break;
+			case JUMP:
+				pc = code[pc];
+				break;
+			case JUMP_IF_FALSE:
+				if (booleanStack[--b])
+					pc++;
+				else
+					pc = code[pc];
+				break;
+			case ADD_D:
+				d--;
+				doubleStack[d - 1] = storeDouble(doubleStack[d - 1] + doubleStack[d], code[pc++]);
+				break;
+			case SUBTRACT_D:
+				d--;
+				doubleStack[d - 1] = storeDouble(doubleStack[d - 1] - doubleStack[d], code[pc++]);
+				break;
+			case MULTIPLY_D:
+				d--;
+				doubleStack[d - 1] = storeDouble(doubleStack[d - 1] * doubleStack[d], code[pc++]);
+				break;
+			case DIVIDE_D:
+				d--;
+				doubleStack[d - 1] = storeDouble(doubleStack[d - 1] / doubleStack[d], code[pc++]);
+				break;
+			case POWER_D:
+				d--;
+				doubleStack[d - 1] = storeDouble(Math.pow(doubleStack[d - 1], doubleStack[d]), code[pc++]);
+				break;
+			case COS_D:
+				doubleStack[d - 1] = storeDouble(Math.cos(doubleStack[d - 1]), code[pc++]);
+				break;
+			case EXP_D:
+				doubleStack[d - 1] = storeDouble(Math.exp(doubleStack[d - 1]), code[pc++]);
+				break;
+			case LOG_D:
+				doubleStack[d - 1] = storeDouble(Math.log(doubleStack[d - 1]), code[pc++]);
+				break;
+			case STORE_D:
+				doubleStack[d - 1] = storeDouble(doubleStack[d - 1], code[pc++]);
+				break;
+			case CAST_ID:
+				doubleStack[d++] = storeDouble(intStack[--i], code[pc++]);
+				break;
+			case ADD_I:
+				i--;
+				intStack[i - 1] = storeInt(intStack[i - 1] + intStack[i], code[pc++]);
+				break;
+			case SUBTRACT_I:
+				i--;
+				intStack[i - 1] = storeInt(intStack[i - 1] - intStack[i], code[pc++]);
+				break;
+			case MULTIPLY_I:
+				i--;
+				intStack[i - 1] = storeInt(intStack[i - 1] * intStack[i], code[pc++]);
+				break;
+			case CAST_DI:
+				double value = doubleStack[--d];
+				intStack[i++] = Double.isInfinite(value) || Double.isNaN(value) ? 0 : (int) value;
+				break;
+			case AND:
+				b--;
+				booleanStack[b - 1] = booleanStack[b] && booleanStack[b - 1];
+				break;
+			case OR:
+				b--;
+				booleanStack[b - 1] = booleanStack[b] || booleanStack[b - 1];
+				break;
+			case NOT:
+				booleanStack[b - 1] = !booleanStack[b - 1];
+				break;
+			case GT_D:
+				d -= 2;
+				booleanStack[b++] = doubleStack[d] > doubleStack[d + 1];
+				break;
+			case LT_D:
+				d -= 2;
+				booleanStack[b++] = doubleStack[d] < doubleStack[d + 1];
+				break;
+			case GT_I:
+				i -= 2;
+				booleanStack[b++] = intStack[i] > intStack[i + 1];
+				break;
+			case LT_I:
+				i -= 2;
+				booleanStack[b++] = intStack[i] < intStack[i + 1];
+				break;
+			case EQ_D:
+				// (as Double.equals)
+				d -= 2;
+				booleanStack[b++] = Double.doubleToLongBits(doubleStack[d]) == Double
+						.doubleToLongBits(doubleStack[d + 1]);
+				break;
+			case EQ_I:
+				i -= 2;
+				booleanStack[b++] = intStack[i] == intStack[i + 1];
+				break;
+			case EQ_B:
+				b--;
+				booleanStack[b - 1] = booleanStack[b - 1] == booleanStack[b];
+				break;
+			default:
+				throw new IllegalStateException("Unknown opcode " + code[pc - 1]);
+			}
+		}
+	}
+
+	public double doubleResult() {
+		return doubleStack[0];
+	}
+
+	public int intResult() {
+		return intStack[0];
+	}
+
+	public boolean booleanResult() {
+		return booleanStack[0];
+	}
+
+	/**
+	 * The result of the last run, as the tree itself would return it.
+	 *
+	 * @return
+	 */
+	public Object result() {
+		if (returnType == Datatype.DOUBLE)
+			return doubleResult();
+		else if (returnType == Datatype.INTEGER)
+			return intResult();
+		else
+			return booleanResult();
+	}
+
+	/**
+	 * Binds the registers to the columns of a training set, to evaluate the
+	 * program for all of its rows at once (with runColumns). Returns false if
+	 * some row cannot be bound in the same way as NodeExecutor would assign it,
+	 * in which case the rows have to be evaluated by a NodeExecutor instead.
+	 *
+	 * @param columns
+	 * @return
+	 */
+	public boolean bind(EvaluationColumns columns) {
+		if (columns.size() != rows)
+			allocate(columns.size());
+		Arrays.fill(doubleColumns, null);
+		Arrays.fill(intColumns, null);
+		Arrays.fill(booleanColumns, null);
+		for (Map.Entry<String, int[]> entry : registersByName.entrySet()) {
+			EvaluationColumns.Column column = columns.getColumn(entry.getKey());
+			if (column == null)
+				continue;
+			for (int r : entry.getValue()) {
+				if (r == CONSTANT)
+					return false;
+				int register = r >> 2;
+				switch (r & 3) {
+				case 0:
+					doubleColumns[register] = doubleColumn(column, register);
+					break;
+				case 1:
+					intColumns[register] = intColumn(column, register);
+					break;
+				default:
+					if (column.notBoolean)
+						return false;
+					booleanColumns[register] = booleanColumn(column, register);
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Evaluates the program for every row of the columns that were last bound.
+	 * Each instruction processes a whole column, and both branches of a
+	 * conditional are evaluated (for all rows), and then selected between row
+	 * by row.
+	 */
+	public void runColumns() {
+		runColumns(0, rows);
+	}
+
+	/**
+	 * Evaluates the program (as runColumns does) for the rows from the first
+	 * given one up to (but not including) the second, so that the rows can be
+	 * evaluated a block at a time.
+	 *
+	 * @param from
+	 * @param to
+	 */
+	public void runColumns(int from, int to) {
+		int d = 0, i = 0, b = 0, c = 0, j = 0;
+		int pc = 0;
+		while (true) {
+			while (j > 0 && joins[j * 4 - 4] == pc) {
+				j--;
+				boolean[] condition = conditions[--c];
+				if (d > joins[j * 4 + 1]) {
+					d--;
+					select(condition, doubleColumnStack[d - 1], doubleColumnStack[d], from, to);
+				} else if (i > joins[j * 4 + 2]) {
+					i--;
+					select(condition, intColumnStack[i - 1], intColumnStack[i], from, to);
+				} else {
+					b--;
+					select(condition, booleanColumnStack[b - 1], booleanColumnStack[b], from, to);
+				}
+			}
+			if (pc >= code.length)
+				break;
+			int opcode = code[pc++];
+			switch (opcode) {
+			case LOAD_D:
+				load(doubleColumns[code[pc]], resetDoubles[code[pc++]], doubleColumnStack[d++], from, to);
+				break;
+			case LOAD_I:
+				load(intColumns[code[pc]], resetInts[code[pc++]], intColumnStack[i++], from, to);
+				break;
+			case LOAD_B:
+				load(booleanColumns[code[pc]], resetBooleans[code[pc++]], booleanColumnStack[b++], from, to);
+				break;
+			case FALSE:
+				Arrays.fill(booleanColumnStack[b++], from, to, false);
+				break;
+			case JUMP:
+				// (the else branch is evaluated as well, and joined at the target)
+				joins[j * 4] = code[pc++];
+				joins[j * 4 + 1] = d;
+				joins[j * 4 + 2] = i;
+				joins[j * 4 + 3] = b;
+				j++;
+				break;
+			case JUMP_IF_FALSE: {
+				pc++;
+				b--;
+				boolean[] condition = booleanColumnStack[b];
+				booleanColumnStack[b] = conditions[c];
+				conditions[c++] = condition;
+				break;
+			}
+			case ADD_D:
+			case SUBTRACT_D:
+			case MULTIPLY_D:
+			case DIVIDE_D:
+			case POWER_D: {
+				d--;
+				double[] x = doubleColumnStack[d - 1], y = doubleColumnStack[d];
+				int limit = code[pc++];
+				if (opcode == ADD_D) {
+					for (int k = from; k < to; k++) {
+						x[k] = storeDouble(x[k] + y[k], limit);
+					}
+				} else if (opcode == SUBTRACT_D) {
+					for (int k = from; k < to; k++) {
+						x[k] = storeDouble(x[k] - y[k], limit);
+					}
+				} else if (opcode == MULTIPLY_D) {
+					for (int k = from; k < to; k++) {
+						x[k] = storeDouble(x[k] * y[k], limit);
+					}
+				} else if (opcode == DIVIDE_D) {
+					for (int k = from; k < to; k++) {
+						x[k] = storeDouble(x[k] / y[k], limit);
+					}
+				} else {
+					for (int k = from; k < to; k++) {
+						x[k] = storeDouble(Math.pow(x[k], y[k]), limit);
+					}
+				}
+				break;
+			}
+			case COS_D:
+			case EXP_D:
+			case LOG_D:
+			case STORE_D: {
+				double[] x = doubleColumnStack[d - 1];
+				int limit = code[pc++];
+				if (opcode == COS_D) {
+					for (int k = from; k < to; k++) {
+						x[k] = storeDouble(Math.cos(x[k]), limit);
+					}
+				} else if (opcode == EXP_D) {
+					for (int k = from; k < to; k++) {
+						x[k] = storeDouble(Math.exp(x[k]), limit);
+					}
+				} else if (opcode == LOG_D) {
+					for (int k = from; k < to; k++) {
+						x[k] = storeDouble(Math.log(x[k]), limit);
+					}
+				} else {
+					for (int k = from; k < to; k++) {
+						x[k] = storeDouble(x[k], limit);
+					}
+				}
+				break;
+			}
+			case CAST_ID: {
+				int[] x = intColumnStack[--i];
+				double[] y = doubleColumnStack[d++];
+				int limit = code[pc++];
+				for (int k = from; k < to; k++) {
+					y[k] = storeDouble(x[k], limit);
+				}
+				break;
+			}
+			case ADD_I:
+			case SUBTRACT_I:
+			case MULTIPLY_I: {
+				i--;
+				int[] x = intColumnStack[i - 1], y = intColumnStack[i];
+				if (opcode == ADD_I) {
+					for (int k = from; k < to; k++) {
+						x[k] += y[k];
+					}
+				} else if (opcode == SUBTRACT_I) {
+					for (int k = from; k < to; k++) {
+						x[k] -= y[k];
+					}
+				} else {
+					for (int k = from; k < to; k++) {
+						x[k] *= y[k];
+					}
+				}
+				int limit = code[pc++];
+				if (intEnforcing[limit]) {
+					for (int k = from; k < to; k++) {
+						x[k] = storeInt(x[k], limit);
+					}
+				}
+				break;
+			}
+			case CAST_DI: {
+				double[] x = doubleColumnStack[--d];
+				int[] y = intColumnStack[i++];
+				for (int k = from; k < to; k++) {
+					y[k] = Double.isInfinite(x[k]) || Double.isNaN(x[k]) ? 0 : (int) x[k];
+				}
+				break;
+			}
+			case AND: {
+				b--;
+				boolean[] x = booleanColumnStack[b - 1], y = booleanColumnStack[b];
+				for (int k = from; k < to; k++) {
+					x[k] &= y[k];
+				}
+				break;
+			}
+			case OR: {
+				b--;
+				boolean[] x = booleanColumnStack[b - 1], y = booleanColumnStack[b];
+				for (int k = from; k < to; k++) {
+					x[k] |= y[k];
+				}
+				break;
+			}
+			case NOT: {
+				boolean[] x = booleanColumnStack[b - 1];
+				for (int k = from; k < to; k++) {
+					x[k] = !x[k];
+				}
+				break;
+			}
+			case GT_D:
+			case LT_D:
+			case EQ_D: {
+				d -= 2;
+				double[] x = doubleColumnStack[d], y = doubleColumnStack[d + 1];
+				boolean[] z = booleanColumnStack[b++];
+				if (opcode == GT_D) {
+					for (int k = from; k < to; k++) {
+						z[k] = x[k] > y[k];
+					}
+				} else if (opcode == LT_D) {
+					for (int k = from; k < to; k++) {
+						z[k] = x[k] < y[k];
+					}
+				} else {
+					for (int k = from; k < to; k++) {
+						z[k] = Double.doubleToLongBits(x[k]) == Double.doubleToLongBits(y[k]);
+					}
+				}
+				break;
+			}
+			case GT_I:
+			case LT_I:
+			case EQ_I: {
+				i -= 2;
+				int[] x = intColumnStack[i], y = intColumnStack[i + 1];
+				boolean[] z = booleanColumnStack[b++];
+				if (opcode == GT_I) {
+					for (int k = from; k < to; k++) {
+						z[k] = x[k] > y[k];
+					}
+				} else if (opcode == LT_I) {
+					for (int k = from; k < to; k++) {
+						z[k] = x[k] < y[k];
+					}
+				} else {
+					for (int k = from; k < to; k++) {
+						z[k] = x[k] == y[k];
+					}
+				}
+				break;
+			}
+			case EQ_B: {
+				b--;
+				boolean[] x = booleanColumnStack[b - 1], y = booleanColumnStack[b];
+				for (int k = from; k < to; k++) {
+					x[k] = x[k] == y[k];
+				}
+				break;
+			}
+			default:
+				throw new IllegalStateException("Unknown opcode " + opcode);
+			}
+		}
+	}
+
+	public double doubleResult(int row) {
+		return doubleColumnStack[0][row];
+	}
+
+	public int intResult(int row) {
+		return intColumnStack[0][row];
+	}
+
+	public boolean booleanResult(int row) {
+		return booleanColumnStack[0][row];
+	}
+
+	/**
+	 * The result for the given row of the last runColumns, as the tree itself
+	 * would return it.
+	 *
+	 * @param row
+	 * @return
+	 */
+	public Object result(int row) {
+		if (returnType == Datatype.DOUBLE)
+			return doubleResult(row);
+		else if (returnType == Datatype.INTEGER)
+			return intResult(row);
+		else
+			return booleanResult(row);
+	}
+
+	private void allocate(int n) {
+		rows = n;
+		doubleColumns = new double[doubles.length][];
+		intColumns = new int[ints.length][];
+		booleanColumns = new boolean[booleans.length][];
+		doubleColumnStack = new double[doubleColumnHeight][n];
+		intColumnStack = new int[intColumnHeight][n];
+		booleanColumnStack = new boolean[booleanColumnHeight][n];
+		conditions = new boolean[conditionals][n];
+		joins = new int[conditionals * 4];
+	}
+
+	/*
+	 * The values of a double register for each row (columns that are complete
+	 * and do not have to be limited are shared rather than copied).
+	 */
+	private double[] doubleColumn(EvaluationColumns.Column column, int register) {
+		int limit = doubleLimit[register];
+		if (column.allDoubles && !doubleEnforcing[limit])
+			return column.rounded;
+		double[] values = new double[rows];
+		for (int k = 0; k < rows; k++) {
+			if (!column.isDouble[k])
+				values[k] = resetDoubles[register];
+			else if (doubleEnforcing[limit])
+				values[k] = storeDouble(column.doubles[k], limit);
+			else
+				values[k] = column.rounded[k];
+		}
+		return values;
+	}
+
+	private int[] intColumn(EvaluationColumns.Column column, int register) {
+		int limit = intLimit[register];
+		if (column.allInts && !intEnforcing[limit])
+			return column.ints;
+		int[] values = new int[rows];
+		for (int k = 0; k < rows; k++) {
+			values[k] = column.isInt[k] ? storeInt(column.ints[k], limit) : resetInts[register];
+		}
+		return values;
+	}
+
+	private boolean[] booleanColumn(EvaluationColumns.Column column, int register) {
+		if (column.allBooleans)
+			return column.booleans;
+		boolean[] values = new boolean[rows];
+		for (int k = 0; k < rows; k++) {
+			values[k] = column.isBoolean[k] ? column.booleans[k] : resetBooleans[register];
+		}
+		return values;
+	}
+
+	private static void load(double[] column, double reset, double[] to, int from, int until) {
+		if (column == null)
+			Arrays.fill(to, from, until, reset);
+		else
+			System.arraycopy(column, from, to, from, until - from);
+	}
+
+	private static void load(int[] column, int reset, int[] to, int from, int until) {
+		if (column == null)
+			Arrays.fill(to, from, until, reset);
+		else
+			System.arraycopy(column, from, to, from, until - from);
+	}
+
+	private static void load(boolean[] column, boolean reset, boolean[] to, int from, int until) {
+		if (column == null)
+			Arrays.fill(to, from, until, reset);
+		else
+			System.arraycopy(column, from, to, from, until - from);
+	}
+
+	private static void select(boolean[] condition, double[] then, double[] otherwise, int from, int to) {
+		for (int k = from; k < to; k++) {
+			then[k] = condition[k] ? then[k] : otherwise[k];
+		}
+	}
+
+	private static void select(boolean[] condition, int[] then, int[] otherwise, int from, int to) {
+		for (int k = from; k < to; k++) {
+			then[k] = condition[k] ? then[k] : otherwise[k];
+		}
+	}
+
+	private static void select(boolean[] condition, boolean[] then, boolean[] otherwise, int from, int to) {
+		for (int k = from; k < to; k++) {
+			then[k] = condition[k] ? then[k] : otherwise[k];
+		}
+	}
+
+	/*
+	 * The value a DoubleVariableAssignment with the given limits holds after
+	 * being set to value.
+	 */
+	private double storeDouble(double value, int limit) {
+		double stored = DoubleVariableAssignment.round(value, 3);
+		if (Double.isInfinite(value) || Double.isNaN(value))
+			value = 0D;
+		if (doubleEnforcing[limit]) {
+			if (value > doubleMax[limit])
+				stored = doubleMax[limit];
+			else if (value < doubleMin[limit])
+				stored = doubleMin[limit];
+		}
+		return stored;
+	}
+
+	private int storeInt(int value, int limit) {
+		if (intEnforcing[limit]) {
+			if (value > intMax[limit])
+				return intMax[limit];
+			else if (value < intMin[limit])
+				return intMin[limit];
+		}
+		return value;
+	}
+
+	private static class Compiler {
+
+		Datatype returnType;
+
+		int[] code = new int[32];
+		int length;
+
+		Map<String, int[]> registersByName = new HashMap<String, int[]>();
+
+		double[] resetDoubles = new double[4];
+		int[] resetInts = new int[4];
+		boolean[] resetBooleans = new boolean[4];
+		int[] doubleLimit = new int[4], intLimit = new int[4];
+		int doubles, ints, booleans;
+
+		boolean[] doubleEnforcing = new boolean[4], intEnforcing = new boolean[4];
+		double[] doubleMin = new double[4], doubleMax = new double[4];
+		int[] intMin = new int[4], intMax = new int[4];
+		int doubleLimits, intLimits;
+
+		int doubleHeight, intHeight, booleanHeight;
+		int maxDoubleHeight, maxIntHeight, maxBooleanHeight;
+		int heldDoubles, heldInts, heldBooleans;
+		int maxDoubleColumns, maxIntColumns, maxBooleanColumns;
+		int conditionals;
+
+		/*
+		 * Marks the names of all constants in the tree, as NodeExecutor assigns
+		 * inputs to every terminal, whether it is evaluated or not.
+		 */
+		void findConstants(Node<?> node) {
+			if (node instanceof Terminal) {
+				Terminal<?> term = (Terminal<?>) node;
+				if (term.getTerminal() != null && term.isConstant())
+					registersByName.put(term.getTerminal().getName(), new int[] { CONSTANT });
+			}
+			for (Node<?> child : node.getChildren()) {
+				findConstants(child);
+			}
+		}
+
+		/*
+		 * Appends the code that evaluates node, and returns its type, or null if
+		 * it cannot be compiled.
+		 */
+		Datatype emit(Node<?> node) {
+			Class<?> c = node.getClass();
+			List<Node<?>> children = node.getChildren();
+			int limit = -1;
+			if (node instanceof DoubleNonTerminal && c != CastIntegersOperator.class) {
+				limit = doubleLimit(((DoubleNonTerminal) node).getResVar(), true);
+				if (limit == -1)
+					return null;
+			} else if (node instanceof IntegerNonTerminal && c != CastIntegersOperator.class) {
+				limit = intLimit(((IntegerNonTerminal) node).getResVar(), true);
+				if (limit == -1)
+					return null;
+			}
+			if (c == DoubleVariableAssignmentTerminal.class || c == IntegerVariableAssignmentTerminal.class
+					|| c == BooleanVariableAssignmentTerminal.class)
+				return emitTerminal((Terminal<?>) node);
+			else if (c == AddDoublesOperator.class)
+				return emitBinary(children, Datatype.DOUBLE, ADD_D, limit);
+			else if (c == SubtractDoublesOperator.class)
+				return emitBinary(children, Datatype.DOUBLE, SUBTRACT_D, limit);
+			else if (c == MultiplyDoublesOperator.class)
+				return emitBinary(children, Datatype.DOUBLE, MULTIPLY_D, limit);
+			else if (c == DivideDoublesOperator.class)
+				return emitBinary(children, Datatype.DOUBLE, DIVIDE_D, limit);
+			else if (c == PwrDoublesOperator.class)
+				return emitBinary(children, Datatype.DOUBLE, POWER_D, limit);
+			else if (c == CosDoublesOperator.class)
+				return emitUnary(children, Datatype.DOUBLE, COS_D, limit);
+			else if (c == ExpDoublesOperator.class)
+				return emitUnary(children, Datatype.DOUBLE, EXP_D, limit);
+			else if (c == LogDoublesOperator.class)
+				return emitUnary(children, Datatype.DOUBLE, LOG_D, limit);
+			else if (c == CastDoublesOperator.class)
+				return emitCastToDouble(children, limit);
+			else if (c == AddIntegersOperator.class)
+				return emitBinary(children, Datatype.INTEGER, ADD_I, limit);
+			else if (c == SubtractIntegersOperator.class)
+				return emitBinary(children, Datatype.INTEGER, SUBTRACT_I, limit);
+			else if (c == MultiplyIntegersOperator.class)
+				return emitBinary(children, Datatype.INTEGER, MULTIPLY_I, limit);
+			else if (c == CastIntegersOperator.class)
+				return emitUnary(children, Datatype.DOUBLE, CAST_DI, -1);
+			else if (c == IfThenElseOperator.class || c == IfThenElseIntegerOperator.class)
+				return emitIfThenElse(children);
+			else if (c == AndBooleanOperator.class)
+				return emitBinary(children, Datatype.BOOLEAN, AND, -1);
+			else if (c == OrBooleanOperator.class)
+				return emitBinary(children, Datatype.BOOLEAN, OR, -1);
+			else if (c == NotBooleanOperator.class)
+				return emitUnary(children, Datatype.BOOLEAN, NOT, -1);
+			else if (c == GTBooleanDoublesOperator.class)
+				return emitBinary(children, Datatype.DOUBLE, GT_D, -1);
+			else if (c == LTBooleanDoublesOperator.class)
+				return emitBinary(children, Datatype.DOUBLE, LT_D, -1);
+			else if (c == GTBooleanIntegersOperator.class)
+				return emitBinary(children, Datatype.INTEGER, GT_I, -1);
+			else if (c == LTBooleanIntegersOperator.class)
+				return emitBinary(children, Datatype.INTEGER, LT_I, -1);
+			else if (c == EQBooleanOperator.class)
+				return emitEquals(children);
+			return null;
+		}
+
+		Datatype emitTerminal(Terminal<?> term) {
+			VariableAssignment<?> var = term.getTerminal();
+			if (var == null || var.isRestricted() || var.getValue() == null)
+				return null;
+			Datatype type;
+			int register;
+			if (var.getClass() == DoubleVariableAssignment.class) {
+				DoubleVariableAssignment dvar = (DoubleVariableAssignment) var;
+				int limit = doubleLimit(dvar, dvar.isEnforcing());
+				if (limit == -1)
+					return null;
+				register = doubles++;
+				resetDoubles = grow(resetDoubles, doubles);
+				doubleLimit = grow(doubleLimit, doubles);
+				resetDoubles[register] = dvar.getValue();
+				doubleLimit[register] = limit;
+				type = Datatype.DOUBLE;
+				instruction(LOAD_D, register);
+				doubleHeight++;
+			} else if (var.getClass() == IntegerVariableAssignment.class) {
+				IntegerVariableAssignment ivar = (IntegerVariableAssignment) var;
+				int limit = intLimit(ivar, ivar.isEnforcing());
+				if (limit == -1)
+					return null;
+				register = ints++;
+				resetInts = grow(resetInts, ints);
+				intLimit = grow(intLimit, ints);
+				resetInts[register] = ivar.getValue();
+				intLimit[register] = limit;
+				type = Datatype.INTEGER;
+				instruction(LOAD_I, register);
+				intHeight++;
+			} else if (var.getClass() == BooleanVariableAssignment.class) {
+				register = booleans++;
+				resetBooleans = grow(resetBooleans, booleans);
+				resetBooleans[register] = ((BooleanVariableAssignment) var).getValue();
+				type = Datatype.BOOLEAN;
+				instruction(LOAD_B, register);
+				booleanHeight++;
+			} else
+				return null;
+			if (!term.isConstant()) {
+				String name = var.getName();
+				int[] registers = registersByName.get(name);
+				int encoded = register * 4 + (type == Datatype.DOUBLE ? 0 : type == Datatype.INTEGER ? 1 : 2);
+				if (registers == null) {
+					registersByName.put(name, new int[] { encoded });
+				} else {
+					registers = Arrays.copyOf(registers, registers.length + 1);
+					registers[registers.length - 1] = encoded;
+					registersByName.put(name, registers);
+				}
+			}
+			heights();
+			return type;
+		}
+
+		Datatype emitUnary(List<Node<?>> children, Datatype argument, int opcode, int operand) {
+			if (children.isEmpty() || emit(children.get(0)) != argument)
+				return null;
+			return operator(opcode, operand, argument, 1);
+		}
+
+		Datatype emitBinary(List<Node<?>> children, Datatype arguments, int opcode, int operand) {
+			if (children.size() < 2 || emit(children.get(0)) != arguments || emit(children.get(1)) != arguments)
+				return null;
+			return operator(opcode, operand, arguments, 2);
+		}
+
+		Datatype emitCastToDouble(List<Node<?>> children, int limit) {
+			if (children.isEmpty())
+				return null;
+			// (the value of the child is printed and parsed again, which gives
+			// back the same double)
+			Datatype type = emit(children.get(0));
+			if (type == Datatype.INTEGER)
+				return operator(CAST_ID, limit, Datatype.INTEGER, 1);
+			else if (type == Datatype.DOUBLE)
+				return operator(STORE_D, limit, Datatype.DOUBLE, 1);
+			return null;
+		}
+
+		Datatype emitEquals(List<Node<?>> children) {
+			if (children.size() < 2)
+				return null;
+			int start = length;
+			Datatype from = emit(children.get(0));
+			Datatype to = emit(children.get(1));
+			if (from == null || to == null)
+				return null;
+			if (from != to) {
+				// values of different types are never equal
+				length = start;
+				pop(from);
+				pop(to);
+				instruction(FALSE);
+				booleanHeight++;
+				heights();
+				return Datatype.BOOLEAN;
+			}
+			int opcode = from == Datatype.DOUBLE ? EQ_D : from == Datatype.INTEGER ? EQ_I : EQ_B;
+			return operator(opcode, -1, from, 2);
+		}
+
+		Datatype emitIfThenElse(List<Node<?>> children) {
+			if (children.size() < 3 || emit(children.get(0)) != Datatype.BOOLEAN)
+				return null;
+			booleanHeight--;
+			conditionals++;
+			instruction(JUMP_IF_FALSE, 0);
+			int ifFalse = length - 1;
+			Datatype then = emit(children.get(1));
+			if (then == null)
+				return null;
+			instruction(JUMP, 0);
+			int end = length - 1;
+			code[ifFalse] = length;
+			pop(then);
+			// (the result of the then branch is held on the stack of columns
+			// while the else branch is evaluated)
+			held(then, 1);
+			if (emit(children.get(2)) != then)
+				return null;
+			held(then, -1);
+			code[end] = length;
+			return then;
+		}
+
+		/*
+		 * Appends an operator that takes the given number of arguments (off the
+		 * stack of their type) and pushes its result.
+		 */
+		Datatype operator(int opcode, int operand, Datatype arguments, int count) {
+			if (operand == -1)
+				instruction(opcode);
+			else
+				instruction(opcode, operand);
+			for (int i = 0; i < count; i++) {
+				pop(arguments);
+			}
+			Datatype result;
+			if (opcode >= AND)
+				result = Datatype.BOOLEAN;
+			else if (opcode >= ADD_I)
+				result = Datatype.INTEGER;
+			else
+				result = Datatype.DOUBLE;
+			if (result == Datatype.DOUBLE)
+				doubleHeight++;
+			else if (result == Datatype.INTEGER)
+				intHeight++;
+			else
+				booleanHeight++;
+			heights();
+			return result;
+		}
+
+		void pop(Datatype type) {
+			if (type == Datatype.DOUBLE)
+				doubleHeight--;
+			else if (type == Datatype.INTEGER)
+				intHeight--;
+			else
+				booleanHeight--;
+		}
+
+		void held(Datatype type, int count) {
+			if (type == Datatype.DOUBLE)
+				heldDoubles += count;
+			else if (type == Datatype.INTEGER)
+				heldInts += count;
+			else
+				heldBooleans += count;
+		}
+
+		void heights() {
+			maxDoubleHeight = Math.max(maxDoubleHeight, doubleHeight);
+			maxIntHeight = Math.max(maxIntHeight, intHeight);
+			maxBooleanHeight = Math.max(maxBooleanHeight, booleanHeight);
+			maxDoubleColumns = Math.max(maxDoubleColumns, doubleHeight + heldDoubles);
+			maxIntColumns = Math.max(maxIntColumns, intHeight + heldInts);
+			maxBooleanColumns = Math.max(maxBooleanColumns, booleanHeight + heldBooleans);
+		}
+
+		void instruction(int... words) {
+			code = grow(code, length + words.length);
+			for (int word : words) {
+				code[length++] = word;
+			}
+		}
+
+		/*
+		 * Adds the limits that setting the given variable applies (numeric
+		 * operators set their result on a copy of their result variable that
+		 * enforces its limits), or returns -1 if they are missing.
+		 */
+		int doubleLimit(NumberVariableAssignment<Double> var, boolean enforcing) {
+			if (var == null || (enforcing && (var.getMin() == null || var.getMax() == null)))
+				return -1;
+			int limit = doubleLimits++;
+			doubleEnforcing = grow(doubleEnforcing, doubleLimits);
+			doubleMin = grow(doubleMin, doubleLimits);
+			doubleMax = grow(doubleMax, doubleLimits);
+			doubleEnforcing[limit] = enforcing;
+			if (enforcing) {
+				doubleMin[limit] = var.getMin();
+				doubleMax[limit] = var.getMax();
+			}
+			return limit;
+		}
+
+		int intLimit(NumberVariableAssignment<Integer> var, boolean enforcing) {
+			if (var == null)
+				return -1;
+			int limit = intLimits++;
+			intEnforcing = grow(intEnforcing, intLimits);
+			intMin = grow(intMin, intLimits);
+			intMax = grow(intMax, intLimits);
+			intEnforcing[limit] = enforcing;
+			if (enforcing) {
+				intMin[limit] = IntegerVariableAssignment.getEnforcedMin();
+				intMax[limit] = IntegerVariableAssignment.getEnforcedMax();
+			}
+			return limit;
+		}
+
+		static int[] grow(int[] array, int size) {
+			return size <= array.length ? array : Arrays.copyOf(array, Math.max(size, array.length * 2));
+		}
+
+		static double[] grow(double[] array, int size) {
+			return size <= array.length ? array : Arrays.copyOf(array, Math.max(size, array.length * 2));
+		}
+
+		static boolean[] grow(boolean[] array, int size) {
+			return size <= array.length ? array : Arrays.copyOf(array, Math.max(size, array.length * 2));
+		}
+	}
+
+}
@@ -0,0 +1,158 @@
+package mint.inference.gp;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.apache.commons.collections4.MultiValuedMap;
+
+import mint.tracedata.types.DoubleVariableAssignment;
+import mint.tracedata.types.VariableAssignment;
+
+/**
+ *
+ * A training set (a map from lists of inputs to outputs) converted to columns:
+ * one primitive column per input variable, and a column of expected outputs,
+ * with one row per entry of the map (in the order of its entries). A
+ * CompiledNode can be bound to the columns to evaluate a GP tree for every row
+ * at once.
+ *
+ * The training set does not change during a GP run, so it only has to be
+ * converted once per run, and the columns can then be shared (read only) by all
+ * the fitness functions of the run.
+ *
+ */
+public class EvaluationColumns {
+
+	/**
+	 * The values of one input variable. A NodeExecutor assigns the value of
+	 * every input with the name of a variable to the terminals of that variable
+	 * that it fits, so for each row the column records the last value of each
+	 * type that the input took.
+	 */
+	public static class Column {
+
+		/*
+		 * The last Double or Integer value (as a double terminal would take it),
+		 * and that value rounded as a double terminal stores it.
+		 */
+		final double[] doubles, rounded;
+		final boolean[] isDouble;
+
+		final int[] ints;
+		final boolean[] isInt;
+
+		final boolean[] booleans;
+		final boolean[] isBoolean;
+
+		/*
+		 * Whether there is a value for every row, and whether there is a value
+		 * that is not a boolean (and that a boolean terminal cannot take).
+		 */
+		boolean allDoubles, allInts, allBooleans, notBoolean;
+
+		Column(int rows) {
+			doubles = new double[rows];
+			rounded = new double[rows];
+			isDouble = new boolean[rows];
+			ints = new int[rows];
+			isInt = new boolean[rows];
+			booleans = new boolean[rows];
+			isBoolean = new boolean[rows];
+		}
+
+		void set(int row, Object value) {
+			if (value instanceof Double || value instanceof Integer) {
+				doubles[row] = ((Number) value).doubleValue();
+				isDouble[row] = true;
+			}
+			if (value instanceof Integer) {
+				ints[row] = ((Integer) value).intValue();
+				isInt[row] = true;
+			}
+			if (value instanceof Boolean) {
+				booleans[row] = ((Boolean) value).booleanValue();
+				isBoolean[row] = true;
+			} else if (value != null)
+				notBoolean = true;
+		}
+
+		void complete() {
+			allDoubles = allInts = allBooleans = true;
+			for (int row = 0; row < doubles.length; row++) {
+				if (isDouble[row])
+					rounded[row] = DoubleVariableAssignment.round(doubles[row], 3);
+				allDoubles &= isDouble[row];
+				allInts &= isInt[row];
+				allBooleans &= isBoolean[row];
+			}
+		}
+	}
+
+	protected final int rows;
+	protected final List<List<VariableAssignment<?>>> inputs;
+	protected final VariableAssignment<?>[] outputs;
+	protected final Object[] expected;
+	protected final Map<String, Column> columns;
+
+	public EvaluationColumns(MultiValuedMap<List<VariableAssignment<?>>, VariableAssignment<?>> evals) {
+		rows = evals.size();
+		inputs = new ArrayList<List<VariableAssignment<?>>>(rows);
+		outputs = new VariableAssignment<?>[rows];
+		expected = new Object[rows];
+		columns = new HashMap<String, Column>();
+		int row = 0;
+		for (Entry<List<VariableAssignment<?>>, VariableAssignment<?>> entry : evals.entries()) {
+			inputs.add(entry.getKey());
+			outputs[row] = entry.getValue();
+			expected[row] = entry.getValue().getValue();
+			for (VariableAssignment<?> var : entry.getKey()) {
+				Column column = columns.get(var.getName());
+				if (column == null) {
+					column = new Column(rows);
+					columns.put(var.getName(), column);
+				}
+				column.set(row, var.getValue());
+			}
+			row++;
+		}
+		for (Column column : columns.values()) {
+			column.complete();
+		}
+	}
+
+	public int size() {
+		return rows;
+	}
+
+	/**
+	 * The column of the given input variable, or null if no row has an input of
+	 * that name.
+	 *
+	 * @param name
+	 * @return
+	 */
+	public Column getColumn(String name) {
+		return columns.get(name);
+	}
+
+	public List<VariableAssignment<?>> getInputs(int row) {
+		return inputs.get(row);
+	}
+
+	public VariableAssignment<?> getOutput(int row) {
+		return outputs[row];
+	}
+
+	/**
+	 * The expected output of the given row (the value of its output).
+	 *
+	 * @param row
+	 * @return
+	 */
+	public Object getExpected(int row) {
+		return expected[row];
+	}
+}
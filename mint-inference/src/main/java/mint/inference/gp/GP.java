@@ -3,6 +3,7 @@ package mint.inference.gp;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 
 import org.apache.commons.collections4.MultiValuedMap;
 import org.apache.log4j.Logger;
@@ -10,6 +11,7 @@ import org.apache.log4j.Logger;
 import mint.inference.evo.AbstractEvo;
 import mint.inference.evo.Chromosome;
 import mint.inference.evo.GPConfiguration;
+import mint.inference.evo.TournamentSelection;
 import mint.inference.gp.tree.Node;
 import mint.tracedata.types.BooleanVariableAssignment;
 import mint.tracedata.types.DoubleVariableAssignment;
@@ -26,6 +28,8 @@ public abstract class GP<T> extends AbstractEvo {
 	protected boolean mem_dist = false;
 	protected MultiValuedMap<List<VariableAssignment<?>>, T> evals;
 	protected Map<Node<?>, List<Double>> distances;
+	protected EvaluationColumns columns;
+	protected TournamentSelection selection = null;
 
 	/**
 	 * Takes as input a random program generator, a training set (a map from a list
@@ -41,6 +45,51 @@ public abstract class GP<T> extends AbstractEvo {
 		return evals;
 	}
 
+	/**
+	 * The training set converted to columns, which is done once per run, so that
+	 * the fitness functions can share them.
+	 *
+	 * @return
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	protected EvaluationColumns getColumns() {
+		if (columns == null)
+			columns = new EvaluationColumns((MultiValuedMap) evals);
+		return columns;
+	}
+
+	/**
+	 * Gives a new island the columns of the training set of this GP (which the
+	 * islands only read), and copies of its seeds.
+	 *
+	 * @param island
+	 */
+	protected void initialiseIsland(GP<T> island) {
+		island.columns = getColumns();
+		for (Chromosome seed : seeds) {
+			island.addSeed(seed.copy());
+		}
+	}
+
+	@Override
+	protected Random getRandom() {
+		return gen.getRandom();
+	}
+
+	@Override
+	protected List<Chromosome> getEmigrants(int number) {
+		List<Chromosome> emigrants = super.getEmigrants(number);
+		if (selection != null) {
+			for (Chromosome elite : selection.getElite()) {
+				if (emigrants.size() >= number)
+					break;
+				if (elite != getFittest())
+					emigrants.add(elite.copy());
+			}
+		}
+		return emigrants;
+	}
+
 	@Override
 	public List<Chromosome> generatePopulation(int i) {
 		String type = getType();
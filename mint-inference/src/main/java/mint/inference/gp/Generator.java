@@ -6,7 +6,6 @@ import java.util.Random;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
-import com.microsoft.z3.Context;
 
 import mint.inference.evo.Chromosome;
 import mint.inference.gp.tree.Datatype;
@@ -59,6 +58,28 @@ public class Generator {
 		aop = new AssignmentOperator();
 	}
 
+	/**
+	 * A generator with the same functions and terminals as this one (which it
+	 * only copies when it selects them, so they can be shared), that makes its
+	 * random choices with the given random number generator.
+	 *
+	 * @param r
+	 * @return
+	 */
+	public Generator copy(Random r) {
+		Generator copy = new Generator(r);
+		copy.dFunctions = dFunctions;
+		copy.dTerminals = dTerminals;
+		copy.iFunctions = iFunctions;
+		copy.iTerminals = iTerminals;
+		copy.sFunctions = sFunctions;
+		copy.sTerminals = sTerminals;
+		copy.bFunctions = bFunctions;
+		copy.bTerminals = bTerminals;
+		copy.listLength = listLength;
+		return copy;
+	}
+
 	public Random getRandom() {
 		return rand;
 	}
@@ -186,8 +207,6 @@ public class Generator {
 	public Node<BooleanVariableAssignment> generateRandomBooleanExpression(int maxD) {
 		Node<BooleanVariableAssignment> individual = (Node<BooleanVariableAssignment>) generateRandomExpression(maxD,
 				bFunctions, bTerminals);
-		Context ctx = new Context();
-		ctx.close();
 		return individual.simp();
 	}
 
@@ -258,22 +277,33 @@ public class Generator {
 		case BOOLEAN:
 			suitable = bFunctions.stream().filter(f -> Datatype.typeChecks(f.typeSignature(), typeSignature))
 					.collect(Collectors.toList());
-			return suitable.get(rand.nextInt(suitable.size()));
+			return childless(suitable.get(rand.nextInt(suitable.size())));
 		case STRING:
 			suitable = sFunctions.stream().filter(f -> Datatype.typeChecks(f.typeSignature(), typeSignature))
 					.collect(Collectors.toList());
-			return suitable.get(rand.nextInt(suitable.size()));
+			return childless(suitable.get(rand.nextInt(suitable.size())));
 		case INTEGER:
 			suitable = iFunctions.stream().filter(f -> Datatype.typeChecks(f.typeSignature(), typeSignature))
 					.collect(Collectors.toList());
-			return suitable.get(rand.nextInt(suitable.size()));
+			return childless(suitable.get(rand.nextInt(suitable.size())));
 		case DOUBLE:
 			suitable = dFunctions.stream().filter(f -> Datatype.typeChecks(f.typeSignature(), typeSignature))
 					.collect(Collectors.toList());
-			return suitable.get(rand.nextInt(suitable.size()));
+			return childless(suitable.get(rand.nextInt(suitable.size())));
 		default:
 			break;
 		}
 		throw new IllegalArgumentException("Datatype must be one of BOOLEAN, STRING, INTEGER, or DOUBLE");
 	}
+
+	/*
+	 * A copy of the given function without its children, so that the functions
+	 * of the generator (which may be shared with other generators) are never
+	 * put into a tree.
+	 */
+	private NonTerminal<?> childless(NonTerminal<?> function) {
+		NonTerminal<?> copy = (NonTerminal<?>) function.copy();
+		copy.clearChildren();
+		return copy;
+	}
 }
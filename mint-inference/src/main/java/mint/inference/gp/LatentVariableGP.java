@@ -10,11 +10,11 @@ import org.apache.log4j.Logger;
 
 import edu.emory.mathcs.backport.java.util.Collections;
 import mint.Configuration;
+import mint.inference.evo.AbstractEvo;
 import mint.inference.evo.AbstractIterator;
 import mint.inference.evo.Chromosome;
 import mint.inference.evo.GPConfiguration;
 import mint.inference.evo.Selection;
-import mint.inference.evo.TournamentSelection;
 import mint.inference.gp.fitness.latentVariable.BooleanFitness;
 import mint.inference.gp.fitness.latentVariable.IntegerFitness;
 import mint.inference.gp.fitness.latentVariable.LatentVariableFitness;
@@ -35,9 +35,6 @@ public class LatentVariableGP extends GP<VariableAssignment<?>> {
 
 	private final static Logger LOGGER = Logger.getLogger(GP.class.getName());
 
-	protected TournamentSelection selection = null;
-	private Node<?> fittest = null;
-
 	public LatentVariableGP(Generator gen, MultiValuedMap<List<VariableAssignment<?>>, VariableAssignment<?>> evals,
 			GPConfiguration gpConf) {
 		super(gpConf);
@@ -48,7 +45,9 @@ public class LatentVariableGP extends GP<VariableAssignment<?>> {
 
 	@Override
 	public Selection getSelection(List<Chromosome> currentPop) {
-		selection = new LatentVariableTournament(evals, currentPop, getGPConf().getDepth(), gen.rand);
+		selection = new LatentVariableTournament(evals, getColumns(), currentPop, getGPConf().getDepth(), gen.rand);
+		selection.setFitnessCache(fitnessCache);
+		selection.setExecutor(getGPConf().getExecutor());
 		return selection;
 	}
 
@@ -85,9 +84,9 @@ public class LatentVariableGP extends GP<VariableAssignment<?>> {
 			if (((Node<?>) c).getReturnType() == Datatype.STRING)
 				return new StringFitness(evals, (Node<VariableAssignment<String>>) c).correct();
 			else if (((Node<?>) c).getReturnType() == Datatype.INTEGER)
-				return new IntegerFitness(evals, (Node<VariableAssignment<Integer>>) c).correct();
+				return new IntegerFitness(evals, getColumns(), (Node<VariableAssignment<Integer>>) c).correct();
 			else if (((Node<?>) c).getReturnType() == Datatype.BOOLEAN) {
-				return new BooleanFitness(evals, (Node<VariableAssignment<Boolean>>) c).correct();
+				return new BooleanFitness(evals, getColumns(), (Node<VariableAssignment<Boolean>>) c).correct();
 			}
 			System.out.println(c.getClass());
 			throw new IllegalArgumentException(
@@ -110,15 +109,16 @@ public class LatentVariableGP extends GP<VariableAssignment<?>> {
 		return popString.toString();
 	}
 
+	@SuppressWarnings({ "unchecked" })
 	private LatentVariableFitness<?> getFitnessFunction(Chromosome c) {
 		Node<?> node = (Node<?>) c;
 		if (node.getReturnType() == Datatype.STRING)
 			return new StringFitness(evals, (Node<VariableAssignment<String>>) c);
 		else if (node.getReturnType() == Datatype.INTEGER)
-			return new IntegerFitness(evals, (Node<VariableAssignment<Integer>>) c);
+			return new IntegerFitness(evals, getColumns(), (Node<VariableAssignment<Integer>>) c);
 		else {
 			assert (node.getReturnType() == Datatype.BOOLEAN);
-			return new BooleanFitness(evals, (Node<VariableAssignment<Boolean>>) c);
+			return new BooleanFitness(evals, getColumns(), (Node<VariableAssignment<Boolean>>) c);
 		}
 	}
 
@@ -127,7 +127,7 @@ public class LatentVariableGP extends GP<VariableAssignment<?>> {
 		if (fittest == null)
 			best = (Node<?>) pop.get(0);
 		else
-			best = fittest;
+			best = (Node<?>) fittest;
 //		System.out.println("                 Best: " + best + " Best Fitness: " + best.getFitness());
 		for (Chromosome c : pop) {
 			Node<?> node = (Node<?>) c;
@@ -176,36 +176,46 @@ public class LatentVariableGP extends GP<VariableAssignment<?>> {
 	}
 
 	@Override
-	public Chromosome evolve(int lim) {
-		assert (lim > 0);
-		population = generatePopulation(getGPConf().getPopulationSize() - seeds.size());
-
-		population.addAll(seeds);
+	protected void initialise() {
+		super.initialise();
 		evaluatePopulation(population);
 
 		fittest = chooseBest(population);
+		bestFitness = fittest.getFitness();
 
 		LOGGER.debug("GP iteration: 0" + " - best individual: " + fittest + " fitness: " + fittest.getFitness()
 				+ " New population: " + popInfo());
+	}
 
-		AbstractIterator it = getIterator(population);
-		for (int i = 1; i <= lim; i++) {
-			population = it.iterate(this);
+	@Override
+	protected boolean evolve(int from, int generations) {
+		for (int i = from + 1; i <= from + generations; i++) {
+			AbstractIterator it = getIterator(population);
+			population = z3Simp(it.iterate(this), i);
 
 			evaluatePopulation(population);
 			fittest = chooseBest(population);
+			bestFitness = fittest.getFitness();
 
 			LOGGER.debug("GP iteration: " + i + " - best individual: " + fittest + " fitness: " + fittest.getFitness()
 					+ " New population: " + popInfo());
 
 			if (fittest.getFitness() <= 0D)
-				break;
-
-			it = getIterator(population);
-
+				return true;
 		}
+		return false;
+	}
 
-		return fittest;
+	@Override
+	protected boolean supportsIslands() {
+		return true;
+	}
+
+	@Override
+	protected AbstractEvo createIsland(GPConfiguration conf, Random rand) {
+		LatentVariableGP island = new LatentVariableGP(gen.copy(rand), evals, conf);
+		initialiseIsland(island);
+		return island;
 	}
 
 }
@@ -8,11 +8,11 @@ import java.util.Random;
 import org.apache.commons.collections4.MultiValuedMap;
 
 import mint.Configuration;
+import mint.inference.evo.AbstractEvo;
 import mint.inference.evo.AbstractIterator;
 import mint.inference.evo.Chromosome;
 import mint.inference.evo.GPConfiguration;
 import mint.inference.evo.Selection;
-import mint.inference.evo.TournamentSelection;
 import mint.inference.gp.fitness.latentVariable.BooleanFitness;
 import mint.inference.gp.fitness.latentVariable.IntegerFitness;
 import mint.inference.gp.fitness.latentVariable.LatentVariableFitness;
@@ -36,8 +36,6 @@ import mint.tracedata.types.VariableAssignment;
  */
 public class SingleOutputGP extends GP<VariableAssignment<?>> {
 
-	protected TournamentSelection selection = null;
-
 	@Deprecated
 	public SingleOutputGP(Generator gen, MultiValuedMap<List<VariableAssignment<?>>, VariableAssignment<?>> evals,
 			GPConfiguration gpConf) {
@@ -58,7 +56,11 @@ public class SingleOutputGP extends GP<VariableAssignment<?>> {
 
 	@Override
 	public Selection getSelection(List<Chromosome> currentPop) {
-		selection = new SingleOutputTournament(evals, currentPop, getGPConf().getDepth(), mem_dist, gen.rand);
+		selection = new SingleOutputTournament(evals, getColumns(), currentPop, getGPConf().getDepth(), mem_dist,
+				gen.rand);
+		selection.setFitnessCache(fitnessCache);
+		selection.setExecutor(getGPConf().getExecutor());
+		selection.setRacing(getGPConf().isRacing());
 		return selection;
 	}
 
@@ -77,6 +79,18 @@ public class SingleOutputGP extends GP<VariableAssignment<?>> {
 			return "List";
 	}
 
+	@Override
+	protected boolean supportsIslands() {
+		return true;
+	}
+
+	@Override
+	protected AbstractEvo createIsland(GPConfiguration conf, Random rand) {
+		SingleOutputGP island = new SingleOutputGP(gen.copy(rand), evals, conf, mem_dist);
+		initialiseIsland(island);
+		return island;
+	}
+
 	@Override
 	protected AbstractIterator getIterator(List<Chromosome> population) {
 		if (selection != null) {
@@ -89,6 +103,7 @@ public class SingleOutputGP extends GP<VariableAssignment<?>> {
 	}
 
 	@Override
+	@SuppressWarnings({ "unchecked" })
 	public void evaluatePopulation(List<Chromosome> pop) {
 		for (Chromosome c : pop) {
 			LatentVariableFitness<?> fit;
@@ -97,10 +112,10 @@ public class SingleOutputGP extends GP<VariableAssignment<?>> {
 				if (node.getReturnType() == Datatype.STRING)
 					fit = new StringFitness(evals, (Node<VariableAssignment<String>>) c);
 				else if (node.getReturnType() == Datatype.INTEGER)
-					fit = new IntegerFitness(evals, (Node<VariableAssignment<Integer>>) c);
+					fit = new IntegerFitness(evals, getColumns(), (Node<VariableAssignment<Integer>>) c);
 				else {
 					assert (node.getReturnType() == Datatype.BOOLEAN);
-					fit = new BooleanFitness(evals, (Node<VariableAssignment<Boolean>>) c);
+					fit = new BooleanFitness(evals, getColumns(), (Node<VariableAssignment<Boolean>>) c);
 				}
 				try {
 					double fitness = fit.call();
@@ -122,17 +137,17 @@ public class SingleOutputGP extends GP<VariableAssignment<?>> {
 				return new SingleOutputStringFitness(evals, (Node<VariableAssignment<String>>) node, maxDepth)
 						.correct();
 			else if (node.getReturnType() == Datatype.DOUBLE)
-				return new SingleOutputDoubleFitness(evals, (Node<VariableAssignment<Double>>) node, maxDepth)
-						.correct();
+				return new SingleOutputDoubleFitness(evals, getColumns(), (Node<VariableAssignment<Double>>) node,
+						maxDepth).correct();
 			else if (node.getReturnType() == Datatype.INTEGER)
-				return new SingleOutputIntegerFitness(evals, (Node<VariableAssignment<Integer>>) node, maxDepth)
-						.correct();
+				return new SingleOutputIntegerFitness(evals, getColumns(), (Node<VariableAssignment<Integer>>) node,
+						maxDepth).correct();
 			else if (node.getReturnType() == Datatype.LIST)
 				return new SingleOutputListFitness(evals, (Node<VariableAssignment<List>>) node, maxDepth).correct();
 			else {
 				assert (node.getReturnType() == Datatype.BOOLEAN);
-				return new SingleOutputBooleanFitness(evals, (Node<VariableAssignment<Boolean>>) node, maxDepth)
-						.correct();
+				return new SingleOutputBooleanFitness(evals, getColumns(), (Node<VariableAssignment<Boolean>>) node,
+						maxDepth).correct();
 			}
 		} catch (InterruptedException e) {
 			return false;
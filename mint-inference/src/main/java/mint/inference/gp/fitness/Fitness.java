@@ -16,6 +16,31 @@ public abstract class Fitness implements Callable<Double> {
 	 */
 	protected String fitnessSummary = "";
 
+	/**
+	 * The (greatest) number of examples of the training set that the fingerprint
+	 * is computed over.
+	 */
+	public static final int FINGERPRINT_SAMPLE = 32;
+
+	/**
+	 * A hash of the outputs of the individual for a fixed sample of the training
+	 * set, computed as it is evaluated, or 0 if there is none. Individuals with
+	 * the same fingerprint compute (almost certainly) the same outputs for the
+	 * sample.
+	 */
+	protected long fingerprint = 0L;
+
+	/**
+	 * The fitness above which the exact fitness is not needed (see setCutoff).
+	 */
+	protected double cutoff = Double.POSITIVE_INFINITY;
+
+	/**
+	 * The number of examples of the training set that the last call evaluated,
+	 * and the number it skipped as it stopped early.
+	 */
+	protected int evaluated = 0, skipped = 0;
+
 	/**
 	 * Calculate the root-mean square deviation from a collection of errors.
 	 * 
@@ -53,5 +78,69 @@ public abstract class Fitness implements Callable<Double> {
 		return fitnessSummary;
 	}
 
+	public long getFingerprint() {
+		return fingerprint;
+	}
+
+	/**
+	 * Lets call stop evaluating the training set as soon as it is certain that
+	 * the fitness is greater than the given cutoff, in which case it returns a
+	 * lower bound of the fitness (which is also greater than the cutoff) rather
+	 * than the fitness itself. Fitness functions that cannot bound their fitness
+	 * evaluate the whole training set regardless.
+	 *
+	 * @param cutoff
+	 */
+	public void setCutoff(double cutoff) {
+		this.cutoff = cutoff;
+	}
+
+	/**
+	 * Whether the last call returned the fitness itself, rather than a lower
+	 * bound (see setCutoff).
+	 *
+	 * @return
+	 */
+	public boolean isExact() {
+		return skipped == 0;
+	}
+
+	public int getEvaluated() {
+		return evaluated;
+	}
+
+	public int getSkipped() {
+		return skipped;
+	}
+
+	/**
+	 * Whether the output for the given example (of the given number) is part of
+	 * the fingerprint: every n-th example, so that there are about
+	 * FINGERPRINT_SAMPLE of them.
+	 *
+	 * @param row
+	 * @param rows
+	 * @return
+	 */
+	protected static boolean sampled(int row, int rows) {
+		int stride = Math.max(1, rows / FINGERPRINT_SAMPLE);
+		return row % stride == 0 && row / stride < FINGERPRINT_SAMPLE;
+	}
+
+	/**
+	 * Adds the given output (of the next example of the sample) to the
+	 * fingerprint.
+	 *
+	 * @param output
+	 */
+	protected void addToFingerprint(Object output) {
+		long h = fingerprint * 31 + (output == null ? 0 : output.hashCode());
+		h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+		h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+		h ^= h >>> 31;
+		// (0 is kept for no fingerprint)
+		fingerprint = h == 0 ? 1 : h;
+	}
+
 	public abstract List<Double> breakTies();
 }
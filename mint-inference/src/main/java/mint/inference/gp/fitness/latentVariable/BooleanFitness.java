@@ -4,6 +4,7 @@ import java.util.List;
 
 import org.apache.commons.collections4.MultiValuedMap;
 
+import mint.inference.gp.EvaluationColumns;
 import mint.inference.gp.tree.Node;
 import mint.tracedata.types.VariableAssignment;
 
@@ -16,6 +17,11 @@ public class BooleanFitness extends LatentVariableFitness<Boolean> {
 		super(evals, toEvaluate);
 	}
 
+	public BooleanFitness(MultiValuedMap<List<VariableAssignment<?>>, VariableAssignment<?>> evals,
+			EvaluationColumns columns, Node<VariableAssignment<Boolean>> toEvaluate) {
+		super(evals, columns, toEvaluate);
+	}
+
 //	@Override
 //	public Double call() {
 //		NodeExecutor<Boolean> executor = new NodeExecutor<Boolean>(individual);
@@ -4,6 +4,7 @@ import java.util.List;
 
 import org.apache.commons.collections4.MultiValuedMap;
 
+import mint.inference.gp.EvaluationColumns;
 import mint.inference.gp.fitness.InvalidDistanceException;
 import mint.inference.gp.tree.Node;
 import mint.tracedata.types.VariableAssignment;
@@ -18,6 +19,11 @@ public class IntegerFitness extends LatentVariableFitness<Integer> {
 		super(evals, individual);
 	}
 
+	public IntegerFitness(MultiValuedMap<List<VariableAssignment<?>>, VariableAssignment<?>> evals,
+			EvaluationColumns columns, Node<VariableAssignment<Integer>> individual) {
+		super(evals, columns, individual);
+	}
+
 	@Override
 	protected double distance(Integer actual, Object expected) throws InvalidDistanceException {
 		if (expected instanceof Integer) {
@@ -11,6 +11,8 @@ import java.util.stream.Collectors;
 import org.apache.commons.collections4.MultiValuedMap;
 
 import mint.inference.gp.CallableNodeExecutor;
+import mint.inference.gp.CompiledNode;
+import mint.inference.gp.EvaluationColumns;
 import mint.inference.gp.fitness.Fitness;
 import mint.inference.gp.fitness.InvalidDistanceException;
 import mint.inference.gp.tree.Node;
@@ -26,10 +28,25 @@ public abstract class LatentVariableFitness<T> extends Fitness {
 
 	protected Node<VariableAssignment<T>> individual;
 	protected boolean needHidden;
+	protected EvaluationColumns columns;
 
 	public LatentVariableFitness(MultiValuedMap<List<VariableAssignment<?>>, VariableAssignment<?>> evals,
 			Node<VariableAssignment<T>> individual) {
+		this(evals, null, individual);
+	}
+
+	/**
+	 * Takes the training set both as a map and converted to columns (which can
+	 * be shared between all the fitness functions of a GP run).
+	 * 
+	 * @param evals
+	 * @param columns
+	 * @param individual
+	 */
+	public LatentVariableFitness(MultiValuedMap<List<VariableAssignment<?>>, VariableAssignment<?>> evals,
+			EvaluationColumns columns, Node<VariableAssignment<T>> individual) {
 		this.evalSet = evals;
+		this.columns = columns;
 		this.individual = individual;
 	}
 
@@ -83,6 +100,37 @@ public abstract class LatentVariableFitness<T> extends Fitness {
 		return minDistance;
 	}
 
+	/*
+	 * The distance of each row of the training set, computed by evaluating the
+	 * compiled individual over the columns, or null if the individual can only
+	 * be evaluated by walking the tree. Individuals with latent variables are
+	 * not compiled, as every row is evaluated for each of their values.
+	 */
+	@SuppressWarnings("unchecked")
+	private double[] compiledDistances(Set<VariableTerminal<?>> latent) {
+		if (!latent.isEmpty())
+			return null;
+		CompiledNode program = CompiledNode.compile(individual);
+		if (program == null)
+			return null;
+		if (columns == null)
+			columns = new EvaluationColumns(evalSet);
+		if (!program.bind(columns))
+			return null;
+		program.runColumns();
+		double[] distances = new double[columns.size()];
+		for (int row = 0; row < distances.length; row++) {
+			try {
+				distances[row] = distance((T) program.result(row), columns.getExpected(row));
+			} catch (ClassCastException e) {
+				distances[row] = Double.POSITIVE_INFINITY;
+			} catch (InvalidDistanceException e) {
+				distances[row] = Double.POSITIVE_INFINITY;
+			}
+		}
+		return distances;
+	}
+
 	@Override
 	public Double call() throws InterruptedException {
 		if (individual == null) {
@@ -100,8 +148,10 @@ public abstract class LatentVariableFitness<T> extends Fitness {
 		Set<String> totalUsedVars = individual.varsInTree().stream().map(s -> s.getName()).collect(Collectors.toSet());
 		totalVars.removeAll(totalUsedVars);
 
+		double[] compiled = compiledDistances(latent);
+		int row = 0;
 		for (Entry<List<VariableAssignment<?>>, VariableAssignment<?>> current : evalSet.entries()) {
-			double minDistance = calculateDistance(current, latent);
+			double minDistance = compiled != null ? compiled[row++] : calculateDistance(current, latent);
 			distances.add(minDistance);
 			if (minDistance > 0D) {
 				mistakes++;
@@ -183,8 +233,10 @@ public abstract class LatentVariableFitness<T> extends Fitness {
 	public boolean correct() throws InterruptedException {
 		Set<VariableTerminal<?>> undef = latentVars(individual);
 
+		double[] compiled = compiledDistances(undef);
+		int row = 0;
 		for (Entry<List<VariableAssignment<?>>, VariableAssignment<?>> current : evalSet.entries()) {
-			double minDistance = calculateDistance(current, undef);
+			double minDistance = compiled != null ? compiled[row++] : calculateDistance(current, undef);
 			if (minDistance > 0D) {
 				return false;
 			}
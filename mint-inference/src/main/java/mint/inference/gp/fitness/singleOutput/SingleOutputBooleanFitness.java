@@ -5,7 +5,10 @@ import java.util.Map.Entry;
 
 import org.apache.commons.collections4.MultiValuedMap;
 
+import mint.inference.gp.CompiledNode;
+import mint.inference.gp.EvaluationColumns;
 import mint.inference.gp.NodeExecutor;
+import mint.inference.gp.tree.Datatype;
 import mint.inference.gp.tree.Node;
 import mint.tracedata.types.VariableAssignment;
 
@@ -18,13 +21,25 @@ public class SingleOutputBooleanFitness extends SingleOutputFitness<Boolean> {
 		super(evals, toEvaluate, maxDepth);
 	}
 
+	public SingleOutputBooleanFitness(MultiValuedMap<List<VariableAssignment<?>>, VariableAssignment<?>> evals,
+			EvaluationColumns columns, Node<VariableAssignment<Boolean>> toEvaluate, int maxDepth) {
+		super(evals, columns, toEvaluate, maxDepth);
+	}
+
 	@Override
 	public Double call() {
-		NodeExecutor<Boolean> executor = new NodeExecutor<Boolean>(individual);
+		fingerprint = 0L;
+		CompiledNode program = compile();
+		if (program != null && program.getReturnType() == Datatype.BOOLEAN && program.bind(getColumns()))
+			program.runColumns();
+		else
+			program = null; // (the tree itself is evaluated)
+		NodeExecutor<Boolean> executor = null;
 		double tp = 0.0000001D, fp = 0.0000001D, tn = 0.0000001D, fn = 0.0000001D;
 //		double tp = 0.000000D, fp = 0.000000D, tn = 0.000000D, fn = 0.000000D;
 		boolean penalize = false;
 		boolean allCorrect = true;
+		int row = 0;
 		for (Entry<List<VariableAssignment<?>>, VariableAssignment<?>> current : evalSet.entries()) {
 			VariableAssignment<?> expectedVar = current.getValue();
 			if (!expectedVar.withinLimits()) {
@@ -35,7 +50,16 @@ public class SingleOutputBooleanFitness extends SingleOutputFitness<Boolean> {
 			boolean expected = (Boolean) expectedVar.getValue();
 
 			try {
-				Boolean actual = executor.execute(current.getKey());
+				Boolean actual;
+				if (program != null) {
+					actual = program.booleanResult(row);
+				} else {
+					if (executor == null)
+						executor = new NodeExecutor<Boolean>(individual);
+					actual = executor.execute(current.getKey());
+				}
+				if (sampled(row++, evalSet.size()))
+					addToFingerprint(actual);
 				if (expected != actual)
 					allCorrect = false;
 				if (expected == true) {
@@ -62,9 +86,10 @@ public class SingleOutputBooleanFitness extends SingleOutputFitness<Boolean> {
 		if (individual.subTreeMaxdepth() > maxDepth)
 			penalize = true;
 
-		if (penalize)
+		if (penalize) {
+			fingerprint = 0L;
 			return 100000D;
-		else {
+		} else {
 			if (allCorrect)
 				return 0D;
 			double errorRate = 1 - errorRate(tp, fp, tn, fn);
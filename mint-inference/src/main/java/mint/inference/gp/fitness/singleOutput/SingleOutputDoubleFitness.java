@@ -4,7 +4,10 @@ import java.util.List;
 
 import org.apache.commons.collections4.MultiValuedMap;
 
+import mint.inference.gp.CompiledNode;
+import mint.inference.gp.EvaluationColumns;
 import mint.inference.gp.fitness.InvalidDistanceException;
+import mint.inference.gp.tree.Datatype;
 import mint.inference.gp.tree.Node;
 import mint.tracedata.types.VariableAssignment;
 
@@ -21,6 +24,11 @@ public class SingleOutputDoubleFitness extends SingleOutputFitness<Double> {
 		super(evals, individual, maxDepth);
 	}
 
+	public SingleOutputDoubleFitness(MultiValuedMap<List<VariableAssignment<?>>, VariableAssignment<?>> evals,
+			EvaluationColumns columns, Node<VariableAssignment<Double>> individual, int maxDepth) {
+		super(evals, columns, individual, maxDepth);
+	}
+
 	/**
 	 *
 	 * @param actual - returned by SUT
@@ -30,24 +38,38 @@ public class SingleOutputDoubleFitness extends SingleOutputFitness<Double> {
 	 */
 	@Override
 	protected double distance(Double actual, Object exp) throws InvalidDistanceException {
+		return distance(actual.doubleValue(), exp);
+	}
+
+	@Override
+	protected double distance(CompiledNode program, int row, Object exp) throws InvalidDistanceException {
+		if (program.getReturnType() != Datatype.DOUBLE)
+			return super.distance(program, row, exp);
+		return distance(program.doubleResult(row), exp);
+	}
+
+	protected double distance(double actual, Object exp) throws InvalidDistanceException {
 		if (exp instanceof Double) {
-			Double expected = (Double) exp;
-			if (actual.isNaN() || actual.isInfinite()) {
-				if (expected.isInfinite() || expected.isNaN())
-					return 0;
-				else
-					return ceiling;
-			}
-			if (expected.isNaN() || expected.isInfinite())
-				return ceiling;
-			// return 0;
-			// return Math.abs(actual-expected);
-			return Math.min(Math.abs(actual - expected), ceiling); // prevent the fitness function from running away
-																	// with massive errors.
+			return distance(actual, ((Double) exp).doubleValue());
 		} else if (exp instanceof Integer) {
 			Integer intExp = (Integer) exp;
 			return distance(actual, (double) intExp.intValue());
 		} else
 			throw new InvalidDistanceException();
 	}
+
+	private double distance(double actual, double expected) {
+		if (Double.isNaN(actual) || Double.isInfinite(actual)) {
+			if (Double.isInfinite(expected) || Double.isNaN(expected))
+				return 0;
+			else
+				return ceiling;
+		}
+		if (Double.isNaN(expected) || Double.isInfinite(expected))
+			return ceiling;
+		// return 0;
+		// return Math.abs(actual-expected);
+		return Math.min(Math.abs(actual - expected), ceiling); // prevent the fitness function from running away
+																// with massive errors.
+	}
 }
@@ -8,6 +8,8 @@ import org.apache.commons.collections4.MultiValuedMap;
 
 import edu.emory.mathcs.backport.java.util.Arrays;
 import mint.inference.gp.CallableNodeExecutor;
+import mint.inference.gp.CompiledNode;
+import mint.inference.gp.EvaluationColumns;
 import mint.inference.gp.fitness.Fitness;
 import mint.inference.gp.fitness.InvalidDistanceException;
 import mint.inference.gp.tree.Node;
@@ -18,15 +20,37 @@ import mint.tracedata.types.VariableAssignment;
  */
 public abstract class SingleOutputFitness<T> extends Fitness {
 
+	/**
+	 * The number of rows of the training set that are run at a time when there
+	 * is a cutoff (see Fitness.setCutoff).
+	 */
+	public static final int CUTOFF_BLOCK = 32;
+
 	final MultiValuedMap<List<VariableAssignment<?>>, VariableAssignment<?>> evalSet;
 
 	protected final int maxDepth;
 	protected Node<VariableAssignment<T>> individual;
 	List<Double> distances;
+	protected EvaluationColumns columns;
 
 	public SingleOutputFitness(MultiValuedMap<List<VariableAssignment<?>>, VariableAssignment<?>> evals,
 			Node<VariableAssignment<T>> individual, int maxDepth) {
+		this(evals, null, individual, maxDepth);
+	}
+
+	/**
+	 * Takes the training set both as a map and converted to columns (which can
+	 * be shared between all the fitness functions of a GP run).
+	 * 
+	 * @param evals
+	 * @param columns
+	 * @param individual
+	 * @param maxDepth
+	 */
+	public SingleOutputFitness(MultiValuedMap<List<VariableAssignment<?>>, VariableAssignment<?>> evals,
+			EvaluationColumns columns, Node<VariableAssignment<T>> individual, int maxDepth) {
 		this.evalSet = evals;
+		this.columns = columns;
 		this.individual = individual;
 		this.maxDepth = maxDepth;
 		this.distances = new ArrayList<Double>();
@@ -43,10 +67,61 @@ public abstract class SingleOutputFitness<T> extends Fitness {
 	@Override
 	public Double call() throws InterruptedException {
 		distances.clear();
+		fingerprint = 0L;
+		evaluated = 0;
+		skipped = 0;
+		double sumOfSquares = 0D;
 		double penaltyFactor = 0;
+		// (the penalty for a tree that is too deep replaces any other, as long as
+		// there is an example to evaluate)
+		int depth = individual.subTreeMaxdepth();
+		double depthPenalty = depth > maxDepth ? Math.abs((depth - maxDepth) * 2) : 0D;
+		CompiledNode program = compile();
+		if (program != null && program.bind(getColumns())) {
+			int rows = columns.size();
+			// with a cutoff, the rows are run a block at a time
+			int block = cutoff < Double.POSITIVE_INFINITY ? CUTOFF_BLOCK : rows;
+			for (int from = 0; from < rows; from += block) {
+				int to = Math.min(rows, from + block);
+				program.runColumns(from, to);
+				for (int row = from; row < to; row++) {
+					if (Thread.interrupted())
+						throw new InterruptedException();
+					double distance = 0D;
+					if (sampled(row, rows))
+						addToFingerprint(program.result(row));
+					try {
+						distance = distance(program, row, columns.getExpected(row));
+						distances.add(distance);
+						sumOfSquares += distance * distance;
+					} catch (InvalidDistanceException e) {
+						penaltyFactor = 100;
+					}
+					distances.add(distance);
+					sumOfSquares += distance * distance;
+				}
+				evaluated = to;
+				if (to < rows && exceedsCutoff(sumOfSquares, rows, depthPenalty > 0 ? depthPenalty : penaltyFactor)) {
+					skipped = rows - to;
+					fingerprint = 0L;
+					return lowerBound(sumOfSquares, rows, depthPenalty > 0 ? depthPenalty : penaltyFactor);
+				}
+			}
+			if (depthPenalty > 0 && !distances.isEmpty())
+				penaltyFactor = depthPenalty;
+			return calculateFitness(distances) + penaltyFactor;
+		}
+		int rows = evalSet.size();
+		int row = 0;
 		for (Entry<List<VariableAssignment<?>>, VariableAssignment<?>> current : evalSet.entries()) {
 			if (Thread.interrupted())
 				throw new InterruptedException();
+			if (evaluated > 0 && exceedsCutoff(sumOfSquares, rows, depthPenalty > 0 ? depthPenalty : penaltyFactor)) {
+				skipped = rows - evaluated;
+				fingerprint = 0L;
+				return lowerBound(sumOfSquares, rows, depthPenalty > 0 ? depthPenalty : penaltyFactor);
+			}
+			evaluated++;
 			double distance = 0D;
 			T actual = null;
 			CallableNodeExecutor<T> executor = new CallableNodeExecutor<T>(individual, current.getKey());
@@ -55,22 +130,84 @@ public abstract class SingleOutputFitness<T> extends Fitness {
 				actual = executor.call();
 				if (actual == null) {
 					penaltyFactor = 100;
+					fingerprint = 0L;
 					return distance + penaltyFactor;
 				}
+				if (sampled(row++, evalSet.size()))
+					addToFingerprint(actual);
 				distance = distance(actual, current.getValue().getValue());
 				distances.add(distance);
+				sumOfSquares += distance * distance;
 			} catch (InvalidDistanceException e) {
 				penaltyFactor = 100;
 			}
-			if (individual.subTreeMaxdepth() > maxDepth)
-				penaltyFactor = Math.abs((individual.subTreeMaxdepth() - maxDepth) * 2);
-
 			distances.add(distance);
+			sumOfSquares += distance * distance;
 		}
+		if (depthPenalty > 0 && !distances.isEmpty())
+			penaltyFactor = depthPenalty;
 		double distance = calculateFitness(distances);
 		return distance + penaltyFactor;
 	}
 
+	private boolean exceedsCutoff(double sumOfSquares, int rows, double penalty) {
+		return cutoff < Double.POSITIVE_INFINITY && lowerBound(sumOfSquares, rows, penalty) > cutoff;
+	}
+
+	/**
+	 * A lower bound of the fitness, given the sum of the squares of the
+	 * distances so far, the number of examples and the penalty so far: there are
+	 * at most two distances for each example, and the penalty can only go up.
+	 * Subclasses that override calculateFitness (so that it is not the RMSD of
+	 * the distances) have to override this as well.
+	 * 
+	 * @param sumOfSquares
+	 * @param rows
+	 * @param penalty
+	 * @return
+	 */
+	protected double lowerBound(double sumOfSquares, int rows, double penalty) {
+		return Math.sqrt(sumOfSquares / (2D * rows)) + penalty;
+	}
+
+	/**
+	 * The training set as columns (converted here, unless they were given when
+	 * the fitness function was created).
+	 * 
+	 * @return
+	 */
+	protected EvaluationColumns getColumns() {
+		if (columns == null)
+			columns = new EvaluationColumns(evalSet);
+		return columns;
+	}
+
+	/**
+	 * Compiles the individual for evaluation over the training set, or returns
+	 * null if it can only be evaluated by walking the tree.
+	 * 
+	 * @return
+	 */
+	protected CompiledNode compile() {
+		return CompiledNode.compile(individual);
+	}
+
+	/**
+	 * The distance between the result of the compiled individual for the given
+	 * row (of the last runColumns) and the expected value. Subclasses can
+	 * override this to avoid boxing the result.
+	 * 
+	 * @param program
+	 * @param row
+	 * @param expected
+	 * @return
+	 * @throws InvalidDistanceException
+	 */
+	@SuppressWarnings("unchecked")
+	protected double distance(CompiledNode program, int row, Object expected) throws InvalidDistanceException {
+		return distance((T) program.result(row), expected);
+	}
+
 	protected Double calculateFitness(List<Double> distances) {
 		return rmsd(distances);
 	}
@@ -98,6 +235,21 @@ public abstract class SingleOutputFitness<T> extends Fitness {
 	}
 
 	public boolean correct() throws InterruptedException {
+		CompiledNode program = compile();
+		if (program != null && program.bind(getColumns())) {
+			if (Thread.interrupted())
+				throw new InterruptedException();
+			program.runColumns();
+			for (int row = 0; row < columns.size(); row++) {
+				try {
+					if (distance(program, row, columns.getExpected(row)) > 0)
+						return false;
+				} catch (InvalidDistanceException e) {
+					return false;
+				}
+			}
+			return true;
+		}
 		for (Entry<List<VariableAssignment<?>>, VariableAssignment<?>> current : evalSet.entries()) {
 			if (Thread.interrupted())
 				throw new InterruptedException();
@@ -4,7 +4,10 @@ import java.util.List;
 
 import org.apache.commons.collections4.MultiValuedMap;
 
+import mint.inference.gp.CompiledNode;
+import mint.inference.gp.EvaluationColumns;
 import mint.inference.gp.fitness.InvalidDistanceException;
+import mint.inference.gp.tree.Datatype;
 import mint.inference.gp.tree.Node;
 import mint.tracedata.types.VariableAssignment;
 
@@ -18,15 +21,31 @@ public class SingleOutputIntegerFitness extends SingleOutputFitness<Integer> {
 		super(evals, individual, maxDepth);
 	}
 
+	public SingleOutputIntegerFitness(MultiValuedMap<List<VariableAssignment<?>>, VariableAssignment<?>> evals,
+			EvaluationColumns columns, Node<VariableAssignment<Integer>> individual, int maxDepth) {
+		super(evals, columns, individual, maxDepth);
+	}
+
 	@Override
 	protected double distance(Integer actual, Object expected) throws InvalidDistanceException {
+		return distance(actual.intValue(), expected);
+	}
+
+	@Override
+	protected double distance(CompiledNode program, int row, Object expected) throws InvalidDistanceException {
+		if (program.getReturnType() != Datatype.INTEGER)
+			return super.distance(program, row, expected);
+		return distance(program.intResult(row), expected);
+	}
+
+	protected double distance(int actual, Object expected) throws InvalidDistanceException {
 		if (expected instanceof Integer) {
 			Integer exp = (Integer) expected;
 
-			return Math.abs(actual.intValue() - exp.intValue());
+			return Math.abs(actual - exp.intValue());
 		} else if (expected instanceof Double) {
 			Double exp = (Double) expected;
-			return Math.abs(actual.intValue() - exp.intValue());
+			return Math.abs(actual - exp.intValue());
 		} else
 			throw new InvalidDistanceException();
 	}
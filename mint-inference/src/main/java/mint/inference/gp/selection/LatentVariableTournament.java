@@ -9,6 +9,7 @@ import java.util.Random;
 import org.apache.commons.collections4.MultiValuedMap;
 
 import mint.inference.evo.Chromosome;
+import mint.inference.gp.EvaluationColumns;
 import mint.inference.gp.fitness.latentVariable.BooleanFitness;
 import mint.inference.gp.fitness.latentVariable.IntegerFitness;
 import mint.inference.gp.fitness.latentVariable.LatentVariableFitness;
@@ -24,10 +25,17 @@ import mint.tracedata.types.VariableAssignment;
 public class LatentVariableTournament extends IOTournamentSelection<VariableAssignment<?>> {
 
 	protected Map<Node<?>, List<Double>> distances = null;
+	protected EvaluationColumns columns;
 
 	public LatentVariableTournament(MultiValuedMap<List<VariableAssignment<?>>, VariableAssignment<?>> evals,
 			List<Chromosome> totalPopulation, int maxDepth, Random rand) {
+		this(evals, null, totalPopulation, maxDepth, rand);
+	}
+
+	public LatentVariableTournament(MultiValuedMap<List<VariableAssignment<?>>, VariableAssignment<?>> evals,
+			EvaluationColumns columns, List<Chromosome> totalPopulation, int maxDepth, Random rand) {
 		super(evals, totalPopulation, maxDepth, rand);
+		this.columns = columns;
 		distances = new HashMap<Node<?>, List<Double>>();
 	}
 
@@ -38,10 +46,10 @@ public class LatentVariableTournament extends IOTournamentSelection<VariableAssi
 		if (toEvaluate.getReturnType() == Datatype.STRING)
 			return new StringFitness(evals, (Node<VariableAssignment<String>>) toEvaluate);
 		if (toEvaluate.getReturnType() == Datatype.BOOLEAN)
-			return new BooleanFitness(evals, (Node<VariableAssignment<Boolean>>) toEvaluate);
+			return new BooleanFitness(evals, columns, (Node<VariableAssignment<Boolean>>) toEvaluate);
 		else {
 			assert (toEvaluate.getReturnType() == Datatype.INTEGER);
-			return new IntegerFitness(evals, (Node<VariableAssignment<Integer>>) toEvaluate);
+			return new IntegerFitness(evals, columns, (Node<VariableAssignment<Integer>>) toEvaluate);
 		}
 	}
 
@@ -9,6 +9,7 @@ import java.util.Random;
 import org.apache.commons.collections4.MultiValuedMap;
 
 import mint.inference.evo.Chromosome;
+import mint.inference.gp.EvaluationColumns;
 import mint.inference.gp.fitness.singleOutput.SingleOutputBooleanFitness;
 import mint.inference.gp.fitness.singleOutput.SingleOutputDoubleFitness;
 import mint.inference.gp.fitness.singleOutput.SingleOutputFitness;
@@ -27,10 +28,18 @@ public class SingleOutputTournament extends IOTournamentSelection<VariableAssign
 
 	protected Map<Node<?>, List<Double>> distances = null;
 	boolean mem_dist = false;
+	protected EvaluationColumns columns;
 
 	public SingleOutputTournament(MultiValuedMap<List<VariableAssignment<?>>, VariableAssignment<?>> evals,
 			List<Chromosome> totalPopulation, int maxDepth, boolean mem_dist, Random rand) {
+		this(evals, null, totalPopulation, maxDepth, mem_dist, rand);
+	}
+
+	public SingleOutputTournament(MultiValuedMap<List<VariableAssignment<?>>, VariableAssignment<?>> evals,
+			EvaluationColumns columns, List<Chromosome> totalPopulation, int maxDepth, boolean mem_dist,
+			Random rand) {
 		super(evals, totalPopulation, maxDepth, rand);
+		this.columns = columns;
 		distances = new HashMap<Node<?>, List<Double>>();
 		this.mem_dist = mem_dist;
 	}
@@ -43,14 +52,14 @@ public class SingleOutputTournament extends IOTournamentSelection<VariableAssign
 			if (toEvaluate.getReturnType() == Datatype.STRING)
 				return new SingleOutputStringFitness(evals, (Node<VariableAssignment<String>>) toEvaluate, maxDepth);
 			if (toEvaluate.getReturnType() == Datatype.DOUBLE)
-				return new SingleOutputDoubleFitness(evals, (Node<VariableAssignment<Double>>) toEvaluate, maxDepth);
+				return new SingleOutputDoubleFitness(evals, columns, (Node<VariableAssignment<Double>>) toEvaluate, maxDepth);
 			if (toEvaluate.getReturnType() == Datatype.INTEGER)
-				return new SingleOutputIntegerFitness(evals, (Node<VariableAssignment<Integer>>) toEvaluate, maxDepth);
+				return new SingleOutputIntegerFitness(evals, columns, (Node<VariableAssignment<Integer>>) toEvaluate, maxDepth);
 			if (toEvaluate.getReturnType() == Datatype.LIST)
 				return new SingleOutputListFitness(evals, (Node<VariableAssignment<List>>) toEvaluate, maxDepth);
 			else {
 				assert (toEvaluate.getReturnType() == Datatype.BOOLEAN);
-				return new SingleOutputBooleanFitness(evals, (Node<VariableAssignment<Boolean>>) toEvaluate, maxDepth);
+				return new SingleOutputBooleanFitness(evals, columns, (Node<VariableAssignment<Boolean>>) toEvaluate, maxDepth);
 			}
 		}
 	}
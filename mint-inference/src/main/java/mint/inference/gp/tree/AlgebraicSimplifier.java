@@ -0,0 +1,196 @@
+package mint.inference.gp.tree;
+
+import java.util.Collections;
+import java.util.List;
+
+import mint.inference.gp.CompiledNode;
+import mint.inference.gp.tree.nonterminals.booleans.AndBooleanOperator;
+import mint.inference.gp.tree.nonterminals.booleans.GTBooleanDoublesOperator;
+import mint.inference.gp.tree.nonterminals.booleans.GTBooleanIntegersOperator;
+import mint.inference.gp.tree.nonterminals.booleans.LTBooleanDoublesOperator;
+import mint.inference.gp.tree.nonterminals.booleans.LTBooleanIntegersOperator;
+import mint.inference.gp.tree.nonterminals.booleans.NotBooleanOperator;
+import mint.inference.gp.tree.nonterminals.booleans.OrBooleanOperator;
+import mint.inference.gp.tree.nonterminals.doubles.AddDoublesOperator;
+import mint.inference.gp.tree.nonterminals.doubles.DivideDoublesOperator;
+import mint.inference.gp.tree.nonterminals.doubles.IfThenElseOperator;
+import mint.inference.gp.tree.nonterminals.doubles.MultiplyDoublesOperator;
+import mint.inference.gp.tree.nonterminals.doubles.PwrDoublesOperator;
+import mint.inference.gp.tree.nonterminals.doubles.SubtractDoublesOperator;
+import mint.inference.gp.tree.nonterminals.integers.AddIntegersOperator;
+import mint.inference.gp.tree.nonterminals.integers.IfThenElseIntegerOperator;
+import mint.inference.gp.tree.nonterminals.integers.MultiplyIntegersOperator;
+import mint.inference.gp.tree.nonterminals.integers.SubtractIntegersOperator;
+import mint.inference.gp.tree.terminals.BooleanVariableAssignmentTerminal;
+import mint.inference.gp.tree.terminals.DoubleVariableAssignmentTerminal;
+import mint.inference.gp.tree.terminals.IntegerVariableAssignmentTerminal;
+import mint.tracedata.types.BooleanVariableAssignment;
+import mint.tracedata.types.DoubleVariableAssignment;
+import mint.tracedata.types.IntegerVariableAssignment;
+import mint.tracedata.types.VariableAssignment;
+
+/**
+ *
+ * Simplifies GP trees by rewriting them bottom-up with a few algebraic rules,
+ * without a solver:
+ *
+ * - subtrees without variables are folded into constants (evaluated as the
+ * tree would evaluate them),
+ *
+ * - identities and annihilators are removed (x+0, x-0, x*1, x/1, x^1, x*0,
+ * x^0, p AND true, p OR false, p AND false, p OR true, p AND p, p OR p, NOT NOT
+ * p, x-x for integers, x<x and x>x),
+ *
+ * - the dead branch of an if-then-else with a constant condition (or with the
+ * same branches) is removed.
+ *
+ * As for the simplification with Z3, the rules are those of real arithmetic:
+ * x*0 is taken to be 0 even though x may not be finite, and x+0 to be x even
+ * though an operator keeps its result within the range of its result variable
+ * (so the two differ where x is out of that range). Subtrees that do not type
+ * check are left alone.
+ *
+ */
+public class AlgebraicSimplifier {
+
+	/**
+	 * Simplifies the given tree in place, and returns the simplified tree (which
+	 * may be a subtree of the given tree, or a new constant).
+	 *
+	 * @param node
+	 * @return
+	 */
+	public static Node<?> simplify(Node<?> node) {
+		if (!(node instanceof NonTerminal))
+			return node;
+		NonTerminal<?> nt = (NonTerminal<?>) node;
+		List<Node<?>> children = nt.getChildren();
+		for (int i = 0; i < children.size(); i++) {
+			Node<?> child = simplify(children.get(i));
+			if (child != children.get(i)) {
+				children.set(i, child);
+				child.setParent(nt);
+			}
+		}
+		Node<?> folded = fold(nt);
+		if (folded != nt)
+			return folded;
+		return applyRules(nt);
+	}
+
+	private static Node<?> fold(NonTerminal<?> node) {
+		for (Node<?> child : node.getChildren()) {
+			if (!isConstant(child))
+				return node;
+		}
+		CompiledNode program = CompiledNode.compile(node);
+		if (program == null || program.getReturnType() != node.getReturnType())
+			return node;
+		if (!program.bind(Collections.<VariableAssignment<?>>emptyList()))
+			return node;
+		program.run();
+		Node<?> constant = constant(program.result());
+		return constant == null ? node : constant;
+	}
+
+	private static Node<?> applyRules(NonTerminal<?> node) {
+		List<Node<?>> c = node.getChildren();
+		int arity = 2;
+		if (node instanceof NotBooleanOperator)
+			arity = 1;
+		else if (node instanceof IfThenElseOperator || node instanceof IfThenElseIntegerOperator)
+			arity = 3;
+		if (c.size() != arity)
+			return node;
+		if (node instanceof AddDoublesOperator || node instanceof AddIntegersOperator) {
+			if (isValue(c.get(0), 0))
+				return keep(node, c.get(1));
+			if (isValue(c.get(1), 0))
+				return keep(node, c.get(0));
+		} else if (node instanceof SubtractDoublesOperator || node instanceof SubtractIntegersOperator) {
+			if (isValue(c.get(1), 0))
+				return keep(node, c.get(0));
+			if (node instanceof SubtractIntegersOperator && c.get(0).sameSyntax(c.get(1)))
+				return keep(node, constant(0));
+		} else if (node instanceof MultiplyDoublesOperator || node instanceof MultiplyIntegersOperator) {
+			if (isValue(c.get(0), 0) || isValue(c.get(1), 1))
+				return keep(node, c.get(0));
+			if (isValue(c.get(1), 0) || isValue(c.get(0), 1))
+				return keep(node, c.get(1));
+		} else if (node instanceof DivideDoublesOperator) {
+			if (isValue(c.get(1), 1))
+				return keep(node, c.get(0));
+		} else if (node instanceof PwrDoublesOperator) {
+			if (isValue(c.get(1), 1))
+				return keep(node, c.get(0));
+			if (isValue(c.get(1), 0))
+				return keep(node, constant(1D));
+		} else if (node instanceof AndBooleanOperator) {
+			if (isValue(c.get(0), false) || isValue(c.get(1), true) || c.get(0).sameSyntax(c.get(1)))
+				return keep(node, c.get(0));
+			if (isValue(c.get(1), false) || isValue(c.get(0), true))
+				return keep(node, c.get(1));
+		} else if (node instanceof OrBooleanOperator) {
+			if (isValue(c.get(0), true) || isValue(c.get(1), false) || c.get(0).sameSyntax(c.get(1)))
+				return keep(node, c.get(0));
+			if (isValue(c.get(1), true) || isValue(c.get(0), false))
+				return keep(node, c.get(1));
+		} else if (node instanceof NotBooleanOperator) {
+			if (c.get(0) instanceof NotBooleanOperator && c.get(0).getChildren().size() == 1)
+				return keep(node, c.get(0).getChildren().get(0));
+		} else if (node instanceof IfThenElseOperator || node instanceof IfThenElseIntegerOperator) {
+			if (isValue(c.get(0), true) || c.get(1).sameSyntax(c.get(2)))
+				return keep(node, c.get(1));
+			if (isValue(c.get(0), false))
+				return keep(node, c.get(2));
+		} else if (node instanceof GTBooleanDoublesOperator || node instanceof GTBooleanIntegersOperator
+				|| node instanceof LTBooleanDoublesOperator || node instanceof LTBooleanIntegersOperator) {
+			if (c.get(0).sameSyntax(c.get(1)))
+				return keep(node, constant(false));
+		}
+		return node;
+	}
+
+	/*
+	 * Replaces the node with the given (simplified) node, if it is of the same
+	 * type.
+	 */
+	private static Node<?> keep(Node<?> node, Node<?> replacement) {
+		if (replacement != null && replacement.getReturnType() == node.getReturnType())
+			return replacement;
+		return node;
+	}
+
+	private static boolean isConstant(Node<?> node) {
+		return node instanceof Terminal && ((Terminal<?>) node).isConstant();
+	}
+
+	private static boolean isValue(Node<?> node, Object value) {
+		if (!isConstant(node))
+			return false;
+		Object constant = ((Terminal<?>) node).getTerminal().getValue();
+		if (value instanceof Number)
+			return constant instanceof Number && ((Number) constant).doubleValue() == ((Number) value).doubleValue();
+		return value.equals(constant);
+	}
+
+	/*
+	 * A constant terminal for the given value (named as NodeSimplifier names
+	 * them), or null if there is none.
+	 */
+	private static Node<?> constant(Object value) {
+		if (value instanceof Double) {
+			Double d = (Double) value;
+			if (d.isNaN() || d.isInfinite())
+				return null;
+			return new DoubleVariableAssignmentTerminal(new DoubleVariableAssignment(d.toString(), d), true, false);
+		}
+		if (value instanceof Integer)
+			return new IntegerVariableAssignmentTerminal(
+					new IntegerVariableAssignment(value.toString(), (Integer) value), true, false);
+		if (value instanceof Boolean)
+			return new BooleanVariableAssignmentTerminal(
+					new BooleanVariableAssignment(value.toString(), (Boolean) value), true, false);
+		return null;
+	}
+}
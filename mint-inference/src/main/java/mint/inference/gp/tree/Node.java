@@ -1,8 +1,13 @@
 package mint.inference.gp.tree;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.microsoft.z3.Context;
 import com.microsoft.z3.Expr;
@@ -26,7 +31,7 @@ public abstract class Node<T extends VariableAssignment<?>> implements Chromosom
 
 	private Double fitness = null;
 
-	protected static int ids = 0;
+	protected static final AtomicInteger ids = new AtomicInteger();
 
 	protected int id;
 
@@ -36,8 +41,15 @@ public abstract class Node<T extends VariableAssignment<?>> implements Chromosom
 
 	protected Set<Object> vals = new HashSet<Object>();
 
+	/*
+	 * The depth of the node, worked out when it is first asked for, and forgotten
+	 * (for the whole subtree) when the node is given a new parent; -1 if not
+	 * known. If the depth of a node is known, so is that of its parent.
+	 */
+	private int depth = -1;
+
 	public Node() {
-		id = ids++;
+		id = ids.getAndIncrement();
 	}
 
 	public NonTerminal<?> getParent() {
@@ -62,6 +74,18 @@ public abstract class Node<T extends VariableAssignment<?>> implements Chromosom
 
 	protected void setParent(NonTerminal<?> parent) {
 		this.parent = parent;
+		forgetDepth();
+		if (parent != null)
+			parent.childrenChanged();
+	}
+
+	private void forgetDepth() {
+		if (depth < 0)
+			return;
+		depth = -1;
+		for (Node<?> child : getChildren()) {
+			child.forgetDepth();
+		}
 	}
 
 	public abstract List<Node<?>> getChildren();
@@ -114,16 +138,26 @@ public abstract class Node<T extends VariableAssignment<?>> implements Chromosom
 
 	public abstract int size();
 
+	/**
+	 * Returns the height of the subtree of which this node is the root (0 for a
+	 * node without children).
+	 * 
+	 * @return
+	 */
+	public abstract int height();
+
 	/**
 	 * Returns the depth of this specific node within the tree.
 	 * 
 	 * @return
 	 */
 	public int depth() {
-		if (parent == null)
-			return 0;
-		else
-			return 1 + parent.depth();
+		int d = depth;
+		if (d < 0) {
+			d = parent == null ? 0 : 1 + parent.depth();
+			depth = d;
+		}
+		return d;
 	}
 
 	protected void checkInterrupted() throws InterruptedException {
@@ -139,40 +173,148 @@ public abstract class Node<T extends VariableAssignment<?>> implements Chromosom
 	 * @return
 	 */
 	public int subTreeMaxdepth() {
-		int maxDepth = 0;
-		if (getChildren().isEmpty())
-			maxDepth = depth();
-		else {
-
-			for (Node<?> child : getChildren()) {
-				int childMaxDepth = child.subTreeMaxdepth();
-				if (childMaxDepth > maxDepth) {
-					maxDepth = childMaxDepth;
-				}
+		return depth() + height();
+	}
+
+	/**
+	 * Combines the class of the node with the structural hashes of its children,
+	 * in order, or regardless of their order if the node is commutative.
+	 */
+	@Override
+	public long structuralHash() {
+		long hash = mix(getClass().getName().hashCode());
+		List<Node<?>> children = getChildren();
+		if (isCommutative()) {
+			long sum = 0;
+			for (Node<?> child : children) {
+				sum += child.structuralHash();
 			}
+			return mix(hash * 31 + sum);
+		}
+		for (Node<?> child : children) {
+			hash = mix(hash * 31 + child.structuralHash());
+		}
+		return hash;
+	}
 
+	/**
+	 * The same class, and children of the same structure, in order or (if the
+	 * node is commutative) in any order.
+	 */
+	@Override
+	public boolean sameStructure(Chromosome c) {
+		if (!getClass().equals(c.getClass()))
+			return false;
+		List<Node<?>> children = getChildren();
+		List<Node<?>> others = ((Node<?>) c).getChildren();
+		if (children.size() != others.size())
+			return false;
+		if (!isCommutative()) {
+			for (int i = 0; i < children.size(); i++) {
+				if (!children.get(i).sameStructure(others.get(i)))
+					return false;
+			}
+			return true;
 		}
-		return maxDepth;
+		// (each child can take the first match, as having the same structure is
+		// an equivalence)
+		List<Node<?>> unmatched = new ArrayList<Node<?>>(others);
+		for (Node<?> child : children) {
+			boolean matched = false;
+			Iterator<Node<?>> it = unmatched.iterator();
+			while (!matched && it.hasNext()) {
+				if (child.sameStructure(it.next())) {
+					it.remove();
+					matched = true;
+				}
+			}
+			if (!matched)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Whether the value of the node is the same for any order of its children.
+	 *
+	 * @return
+	 */
+	protected boolean isCommutative() {
+		return false;
+	}
+
+	/*
+	 * Spreads the bits of h over the whole hash (the finaliser of SplitMix64).
+	 */
+	protected static long mix(long h) {
+		h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+		h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+		return h ^ (h >>> 31);
 	}
 
 	public abstract Set<VariableTerminal<?>> varsInTree();
 
 	public abstract Expr toZ3(Context ctx);
 
+	/**
+	 * Returns a simplified copy of the tree (see AlgebraicSimplifier).
+	 */
 	@Override
 	@SuppressWarnings("unchecked")
 	public Node<T> simp() {
-		Context ctx = new Context();
+		Node<T> simplified = (Node<T>) AlgebraicSimplifier.simplify(copy());
+		simplified.setParent(null);
+		return simplified;
+	}
+
+	/*
+	 * Creating a Z3 context is expensive, so simplifications borrow one from a
+	 * pool of idle contexts. The pool keeps at most one per processor; contexts
+	 * created beyond that (by more threads simplifying at once) are closed once
+	 * they have been used, so no thread holds on to a context of its own.
+	 */
+	private static final int Z3_CONTEXTS = Runtime.getRuntime().availableProcessors();
+	private static final Deque<Context> z3Contexts = new ArrayDeque<Context>();
+
+	private static Context borrowZ3Context() {
+		synchronized (z3Contexts) {
+			Context ctx = z3Contexts.poll();
+			if (ctx != null)
+				return ctx;
+		}
+		return new Context();
+	}
+
+	private static void returnZ3Context(Context ctx) {
+		synchronized (z3Contexts) {
+			if (z3Contexts.size() < Z3_CONTEXTS) {
+				z3Contexts.push(ctx);
+				return;
+			}
+		}
+		ctx.close();
+	}
+
+	/**
+	 * Returns the tree simplified by Z3, which finds simplifications that simp()
+	 * does not (such as collecting terms), but is much more expensive. Returns
+	 * the tree itself if it cannot be simplified by Z3.
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public Node<T> z3Simp() {
+		Context ctx = null;
 		try {
+			ctx = borrowZ3Context();
 			Expr z3Expr = this.toZ3(ctx).simplify();
 			Node<T> retVal = (Node<T>) NodeSimplifier.fromZ3(z3Expr);
 			return retVal;
 		} catch (Exception e) {
 			return this;
 		} finally {
-			ctx.close();
+			if (ctx != null)
+				returnZ3Context(ctx);
 		}
-
 	}
 
 	@Override
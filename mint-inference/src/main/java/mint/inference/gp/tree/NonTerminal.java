@@ -19,8 +19,22 @@ public abstract class NonTerminal<T extends VariableAssignment<?>> extends Node<
 
 	protected List<Node<?>> children;
 
+	/*
+	 * The height and size of the subtree, worked out together when first asked
+	 * for, and forgotten (for this node and its ancestors) when its children
+	 * change; -1 if not known. If they are known for a node, so are they for its
+	 * descendants.
+	 */
+	private int height = -1;
+
+	private int size = -1;
+
 	public void setChildren(List<Node<?>> newChildren) {
 		this.children = newChildren;
+		childrenChanged();
+		for (Node<?> child : newChildren) {
+			child.setParent(this);
+		}
 	}
 
 	public NonTerminal() {
@@ -127,8 +141,8 @@ public abstract class NonTerminal<T extends VariableAssignment<?>> extends Node<
 		// Ideally I'd like to always make functions which type check
 		if (!g.nonTerms(this.getReturnType()).isEmpty()) {
 			NonTerminal<?> newFun = (NonTerminal<?>) g.generateRandomNonTerminal(this.typeSignature());
-			newFun.setChildren(this.children);
-			this.swapWith(newFun);
+			if (this.swapWith(newFun))
+				newFun.setChildren(this.children);
 		}
 	}
 
@@ -186,15 +200,39 @@ public abstract class NonTerminal<T extends VariableAssignment<?>> extends Node<
 
 	@Override
 	public int size() {
-		return 1 + childrenSizes();
+		if (size < 0)
+			measure();
+		return size;
+	}
+
+	@Override
+	public int height() {
+		if (height < 0)
+			measure();
+		return height;
 	}
 
-	private int childrenSizes() {
-		int sizes = 0;
+	private void measure() {
+		int h = 0;
+		int sizes = 1;
 		for (Node<?> n : children) {
+			h = Math.max(h, 1 + n.height());
 			sizes += n.size();
 		}
-		return sizes;
+		size = sizes;
+		height = h;
+	}
+
+	/*
+	 * Called when a child is added, removed or replaced.
+	 */
+	void childrenChanged() {
+		if (height < 0 && size < 0)
+			return;
+		height = -1;
+		size = -1;
+		if (parent != null)
+			parent.childrenChanged();
 	}
 
 	public Node<?> getChild(int x) {
@@ -237,6 +275,7 @@ public abstract class NonTerminal<T extends VariableAssignment<?>> extends Node<
 
 	public void clearChildren() {
 		children.clear();
+		childrenChanged();
 	}
 
 	@Override
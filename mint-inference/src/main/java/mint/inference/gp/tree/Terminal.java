@@ -55,6 +55,11 @@ public abstract class Terminal<V extends VariableAssignment<?>> extends Node<V>
 		return 1;
 	}
 
+	@Override
+	public int height() {
+		return 0;
+	}
+
 	@Override
 	protected List<Node<?>> getAllNodesAsList() {
 		List<Node<?>> nodes = new ArrayList<Node<?>>();
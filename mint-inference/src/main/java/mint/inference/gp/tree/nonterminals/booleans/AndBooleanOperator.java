@@ -76,4 +76,9 @@ public class AndBooleanOperator extends BooleanNonTerminal {
 	public Datatype[] typeSignature() {
 		return new Datatype[] { Datatype.BOOLEAN, Datatype.BOOLEAN, Datatype.BOOLEAN };
 	}
+
+	@Override
+	protected boolean isCommutative() {
+		return true;
+	}
 }
@@ -80,4 +80,9 @@ public class OrBooleanOperator extends BooleanNonTerminal {
 	public Datatype[] typeSignature() {
 		return new Datatype[] { Datatype.BOOLEAN, Datatype.BOOLEAN, Datatype.BOOLEAN };
 	}
+
+	@Override
+	protected boolean isCommutative() {
+		return true;
+	}
 }
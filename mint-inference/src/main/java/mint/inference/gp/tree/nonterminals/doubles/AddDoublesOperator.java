@@ -89,4 +89,9 @@ public class AddDoublesOperator extends DoubleNonTerminal {
 	public Datatype[] typeSignature() {
 		return new Datatype[] { Datatype.DOUBLE, Datatype.DOUBLE, Datatype.DOUBLE };
 	}
+
+	@Override
+	protected boolean isCommutative() {
+		return true;
+	}
 }
@@ -20,6 +20,10 @@ public abstract class DoubleNonTerminal extends NonTerminal<DoubleVariableAssign
 		this.result = res;
 	}
 
+	public DoubleVariableAssignment getResVar() {
+		return result;
+	}
+
 	protected DoubleVariableAssignment copyResVar() {
 		DoubleVariableAssignment dvar = new DoubleVariableAssignment("result", result.getMin(), result.getMax());
 		dvar.setEnforcing(true);
@@ -82,4 +82,9 @@ public class MultiplyDoublesOperator extends DoubleNonTerminal {
 	public Datatype[] typeSignature() {
 		return new Datatype[] { Datatype.DOUBLE, Datatype.DOUBLE, Datatype.DOUBLE };
 	}
+
+	@Override
+	protected boolean isCommutative() {
+		return true;
+	}
 }
@@ -86,4 +86,9 @@ public class AddIntegersOperator extends IntegerNonTerminal {
 	public Datatype[] typeSignature() {
 		return new Datatype[] { Datatype.INTEGER, Datatype.INTEGER, Datatype.INTEGER };
 	}
+
+	@Override
+	protected boolean isCommutative() {
+		return true;
+	}
 }
@@ -22,6 +22,10 @@ public abstract class IntegerNonTerminal extends NonTerminal<IntegerVariableAssi
 		this.result = res;
 	}
 
+	public IntegerVariableAssignment getResVar() {
+		return result;
+	}
+
 	@Override
 	public boolean accept(NodeVisitor visitor) throws InterruptedException {
 		visitor.visitEnter(this);
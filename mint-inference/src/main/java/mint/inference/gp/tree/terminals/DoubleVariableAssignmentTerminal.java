@@ -49,7 +49,7 @@ public class DoubleVariableAssignmentTerminal extends VariableTerminal<DoubleVar
 	public void mutate(Generator g, int depth) {
 
 		if (this.isConstant()) {
-			terminal.setToRandom();
+			terminal.setToRandom(g.getRandom());
 		} else if (!this.isConstant()) {
 			if (depth == 0)
 				swapWith(g.generateRandomDoubleExpression(1));
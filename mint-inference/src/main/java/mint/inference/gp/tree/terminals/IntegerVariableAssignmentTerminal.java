@@ -64,7 +64,7 @@ public class IntegerVariableAssignmentTerminal extends VariableTerminal<IntegerV
 				limit++;
 			swapWith(g.generateRandomIntegerExpression(g.getRandom().nextInt(limit)));
 		} else if (this.isConstant()) {
-			terminal.setToRandom();
+			terminal.setToRandom(g.getRandom());
 		}
 	}
 
@@ -28,7 +28,7 @@ public class ReadDef extends StringVariableAssignmentTerminal {
 		List<AssignmentOperator> defs = getDefsInScope(this, new ArrayList<AssignmentOperator>());
 		StringVariableAssignment sva = null;
 		if (defs.isEmpty()) {
-			dvar.setToRandom();
+			dvar.setToRandom(rand);
 			this.setValue(Double.toString(dvar.getValue()));
 			sva = getTerminal();
 		} else {
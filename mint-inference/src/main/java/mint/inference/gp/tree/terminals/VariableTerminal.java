@@ -1,5 +1,7 @@
 package mint.inference.gp.tree.terminals;
 
+import java.util.Objects;
+
 import mint.inference.evo.Chromosome;
 import mint.inference.gp.tree.Terminal;
 import mint.tracedata.types.VariableAssignment;
@@ -54,6 +56,32 @@ public abstract class VariableTerminal<T extends VariableAssignment<?>> extends
 		return false;
 	}
 
+	/**
+	 * Variables are identified by their names, and constants by their names and
+	 * values (as in sameSyntax). Latent variables range over the values of their
+	 * type seen so far, so these are counted in as well.
+	 */
+	@Override
+	public long structuralHash() {
+		long hash = mix(super.structuralHash() * 31 + (constant ? 1 : 0));
+		hash = mix(hash * 31 + getName().hashCode());
+		if (constant)
+			hash = mix(hash * 31 + Objects.hashCode(terminal.getValue()));
+		if (LATENT)
+			hash = mix(hash * 31 + terminal.getValues().size());
+		return hash;
+	}
+
+	@Override
+	public boolean sameStructure(Chromosome c) {
+		if (!sameSyntax(c))
+			return false;
+		VariableTerminal<?> var = (VariableTerminal<?>) c;
+		if (var.LATENT != LATENT)
+			return false;
+		return !LATENT || terminal.getValues().size() == var.getTerminal().getValues().size();
+	}
+
 	public boolean isLatent() {
 		return LATENT;
 	}
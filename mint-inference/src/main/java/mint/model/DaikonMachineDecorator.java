@@ -5,6 +5,7 @@ import daikon.FileIO;
 import daikon.PptMap;
 import daikon.inv.Invariant;
 import mint.Configuration;
+import mint.inference.constraints.InvariantPredicate;
 import mint.inference.constraints.InvariantsToZ3Constraints;
 import mint.model.dfa.TransitionData;
 import mint.tracedata.TraceElement;
@@ -14,21 +15,52 @@ import mint.tracedata.types.VariableAssignment;
 import org.apache.log4j.Logger;
 import org.jgrapht.graph.DefaultEdge;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.file.Files;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class DaikonMachineDecorator extends MachineDecorator {
 	
-	protected Map<DefaultEdge,String> edgesToDecls;
-	protected Map<DefaultEdge,String> edgesToDTraces;
 	protected Map<DefaultEdge,Set<Invariant>> edgesToInvariants;
-    protected Map<String,List<VariableAssignment<?>>> config;
 	protected boolean postProcess;
 	protected final int minElementsForDaikon;
 	protected Set<DefaultEdge> newEdges;
+
+	/*
+	 * The directory of the Daikon files of this decorator (so that runs in the
+	 * same process or directory do not overwrite each other's files), with a
+	 * subdirectory for each of the jobs the transitions were last split into.
+	 */
+	protected File workDir;
+	protected int jobs;
+
+	/*
+	 * The invariants of the transitions compiled into predicates, and the
+	 * results of the solver for pairs of invariant sets, both keyed by the
+	 * identity of the invariant sets (and cleared when invariants are computed
+	 * again, as that adds to the sets).
+	 */
+	protected Map<Set<Invariant>,InvariantPredicate> predicates;
+	protected Map<Set<Invariant>,Map<Set<Invariant>,Boolean>> solved;
+
+	/*
+	 * Daikon keeps its state in static fields, so it only runs once at a time
+	 * within a process.
+	 */
+	private final static Object DAIKON_LOCK = new Object();
+
+	private final static String[] DAIKON_OPTIONS = {"--nohierarchy","--no_text_output","--no_show_progress","--noversion"};
 	
 	private final static Logger LOGGER = Logger.getLogger(DaikonMachineDecorator.class.getName());
 	
@@ -40,11 +72,16 @@ public class DaikonMachineDecorator extends MachineDecorator {
 		super(decorated);
 		this.postProcess = postProcess;
 		minElementsForDaikon = minElements;
-		edgesToDecls = new HashMap<DefaultEdge,String>();
-		edgesToDTraces = new HashMap<DefaultEdge,String>();
 		edgesToInvariants = new HashMap<DefaultEdge,Set<Invariant>>();
-        config = new HashMap<String,List<VariableAssignment<?>>>();
 		newEdges = new HashSet<DefaultEdge>();
+		predicates = Collections.synchronizedMap(new IdentityHashMap<Set<Invariant>,InvariantPredicate>());
+		solved = Collections.synchronizedMap(new IdentityHashMap<Set<Invariant>,Map<Set<Invariant>,Boolean>>());
+		try {
+			workDir = Files.createTempDirectory("daikon").toFile();
+			workDir.deleteOnExit();
+		} catch (IOException e) {
+			throw new IllegalStateException("Could not create a directory for the Daikon files", e);
+		}
 		newEdges.addAll(component.getAutomaton().getTransitions());
 		computeDTraceFile();
 	}
@@ -55,15 +92,26 @@ public class DaikonMachineDecorator extends MachineDecorator {
 		buildDtrace(deIt);
 	}
 
+	/*
+	 * Writes the declarations and the records of the transitions with enough
+	 * elements, split (round robin) into Configuration.DAIKON_JOBS jobs.
+	 */
 	private void buildDtrace(Iterator<DefaultEdge> deIt) {
+		List<DefaultEdge> edges = new ArrayList<DefaultEdge>();
 		while(deIt.hasNext()){
 			DefaultEdge te = deIt.next();
 			TransitionData<Set<TraceElement>> td = component.getAutomaton().getTransitionData(te);
 			if(td.getPayLoad().size()<minElementsForDaikon)
 				continue;
-			computeForEdge(te);
+			edges.add(te);
+		}
+		jobs = Math.max(1, Math.min(Configuration.getInstance().DAIKON_JOBS, edges.size()));
+		for(int job = 0; job < jobs; job++){
+			List<DefaultEdge> jobEdges = new ArrayList<DefaultEdge>();
+			for(int i = job; i < edges.size(); i += jobs)
+				jobEdges.add(edges.get(i));
+			writeTraceFile(jobDir(job), jobEdges);
 		}
-		writeTraceFile();
 	}
 	
 	private void computeDTraceFileFromAutomaton() {
@@ -71,38 +119,49 @@ public class DaikonMachineDecorator extends MachineDecorator {
 		buildDtrace(deIt);
 	}
 
+	private File jobDir(int job) {
+		File dir = new File(workDir, "job"+job);
+		if(!dir.isDirectory()){
+			dir.mkdirs();
+			dir.deleteOnExit();
+		}
+		return dir;
+	}
+
+	private static File file(File dir, String name) {
+		File file = new File(dir, name);
+		file.deleteOnExit();
+		return file;
+	}
 
-	private void writeTraceFile() {
-        PrintWriter declOut = null;
-        PrintWriter dtraceOut = null;
-        try {
-			declOut = new PrintWriter(new FileWriter("model.decls"));
-			Iterator<String> declIt = edgesToDecls.values().iterator();
+	/*
+	 * Streams the declarations and the records of the given transitions to the
+	 * files of the given job.
+	 */
+	private void writeTraceFile(File dir, List<DefaultEdge> edges) {
+		Writer declOut = null;
+		Writer dtraceOut = null;
+		try {
+			declOut = new BufferedWriter(new FileWriter(file(dir, "model.decls")));
+			dtraceOut = new BufferedWriter(new FileWriter(file(dir, "model.dtrace")));
 			declOut.append("decl-version 2.0\n");
-			while(declIt.hasNext()){
-				String decl = declIt.next();
-				declOut.append(decl);
-			}
-			dtraceOut = new PrintWriter(new FileWriter("model.dtrace"));
-			Iterator<String> dTraceIt = edgesToDTraces.values().iterator();
-			while(dTraceIt.hasNext()){
-				String dtrace = dTraceIt.next();
-                dtraceOut.append(dtrace);
+			for (DefaultEdge te : edges) {
+				computeForEdge(te, declOut, dtraceOut);
 			}
 		} catch (IOException e) {
-			e.printStackTrace();
+			LOGGER.error("Could not write the traces for Daikon in "+dir, e);
+		}
+		finally{
+			try {
+				if(declOut != null)
+					declOut.close();
+				if(dtraceOut != null)
+					dtraceOut.close();
+			}
+			catch(Exception e){
+				LOGGER.error("Could not close the traces for Daikon in "+dir, e);
+			}
 		}
-        finally{
-            try {
-                declOut.close();
-                dtraceOut.close();
-            }
-            catch(Exception e){
-                e.printStackTrace();
-            }
-        }
-		
-		
 	}
 	
 	/*
@@ -113,63 +172,54 @@ public class DaikonMachineDecorator extends MachineDecorator {
 				component.getAutomaton().getTransitionTarget(te)+te.hashCode()+":::OBJECT";
 	}
 
-	protected void computeForEdge(DefaultEdge te) {
+	/*
+	 * Writes the declaration of the transition, and a record for each of its
+	 * elements. The variables of the declaration are those of the first
+	 * element; those of the other elements are put in the same order by name.
+	 */
+	protected void computeForEdge(DefaultEdge te, Writer declOut, Writer dtraceOut) throws IOException {
 		TransitionData<Set<TraceElement>> td = component.getAutomaton().getTransitionData(te);
 		String name = getName(td.getLabel(),te);
-        Iterator<TraceElement> teIt = td.getPayLoad().iterator();
-        edgesToDecls.put(te, getDecl(name, td));
-        while(teIt.hasNext()) {
-            TraceElement tel = teIt.next();
-            if(edgesToDTraces.get(te) == null)
-                edgesToDTraces.put(te, getDTrace(name, tel));
-            else{
-                String existing = edgesToDTraces.get(te);
-                existing = existing + "\n"+getDTrace(name,tel);
-                edgesToDTraces.put(te,existing);
-            }
-        }
+		List<VariableAssignment<?>> decls = new ArrayList<VariableAssignment<?>>(td.getPayLoad().iterator().next().getData());
+		Map<String,Integer> schema = new HashMap<String,Integer>();
+		for (int i = 0; i < decls.size(); i++) {
+			schema.put(decls.get(i).getName(), i);
+		}
+		writeDecl(name, decls, declOut);
+		VariableAssignment<?>[] row = new VariableAssignment<?>[decls.size()];
+		for (TraceElement tel : td.getPayLoad()) {
+			Arrays.fill(row, null);
+			for (VariableAssignment<?> var : tel.getData()) {
+				Integer index = schema.get(var.getName());
+				if(index != null)
+					row[index] = var;
+			}
+			writeDTrace(name, decls, row, dtraceOut);
+		}
 	}
 
-	private String getDTrace(String name, TraceElement te) {
-		StringBuffer dtrace = new StringBuffer();
-
-        dtrace.append(name + "\n");
-        Set<VariableAssignment<?>> vars = te.getData();
-        List<VariableAssignment<?>> decls = config.get(name);
-        for (VariableAssignment<?> dec : decls) {
-            VariableAssignment<?> var = findInVars(dec.getName(),vars);
-            dtrace.append(var.getName() + "\n");
-            if (var instanceof BooleanVariableAssignment)
+	private void writeDTrace(String name, List<VariableAssignment<?>> decls, VariableAssignment<?>[] row, Writer dtrace) throws IOException {
+        dtrace.append(name).append("\n");
+        for (int i = 0; i < row.length; i++) {
+            VariableAssignment<?> var = row[i];
+            dtrace.append(decls.get(i).getName()).append("\n");
+            if (var == null)
+                dtrace.append("nonsensical\n2\n");
+            else if (var instanceof BooleanVariableAssignment)
                 dtrace.append((Boolean) var.getValue() + "\n1\n");
             else if (var instanceof DoubleVariableAssignment)
                 dtrace.append((Double) var.getValue() + "\n1\n");
             else dtrace.append("\"" + (String) var.getValue() + "\"\n1\n");
-
         }
         dtrace.append("\n");
-
-		return dtrace.toString();
 	}
 
-    private VariableAssignment<?> findInVars(String name, Set<VariableAssignment<?>> vars) {
-        for(VariableAssignment<?> var : vars){
-            if(var.getName().equals(name))
-                return var;
-        }
-        return null;
-    }
-
     public Set<Invariant> getInvariants(DefaultEdge e){
 		return edgesToInvariants.get(e);
 	}
 
-	private String getDecl(String name, TransitionData<Set<TraceElement>> data) {
-		StringBuffer decl = new StringBuffer();
-        TraceElement te = data.getPayLoad().iterator().next();
+	private void writeDecl(String name, List<VariableAssignment<?>> vars, Writer decl) throws IOException {
 		decl.append("ppt "+ name+"\nppt-type object\n");
-		List<VariableAssignment<?>> vars = new ArrayList<VariableAssignment<?>>();
-        vars.addAll(te.getData());
-        config.put(name,vars);
 		for (VariableAssignment<?> var : vars) {
 			decl.append("variable " + var.getName()+"\nvar-kind variable\n");
 			
@@ -181,16 +231,11 @@ public class DaikonMachineDecorator extends MachineDecorator {
 			
 		}
 		decl.append("\n");
-		return decl.toString();
 	}
 
 	public DefaultEdge  mergeTransitions(Integer source, DefaultEdge a,
 										 DefaultEdge b){
 
-		edgesToDecls.remove(a);
-		edgesToDecls.remove(b);
-		edgesToDTraces.remove(a);
-		edgesToDTraces.remove(b);
 		edgesToInvariants.remove(a);
 		edgesToInvariants.remove(b);
 		DefaultEdge merged = super.mergeTransitions(source, a, b);
@@ -201,8 +246,6 @@ public class DaikonMachineDecorator extends MachineDecorator {
 	}
 	
 	public void postProcessMerge(){
-		edgesToDTraces.clear();
-		edgesToDecls.clear();
 		computeDTraceFile();
 		if(!newEdges.isEmpty())
 			computeInvariants(false);
@@ -228,31 +271,71 @@ public class DaikonMachineDecorator extends MachineDecorator {
 		
 	}
 	
+	/*
+	 * Whether the invariants of the two transitions can hold together. The
+	 * result of the solver is kept for the pair of invariant sets.
+	 */
 	public boolean constraintCompatible(DefaultEdge transitionA, DefaultEdge transitionB) {
-		
-		if(getInvariants(transitionA) == null||getInvariants(transitionB) == null)
+		Set<Invariant> invariantsA = getInvariants(transitionA);
+		Set<Invariant> invariantsB = getInvariants(transitionB);
+		if(invariantsA == null||invariantsB == null)
 			return true;
-		InvariantsToZ3Constraints ic;
+		Boolean known = solved(invariantsA, invariantsB);
+		if(known == null)
+			known = solved(invariantsB, invariantsA);
+		if(known != null)
+			return known;
+		boolean result = solve(invariantsA, invariantsB, null);
+		synchronized(solved){
+			Map<Set<Invariant>,Boolean> results = solved.get(invariantsA);
+			if(results == null){
+				results = new IdentityHashMap<Set<Invariant>,Boolean>();
+				solved.put(invariantsA, results);
+			}
+			results.put(invariantsB, result);
+		}
+		return result;
+	}
+
+	private Boolean solved(Set<Invariant> invariantsA, Set<Invariant> invariantsB) {
+		synchronized(solved){
+			Map<Set<Invariant>,Boolean> results = solved.get(invariantsA);
+			return results == null ? null : results.get(invariantsB);
+		}
+	}
+
+	/*
+	 * Solves the given invariants (and the data of the given element, if any)
+	 * with Z3.
+	 */
+	private boolean solve(Set<Invariant> invariantsA, Set<Invariant> invariantsB, TraceElement td) {
+		InvariantsToZ3Constraints ic = null;
 		try {
 			ic = new InvariantsToZ3Constraints();
-			Iterator<Invariant> invIt = getInvariants(transitionA).iterator();
-			while(invIt.hasNext()){
-				Invariant cur = invIt.next();
+			for (Invariant cur : invariantsA) {
 				ic.addInvariant(cur);
 			}
-			invIt = getInvariants(transitionB).iterator();
-			while(invIt.hasNext()){
-				Invariant cur = invIt.next();
-				ic.addInvariant(cur);
+			if(invariantsB != null){
+				for (Invariant cur : invariantsB) {
+					ic.addInvariant(cur);
+				}
+			}
+			if(td != null){
+				for (VariableAssignment<?> var : td.getData()) {
+					ic.addVariableAssignment(var);
+				}
 			}
-			if(! ic.solve()){
+			if(!ic.solve()){
 				return false;
 			}
 		} catch (Z3Exception e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+			// (the invariants are then taken to be satisfiable, so nothing is ruled out)
+			LOGGER.error("Could not solve the invariants "+invariantsA+(invariantsB == null ? "" : " and "+invariantsB), e);
+		}
+		finally{
+			if(ic != null)
+				ic.close();
 		}
-		
 		return true;
 	}
 
@@ -265,29 +348,28 @@ public class DaikonMachineDecorator extends MachineDecorator {
 	}
 	
 	
+	/*
+	 * The invariants of the transition are evaluated against the data of the
+	 * element in Java; the solver is only needed when they refer to variables
+	 * that the element has no value for.
+	 */
 	private boolean checkCompatible(TraceElement td, DefaultEdge transitionB) {
-		
-		InvariantsToZ3Constraints ic;
-		try {
-			ic = new InvariantsToZ3Constraints();
-			Iterator<Invariant> invIt = getInvariants(transitionB).iterator();
-			while(invIt.hasNext()){
-				Invariant cur = invIt.next();
-				ic.addInvariant(cur);
-			}
-			Set<VariableAssignment<?>> vars = td.getData();
-			for (VariableAssignment<?> var : vars) {
-				ic.addVariableAssignment(var);
-			}
-			if(!ic.solve()){
+		Set<Invariant> invariants = getInvariants(transitionB);
+		if(invariants == null)
+			return true;
+		InvariantPredicate predicate = predicates.get(invariants);
+		if(predicate == null){
+			predicate = new InvariantPredicate(invariants);
+			predicates.put(invariants, predicate);
+		}
+		switch(predicate.evaluate(td)){
+			case HOLDS:
+				return true;
+			case FAILS:
 				return false;
-			}
-		} catch (Z3Exception e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+			default:
+				return solve(invariants, null, td);
 		}
-		
-		return true;
 	}
 	
 	protected Set<DefaultEdge> elementsForEdge(DefaultEdge e, Map<DefaultEdge,Set<DefaultEdge>> map){
@@ -330,40 +412,120 @@ public class DaikonMachineDecorator extends MachineDecorator {
 	
 	
 	protected void computeInvariants(boolean finished){
-		if(finished){
+		predicates.clear();
+		solved.clear();
+		if(finished)
 			LOGGER.debug("Running daikon without restrictions.");
-			daikon.Daikon.main(new String[]{"model.decls","model.dtrace","--nohierarchy","--no_text_output","--no_show_progress","--noversion"});
+		for (File inv : runDaikon()) {
+			if(!inv.exists()){
+				LOGGER.error("Daikon did not produce "+inv);
+				continue;
+			}
+			try {
+				PptMap ppts;
+				synchronized(DAIKON_LOCK){
+					ppts = FileIO.read_serialized_pptmap(inv,
+					        true // use saved config
+					        );
+				}
+				addInvariants(ppts);
+			} catch (IOException e) {
+				LOGGER.error("Could not read the invariants in "+inv, e);
+			}
 		}
-		else
-			daikon.Daikon.main(new String[]{"model.decls","model.dtrace","--nohierarchy","--no_text_output","--no_show_progress","--noversion"});
-		try {
-			PptMap ppts = FileIO.read_serialized_pptmap(new File("model.inv.gz"),
-			        true // use saved config
-			        );
-			Iterator<DefaultEdge> edgeIt = component.getAutomaton().getTransitions().iterator();
-			
-			while(edgeIt.hasNext()){
-				DefaultEdge de = edgeIt.next();
-				TransitionData<Set<TraceElement>> data = component.getAutomaton().getTransitionData(de);
-				String pptLabel = getName(data.getLabel(),de);
-				Set<Invariant> invariants = edgesToInvariants.get(de);
-				if(invariants == null)
-					invariants = new HashSet<Invariant>();
-				if(!ppts.containsName(pptLabel))
+	}
+
+	private void addInvariants(PptMap ppts) {
+		Iterator<DefaultEdge> edgeIt = component.getAutomaton().getTransitions().iterator();
+		
+		while(edgeIt.hasNext()){
+			DefaultEdge de = edgeIt.next();
+			TransitionData<Set<TraceElement>> data = component.getAutomaton().getTransitionData(de);
+			String pptLabel = getName(data.getLabel(),de);
+			if(!ppts.containsName(pptLabel))
+				continue;
+			Set<Invariant> invariants = edgesToInvariants.get(de);
+			if(invariants == null)
+				invariants = new HashSet<Invariant>();
+			Iterator<Invariant> invIt = ppts.get(pptLabel).invariants_iterator();
+			while(invIt.hasNext()){
+				Invariant inv = invIt.next();
+				if(!inv.isWorthPrinting())
 					continue;
-				Iterator<Invariant> invIt = ppts.get(pptLabel).invariants_iterator();
-				while(invIt.hasNext()){
-					Invariant inv = invIt.next();
-					if(!inv.isWorthPrinting())
-						continue;
-					invariants.add(inv);
+				invariants.add(inv);
+			}
+			edgesToInvariants.put(de, invariants);
+		}
+	}
+
+	/*
+	 * Runs Daikon on the files of each job, and returns the files of the
+	 * (serialised) invariants. A single job runs within this process; several
+	 * run concurrently, each in a JVM of its own.
+	 */
+	private List<File> runDaikon() {
+		List<File> results = new ArrayList<File>();
+		List<Callable<Boolean>> runs = new ArrayList<Callable<Boolean>>();
+		for (int job = 0; job < jobs; job++) {
+			final File dir = jobDir(job);
+			final File inv = file(dir, "model.inv.gz");
+			inv.delete();
+			results.add(inv);
+			final List<String> args = new ArrayList<String>();
+			args.add(new File(dir, "model.decls").getPath());
+			args.add(new File(dir, "model.dtrace").getPath());
+			args.addAll(Arrays.asList(DAIKON_OPTIONS));
+			args.add("-o");
+			args.add(inv.getPath());
+			if(jobs == 1){
+				synchronized(DAIKON_LOCK){
+					daikon.Daikon.main(args.toArray(new String[args.size()]));
 				}
-				edgesToInvariants.put(de, invariants);
+				return results;
 			}
-		} catch (IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+			runs.add(new Callable<Boolean>() {
+				@Override
+				public Boolean call() throws IOException, InterruptedException {
+					List<String> command = new ArrayList<String>();
+					command.add(System.getProperty("java.home")+File.separator+"bin"+File.separator+"java");
+					command.add("-cp");
+					command.add(System.getProperty("java.class.path"));
+					command.add("daikon.Daikon");
+					command.addAll(args);
+					Process daikon = new ProcessBuilder(command).directory(dir).redirectErrorStream(true)
+							.redirectOutput(file(dir, "daikon.log")).start();
+					int exit = daikon.waitFor();
+					if(exit != 0)
+						LOGGER.error("Daikon failed (exit code "+exit+") - see "+new File(dir, "daikon.log"));
+					return exit == 0;
+				}
+			});
+		}
+		LOGGER.debug("Running "+jobs+" Daikon jobs in "+workDir);
+		ExecutorService executor = Executors.newFixedThreadPool(jobs, new ThreadFactory() {
+
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "daikon-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		try {
+			for (Future<Boolean> run : executor.invokeAll(runs)) {
+				run.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while running Daikon", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Failed to run Daikon", e.getCause());
+		} finally {
+			executor.shutdownNow();
 		}
+		return results;
 	}
 
 }
@@ -1,23 +1,36 @@
 package mint.model;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.collections4.MultiValuedMap;
+import org.apache.commons.collections4.multimap.AbstractSetValuedMap;
 import org.apache.commons.collections4.multimap.HashSetValuedHashMap;
 import org.apache.log4j.Logger;
 import org.jgrapht.graph.DefaultEdge;
 
 import mint.Configuration;
 import mint.inference.evo.GPConfiguration;
-import mint.inference.filter.Filter;
-import mint.inference.filter.RemoveConstantsFilter;
 import mint.inference.gp.Generator;
 import mint.inference.gp.NodeExecutor;
 import mint.inference.gp.SingleOutputGP;
@@ -45,6 +58,7 @@ import mint.inference.gp.tree.terminals.DoubleVariableAssignmentTerminal;
 import mint.inference.gp.tree.terminals.IntegerVariableAssignmentTerminal;
 import mint.inference.gp.tree.terminals.StringVariableAssignmentTerminal;
 import mint.inference.gp.tree.terminals.VariableTerminal;
+import mint.model.dfa.TraceDFA;
 import mint.model.dfa.TransitionData;
 import mint.tracedata.TraceElement;
 import mint.tracedata.types.BooleanVariableAssignment;
@@ -111,40 +125,229 @@ public class GPFunctionMachineDecorator extends MachineDecorator {
 		return edgesToFunctions.put(de, funcs);
 	}
 
+	/**
+	 * Infers a function for every output variable of every transition. The
+	 * training sets of all transitions are collected first, and transitions
+	 * with the same training set (over the same variables) share a single GP
+	 * run. The runs are spread over Configuration.FUNCTION_THREADS threads, and
+	 * each seeds its generator from Configuration.SEED and the transition (and
+	 * variable) it was first needed for, so the functions do not depend on the
+	 * number of threads.
+	 */
 	@Override
 	public void postProcess() {
-		Iterator<DefaultEdge> edgeIt = component.getAutomaton().getTransitions().iterator();
-		int counter = 0;
-		while (edgeIt.hasNext()) {
-			counter++;
-			LOGGER.debug(counter + " out of " + component.getAutomaton().getTransitions().size());
-			Set<Node<?>> functions = new HashSet<Node<?>>();
-			DefaultEdge current = edgeIt.next();
-			LOGGER.debug("current label: " + component.getAutomaton().getTransitionSource(current) + "->"
-					+ component.getAutomaton().getTransitionTarget(current) + ":" + component.getLabel(current));
-			TransitionData<Set<TraceElement>> traceData = component.getAutomaton().getTransitionData(current);
-
-			Generator gpGenerator = makeGenerator(traceData.getPayLoad());
-			Filter removeIdentical = new RemoveConstantsFilter();
+		final TraceDFA<Set<TraceElement>> automaton = component.getAutomaton();
+		List<DefaultEdge> edges = new ArrayList<DefaultEdge>(automaton.getTransitions());
+		Collections.sort(edges, new Comparator<DefaultEdge>() {
+			@Override
+			public int compare(DefaultEdge a, DefaultEdge b) {
+				int c = automaton.getTransitionSource(a).compareTo(automaton.getTransitionSource(b));
+				if (c == 0)
+					c = automaton.getTransitionTarget(a).compareTo(automaton.getTransitionTarget(b));
+				if (c == 0)
+					c = component.getLabel(a).compareTo(component.getLabel(b));
+				return c;
+			}
+		});
+
+		Map<List<Object>, FunctionJob> jobs = new LinkedHashMap<List<Object>, FunctionJob>();
+		Map<DefaultEdge, List<FunctionJob>> edgesToJobs = new HashMap<DefaultEdge, List<FunctionJob>>();
+		int needed = 0;
+		for (DefaultEdge current : edges) {
+			List<FunctionJob> edgeJobs = new ArrayList<FunctionJob>();
+			edgesToJobs.put(current, edgeJobs);
+			String edgeName = automaton.getTransitionSource(current) + "->" + automaton.getTransitionTarget(current)
+					+ ":" + component.getLabel(current);
+			TransitionData<Set<TraceElement>> traceData = automaton.getTransitionData(current);
 			Map<String, MultiValuedMap<List<VariableAssignment<?>>, VariableAssignment<?>>> trainingData = getTrainingData(
-					traceData);// removeIdentical.filter(getTrainingData(traceData));
-			removeIdentical.filter(getTrainingData(traceData));
-			for (String outputVar : trainingData.keySet()) {
-				LOGGER.debug("Variable: " + outputVar + ", Training set size: " + trainingData.get(outputVar).size());
+					traceData);// new RemoveConstantsFilter().filter(trainingData);
+			List<String> terminals = null;
+			for (String outputVar : new TreeSet<String>(trainingData.keySet())) {
 				MultiValuedMap<List<VariableAssignment<?>>, VariableAssignment<?>> train = trainingData.get(outputVar);
+				LOGGER.debug(edgeName + " - variable: " + outputVar + ", training set size: " + train.size());
 				if (train.size() < this.minElements)
 					continue;
-				SingleOutputGP gp = new SingleOutputGP(gpGenerator, train, conf);
+				if (terminals == null)
+					terminals = describeTerminals(traceData.getPayLoad());
+				List<Object> problem = Arrays.<Object>asList(describe(train), terminals);
+				FunctionJob job = jobs.get(problem);
+				if (job == null) {
+					long seed = Configuration.getInstance().SEED * 31L + (edgeName + "/" + outputVar).hashCode();
+					job = new FunctionJob(outputVar, ordered(train), makeGenerator(traceData.getPayLoad(), new Random(seed)));
+					jobs.put(problem, job);
+				}
+				edgeJobs.add(job);
+				needed++;
+			}
+		}
+
+		infer(new ArrayList<FunctionJob>(jobs.values()), needed);
 
-				Node<?> evolved = (Node<?>) gp.evolve(iterations);
-				simplify(evolved, train);
-				LOGGER.debug("Simplified: " + evolved.toString());
-				expressionsToVarNames.put(evolved, outputVar);
+		for (DefaultEdge current : edges) {
+			Set<Node<?>> functions = new HashSet<Node<?>>();
+			for (FunctionJob job : edgesToJobs.get(current)) {
+				Node<?> evolved = job.take();
+				expressionsToVarNames.put(evolved, job.outputVar);
 				functions.add(evolved);
 			}
 			edgesToFunctions.put(current, functions);
 		}
+	}
 
+	/*
+	 * Runs the given GP jobs (which the transitions need the given number of
+	 * functions from) on a bounded pool, and reports progress as they finish.
+	 */
+	private void infer(List<FunctionJob> jobs, int needed) {
+		if (jobs.isEmpty())
+			return;
+		int threads = Configuration.getInstance().FUNCTION_THREADS;
+		if (threads <= 0)
+			threads = Runtime.getRuntime().availableProcessors();
+		threads = Math.min(threads, jobs.size());
+		LOGGER.info("Inferring " + jobs.size() + " functions for " + needed + " transition variables on " + threads
+				+ " threads");
+		ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "gp-function-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		CompletionService<FunctionJob> completion = new ExecutorCompletionService<FunctionJob>(executor);
+		for (FunctionJob job : jobs) {
+			completion.submit(job);
+		}
+		long start = System.currentTimeMillis();
+		try {
+			for (int done = 1; done <= jobs.size(); done++) {
+				FunctionJob job = completion.take().get();
+				long elapsed = System.currentTimeMillis() - start;
+				long remaining = elapsed * (jobs.size() - done) / done;
+				LOGGER.info(done + " out of " + jobs.size() + " functions inferred (" + job.outputVar + " = "
+						+ job.evolved + ") - elapsed: " + elapsed / 1000 + "s, remaining: about " + remaining / 1000
+						+ "s");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while inferring transition functions", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Failed to infer transition functions", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/*
+	 * A GP run that infers the function for an output variable from a training
+	 * set. The first transition that takes its result gets the evolved function,
+	 * and any others (with the same training set) get copies of it.
+	 */
+	private class FunctionJob implements Callable<FunctionJob> {
+
+		final String outputVar;
+		final MultiValuedMap<List<VariableAssignment<?>>, VariableAssignment<?>> train;
+		final Generator gpGenerator;
+		Node<?> evolved;
+		int taken = 0;
+
+		FunctionJob(String outputVar, MultiValuedMap<List<VariableAssignment<?>>, VariableAssignment<?>> train,
+				Generator gpGenerator) {
+			this.outputVar = outputVar;
+			this.train = train;
+			this.gpGenerator = gpGenerator;
+		}
+
+		@Override
+		public FunctionJob call() {
+			SingleOutputGP gp = new SingleOutputGP(gpGenerator, train, conf);
+			evolved = (Node<?>) gp.evolve(iterations);
+			simplify(evolved, train);
+			LOGGER.debug("Simplified: " + evolved.toString());
+			return this;
+		}
+
+		Node<?> take() {
+			if (taken++ == 0)
+				return evolved;
+			Node<?> copy = evolved.copy();
+			simplify(copy, train);
+			return copy;
+		}
+	}
+
+	/*
+	 * The training set as text, with the inputs of each example in order of
+	 * name, so that equal training sets of different transitions are equal.
+	 */
+	private static List<String> describe(MultiValuedMap<List<VariableAssignment<?>>, VariableAssignment<?>> train) {
+		List<String> examples = new ArrayList<String>();
+		for (Map.Entry<List<VariableAssignment<?>>, VariableAssignment<?>> example : train.entries()) {
+			examples.add(describe(example));
+		}
+		Collections.sort(examples);
+		return examples;
+	}
+
+	private static String describe(Map.Entry<List<VariableAssignment<?>>, VariableAssignment<?>> example) {
+		List<String> inputs = new ArrayList<String>();
+		for (VariableAssignment<?> input : example.getKey()) {
+			inputs.add(input.toString() + input.typeString());
+		}
+		Collections.sort(inputs);
+		return inputs + " -> " + example.getValue() + example.getValue().typeString();
+	}
+
+	/*
+	 * A copy of the training set that lists its examples in order of their
+	 * description (rather than in order of the hash codes of the variables, which
+	 * differ from one run to the next), so that the GP sees them in the same
+	 * order whichever thread runs it.
+	 */
+	private static MultiValuedMap<List<VariableAssignment<?>>, VariableAssignment<?>> ordered(
+			MultiValuedMap<List<VariableAssignment<?>>, VariableAssignment<?>> train) {
+		List<Map.Entry<List<VariableAssignment<?>>, VariableAssignment<?>>> examples = new ArrayList<Map.Entry<List<VariableAssignment<?>>, VariableAssignment<?>>>(
+				train.entries());
+		Collections.sort(examples, new Comparator<Map.Entry<List<VariableAssignment<?>>, VariableAssignment<?>>>() {
+			@Override
+			public int compare(Map.Entry<List<VariableAssignment<?>>, VariableAssignment<?>> a,
+					Map.Entry<List<VariableAssignment<?>>, VariableAssignment<?>> b) {
+				return describe(a).compareTo(describe(b));
+			}
+		});
+		MultiValuedMap<List<VariableAssignment<?>>, VariableAssignment<?>> ordered = new AbstractSetValuedMap<List<VariableAssignment<?>>, VariableAssignment<?>>(
+				new LinkedHashMap<List<VariableAssignment<?>>, Set<VariableAssignment<?>>>()) {
+			@Override
+			protected Set<VariableAssignment<?>> createCollection() {
+				return new LinkedHashSet<VariableAssignment<?>>();
+			}
+		};
+		for (Map.Entry<List<VariableAssignment<?>>, VariableAssignment<?>> example : examples) {
+			ordered.put(example.getKey(), example.getValue());
+		}
+		return ordered;
+	}
+
+	/*
+	 * The terminals that a generator for the given payload builds functions
+	 * from, in order.
+	 */
+	private List<String> describeTerminals(Set<TraceElement> payload) {
+		List<String> terminals = new ArrayList<String>();
+		for (VariableTerminal<?> terminal : generateTerms(payload.iterator().next()))
+			terminals.add("D:" + terminal);
+		for (VariableTerminal<?> terminal : generateIntTerms(payload.iterator().next()))
+			terminals.add("I:" + terminal);
+		for (VariableTerminal<?> terminal : generateBooleanTerms(payload.iterator().next()))
+			terminals.add("B:" + terminal);
+		for (VariableTerminal<?> terminal : generateStringTerms(payload))
+			terminals.add("S:" + terminal);
+		Collections.sort(terminals);
+		return terminals;
 	}
 
 	private void simplify(Node<?> evolved, MultiValuedMap<List<VariableAssignment<?>>, VariableAssignment<?>> train) {
@@ -159,9 +362,8 @@ public class GPFunctionMachineDecorator extends MachineDecorator {
 		}
 	}
 
-	private Generator makeGenerator(Set<TraceElement> payload) {
-		Configuration config = Configuration.getInstance();
-		Generator gpGenerator = new Generator(new Random(config.SEED));
+	private Generator makeGenerator(Set<TraceElement> payload, Random rand) {
+		Generator gpGenerator = new Generator(rand);
 
 		List<NonTerminal<?>> doubleNonTerms = new ArrayList<NonTerminal<?>>();
 		doubleNonTerms.add(new AddDoublesOperator());
@@ -205,7 +407,7 @@ public class GPFunctionMachineDecorator extends MachineDecorator {
 	private List<VariableTerminal<?>> generateBooleanTerms(TraceElement data) {
 		List<VariableTerminal<?>> intTerms = new ArrayList<VariableTerminal<?>>();
 
-		for (VariableAssignment<?> var : data.getData()) {
+		for (VariableAssignment<?> var : byName(data.getData())) {
 			if (var.typeString().equals(":B")) {
 				BooleanVariableAssignment iv = new BooleanVariableAssignment(var.getName());
 				iv.setParameter(true);
@@ -224,7 +426,7 @@ public class GPFunctionMachineDecorator extends MachineDecorator {
 	private List<VariableTerminal<?>> generateIntTerms(TraceElement data) {
 		List<VariableTerminal<?>> intTerms = new ArrayList<VariableTerminal<?>>();
 
-		for (VariableAssignment<?> var : data.getData()) {
+		for (VariableAssignment<?> var : byName(data.getData())) {
 			if (var.typeString().equals(":I")) {
 				IntegerVariableAssignment iv = new IntegerVariableAssignment(var.getName());
 				iv.setParameter(true);
@@ -285,14 +487,35 @@ public class GPFunctionMachineDecorator extends MachineDecorator {
 			stringTerms
 					.add(new StringVariableAssignmentTerminal(new StringVariableAssignment(value, value), true, false));
 		}
+		Collections.sort(stringTerms, new Comparator<VariableTerminal<?>>() {
+			@Override
+			public int compare(VariableTerminal<?> a, VariableTerminal<?> b) {
+				return a.toString().compareTo(b.toString());
+			}
+		});
 		return stringTerms;
 	}
 
+	/*
+	 * The given variables in order of name, so that generators have their
+	 * terminals in the same order whatever the order of the data.
+	 */
+	private static List<VariableAssignment<?>> byName(Collection<VariableAssignment<?>> data) {
+		List<VariableAssignment<?>> sorted = new ArrayList<VariableAssignment<?>>(data);
+		Collections.sort(sorted, new Comparator<VariableAssignment<?>>() {
+			@Override
+			public int compare(VariableAssignment<?> a, VariableAssignment<?> b) {
+				return a.getName().compareTo(b.getName());
+			}
+		});
+		return sorted;
+	}
+
 	private List<VariableTerminal<?>> generateTerms(TraceElement data) {
 		List<VariableTerminal<?>> doubleTerms = new ArrayList<VariableTerminal<?>>();
 
 		if (data != null) {
-			for (VariableAssignment<?> var : data.getData()) {
+			for (VariableAssignment<?> var : byName(data.getData())) {
 				if (var.typeString().equals(":D")) {
 					DoubleVariableAssignment dvar = new DoubleVariableAssignment(var.getName());
 					dvar.setParameter(true);
@@ -1,9 +1,11 @@
 package mint.model;
 
+import mint.model.dfa.OverlayTraceDFA;
 import mint.model.dfa.TransitionData;
 import mint.tracedata.TraceElement;
 import org.jgrapht.graph.DefaultEdge;
 
+import java.util.HashSet;
 import java.util.Set;
 
 /**
@@ -29,8 +31,16 @@ public class PayloadMachine extends SimpleMachine<Set<TraceElement>> {
          */
     @Override
     public DefaultEdge mergeTransitions(Integer source, DefaultEdge a, DefaultEdge b) {
-        Set<TraceElement> payload = automaton.getTransitionData(b).getPayLoad();
-        payload.addAll(automaton.getTransitionData(a).getPayLoad());
+        TransitionData<Set<TraceElement>> bData = automaton.getTransitionData(b);
+        if(!automaton.ownsTransitionData(b)){
+            // Leave the original payload untouched so that it can be restored on rollback.
+            Set<TraceElement> payload = new HashSet<TraceElement>(bData.getPayLoad());
+            payload.addAll(automaton.getTransitionData(a).getPayLoad());
+            automaton.replaceTransitionData(b, new TransitionData<Set<TraceElement>>(bData.getLabel(), payload));
+        }
+        else {
+            bData.getPayLoad().addAll(automaton.getTransitionData(a).getPayLoad());
+        }
         automaton.removeTransition(a);
         return b;
     }
@@ -52,4 +62,17 @@ public class PayloadMachine extends SimpleMachine<Set<TraceElement>> {
         else
             return true;
     }
+
+    /**
+     * Returns a copy of this machine, in which merges can be tried without
+     * changing this machine. The automaton of the copy only records its changes
+     * (see OverlayTraceDFA), so this machine must not change while the copy is
+     * in use.
+     * @return
+     */
+    public PayloadMachine copy() {
+        PayloadMachine copy = new PayloadMachine();
+        copy.setAutomaton(new OverlayTraceDFA<Set<TraceElement>>(automaton));
+        return copy;
+    }
 }
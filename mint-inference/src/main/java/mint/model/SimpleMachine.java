@@ -1,6 +1,8 @@
 package mint.model;
 
+import mint.Configuration;
 import mint.inference.efsm.mergingstate.SimpleMergingState;
+import mint.model.dfa.CompactTraceDFA;
 import mint.model.dfa.TraceDFA;
 import mint.model.dfa.TransitionData;
 import mint.model.statepair.StatePair;
@@ -21,8 +23,11 @@ public abstract class SimpleMachine<T> extends AbstractMachine<T> implements Mac
 	protected TraceDFA<T> automaton;
 
 	public SimpleMachine() {
-		automaton = new TraceDFA<T>();
-		
+		if (Configuration.getInstance().COMPACT_DFA)
+			automaton = new CompactTraceDFA<T>();
+		else
+			automaton = new TraceDFA<T>();
+
 	}
 
 	/* (non-Javadoc)
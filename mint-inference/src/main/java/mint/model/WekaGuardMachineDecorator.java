@@ -33,6 +33,7 @@ public class WekaGuardMachineDecorator extends MachineDecorator {
 	protected Map<String,Classifier> modelMap;
 	protected boolean data;	
 	protected Map<DefaultEdge,Expression> edgesToConstraints;
+	protected volatile Map<TraceElement,Integer> predictedClasses;
 
     private final static Logger LOGGER = Logger.getLogger(WekaGuardMachineDecorator.class.getName());
 
@@ -61,6 +62,36 @@ public class WekaGuardMachineDecorator extends MachineDecorator {
 
 	public void setModelMap(Map<String,Classifier> map){
 		this.modelMap = map;
+		this.predictedClasses = null;
+	}
+
+	/**
+	 * Sets the classes predicted for the trace elements (as worked out by
+	 * BaseClassifierInference.predictClasses), so that they need not be
+	 * worked out again.
+	 * @param predictions
+	 */
+	public void setPredictedClasses(Map<TraceElement,Integer> predictions){
+		this.predictedClasses = predictions;
+	}
+
+	/**
+	 * The index of the class predicted for each trace element, worked out
+	 * (once) from the element map and the model map if it has not been set.
+	 * @return
+	 */
+	public Map<TraceElement,Integer> getPredictedClasses(){
+		Map<TraceElement,Integer> predictions = predictedClasses;
+		if(predictions == null){
+			synchronized(this){
+				predictions = predictedClasses;
+				if(predictions == null){
+					predictions = BaseClassifierInference.predictClasses(elementMap, modelMap);
+					predictedClasses = predictions;
+				}
+			}
+		}
+		return predictions;
 	}
 	
 	public Classifier getClassifier(String label){
@@ -107,18 +138,125 @@ public class WekaGuardMachineDecorator extends MachineDecorator {
 
 	
 	/*
-	 * If any predictions are inconsistent, the merge will not go ahead.
+	 * If any predictions are inconsistent, the merge will not go ahead. Two
+	 * transitions are compatible if the classes predicted for the elements of
+	 * one are a subset of those predicted for the other.
 	 */
 	public boolean compatible(DefaultEdge transitionA, DefaultEdge transitionB) {
 		if(!component.compatible(transitionA, transitionB))
 			return false;
 		if(!data)
 			return true;
-		Set<Instance> insA = getInstancesForTransition(transitionA);
-		Set<Instance> insB = getInstancesForTransition(transitionB);
 		String label = getAutomaton().getTransitionData(transitionA).getLabel();
-		boolean retVal = compatible(insA, insB, label);
-		return retVal;
+		if(getClassifier(label) == null)
+			return true;
+		return compatible(getPredictions(transitionA), getPredictions(transitionB));
+	}
+
+	/*
+	 * Either set of classes is empty (there is nothing to compare), or one is a
+	 * subset of the other.
+	 */
+	private static boolean compatible(long[] classesA, long[] classesB) {
+		return isEmpty(classesA) || isEmpty(classesB) || subset(classesA, classesB) || subset(classesB, classesA);
+	}
+
+	/*
+	 * The classes predicted for the payload of a transition, cached with its
+	 * TransitionData, together with the predictions and the size of the payload
+	 * they were worked out from: as payloads only grow, they are out of date if
+	 * the payload has changed size since. Being kept with the data, they are
+	 * shared by clones, and they are put back along with the data when a merge
+	 * is rolled back.
+	 */
+	private static final class Signature {
+
+		final Map<TraceElement,Integer> from;
+		final int size;
+		final long[] classes;
+
+		Signature(Map<TraceElement,Integer> from, int size, long[] classes) {
+			this.from = from;
+			this.size = size;
+			this.classes = classes;
+		}
+	}
+
+	/**
+	 * The classes predicted for the elements of the payload of the transition,
+	 * as a bitset of class indices.
+	 * @param e
+	 * @return
+	 */
+	protected long[] getPredictions(DefaultEdge e) {
+		TransitionData<Set<TraceElement>> eData = component.getAutomaton().getTransitionData(e);
+		Map<TraceElement,Integer> predictions = getPredictedClasses();
+		Set<TraceElement> payload = eData.getPayLoad();
+		Object summary = eData.getSummary();
+		if(summary instanceof Signature){
+			Signature signature = (Signature) summary;
+			if(signature.from == predictions && signature.size == payload.size())
+				return signature.classes;
+		}
+		long[] classes = new long[1];
+		for (TraceElement element : payload) {
+			Integer predicted = predictions.get(element);
+			if(predicted != null)
+				classes = add(classes, predicted);
+		}
+		eData.setSummary(new Signature(predictions, payload.size(), classes));
+		return classes;
+	}
+
+	/*
+	 * The transition that results from the merge carries the union of the
+	 * classes of the two, rather than working them out again from its payload.
+	 */
+	@Override
+	public DefaultEdge mergeTransitions(Integer source, DefaultEdge a,
+										DefaultEdge b) {
+		if(!data)
+			return component.mergeTransitions(source, a, b);
+		long[] classesA = getPredictions(a);
+		long[] classesB = getPredictions(b);
+		DefaultEdge merged = component.mergeTransitions(source, a, b);
+		TransitionData<Set<TraceElement>> mergedData = component.getAutomaton().getTransitionData(merged);
+		mergedData.setSummary(new Signature(getPredictedClasses(), mergedData.getPayLoad().size(), or(classesA, classesB)));
+		return merged;
+	}
+
+	private static long[] add(long[] classes, int index) {
+		int word = index >>> 6;
+		if(word >= classes.length)
+			classes = Arrays.copyOf(classes, word + 1);
+		classes[word] |= 1L << index;
+		return classes;
+	}
+
+	private static long[] or(long[] classesA, long[] classesB) {
+		long[] longer = classesA.length >= classesB.length ? classesA : classesB;
+		long[] shorter = longer == classesA ? classesB : classesA;
+		long[] union = longer.clone();
+		for(int i = 0; i < shorter.length; i++)
+			union[i] |= shorter[i];
+		return union;
+	}
+
+	private static boolean subset(long[] classesA, long[] classesB) {
+		for(int i = 0; i < classesA.length; i++){
+			long other = i < classesB.length ? classesB[i] : 0L;
+			if((classesA[i] & ~other) != 0L)
+				return false;
+		}
+		return true;
+	}
+
+	private static boolean isEmpty(long[] classes) {
+		for(long word : classes){
+			if(word != 0L)
+				return false;
+		}
+		return true;
 	}
 
 
@@ -203,7 +341,7 @@ public class WekaGuardMachineDecorator extends MachineDecorator {
 	public void setElementsToInstances(
 			Map<TraceElement, Instance> elementsToInstances) {
 		this.elementMap = elementsToInstances;
-		
+		this.predictedClasses = null;
 	}
 
 	@Override
@@ -258,7 +396,14 @@ public class WekaGuardMachineDecorator extends MachineDecorator {
         Classifier classifier = getClassifier(element.getName());
         Instance ins = getInstance(element);
         if(classifier!=null && ins !=null){ //only return transitions where attached data produces same predictions as element
-            buildSuccessors(possibleTransitions, classifier, ins, poss);
+            Integer required = getPredictedClasses().get(element);
+            try {
+                if(required == null)
+                    required = (int) classifier.classifyInstance(ins);
+                buildSuccessors(possibleTransitions, required, poss);
+            } catch (Exception e) {
+                LOGGER.error("Error when trying to build successors: "+e.toString());
+            }
         }
         else
             poss.addAll(possibleTransitions);
@@ -267,27 +412,14 @@ public class WekaGuardMachineDecorator extends MachineDecorator {
 
 
     /**
-     * compare outputs on classifier from instances attached to transitions to the supplied instance
+     * compare the classes predicted for the elements attached to transitions to the required class
      */
     protected void buildSuccessors(Set<DefaultEdge> possibleTrans,
-                                   Classifier classifier, Instance ins, Collection<DefaultEdge> poss) {
-        try {
-            TraceDFA automaton = getAutomaton();
-            String required = extractPredictedClass(classifier, ins);
-            for(DefaultEdge t: possibleTrans){
-                Set<String> provided = new HashSet<String>();
-                TransitionData<Set<TraceElement>> traceData = automaton.getTransitionData(t);
-                for(TraceElement element: traceData.getPayLoad()){
-                    Instance j = getInstance(element);
-                    if(j == null)
-                        continue;
-                    provided.add(extractPredictedClass(classifier, j));
-                }
-                if(provided.isEmpty() || provided.contains(required))
-                    poss.add(t);
-            }
-        } catch (Exception e) {
-            LOGGER.error("Error when trying to build successors: "+e.toString());
+                                   int required, Collection<DefaultEdge> poss) {
+        for(DefaultEdge t: possibleTrans){
+            long[] provided = getPredictions(t);
+            if(isEmpty(provided) || subset(add(new long[1], required), provided))
+                poss.add(t);
         }
     }
 
@@ -314,7 +446,7 @@ public class WekaGuardMachineDecorator extends MachineDecorator {
                               DefaultEdge transitionB) {
         assert(getAutomaton().consistentTransitions());
         assert(getAutomaton().getTransitions().contains(transitionB));
-        if(!compatible(td, transitionB))
+        if(!component.compatible(td, transitionB))
             return false;
         return checkCompatible(td, transitionB);
     }
@@ -328,14 +460,13 @@ public class WekaGuardMachineDecorator extends MachineDecorator {
     protected boolean checkCompatible(TraceElement aData,
                                       DefaultEdge transitionB) {
         TransitionData<Set<TraceElement>> bData = getAutomaton().getTransitionData(transitionB);
-        Set<Instance> ins = new HashSet<Instance>();
-        Instance i = getInstance(aData);
-        if(i!=null)
-            ins.add(i);
-        Set<Instance> ins2 = getInstancesForTransition(transitionB);
-        String label = bData.getLabel();
-        boolean retVal = compatible(ins, ins2, label);
-        return retVal;
+        if(getClassifier(bData.getLabel()) == null)
+            return true;
+        long[] classes = new long[1];
+        Integer predicted = getPredictedClasses().get(aData);
+        if(predicted != null)
+            classes = add(classes, predicted);
+        return compatible(classes, getPredictions(transitionB));
     }
 
 
@@ -0,0 +1,829 @@
+package mint.model.dfa;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+import org.jgrapht.GraphPath;
+import org.jgrapht.alg.shortestpath.AllDirectedPaths;
+import org.jgrapht.graph.DefaultEdge;
+import org.jgrapht.graph.DirectedPseudograph;
+
+/**
+ * Array-backed implementation of TraceDFA, for large prefix trees.
+ *
+ * States are int ids, and their accept labels are packed into a byte array.
+ * Transitions are int ids into parallel arrays (source, target, interned label
+ * and data), and the incoming and outgoing transitions of each state are kept
+ * as intrusive doubly-linked lists over those arrays. Transitions are also
+ * chained per (state, label), so that getOutgoingTransitions(state, label) is
+ * a hash lookup instead of a scan with string comparisons.
+ *
+ * The only object allocated per transition is the IndexedEdge handed out
+ * through the TraceDFA API; transitions are identified by these edges in the
+ * same way as they are in the graph-based implementation.
+ */
+public class CompactTraceDFA<T> extends TraceDFA<T> {
+
+	private final static Logger LOGGER = Logger.getLogger(CompactTraceDFA.class.getName());
+
+	private static final int NONE = -1;
+
+	private static final byte PRESENT = 4;
+	private static final byte ACCEPT_MASK = 3;
+	private static final byte UNDEFINED = 1, ACCEPT = 2, REJECT = 3;
+
+	/*
+	 * State arrays, indexed by state id.
+	 */
+	protected byte[] stateFlags;
+	protected int[] firstOut, lastOut, firstIn, lastIn, outDegree, inDegree;
+	protected int stateCount, stateLimit;
+
+	/*
+	 * Transition arrays, indexed by transition id. A source of NONE marks a free
+	 * slot.
+	 */
+	protected int[] source, target, label, nextOut, prevOut, nextIn, prevIn, nextLabel, prevLabel;
+	protected Object[] data;
+	protected IndexedEdge[] edges;
+	protected int edgeCount, edgeLimit;
+	protected int[] freeEdges;
+	protected int freeCount;
+
+	/*
+	 * The number of transitions that have been created. The lists of transitions
+	 * are kept in order of creation (see IndexedEdge.created), so that a
+	 * transition that is re-inserted when a transaction is rolled back returns
+	 * to its original place in them.
+	 */
+	protected long created;
+
+	protected Map<String, Integer> labelIds;
+	protected String[] labels;
+	protected LabelIndex labelIndex;
+
+	public CompactTraceDFA() {
+		this(16, 16);
+	}
+
+	public CompactTraceDFA(int expectedStates, int expectedTransitions) {
+		super(0);
+		allocateStates(Math.max(expectedStates, 1));
+		allocateTransitions(Math.max(expectedTransitions, 1));
+		labelIds = new HashMap<String, Integer>();
+		labels = new String[16];
+		labelIndex = new LabelIndex(expectedTransitions);
+		insertState(initialState);
+		putAccept(initialState, Accept.UNDEFINED);
+	}
+
+	private CompactTraceDFA(CompactTraceDFA<T> other) {
+		super(other.initialState);
+		stateFlags = other.stateFlags.clone();
+		firstOut = other.firstOut.clone();
+		lastOut = other.lastOut.clone();
+		firstIn = other.firstIn.clone();
+		lastIn = other.lastIn.clone();
+		outDegree = other.outDegree.clone();
+		inDegree = other.inDegree.clone();
+		stateCount = other.stateCount;
+		stateLimit = other.stateLimit;
+		source = other.source.clone();
+		target = other.target.clone();
+		label = other.label.clone();
+		nextOut = other.nextOut.clone();
+		prevOut = other.prevOut.clone();
+		nextIn = other.nextIn.clone();
+		prevIn = other.prevIn.clone();
+		nextLabel = other.nextLabel.clone();
+		prevLabel = other.prevLabel.clone();
+		data = other.data.clone();
+		created = other.created;
+		edges = new IndexedEdge[other.edges.length];
+		for (int i = 0; i < other.edgeLimit; i++) {
+			if (other.edges[i] != null)
+				edges[i] = new IndexedEdge(i, other.edges[i].created);
+		}
+		edgeCount = other.edgeCount;
+		edgeLimit = other.edgeLimit;
+		freeEdges = other.freeEdges.clone();
+		freeCount = other.freeCount;
+		labelIds = new HashMap<String, Integer>(other.labelIds);
+		labels = other.labels.clone();
+		labelIndex = other.labelIndex.copy();
+	}
+
+	/**
+	 * The edge object that represents a transition in a CompactTraceDFA.
+	 */
+	public static class IndexedEdge extends DefaultEdge {
+
+		private static final long serialVersionUID = 6204386224335271311L;
+
+		protected final int id;
+		protected final long created;
+
+		protected IndexedEdge(int id, long created) {
+			this.id = id;
+			this.created = created;
+		}
+
+		public int getId() {
+			return id;
+		}
+
+		@Override
+		public String toString() {
+			return "e" + id;
+		}
+	}
+
+	private void allocateStates(int capacity) {
+		stateFlags = new byte[capacity];
+		firstOut = new int[capacity];
+		lastOut = new int[capacity];
+		firstIn = new int[capacity];
+		lastIn = new int[capacity];
+		outDegree = new int[capacity];
+		inDegree = new int[capacity];
+	}
+
+	private void allocateTransitions(int capacity) {
+		source = new int[capacity];
+		target = new int[capacity];
+		label = new int[capacity];
+		nextOut = new int[capacity];
+		prevOut = new int[capacity];
+		nextIn = new int[capacity];
+		prevIn = new int[capacity];
+		nextLabel = new int[capacity];
+		prevLabel = new int[capacity];
+		data = new Object[capacity];
+		edges = new IndexedEdge[capacity];
+		freeEdges = new int[16];
+	}
+
+	private void ensureStateCapacity(int state) {
+		if (state < 0)
+			throw new IllegalArgumentException("State ids must not be negative: " + state);
+		if (state < stateFlags.length)
+			return;
+		int capacity = Math.max(stateFlags.length * 2, state + 1);
+		stateFlags = Arrays.copyOf(stateFlags, capacity);
+		firstOut = Arrays.copyOf(firstOut, capacity);
+		lastOut = Arrays.copyOf(lastOut, capacity);
+		firstIn = Arrays.copyOf(firstIn, capacity);
+		lastIn = Arrays.copyOf(lastIn, capacity);
+		outDegree = Arrays.copyOf(outDegree, capacity);
+		inDegree = Arrays.copyOf(inDegree, capacity);
+	}
+
+	private void ensureTransitionCapacity(int edge) {
+		if (edge < source.length)
+			return;
+		int capacity = Math.max(source.length * 2, edge + 1);
+		source = Arrays.copyOf(source, capacity);
+		target = Arrays.copyOf(target, capacity);
+		label = Arrays.copyOf(label, capacity);
+		nextOut = Arrays.copyOf(nextOut, capacity);
+		prevOut = Arrays.copyOf(prevOut, capacity);
+		nextIn = Arrays.copyOf(nextIn, capacity);
+		prevIn = Arrays.copyOf(prevIn, capacity);
+		nextLabel = Arrays.copyOf(nextLabel, capacity);
+		prevLabel = Arrays.copyOf(prevLabel, capacity);
+		data = Arrays.copyOf(data, capacity);
+		edges = Arrays.copyOf(edges, capacity);
+	}
+
+	protected boolean containsState(int state) {
+		return state >= 0 && state < stateLimit && (stateFlags[state] & PRESENT) != 0;
+	}
+
+	/*
+	 * The id of transition e, or -1 if e is not a transition in this automaton.
+	 */
+	protected int transitionId(DefaultEdge e) {
+		if (!(e instanceof IndexedEdge))
+			return NONE;
+		int id = ((IndexedEdge) e).id;
+		if (id < edgeLimit && edges[id] == e)
+			return id;
+		return NONE;
+	}
+
+	/*
+	 * The id of a label, or -1 if no transition has ever carried it.
+	 */
+	protected int labelId(String name) {
+		Integer id = labelIds.get(name);
+		if (id == null)
+			return NONE;
+		return id;
+	}
+
+	/*
+	 * The first transition leaving state with the given label id, or -1 if there
+	 * is none. The others follow it in the nextLabel chain.
+	 */
+	protected int firstTransition(int state, int labelId) {
+		if (labelId < 0)
+			return NONE;
+		return labelIndex.get(LabelIndex.key(state, labelId));
+	}
+
+	private int intern(String name) {
+		Integer id = labelIds.get(name);
+		if (id == null) {
+			id = labelIds.size();
+			if (id >= labels.length)
+				labels = Arrays.copyOf(labels, labels.length * 2);
+			labels[id] = name;
+			labelIds.put(name, id);
+		}
+		return id;
+	}
+
+	private int liveTransition(DefaultEdge e) {
+		int id = transitionId(e);
+		if (id == NONE)
+			throw new IllegalArgumentException("no such edge in graph: " + e);
+		return id;
+	}
+
+	/*
+	 * Primitive operations (see TraceDFA).
+	 */
+
+	@Override
+	protected boolean insertState(Integer v) {
+		int s = v;
+		ensureStateCapacity(s);
+		if ((stateFlags[s] & PRESENT) != 0)
+			return false;
+		stateFlags[s] |= PRESENT;
+		firstOut[s] = lastOut[s] = firstIn[s] = lastIn[s] = NONE;
+		outDegree[s] = inDegree[s] = 0;
+		stateCount++;
+		if (s >= stateLimit)
+			stateLimit = s + 1;
+		return true;
+	}
+
+	@Override
+	protected void deleteState(Integer v) {
+		int s = v;
+		if (!containsState(s))
+			return;
+		while (firstOut[s] != NONE)
+			unlink(firstOut[s]);
+		while (firstIn[s] != NONE)
+			unlink(firstIn[s]);
+		stateFlags[s] &= ~PRESENT;
+		stateCount--;
+	}
+
+	@Override
+	protected DefaultEdge insertTransition(Integer from, Integer to, DefaultEdge e, TransitionData<T> transData) {
+		int s = from;
+		int t = to;
+		if (!containsState(s) || !containsState(t))
+			throw new IllegalArgumentException("no such vertex in graph: " + (containsState(s) ? to : from));
+		int id;
+		if (e == null) {
+			id = allocateTransition();
+			edges[id] = new IndexedEdge(id, created++);
+		} else {
+			id = ((IndexedEdge) e).id;
+			ensureTransitionCapacity(id);
+			if (edges[id] != null)
+				throw new IllegalStateException("Transition slot " + id + " is already in use.");
+			edges[id] = (IndexedEdge) e;
+			if (id >= edgeLimit)
+				edgeLimit = id + 1;
+		}
+		source[id] = s;
+		target[id] = t;
+		label[id] = intern(transData.getLabel());
+		data[id] = transData;
+
+		// append to the outgoing list of s (or put a re-inserted transition back in place)
+		int after = lastOut[s];
+		while (after != NONE && edges[after].created > edges[id].created)
+			after = prevOut[after];
+		prevOut[id] = after;
+		nextOut[id] = after == NONE ? firstOut[s] : nextOut[after];
+		if (after == NONE)
+			firstOut[s] = id;
+		else
+			nextOut[after] = id;
+		if (nextOut[id] == NONE)
+			lastOut[s] = id;
+		else
+			prevOut[nextOut[id]] = id;
+		outDegree[s]++;
+
+		// likewise for the incoming list of t
+		after = lastIn[t];
+		while (after != NONE && edges[after].created > edges[id].created)
+			after = prevIn[after];
+		prevIn[id] = after;
+		nextIn[id] = after == NONE ? firstIn[t] : nextIn[after];
+		if (after == NONE)
+			firstIn[t] = id;
+		else
+			nextIn[after] = id;
+		if (nextIn[id] == NONE)
+			lastIn[t] = id;
+		else
+			prevIn[nextIn[id]] = id;
+		inDegree[t]++;
+
+		linkLabel(id);
+		edgeCount++;
+		return edges[id];
+	}
+
+	private int allocateTransition() {
+		while (freeCount > 0) {
+			int id = freeEdges[--freeCount];
+			// slots may have been reclaimed by a rollback since they were freed
+			if (edges[id] == null)
+				return id;
+		}
+		ensureTransitionCapacity(edgeLimit);
+		return edgeLimit++;
+	}
+
+	private void linkLabel(int id) {
+		long key = LabelIndex.key(source[id], label[id]);
+		int head = labelIndex.get(key);
+		if (head == NONE || edges[head].created > edges[id].created) {
+			prevLabel[id] = NONE;
+			nextLabel[id] = head;
+			if (head != NONE)
+				prevLabel[head] = id;
+			labelIndex.put(key, id);
+			return;
+		}
+		int after = head;
+		while (nextLabel[after] != NONE && edges[nextLabel[after]].created < edges[id].created)
+			after = nextLabel[after];
+		nextLabel[id] = nextLabel[after];
+		prevLabel[id] = after;
+		if (nextLabel[after] != NONE)
+			prevLabel[nextLabel[after]] = id;
+		nextLabel[after] = id;
+	}
+
+	private void unlinkLabel(int id) {
+		if (prevLabel[id] == NONE) {
+			long key = LabelIndex.key(source[id], label[id]);
+			if (nextLabel[id] == NONE)
+				labelIndex.remove(key);
+			else
+				labelIndex.put(key, nextLabel[id]);
+		} else
+			nextLabel[prevLabel[id]] = nextLabel[id];
+		if (nextLabel[id] != NONE)
+			prevLabel[nextLabel[id]] = prevLabel[id];
+	}
+
+	private void unlink(int id) {
+		int s = source[id];
+		int t = target[id];
+		unlinkLabel(id);
+
+		if (prevOut[id] == NONE)
+			firstOut[s] = nextOut[id];
+		else
+			nextOut[prevOut[id]] = nextOut[id];
+		if (nextOut[id] == NONE)
+			lastOut[s] = prevOut[id];
+		else
+			prevOut[nextOut[id]] = prevOut[id];
+		outDegree[s]--;
+
+		if (prevIn[id] == NONE)
+			firstIn[t] = nextIn[id];
+		else
+			nextIn[prevIn[id]] = nextIn[id];
+		if (nextIn[id] == NONE)
+			lastIn[t] = prevIn[id];
+		else
+			prevIn[nextIn[id]] = prevIn[id];
+		inDegree[t]--;
+
+		source[id] = NONE;
+		target[id] = NONE;
+		data[id] = null;
+		edges[id] = null;
+		if (freeCount == freeEdges.length)
+			freeEdges = Arrays.copyOf(freeEdges, freeCount * 2);
+		freeEdges[freeCount++] = id;
+		edgeCount--;
+	}
+
+	@Override
+	protected void deleteTransition(DefaultEdge e) {
+		int id = transitionId(e);
+		if (id != NONE)
+			unlink(id);
+	}
+
+	@Override
+	protected void putTransitionData(DefaultEdge e, TransitionData<T> transData) {
+		int id = transitionId(e);
+		if (id == NONE || transData == null)
+			return;
+		int newLabel = intern(transData.getLabel());
+		if (newLabel != label[id]) {
+			unlinkLabel(id);
+			label[id] = newLabel;
+			linkLabel(id);
+		}
+		data[id] = transData;
+	}
+
+	@Override
+	protected Accept storedAccept(Integer state) {
+		int s = state;
+		if (s < 0 || s >= stateFlags.length)
+			return null;
+		return decode(stateFlags[s] & ACCEPT_MASK);
+	}
+
+	@Override
+	protected void putAccept(Integer state, Accept accept) {
+		int s = state;
+		if (accept == null && (s < 0 || s >= stateFlags.length))
+			return;
+		ensureStateCapacity(s);
+		stateFlags[s] = (byte) ((stateFlags[s] & ~ACCEPT_MASK) | encode(accept));
+	}
+
+	private static byte encode(Accept accept) {
+		if (accept == null)
+			return 0;
+		switch (accept) {
+		case ACCEPT:
+			return ACCEPT;
+		case REJECT:
+			return REJECT;
+		default:
+			return UNDEFINED;
+		}
+	}
+
+	private static Accept decode(int code) {
+		switch (code) {
+		case ACCEPT:
+			return Accept.ACCEPT;
+		case REJECT:
+			return Accept.REJECT;
+		case UNDEFINED:
+			return Accept.UNDEFINED;
+		default:
+			return null;
+		}
+	}
+
+	/*
+	 * TraceDFA API.
+	 */
+
+	@Override
+	public boolean containsState(Integer state) {
+		return state != null && containsState(state.intValue());
+	}
+
+	@Override
+	public boolean containsTransition(DefaultEdge e) {
+		return transitionId(e) != NONE;
+	}
+
+	@Override
+	public int stateCount() {
+		return stateCount;
+	}
+
+	@Override
+	public int transitionCount() {
+		return edgeCount;
+	}
+
+	@Override
+	public Integer getTransitionTarget(DefaultEdge e) {
+		return target[liveTransition(e)];
+	}
+
+	@Override
+	public Integer getTransitionSource(DefaultEdge e) {
+		return source[liveTransition(e)];
+	}
+
+	@Override
+	public Collection<Integer> getStates() {
+		return new StateSet();
+	}
+
+	@Override
+	public Set<String> getAlphabet() {
+		Set<String> alphabet = new HashSet<String>();
+		for (int i = 0; i < edgeLimit; i++) {
+			if (edges[i] != null)
+				alphabet.add(labels[label[i]]);
+		}
+		return alphabet;
+	}
+
+	@Override
+	public boolean consistentTransitions() {
+		for (int i = 0; i < edgeLimit; i++) {
+			if (edges[i] == null)
+				continue;
+			if (!containsState(source[i]) || !containsState(target[i]) || data[i] == null)
+				return false;
+		}
+		return true;
+	}
+
+	@Override
+	public boolean reachableFrom(Integer a, Integer b) {
+		boolean[] visited = search(a, true);
+		return b >= 0 && b < visited.length && visited[b];
+	}
+
+	@Override
+	public Collection<Integer> nodesReachableFrom(Integer a) {
+		return toSet(search(a, true));
+	}
+
+	@Override
+	public Collection<Integer> nodesThatReach(Integer a) {
+		return toSet(search(a, false));
+	}
+
+	/*
+	 * Breadth-first search from a, following transitions forwards or backwards.
+	 */
+	private boolean[] search(int a, boolean forwards) {
+		if (!containsState(a))
+			throw new IllegalArgumentException("no such vertex in graph: " + a);
+		boolean[] visited = new boolean[Math.max(stateLimit, a + 1)];
+		int[] queue = new int[stateCount + 1];
+		int head = 0, tail = 0;
+		visited[a] = true;
+		queue[tail++] = a;
+		while (head < tail) {
+			int s = queue[head++];
+			int e = forwards ? firstOut[s] : firstIn[s];
+			while (e != NONE) {
+				int next = forwards ? target[e] : source[e];
+				if (!visited[next]) {
+					visited[next] = true;
+					queue[tail++] = next;
+				}
+				e = forwards ? nextOut[e] : nextIn[e];
+			}
+		}
+		return visited;
+	}
+
+	private static Collection<Integer> toSet(boolean[] visited) {
+		Collection<Integer> set = new HashSet<Integer>();
+		for (int i = 0; i < visited.length; i++) {
+			if (visited[i])
+				set.add(i);
+		}
+		return set;
+	}
+
+	@Override
+	public Set<DefaultEdge> getIncomingTransitions(Integer vertex) {
+		return new AdjacentTransitions(vertex, false);
+	}
+
+	@Override
+	public Set<DefaultEdge> getOutgoingTransitions(Integer vertex) {
+		return new AdjacentTransitions(vertex, true);
+	}
+
+	@Override
+	public Set<DefaultEdge> getOutgoingTransitions(Integer state, String name) {
+		// callers may modify the returned set, so it is always a fresh copy
+		Set<DefaultEdge> ret = new HashSet<DefaultEdge>();
+		for (int e = firstTransition(state, labelId(name)); e != NONE; e = nextLabel[e]) {
+			ret.add(edges[e]);
+		}
+		return ret;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public TransitionData<T> getTransitionData(DefaultEdge e) {
+		int id = transitionId(e);
+		if (id == NONE) {
+			LOGGER.error("could not find transition data for: " + e);
+			return null;
+		}
+		return (TransitionData<T>) data[id];
+	}
+
+	@Override
+	public Accept getAccept(Integer state) {
+		Accept a = storedAccept(state);
+		if (a == null)
+			return Accept.UNDEFINED;
+		return a;
+	}
+
+	@Override
+	public void setTransitionData(Map<DefaultEdge, TransitionData<T>> transData) {
+		assert (undoLog == null);
+		for (Map.Entry<DefaultEdge, TransitionData<T>> entry : transData.entrySet()) {
+			putTransitionData(entry.getKey(), entry.getValue());
+		}
+	}
+
+	@Override
+	public Set<DefaultEdge> getTransitions() {
+		return new AllTransitions();
+	}
+
+	@Override
+	public CompactTraceDFA<T> clone() {
+		return new CompactTraceDFA<T>(this);
+	}
+
+	/**
+	 * Returns a graph-based view of the automaton that shares its edge objects.
+	 */
+	protected DirectedPseudograph<Integer, DefaultEdge> toGraph() {
+		DirectedPseudograph<Integer, DefaultEdge> g = new DirectedPseudograph<Integer, DefaultEdge>(DefaultEdge.class);
+		for (Integer s : getStates()) {
+			g.addVertex(s);
+		}
+		for (int i = 0; i < edgeLimit; i++) {
+			if (edges[i] != null)
+				g.addEdge(source[i], target[i], edges[i]);
+		}
+		return g;
+	}
+
+	@Override
+	public List<GraphPath<Integer, DefaultEdge>> allPaths() {
+		AllDirectedPaths<Integer, DefaultEdge> paths = new AllDirectedPaths<Integer, DefaultEdge>(toGraph());
+		Set<Integer> sourceVertex = new HashSet<Integer>();
+		Set<Integer> destinationVertices = new HashSet<Integer>();
+		destinationVertices.addAll(getStates());
+		sourceVertex.add(initialState);
+		return paths.getAllPaths(sourceVertex, destinationVertices, true, 20);
+	}
+
+	/*
+	 * Live, read-only views of the states and transitions.
+	 */
+
+	private class StateSet extends AbstractSet<Integer> {
+
+		@Override
+		public boolean contains(Object o) {
+			return o instanceof Integer && containsState(((Integer) o).intValue());
+		}
+
+		@Override
+		public int size() {
+			return stateCount;
+		}
+
+		@Override
+		public Iterator<Integer> iterator() {
+			return new Iterator<Integer>() {
+
+				int next = advance(0);
+
+				private int advance(int from) {
+					while (from < stateLimit && (stateFlags[from] & PRESENT) == 0)
+						from++;
+					return from;
+				}
+
+				@Override
+				public boolean hasNext() {
+					return next < stateLimit;
+				}
+
+				@Override
+				public Integer next() {
+					if (!hasNext())
+						throw new NoSuchElementException();
+					int current = next;
+					next = advance(next + 1);
+					return current;
+				}
+			};
+		}
+	}
+
+	private class AdjacentTransitions extends AbstractSet<DefaultEdge> {
+
+		final int state;
+		final boolean outgoing;
+
+		AdjacentTransitions(int state, boolean outgoing) {
+			this.state = state;
+			this.outgoing = outgoing;
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			if (!(o instanceof DefaultEdge))
+				return false;
+			int id = transitionId((DefaultEdge) o);
+			if (id == NONE)
+				return false;
+			return (outgoing ? source[id] : target[id]) == state;
+		}
+
+		@Override
+		public int size() {
+			if (!containsState(state))
+				return 0;
+			return outgoing ? outDegree[state] : inDegree[state];
+		}
+
+		@Override
+		public Iterator<DefaultEdge> iterator() {
+			return new Iterator<DefaultEdge>() {
+
+				// read ahead, so that the current transition may be removed by the caller
+				int next = !containsState(state) ? NONE : (outgoing ? firstOut[state] : firstIn[state]);
+
+				@Override
+				public boolean hasNext() {
+					return next != NONE;
+				}
+
+				@Override
+				public DefaultEdge next() {
+					if (next == NONE)
+						throw new NoSuchElementException();
+					int current = next;
+					next = outgoing ? nextOut[current] : nextIn[current];
+					return edges[current];
+				}
+			};
+		}
+	}
+
+	private class AllTransitions extends AbstractSet<DefaultEdge> {
+
+		@Override
+		public boolean contains(Object o) {
+			return o instanceof DefaultEdge && transitionId((DefaultEdge) o) != NONE;
+		}
+
+		@Override
+		public int size() {
+			return edgeCount;
+		}
+
+		@Override
+		public Iterator<DefaultEdge> iterator() {
+			return new Iterator<DefaultEdge>() {
+
+				int next = advance(0);
+
+				private int advance(int from) {
+					while (from < edgeLimit && edges[from] == null)
+						from++;
+					return from;
+				}
+
+				@Override
+				public boolean hasNext() {
+					return next < edgeLimit;
+				}
+
+				@Override
+				public DefaultEdge next() {
+					if (!hasNext())
+						throw new NoSuchElementException();
+					int current = next;
+					next = advance(next + 1);
+					return edges[current];
+				}
+			};
+		}
+	}
+
+}
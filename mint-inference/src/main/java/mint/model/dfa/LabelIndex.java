@@ -0,0 +1,125 @@
+package mint.model.dfa;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from (state, label) pairs to the first transition
+ * with that label leaving that state. States, labels and transitions are all
+ * represented by int ids, so lookups do not allocate.
+ *
+ * Used by CompactTraceDFA.
+ */
+final class LabelIndex {
+
+	private static final long EMPTY = -1L;
+
+	private long[] keys;
+	private int[] values;
+	private int size;
+	private int mask;
+
+	LabelIndex(int expected) {
+		int capacity = 16;
+		while (capacity < expected * 2)
+			capacity <<= 1;
+		allocate(capacity);
+	}
+
+	private LabelIndex(LabelIndex other) {
+		keys = other.keys.clone();
+		values = other.values.clone();
+		size = other.size;
+		mask = other.mask;
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		Arrays.fill(keys, EMPTY);
+		values = new int[capacity];
+		mask = capacity - 1;
+		size = 0;
+	}
+
+	static long key(int state, int label) {
+		// States are never negative, so a key can never be EMPTY.
+		return ((long) state << 32) | (label & 0xffffffffL);
+	}
+
+	private int slot(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32)) & mask;
+	}
+
+	/**
+	 * Returns the value for key, or -1 if there is none.
+	 */
+	int get(long key) {
+		int i = slot(key);
+		while (keys[i] != EMPTY) {
+			if (keys[i] == key)
+				return values[i];
+			i = (i + 1) & mask;
+		}
+		return -1;
+	}
+
+	void put(long key, int value) {
+		int i = slot(key);
+		while (keys[i] != EMPTY) {
+			if (keys[i] == key) {
+				values[i] = value;
+				return;
+			}
+			i = (i + 1) & mask;
+		}
+		keys[i] = key;
+		values[i] = value;
+		size++;
+		if (size * 2 > keys.length)
+			rehash(keys.length * 2);
+	}
+
+	void remove(long key) {
+		int i = slot(key);
+		while (keys[i] != key) {
+			if (keys[i] == EMPTY)
+				return;
+			i = (i + 1) & mask;
+		}
+		// Backward-shift deletion, so that no tombstones are needed.
+		int j = i;
+		while (true) {
+			j = (j + 1) & mask;
+			if (keys[j] == EMPTY)
+				break;
+			int k = slot(keys[j]);
+			boolean inRange = (i <= j) ? (i < k && k <= j) : (i < k || k <= j);
+			if (inRange)
+				continue;
+			keys[i] = keys[j];
+			values[i] = values[j];
+			i = j;
+		}
+		keys[i] = EMPTY;
+		size--;
+	}
+
+	private void rehash(int capacity) {
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		allocate(capacity);
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != EMPTY)
+				put(oldKeys[i], oldValues[i]);
+		}
+	}
+
+	int size() {
+		return size;
+	}
+
+	LabelIndex copy() {
+		return new LabelIndex(this);
+	}
+
+}
@@ -0,0 +1,481 @@
+/*******************************************************************************
+ * EFSMTool is an Extended Finite State Machine (EFSM) inference tool. Copyright (C) 2013 Neil Walkinshaw.
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package mint.model.dfa;
+
+import java.util.AbstractCollection;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.jgrapht.GraphPath;
+import org.jgrapht.graph.DefaultEdge;
+
+import mint.model.dfa.TransitionGraph.OrderedEdgeSet;
+
+/*
+ * A copy of an automaton that only records how it differs from the automaton it
+ * was made from (its base): the states and transitions that have been added and
+ * removed, and the transition data and accept labels that have been changed.
+ * Making the copy costs nothing, and changing it costs time in proportion to the
+ * changes and to the transitions of the states they touch, instead of the size of
+ * the automaton. The base must not change while the copy is in use.
+ *
+ * The changes are also logged, so that applyTo() can make them to the base once
+ * they are known to be wanted. As within a transaction, the copy only owns the
+ * transition data that it has replaced (see ownsTransitionData()); the rest is
+ * shared with the base and must not be changed in place.
+ */
+public class OverlayTraceDFA<T> extends TraceDFA<T> {
+
+	protected final TraceDFA<T> base;
+
+	protected Set<Integer> addedStates, removedStates;
+	protected Map<Integer, Accept> accept;
+
+	// the transitions of the states that have changed (in the same order as in the base)
+	protected Map<Integer, OrderedEdgeSet> outgoing, incoming;
+	protected Map<DefaultEdge, Integer> addedSource, addedTarget;
+	protected Set<DefaultEdge> removedTransitions;
+	protected Map<DefaultEdge, TransitionData<T>> data;
+	protected Set<DefaultEdge> owned;
+
+	protected List<Change<T>> changes;
+
+	public OverlayTraceDFA(TraceDFA<T> base) {
+		super(base.getInitialState());
+		this.base = base;
+		addedStates = new HashSet<Integer>();
+		removedStates = new HashSet<Integer>();
+		accept = new HashMap<Integer, Accept>();
+		outgoing = new HashMap<Integer, OrderedEdgeSet>();
+		incoming = new HashMap<Integer, OrderedEdgeSet>();
+		addedSource = new LinkedHashMap<DefaultEdge, Integer>();
+		addedTarget = new HashMap<DefaultEdge, Integer>();
+		removedTransitions = new HashSet<DefaultEdge>();
+		data = new HashMap<DefaultEdge, TransitionData<T>>();
+		owned = new HashSet<DefaultEdge>();
+		changes = new ArrayList<Change<T>>();
+	}
+
+	public TraceDFA<T> getBase() {
+		return base;
+	}
+
+	/**
+	 * Make the changes that have been made to this copy to the given automaton,
+	 * which must be the base (or be the same as the base was when this copy was
+	 * made). The changes are made in the same order, so within a transaction of
+	 * the automaton they can be rolled back as usual.
+	 * @param dfa
+	 */
+	public void applyTo(TraceDFA<T> dfa) {
+		Map<DefaultEdge, DefaultEdge> created = new HashMap<DefaultEdge, DefaultEdge>();
+		for (Change<T> change : changes) {
+			DefaultEdge edge = created.containsKey(change.edge) ? created.get(change.edge) : change.edge;
+			switch (change.kind) {
+			case ADD_STATE:
+				dfa.addState(change.source);
+				break;
+			case REMOVE_STATE:
+				dfa.removeState(change.source);
+				break;
+			case ADD_TRANSITION:
+				created.put(change.edge, dfa.addTransition(change.source, change.target, change.data));
+				break;
+			case REMOVE_TRANSITION:
+				dfa.removeTransition(edge);
+				break;
+			case TRANSITION_DATA:
+				dfa.replaceTransitionData(edge, change.data);
+				break;
+			case ACCEPT:
+				dfa.setAccept(change.source, change.accept);
+				break;
+			case INITIAL_STATE:
+				dfa.setInitialState(change.source);
+				break;
+			}
+		}
+	}
+
+	/*
+	 * The public changes are logged before they are made, and made with the
+	 * primitive operations below.
+	 */
+
+	@Override
+	public Integer addState(Integer v) {
+		changes.add(new Change<T>(Change.Kind.ADD_STATE, v, null, null, null));
+		return super.addState(v);
+	}
+
+	@Override
+	public DefaultEdge addTransition(Integer source, Integer target, TransitionData<T> t) {
+		DefaultEdge edge = super.addTransition(source, target, t);
+		changes.add(new Change<T>(Change.Kind.ADD_TRANSITION, source, target, edge, t));
+		return edge;
+	}
+
+	@Override
+	public void setInitialState(Integer s) {
+		changes.add(new Change<T>(Change.Kind.INITIAL_STATE, s, null, null, null));
+		super.setInitialState(s);
+	}
+
+	@Override
+	public void removeState(Integer s) {
+		changes.add(new Change<T>(Change.Kind.REMOVE_STATE, s, null, null, null));
+		super.removeState(s);
+	}
+
+	@Override
+	public void removeTransition(DefaultEdge e) {
+		changes.add(new Change<T>(Change.Kind.REMOVE_TRANSITION, null, null, e, null));
+		super.removeTransition(e);
+	}
+
+	@Override
+	public void replaceTransitionData(DefaultEdge e, TransitionData<T> data) {
+		changes.add(new Change<T>(Change.Kind.TRANSITION_DATA, null, null, e, data));
+		super.replaceTransitionData(e, data);
+		owned.add(e);
+	}
+
+	@Override
+	public void setAccept(Integer state, Accept accept) {
+		changes.add(new Change<T>(Change.Kind.ACCEPT, state, null, null, null, accept));
+		super.setAccept(state, accept);
+	}
+
+	@Override
+	public boolean ownsTransitionData(DefaultEdge e) {
+		return owned.contains(e);
+	}
+
+	@Override
+	protected boolean insertState(Integer v) {
+		if (containsState(v))
+			return false;
+		if (!removedStates.remove(v))
+			addedStates.add(v);
+		return true;
+	}
+
+	@Override
+	protected void deleteState(Integer v) {
+		if (!containsState(v))
+			return;
+		List<DefaultEdge> incident = new ArrayList<DefaultEdge>(outgoing(v));
+		incident.addAll(incoming(v));
+		for (DefaultEdge e : incident) {
+			deleteTransition(e);
+		}
+		if (!addedStates.remove(v))
+			removedStates.add(v);
+	}
+
+	@Override
+	protected DefaultEdge insertTransition(Integer source, Integer target, DefaultEdge e, TransitionData<T> data) {
+		if (!containsState(source) || !containsState(target))
+			throw new IllegalArgumentException("no such vertex in graph: " + (containsState(source) ? target : source));
+		if (e == null)
+			e = new DefaultEdge();
+		if (!removedTransitions.remove(e)) {
+			addedSource.put(e, source);
+			addedTarget.put(e, target);
+		}
+		outgoing(source).add(e);
+		incoming(target).add(e);
+		this.data.put(e, data);
+		return e;
+	}
+
+	@Override
+	protected void deleteTransition(DefaultEdge e) {
+		if (!containsTransition(e))
+			return;
+		outgoing(getTransitionSource(e)).remove(e);
+		incoming(getTransitionTarget(e)).remove(e);
+		if (addedSource.containsKey(e)) {
+			addedSource.remove(e);
+			addedTarget.remove(e);
+		}
+		else
+			removedTransitions.add(e);
+	}
+
+	@Override
+	protected void putTransitionData(DefaultEdge e, TransitionData<T> data) {
+		this.data.put(e, data);
+	}
+
+	@Override
+	protected Accept storedAccept(Integer state) {
+		if (accept.containsKey(state))
+			return accept.get(state);
+		return base.storedAccept(state);
+	}
+
+	@Override
+	protected void putAccept(Integer state, Accept accept) {
+		this.accept.put(state, accept);
+	}
+
+	/*
+	 * The transitions of a state, copied from the base when they first change.
+	 */
+	private OrderedEdgeSet outgoing(Integer state) {
+		OrderedEdgeSet edges = outgoing.get(state);
+		if (edges == null) {
+			edges = new OrderedEdgeSet();
+			if (base.containsState(state))
+				edges.edges.addAll(base.getOutgoingTransitions(state));
+			outgoing.put(state, edges);
+		}
+		return edges;
+	}
+
+	private OrderedEdgeSet incoming(Integer state) {
+		OrderedEdgeSet edges = incoming.get(state);
+		if (edges == null) {
+			edges = new OrderedEdgeSet();
+			if (base.containsState(state))
+				edges.edges.addAll(base.getIncomingTransitions(state));
+			incoming.put(state, edges);
+		}
+		return edges;
+	}
+
+	@Override
+	public boolean containsState(Integer state) {
+		if (addedStates.contains(state))
+			return true;
+		return !removedStates.contains(state) && base.containsState(state);
+	}
+
+	@Override
+	public boolean containsTransition(DefaultEdge e) {
+		if (addedSource.containsKey(e))
+			return true;
+		return !removedTransitions.contains(e) && base.containsTransition(e);
+	}
+
+	@Override
+	public int stateCount() {
+		return base.stateCount() - removedStates.size() + addedStates.size();
+	}
+
+	@Override
+	public int transitionCount() {
+		return base.transitionCount() - removedTransitions.size() + addedSource.size();
+	}
+
+	@Override
+	public Integer getTransitionTarget(DefaultEdge e) {
+		Integer target = addedTarget.get(e);
+		return target == null ? base.getTransitionTarget(e) : target;
+	}
+
+	@Override
+	public Integer getTransitionSource(DefaultEdge e) {
+		Integer source = addedSource.get(e);
+		return source == null ? base.getTransitionSource(e) : source;
+	}
+
+	@Override
+	public Collection<Integer> getStates() {
+		return new AbstractCollection<Integer>() {
+
+			@Override
+			public boolean contains(Object o) {
+				return o instanceof Integer && containsState((Integer) o);
+			}
+
+			@Override
+			public int size() {
+				return stateCount();
+			}
+
+			@Override
+			public Iterator<Integer> iterator() {
+				final Iterator<Integer> baseIt = base.getStates().iterator();
+				final Iterator<Integer> addedIt = addedStates.iterator();
+				return new Iterator<Integer>() {
+
+					Integer next = advance();
+
+					private Integer advance() {
+						while (baseIt.hasNext()) {
+							Integer state = baseIt.next();
+							if (!removedStates.contains(state))
+								return state;
+						}
+						return addedIt.hasNext() ? addedIt.next() : null;
+					}
+
+					@Override
+					public boolean hasNext() {
+						return next != null;
+					}
+
+					@Override
+					public Integer next() {
+						if (next == null)
+							throw new NoSuchElementException();
+						Integer ret = next;
+						next = advance();
+						return ret;
+					}
+
+					@Override
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+		};
+	}
+
+	@Override
+	public Set<String> getAlphabet() {
+		Set<String> alphabet = new HashSet<String>();
+		for (DefaultEdge e : getTransitions()) {
+			alphabet.add(getTransitionData(e).getLabel());
+		}
+		return alphabet;
+	}
+
+	@Override
+	public boolean consistentTransitions() {
+		for (DefaultEdge e : getTransitions()) {
+			if (!containsState(getTransitionSource(e)) || !containsState(getTransitionTarget(e)))
+				return false;
+			if (getTransitionData(e) == null)
+				return false;
+		}
+		return true;
+	}
+
+	@Override
+	public boolean reachableFrom(Integer a, Integer b) {
+		return nodesReachableFrom(a).contains(b);
+	}
+
+	@Override
+	public Collection<Integer> nodesReachableFrom(Integer a) {
+		return reachable(a, true);
+	}
+
+	@Override
+	public Collection<Integer> nodesThatReach(Integer a) {
+		return reachable(a, false);
+	}
+
+	private Collection<Integer> reachable(Integer a, boolean forwards) {
+		Set<Integer> reached = new HashSet<Integer>();
+		Deque<Integer> toVisit = new ArrayDeque<Integer>();
+		reached.add(a);
+		toVisit.add(a);
+		while (!toVisit.isEmpty()) {
+			Integer state = toVisit.poll();
+			for (DefaultEdge e : forwards ? getOutgoingTransitions(state) : getIncomingTransitions(state)) {
+				Integer next = forwards ? getTransitionTarget(e) : getTransitionSource(e);
+				if (reached.add(next))
+					toVisit.add(next);
+			}
+		}
+		return reached;
+	}
+
+	@Override
+	public Set<DefaultEdge> getIncomingTransitions(Integer vertex) {
+		OrderedEdgeSet edges = incoming.get(vertex);
+		if (edges == null)
+			return base.getIncomingTransitions(vertex);
+		return Collections.unmodifiableSet(edges);
+	}
+
+	@Override
+	public Set<DefaultEdge> getOutgoingTransitions(Integer vertex) {
+		OrderedEdgeSet edges = outgoing.get(vertex);
+		if (edges == null)
+			return base.getOutgoingTransitions(vertex);
+		return Collections.unmodifiableSet(edges);
+	}
+
+	@Override
+	public Set<DefaultEdge> getOutgoingTransitions(Integer state, String name) {
+		OrderedEdgeSet edges = outgoing.get(state);
+		if (edges == null)
+			return base.getOutgoingTransitions(state, name);
+		Set<DefaultEdge> ret = new LinkedHashSet<DefaultEdge>();
+		for (DefaultEdge e : edges) {
+			if (getTransitionData(e).getLabel().equals(name))
+				ret.add(e);
+		}
+		return ret;
+	}
+
+	@Override
+	public TransitionData<T> getTransitionData(DefaultEdge e) {
+		if (data.containsKey(e))
+			return data.get(e);
+		return base.getTransitionData(e);
+	}
+
+	@Override
+	public Accept getAccept(Integer state) {
+		Accept a = storedAccept(state);
+		return a == null ? Accept.UNDEFINED : a;
+	}
+
+	@Override
+	public Set<DefaultEdge> getTransitions() {
+		Set<DefaultEdge> transitions = new LinkedHashSet<DefaultEdge>();
+		for (DefaultEdge e : base.getTransitions()) {
+			if (!removedTransitions.contains(e))
+				transitions.add(e);
+		}
+		transitions.addAll(addedSource.keySet());
+		return transitions;
+	}
+
+	@Override
+	public void setTransitionData(Map<DefaultEdge, TransitionData<T>> transData) {
+		throw new UnsupportedOperationException("The transition data of an overlay is changed one transition at a time.");
+	}
+
+	/*
+	 * An overlay is only meant to be used until its changes are applied to (or
+	 * discarded in favour of) its base, which is what should be cloned instead.
+	 */
+	@Override
+	public TraceDFA<T> clone() {
+		throw new UnsupportedOperationException("Overlays cannot be cloned; apply the changes to the base first.");
+	}
+
+	@Override
+	public List<GraphPath<Integer, DefaultEdge>> allPaths() {
+		throw new UnsupportedOperationException("Overlays have no graph to enumerate paths in.");
+	}
+
+}
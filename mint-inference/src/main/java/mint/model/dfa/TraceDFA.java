@@ -10,9 +10,15 @@
 
 package mint.model.dfa;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -43,8 +49,20 @@ public class TraceDFA<T> implements Cloneable {
 	protected Map<DefaultEdge, TransitionData<T>> transitions;
 	protected Integer initialState;
 
+	/*
+	 * Undo log for the currently open merge transaction (null if there is none).
+	 * Changes are pushed to the front, so that they can be undone in reverse order.
+	 */
+	protected Deque<Change<T>> undoLog;
+
+	/*
+	 * Transitions whose data has been replaced in the current transaction - the
+	 * replacement data is owned by the transaction and can be modified in place.
+	 */
+	protected Set<DefaultEdge> replacedData;
+
 	public TraceDFA() {
-		structure = new DirectedPseudograph<Integer, DefaultEdge>(DefaultEdge.class);
+		structure = new TransitionGraph();
 		acceptStates = new HashMap<Integer, Accept>();
 		initialState = 0;
 		acceptStates.put(initialState, Accept.UNDEFINED);
@@ -63,6 +81,13 @@ public class TraceDFA<T> implements Cloneable {
 		transitions = new HashMap<DefaultEdge, TransitionData<T>>();
 	}
 
+	/*
+	 * For subclasses that keep the states and transitions in their own representation.
+	 */
+	protected TraceDFA(Integer initialState) {
+		this.initialState = initialState;
+	}
+
 	public int stateCount() {
 		return structure.vertexSet().size();
 	}
@@ -154,7 +179,7 @@ public class TraceDFA<T> implements Cloneable {
 
 		for (Integer s : getStates()) {
 			if (!s.equals(initialState)) {
-				if (structure.incomingEdgesOf(s).isEmpty()) {
+				if (getIncomingTransitions(s).isEmpty()) {
 					return false;
 				}
 			}
@@ -171,22 +196,23 @@ public class TraceDFA<T> implements Cloneable {
 	}
 
 	public Integer addState() {
-		Integer v = stateCount();
-		structure.addVertex(v);
-		acceptStates.put(v, Accept.UNDEFINED);
-		return v;
+		return addState(stateCount());
 	}
 
 	public Integer addState(Integer v) {
-		structure.addVertex(v);
-		acceptStates.put(v, Accept.UNDEFINED);
+		if (undoLog != null)
+			logAccept(v);
+		if (insertState(v) && undoLog != null)
+			undoLog.push(new Change<T>(Change.Kind.ADD_STATE, v, null, null, null));
+		putAccept(v, Accept.UNDEFINED);
 		return v;
 	}
 
 	public DefaultEdge addTransition(Integer source, Integer target, TransitionData<T> t) {
-		DefaultEdge edge = structure.addEdge(source, target);
-		transitions.put(edge, t);
+		DefaultEdge edge = insertTransition(source, target, null, t);
 		assert (t != null);
+		if (undoLog != null)
+			undoLog.push(new Change<T>(Change.Kind.ADD_TRANSITION, source, target, edge, t));
 		return edge;
 	}
 
@@ -195,18 +221,157 @@ public class TraceDFA<T> implements Cloneable {
 	}
 
 	public void setInitialState(Integer s) {
+		if (undoLog != null)
+			undoLog.push(new Change<T>(Change.Kind.INITIAL_STATE, initialState, null, null, null));
 		initialState = s;
 	}
 
 	public void removeState(Integer s) {
-		structure.removeVertex(s);
-		acceptStates.remove(s);
+		if (undoLog != null && containsState(s)) {
+			// Incident transitions are dropped along with the state, so log them first.
+			List<DefaultEdge> incident = new ArrayList<DefaultEdge>(getOutgoingTransitions(s));
+			incident.addAll(getIncomingTransitions(s));
+			for (DefaultEdge e : incident) {
+				removeTransition(e);
+			}
+			logAccept(s);
+			undoLog.push(new Change<T>(Change.Kind.REMOVE_STATE, s, null, null, null));
+		}
+		deleteState(s);
+		putAccept(s, null);
 	}
 
 	public void removeTransition(DefaultEdge e) {
+		if (undoLog != null && containsTransition(e))
+			undoLog.push(new Change<T>(Change.Kind.REMOVE_TRANSITION, getTransitionSource(e), getTransitionTarget(e),
+					e, getTransitionData(e)));
+		deleteTransition(e);
+	}
+
+	public boolean containsTransition(DefaultEdge e) {
+		return structure.containsEdge(e);
+	}
+
+	/**
+	 * Replace the data attached to transition e. Unlike modifying the payload in
+	 * place, this can be undone if e is changed as part of a merge transaction.
+	 * 
+	 * @param e
+	 * @param data
+	 */
+	public void replaceTransitionData(DefaultEdge e, TransitionData<T> data) {
+		if (undoLog != null) {
+			undoLog.push(new Change<T>(Change.Kind.TRANSITION_DATA, null, null, e, getTransitionData(e)));
+			replacedData.add(e);
+		}
+		putTransitionData(e, data);
+	}
+
+	/**
+	 * Returns true if the data attached to e was created within the current
+	 * transaction, so that modifying it in place does not need to be undone.
+	 */
+	public boolean ownsTransitionData(DefaultEdge e) {
+		return undoLog == null || replacedData.contains(e);
+	}
+
+	/**
+	 * Open a merge transaction. Until the transaction is committed or rolled
+	 * back, every change to the states, transitions, accept-labels and initial
+	 * state of this automaton is recorded, so that a failed merge can be undone
+	 * at a cost that is proportional to the number of changes it made (instead
+	 * of having to clone the entire automaton beforehand).
+	 */
+	public void beginTransaction() {
+		assert (undoLog == null);
+		undoLog = new ArrayDeque<Change<T>>();
+		replacedData = new HashSet<DefaultEdge>();
+	}
+
+	public boolean inTransaction() {
+		return undoLog != null;
+	}
+
+	/**
+	 * Close the current merge transaction, keeping all of its changes.
+	 */
+	public void commit() {
+		undoLog = null;
+		replacedData = null;
+	}
+
+	/**
+	 * Undo all of the changes made since the transaction was opened, and close
+	 * the transaction.
+	 */
+	public void rollback() {
+		if (undoLog == null)
+			return;
+		Deque<Change<T>> log = undoLog;
+		undoLog = null;
+		replacedData = null;
+		Iterator<Change<T>> changeIt = log.iterator();
+		while (changeIt.hasNext()) {
+			changeIt.next().undo(this);
+		}
+	}
+
+	private void logAccept(Integer state) {
+		undoLog.push(new Change<T>(Change.Kind.ACCEPT, state, null, null, null, storedAccept(state)));
+	}
+
+	/*
+	 * Primitive operations on the underlying representation of states and
+	 * transitions. These bypass the undo log, and are overridden by subclasses
+	 * that use a different representation (see CompactTraceDFA).
+	 */
+
+	protected boolean insertState(Integer v) {
+		return structure.addVertex(v);
+	}
+
+	protected void deleteState(Integer v) {
+		structure.removeVertex(v);
+	}
+
+	/*
+	 * Adds a transition from source to target. If e is null a new edge is created,
+	 * otherwise e is (re-)inserted.
+	 */
+	protected DefaultEdge insertTransition(Integer source, Integer target, DefaultEdge e, TransitionData<T> data) {
+		if (e == null)
+			e = structure.addEdge(source, target);
+		else
+			structure.addEdge(source, target, e);
+		transitions.put(e, data);
+		return e;
+	}
+
+	protected void deleteTransition(DefaultEdge e) {
 		structure.removeEdge(e);
 	}
 
+	protected void putTransitionData(DefaultEdge e, TransitionData<T> data) {
+		if (data == null)
+			transitions.remove(e);
+		else
+			transitions.put(e, data);
+	}
+
+	/*
+	 * Returns the accept label recorded for state, or null if there is none.
+	 */
+	protected Accept storedAccept(Integer state) {
+		return acceptStates.get(state);
+	}
+
+	protected void putAccept(Integer state, Accept accept) {
+		if (accept == null)
+			acceptStates.remove(state);
+		else
+			acceptStates.put(state, accept);
+	}
+
 	public TransitionData<T> getTransitionData(DefaultEdge e) {
 		// assert(transitions.containsKey(e));
 		if (!transitions.containsKey(e)) {
@@ -220,7 +385,9 @@ public class TraceDFA<T> implements Cloneable {
 	}
 
 	public void setAccept(Integer state, Accept accept) {
-		acceptStates.put(state, accept);
+		if (undoLog != null)
+			logAccept(state);
+		putAccept(state, accept);
 	}
 
 	public boolean compatible(Integer stateA, Integer stateB) {
@@ -250,6 +417,7 @@ public class TraceDFA<T> implements Cloneable {
 	}
 
 	public void setTransitionData(Map<DefaultEdge, TransitionData<T>> transData) {
+		assert (undoLog == null);
 		this.transitions = transData;
 	}
 
@@ -258,20 +426,28 @@ public class TraceDFA<T> implements Cloneable {
 	}
 
 	@Override
-	public TraceDFA clone() {
-		DirectedPseudograph<Integer, DefaultEdge> g = new DirectedPseudograph<Integer, DefaultEdge>(DefaultEdge.class);
+	public TraceDFA<T> clone() {
+		DirectedPseudograph<Integer, DefaultEdge> g = new TransitionGraph();
 		for (Integer i : structure.vertexSet()) {
-			g.addVertex(new Integer(i));
+			g.addVertex(i);
 		}
 		Map<DefaultEdge, TransitionData<T>> clonedTransData = new HashMap<DefaultEdge, TransitionData<T>>();
-		for (DefaultEdge e : structure.edgeSet()) {
+		// (created in the same order, so that the transitions of each state are in the same order)
+		List<DefaultEdge> edges = new ArrayList<DefaultEdge>(structure.edgeSet());
+		Collections.sort(edges, new Comparator<DefaultEdge>() {
+			@Override
+			public int compare(DefaultEdge a, DefaultEdge b) {
+				return Long.compare(TransitionGraph.order(a), TransitionGraph.order(b));
+			}
+		});
+		for (DefaultEdge e : edges) {
 			TransitionData<T> transData = transitions.get(e);
 			Integer from = structure.getEdgeSource(e);
 			Integer to = structure.getEdgeTarget(e);
 			DefaultEdge newEdge = g.addEdge(from, to);
 			clonedTransData.put(newEdge, transData);
 		}
-		TraceDFA cloned = new TraceDFA(g);
+		TraceDFA<T> cloned = new TraceDFA<T>(g);
 		for (Integer state : acceptStates.keySet()) {
 			cloned.setAccept(state, acceptStates.get(state));
 		}
@@ -291,7 +467,64 @@ public class TraceDFA<T> implements Cloneable {
 
 	@Override
 	public String toString() {
-		return getStates().size() + " states, " + structure.edgeSet().size() + " edges";
+		return stateCount() + " states, " + transitionCount() + " edges";
+	}
+
+	/*
+	 * A single entry in the undo log of a merge transaction.
+	 */
+	protected static class Change<T> {
+
+		enum Kind {
+			ADD_STATE, REMOVE_STATE, ADD_TRANSITION, REMOVE_TRANSITION, TRANSITION_DATA, ACCEPT, INITIAL_STATE
+		}
+
+		final Kind kind;
+		final Integer source, target;
+		final DefaultEdge edge;
+		final TransitionData<T> data;
+		final Accept accept;
+
+		Change(Kind kind, Integer source, Integer target, DefaultEdge edge, TransitionData<T> data) {
+			this(kind, source, target, edge, data, null);
+		}
+
+		Change(Kind kind, Integer source, Integer target, DefaultEdge edge, TransitionData<T> data, Accept accept) {
+			this.kind = kind;
+			this.source = source;
+			this.target = target;
+			this.edge = edge;
+			this.data = data;
+			this.accept = accept;
+		}
+
+		void undo(TraceDFA<T> dfa) {
+			switch (kind) {
+			case ADD_STATE:
+				dfa.deleteState(source);
+				break;
+			case REMOVE_STATE:
+				dfa.insertState(source);
+				break;
+			case ADD_TRANSITION:
+				dfa.deleteTransition(edge);
+				dfa.putTransitionData(edge, null);
+				break;
+			case REMOVE_TRANSITION:
+				// Re-insert the same edge object, so that maps keyed by edges remain valid.
+				dfa.insertTransition(source, target, edge, data);
+				break;
+			case TRANSITION_DATA:
+				dfa.putTransitionData(edge, data);
+				break;
+			case ACCEPT:
+				dfa.putAccept(source, accept);
+				break;
+			case INITIAL_STATE:
+				dfa.initialState = source;
+				break;
+			}
+		}
 	}
 
 }
@@ -5,6 +5,14 @@ public class TransitionData<T> {
 	String label;
 	T payLoad;
 
+	/*
+	 * A value worked out from the payload by a machine decorator, cached here
+	 * so that it goes wherever the data goes (see WekaGuardMachineDecorator).
+	 * It is dropped when the payload is replaced; it is up to the decorator to
+	 * tell whether it is still up to date with a payload that has changed.
+	 */
+	private volatile Object summary;
+
 	public TransitionData(String label, T payLoad) {
 		this.payLoad = payLoad;
 		this.label = label;
@@ -16,12 +24,21 @@ public class TransitionData<T> {
 
 	public void setPayLoad(T payload){
 		this.payLoad = payload;
+		this.summary = null;
 	}
 	
 	public String getLabel(){
 		return label;
 	}
 
+	public Object getSummary(){
+		return summary;
+	}
+
+	public void setSummary(Object summary){
+		this.summary = summary;
+	}
+
 	public String toString(){
 		return label+", "+payLoad;
 	}
@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * EFSMTool is an Extended Finite State Machine (EFSM) inference tool. Copyright (C) 2013 Neil Walkinshaw.
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package mint.model.dfa;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Set;
+
+import org.jgrapht.EdgeFactory;
+import org.jgrapht.graph.DefaultEdge;
+import org.jgrapht.graph.DirectedPseudograph;
+import org.jgrapht.graph.EdgeSetFactory;
+import org.jgrapht.graph.specifics.DirectedEdgeContainer;
+import org.jgrapht.graph.specifics.FastLookupDirectedSpecifics;
+import org.jgrapht.graph.specifics.Specifics;
+
+/*
+ * The graph that underlies a TraceDFA. The incoming and outgoing transitions of
+ * each state are kept in the order in which the transitions were created, so that
+ * a transition that is removed and then re-inserted (when a transaction is rolled
+ * back) returns to its original position instead of being appended. A merge that
+ * is rolled back then has no effect on the order in which later merges visit the
+ * transitions of a state.
+ */
+public class TransitionGraph extends DirectedPseudograph<Integer, DefaultEdge> {
+
+	private static final long serialVersionUID = -2315096170234528917L;
+
+	public TransitionGraph() {
+		super(new OrderedEdgeFactory());
+	}
+
+	@Override
+	protected Specifics<Integer, DefaultEdge> createSpecifics(boolean directed) {
+		return new FastLookupDirectedSpecifics<Integer, DefaultEdge>(this,
+				new LinkedHashMap<Integer, DirectedEdgeContainer<Integer, DefaultEdge>>(), new OrderedEdgeSetFactory());
+	}
+
+	/**
+	 * The creation order of a transition of a TransitionGraph.
+	 */
+	public static long order(DefaultEdge e) {
+		if (e instanceof OrderedEdge)
+			return ((OrderedEdge) e).order;
+		return Long.MAX_VALUE;
+	}
+
+	protected static class OrderedEdge extends DefaultEdge {
+
+		private static final long serialVersionUID = 4622532164582419046L;
+
+		protected final long order;
+
+		protected OrderedEdge(long order) {
+			this.order = order;
+		}
+	}
+
+	protected static class OrderedEdgeFactory implements EdgeFactory<Integer, DefaultEdge> {
+
+		protected long next = 0;
+
+		@Override
+		public DefaultEdge createEdge(Integer sourceVertex, Integer targetVertex) {
+			return new OrderedEdge(next++);
+		}
+	}
+
+	protected static class OrderedEdgeSetFactory implements EdgeSetFactory<Integer, DefaultEdge> {
+
+		@Override
+		public Set<DefaultEdge> createEdgeSet(Integer vertex) {
+			return new OrderedEdgeSet();
+		}
+	}
+
+	/*
+	 * A list of edges in creation order. New edges are appended, as they were
+	 * created last; re-inserted edges are put back into place.
+	 */
+	protected static class OrderedEdgeSet extends AbstractSet<DefaultEdge> {
+
+		protected final ArrayList<DefaultEdge> edges = new ArrayList<DefaultEdge>(1);
+
+		@Override
+		public boolean add(DefaultEdge e) {
+			long order = order(e);
+			int i = edges.size();
+			if (i == 0 || order(edges.get(i - 1)) <= order) {
+				edges.add(e);
+				return true;
+			}
+			int low = 0;
+			int high = i - 1;
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				if (order(edges.get(mid)) <= order)
+					low = mid + 1;
+				else
+					high = mid;
+			}
+			edges.add(low, e);
+			return true;
+		}
+
+		@Override
+		public boolean remove(Object o) {
+			return edges.remove(o);
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			return edges.contains(o);
+		}
+
+		@Override
+		public Iterator<DefaultEdge> iterator() {
+			return edges.iterator();
+		}
+
+		@Override
+		public int size() {
+			return edges.size();
+		}
+	}
+
+}
@@ -34,8 +34,7 @@ public class DaikonEFSMPrefixTreeFactory extends PrefixTreeFactory<DaikonMachine
 	
 	@Override
 	public DaikonMachineDecorator createPrefixTree(TraceSet traces) {
-		buildMachine(traces.getNeg(), false);
-		buildMachine(traces.getPos(), true);
+		buildMachine(traces);
 		machine.getAutomaton().setAccept(machine.getInitialState(), TraceDFA.Accept.ACCEPT);
 		//assert(consistent(m,dataMap));
 		return machine;
@@ -23,6 +23,7 @@ import weka.core.Instance;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 public class EFSMPrefixTreeFactory extends PrefixTreeFactory<WekaGuardMachineDecorator> {
 
@@ -40,12 +41,26 @@ public class EFSMPrefixTreeFactory extends PrefixTreeFactory<WekaGuardMachineDec
 		machine.setElementsToInstances(elementsToInstances);
 		machine.setModelMap(modelMap);
 	}
+
+	/**
+	 * Generates the EFSM prefix tree with the classes already predicted for the trace elements
+	 * (see BaseClassifierInference.getPredictedClasses()).
+	 * 
+	 * @param kernel
+	 * @param modelMap
+	 * @param elementsToInstances
+	 * @param predictedClasses
+	 */
+	public EFSMPrefixTreeFactory(Machine<Set<TraceElement>> kernel, Map<String,Classifier> modelMap, HashMap<TraceElement,Instance> elementsToInstances,
+			Map<TraceElement,Integer> predictedClasses) {
+		this(kernel, modelMap, elementsToInstances);
+		machine.setPredictedClasses(predictedClasses);
+	}
 	
 	
 	@Override
 	public WekaGuardMachineDecorator createPrefixTree(TraceSet traces) {
-		buildMachine(traces.getNeg(), false);
-		buildMachine(traces.getPos(), true);
+		buildMachine(traces);
 		//assert(consistent(m,dataMap));
 		machine.getAutomaton().setAccept(machine.getInitialState(), TraceDFA.Accept.ACCEPT);
 		return machine;
@@ -37,12 +37,16 @@ public class FSMPrefixTreeFactory extends PrefixTreeFactory<SimpleMachine>{
 	
 	@Override
 	public SimpleMachine createPrefixTree(TraceSet traces) {
-		buildMachine(traces.getNeg(), false);
-		buildMachine(traces.getPos(), true);
+		buildMachine(traces);
 		machine.getAutomaton().setAccept(machine.getInitialState(), TraceDFA.Accept.ACCEPT);
 		return machine;
 	}
 
+	@Override
+	protected boolean compatibleByLabel() {
+		return true;
+	}
+
 	@Override
 	protected SimpleMachineAnalysis<Machine<Set<TraceElement>>> getAnalysis() {
 		return new SimpleMachineAnalysis<Machine<Set<TraceElement>>>(machine);
@@ -16,15 +16,29 @@ import mint.model.dfa.TransitionData;
 import mint.model.walk.SimpleMachineAnalysis;
 import mint.tracedata.TraceElement;
 import mint.tracedata.TraceSet;
+import org.apache.log4j.Logger;
 import org.jgrapht.graph.DefaultEdge;
 
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * A factory for the generation of Prefix Trees (which are instances of Machines) - before merging.
  * 
  * The constructor permits a kernel Machine, so that the Decorator pattern used to build Machine objects
  * is not suppressed.
+ *
+ * Traces are added iteratively, and the outgoing transitions of each state are indexed by
+ * label as the tree grows. Factories whose machines only compare labels to match trace
+ * elements to transitions (see compatibleByLabel()) can bulk-load a TraceSet: the subtrees
+ * for traces that start with different events are built separately (in parallel if
+ * Configuration.PREFIX_TREE_THREADS permits), and then added to the machine so that states
+ * are numbered exactly as if the traces had been added one by one.
+ * Observers are notified of new states (see addNew) whenever there are any.
  *  
  * @author neilwalkinshaw
  *
@@ -32,9 +46,17 @@ import java.util.*;
  */
 public abstract class PrefixTreeFactory<T extends Machine> extends Observable {
 
+	private final static Logger LOGGER = Logger.getLogger(PrefixTreeFactory.class.getName());
+
 	public abstract T createPrefixTree(TraceSet traces);
 	
 	protected T machine;
+
+	/*
+	 * The outgoing transitions of states of indexedAutomaton, by label.
+	 */
+	private TraceDFA<?> indexedAutomaton = null;
+	private Map<Integer,LabelIndex> labelIndex = new HashMap<Integer,LabelIndex>();
 	
 	protected PrefixTreeFactory(Machine kernel){
 		machine = initMachine(kernel);
@@ -43,6 +65,23 @@ public abstract class PrefixTreeFactory<T extends Machine> extends Observable {
 	protected void setMachine(T m){
 		machine = m;
 	}
+
+	/**
+	 * Add the negative and then the positive traces to the machine.
+	 * @param traces
+	 */
+	protected void buildMachine(TraceSet traces) {
+		if(compatibleByLabel() && countObservers() == 0 && machine.getAutomaton().transitionCount() == 0) {
+			List<List<TraceElement>> all = new ArrayList<List<TraceElement>>(traces.getNeg().size() + traces.getPos().size());
+			all.addAll(traces.getNeg());
+			all.addAll(traces.getPos());
+			buildTrie(all, traces.getNeg().size());
+		}
+		else {
+			buildMachine(traces.getNeg(), false);
+			buildMachine(traces.getPos(), true);
+		}
+	}
 	
 	protected void buildMachine(Collection<List<TraceElement>> traces, boolean accept) {
 		
@@ -55,32 +94,52 @@ public abstract class PrefixTreeFactory<T extends Machine> extends Observable {
 	
 	protected abstract T initMachine(Machine kernel);
 
+	/**
+	 * Does the machine match trace elements to transitions by their labels alone? If so,
+	 * the prefix tree can be built without consulting the machine (see buildMachine(TraceSet)).
+	 * @return
+	 */
+	protected boolean compatibleByLabel(){
+		return false;
+	}
+
 	protected  void addSequence(Machine<Set<TraceElement>> m, Integer currentState, List<TraceElement> seq, boolean accept){
 		assert(m.getAutomaton().getStates().contains(currentState));
-		if(seq.isEmpty())
-			return;
-		if(Configuration.getInstance().PREFIX_CLOSED){
-			if(m.getAutomaton().getAccept(currentState).equals(TraceDFA.Accept.REJECT))
-				return;
-		}
-		TraceElement current = seq.get(0);
-		Set<DefaultEdge> outgoing = SimpleMachineAnalysis.step(currentState, current.getName(), m.getAutomaton());
 		SimpleMachineAnalysis<?> modelAnalysis = getAnalysis();
-        Collection<DefaultEdge> toNext = modelAnalysis.getCompatible(outgoing,current);
-		if(toNext.isEmpty()){ //no compatible outgoing transitions to current path
-			addNew(m,currentState,seq,accept);//add new from here
-		}
-		else{
+		boolean prefixClosed = Configuration.getInstance().PREFIX_CLOSED;
+		// states to continue from, with the position in seq that they have been reached at
+		// (the top of the stack is processed first, so that states are visited depth-first).
+		Deque<Integer> states = new ArrayDeque<Integer>();
+		Deque<Integer> positions = new ArrayDeque<Integer>();
+		states.push(currentState);
+		positions.push(0);
+		while(!states.isEmpty()) {
+			currentState = states.pop();
+			int position = positions.pop();
+			if(position == seq.size())
+				continue;
+			if(prefixClosed){
+				if(m.getAutomaton().getAccept(currentState).equals(TraceDFA.Accept.REJECT))
+					continue;
+			}
+			TraceElement current = seq.get(position);
+			Set<DefaultEdge> outgoing = getOutgoing(m.getAutomaton(), currentState, current.getName());
+			Collection<DefaultEdge> toNext = modelAnalysis.getCompatible(outgoing,current);
+			if(toNext.isEmpty()){ //no compatible outgoing transitions to current path
+				addNew(m,currentState,seq.subList(position, seq.size()),accept);//add new from here
+				continue;
+			}
+			List<Integer> successors = new ArrayList<Integer>();
 			Iterator<DefaultEdge> transIt = toNext.iterator();
-			while(transIt.hasNext()) { 		
+			while(transIt.hasNext()) {
 				DefaultEdge next = transIt.next();
-				
+
 				Set<TraceElement> payload = m.getAutomaton().getTransitionData(next).getPayLoad();
 				payload.add(current);
 				Integer dest = m.getAutomaton().getTransitionTarget(next);
 				assert(!dest.equals(currentState));
-				if(seq.size()>1){
-					addSequence(m,dest,seq.subList(1, seq.size()),accept);
+				if(position < seq.size() - 1){
+					successors.add(dest);
 				}
 				else{
 					if(accept){
@@ -90,17 +149,22 @@ public abstract class PrefixTreeFactory<T extends Machine> extends Observable {
 						m.getAutomaton().setAccept(dest, TraceDFA.Accept.REJECT);
 					}
 				}
-
+			}
+			for(int i = successors.size() - 1; i >= 0; i--){
+				states.push(successors.get(i));
+				positions.push(position + 1);
 			}
 		}
 
 	}
 	
-	protected  void addNew(Machine m, Integer currentState, List<TraceElement> elements, boolean accept) {
+	protected  void addNew(Machine<Set<TraceElement>> m, Integer currentState, List<TraceElement> elements, boolean accept) {
 		Configuration configuration = Configuration.getInstance();
 		for(int i = 0; i< elements.size(); i++){
-            setChanged();
-            notifyObservers(new StateSequence(currentState,elements));
+			if(countObservers() > 0) {
+				setChanged();
+				notifyObservers(new StateSequence(currentState, elements));
+			}
 			TraceElement e = elements.get(i);
 			Integer newState = m.getAutomaton().addState();
 			if(i<elements.size()-1){
@@ -122,12 +186,223 @@ public abstract class PrefixTreeFactory<T extends Machine> extends Observable {
 			Set<TraceElement> payload = new HashSet<TraceElement>();
 			payload.add(e);
 			TransitionData<Set<TraceElement>> t = new TransitionData<Set<TraceElement>>(e.getName(),payload);
-			m.getAutomaton().addTransition(currentState, newState, t);
+			DefaultEdge added = m.getAutomaton().addTransition(currentState, newState, t);
+			indexTransition(m.getAutomaton(), currentState, e.getName(), added);
 			currentState = newState;
 		}
 	}
 	
 	protected abstract SimpleMachineAnalysis<?> getAnalysis();
-	
+
+	/*
+	 * The outgoing transitions of state with the given label. The index entry of a
+	 * state is (re)built whenever its number of outgoing transitions has changed
+	 * by other means than addNew.
+	 */
+	private Set<DefaultEdge> getOutgoing(TraceDFA<?> automaton, Integer state, String label) {
+		if(automaton != indexedAutomaton) {
+			labelIndex.clear();
+			indexedAutomaton = automaton;
+		}
+		int outDegree = automaton.getOutgoingTransitions(state).size();
+		LabelIndex index = labelIndex.get(state);
+		if(index == null || index.outDegree != outDegree) {
+			index = new LabelIndex();
+			for(DefaultEdge edge : automaton.getOutgoingTransitions(state))
+				index.add(automaton.getTransitionData(edge).getLabel(), edge);
+			labelIndex.put(state, index);
+		}
+		Set<DefaultEdge> edges = index.byLabel.get(label);
+		if(edges == null)
+			return Collections.emptySet();
+		return Collections.unmodifiableSet(edges);
+	}
+
+	private void indexTransition(TraceDFA<?> automaton, Integer state, String label, DefaultEdge edge) {
+		if(automaton != indexedAutomaton || edge == null)
+			return;
+		LabelIndex index = labelIndex.get(state);
+		if(index != null && index.outDegree == automaton.getOutgoingTransitions(state).size() - 1)
+			index.add(label, edge);
+	}
+
+	private static class LabelIndex {
+		int outDegree = 0;
+		final Map<String,Set<DefaultEdge>> byLabel = new HashMap<String,Set<DefaultEdge>>();
+
+		void add(String label, DefaultEdge edge) {
+			Set<DefaultEdge> edges = byLabel.get(label);
+			if(edges == null) {
+				edges = new LinkedHashSet<DefaultEdge>();
+				byLabel.put(label, edges);
+			}
+			edges.add(edge);
+			outDegree++;
+		}
+	}
+
+	/*
+	 * The automaton of the prefix tree. T is only bound to raw Machines, but the
+	 * transitions of a prefix tree are always labelled with sets of trace elements.
+	 */
+	@SuppressWarnings("unchecked")
+	private TraceDFA<Set<TraceElement>> getAutomaton() {
+		return (TraceDFA<Set<TraceElement>>) machine.getAutomaton();
+	}
+
+	/*
+	 * Bulk-load traces into an empty prefix tree, where the first negTraces
+	 * traces are negative and the remainder are positive.
+	 */
+	private void buildTrie(List<List<TraceElement>> traces, int negTraces) {
+		TraceDFA<Set<TraceElement>> automaton = getAutomaton();
+		Integer initial = machine.getInitialState();
+		boolean prefixClosed = Configuration.getInstance().PREFIX_CLOSED;
+		if(prefixClosed && automaton.getAccept(initial).equals(TraceDFA.Accept.REJECT))
+			return;
+
+		// group the traces by their first event (in order of appearance).
+		Map<String,List<Integer>> groups = new LinkedHashMap<String,List<Integer>>();
+		for(int i = 0; i<traces.size(); i++) {
+			List<TraceElement> trace = traces.get(i);
+			if(trace.isEmpty())
+				continue;
+			List<Integer> group = groups.get(trace.get(0).getName());
+			if(group == null) {
+				group = new ArrayList<Integer>();
+				groups.put(trace.get(0).getName(), group);
+			}
+			group.add(i);
+		}
+
+		List<TrieBuilder> builders = new ArrayList<TrieBuilder>();
+		for(List<Integer> group : groups.values())
+			builders.add(new TrieBuilder(traces, group, negTraces, prefixClosed));
+		int threads = Configuration.getInstance().PREFIX_TREE_THREADS;
+		if(threads <= 0)
+			threads = Runtime.getRuntime().availableProcessors();
+		threads = Math.min(threads, builders.size());
+		if(threads > 1) {
+			ExecutorService executor = Executors.newFixedThreadPool(threads);
+			try {
+				for(Future<List<TrieNode>> result : executor.invokeAll(builders))
+					result.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while building prefix tree", e);
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("Failed to build prefix tree", e.getCause());
+			} finally {
+				executor.shutdown();
+			}
+		}
+		else {
+			for(TrieBuilder builder : builders)
+				builder.call();
+		}
+
+		// add the nodes to the machine in the order in which they would have been created.
+		List<TrieNode> nodes = new ArrayList<TrieNode>();
+		for(TrieBuilder builder : builders)
+			nodes.addAll(builder.nodes);
+		Collections.sort(nodes);
+		for(TrieNode node : nodes) {
+			node.state = automaton.addState();
+			automaton.setAccept(node.state, node.accept);
+			Integer source = node.parent == null ? initial : node.parent.state;
+			automaton.addTransition(source, node.state, new TransitionData<Set<TraceElement>>(node.label, node.payload));
+		}
+		LOGGER.debug("Built prefix tree with " + nodes.size() + " transitions from " + groups.size() + " subtrees");
+	}
+
+	/*
+	 * A state of a prefix tree that is being bulk-loaded, and the transition to it.
+	 * Ordered by the trace that created it, and its depth.
+	 */
+	private static class TrieNode implements Comparable<TrieNode> {
+		final TrieNode parent;
+		final String label;
+		final Set<TraceElement> payload = new HashSet<TraceElement>();
+		final int trace, depth;
+		TraceDFA.Accept accept;
+		Map<String,TrieNode> children = null;
+		Integer state;
+
+		TrieNode(TrieNode parent, String label, int trace, int depth) {
+			this.parent = parent;
+			this.label = label;
+			this.trace = trace;
+			this.depth = depth;
+		}
+
+		TrieNode child(String label) {
+			if(children == null)
+				return null;
+			return children.get(label);
+		}
+
+		TrieNode addChild(String label, int trace) {
+			if(children == null)
+				children = new HashMap<String,TrieNode>();
+			TrieNode child = new TrieNode(this, label, trace, depth + 1);
+			children.put(label, child);
+			return child;
+		}
+
+		@Override
+		public int compareTo(TrieNode o) {
+			if(trace != o.trace)
+				return trace < o.trace ? -1 : 1;
+			return depth < o.depth ? -1 : (depth == o.depth ? 0 : 1);
+		}
+	}
+
+	/*
+	 * Builds the subtree for a group of traces that start with the same event,
+	 * following the same steps as addSequence and addNew.
+	 */
+	private static class TrieBuilder implements Callable<List<TrieNode>> {
+		final List<List<TraceElement>> traces;
+		final List<Integer> group;
+		final int negTraces;
+		final boolean prefixClosed;
+		final List<TrieNode> nodes = new ArrayList<TrieNode>();
+
+		TrieBuilder(List<List<TraceElement>> traces, List<Integer> group, int negTraces, boolean prefixClosed) {
+			this.traces = traces;
+			this.group = group;
+			this.negTraces = negTraces;
+			this.prefixClosed = prefixClosed;
+		}
+
+		@Override
+		public List<TrieNode> call() {
+			TrieNode top = null;
+			for(Integer t : group) {
+				List<TraceElement> trace = traces.get(t);
+				boolean accept = t >= negTraces;
+				TrieNode node = null; // (null is the initial state)
+				for(int i = 0; i<trace.size(); i++) {
+					if(prefixClosed && node != null && node.accept == TraceDFA.Accept.REJECT)
+						break;
+					TraceElement element = trace.get(i);
+					TrieNode next = node == null ? top : node.child(element.getName());
+					if(next == null) {
+						next = node == null ? new TrieNode(null, element.getName(), t, 1) : node.addChild(element.getName(), t);
+						if(node == null)
+							top = next;
+						nodes.add(next);
+						next.accept = i < trace.size() - 1 ? (prefixClosed ? TraceDFA.Accept.ACCEPT : TraceDFA.Accept.UNDEFINED)
+								: (accept ? TraceDFA.Accept.ACCEPT : TraceDFA.Accept.REJECT);
+					}
+					else if(i == trace.size() - 1)
+						next.accept = accept ? TraceDFA.Accept.ACCEPT : TraceDFA.Accept.REJECT;
+					next.payload.add(element);
+					node = next;
+				}
+			}
+			return nodes;
+		}
+	}
 	
 }
@@ -0,0 +1,50 @@
+package mint.model.walk;
+
+import mint.model.dfa.TraceDFA;
+import org.jgrapht.graph.DefaultEdge;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The outcome of walking a set of traces through a machine: whether each trace
+ * is accepted (in the order of the traces), and how many times each transition
+ * was taken across all of the walks.
+ */
+public class BatchWalkResult {
+
+	protected List<TraceDFA.Accept> accepts;
+	protected Map<DefaultEdge, Integer> coverage;
+
+	public BatchWalkResult(List<TraceDFA.Accept> accepts, Map<DefaultEdge, Integer> coverage) {
+		this.accepts = accepts;
+		this.coverage = coverage;
+	}
+
+	/**
+	 * The result of each walk, UNDEFINED if the trace could not be walked.
+	 * @return
+	 */
+	public List<TraceDFA.Accept> getAccepts() {
+		return accepts;
+	}
+
+	public TraceDFA.Accept getAccept(int trace) {
+		return accepts.get(trace);
+	}
+
+	/**
+	 * The number of times that each transition was taken (transitions that were
+	 * never taken are left out).
+	 * @return
+	 */
+	public Map<DefaultEdge, Integer> getCoverage() {
+		return coverage;
+	}
+
+	public int getCount(DefaultEdge transition) {
+		Integer count = coverage.get(transition);
+		return count == null ? 0 : count;
+	}
+
+}
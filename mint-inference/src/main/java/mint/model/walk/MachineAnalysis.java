@@ -63,7 +63,7 @@ public abstract class MachineAnalysis<T extends Machine> {
 
     /**
      * Walk according to the traceelements in, starting from initialState, recording the transitions walked
-     * (sofar) on automaton.
+     * (sofar) on automaton. The coverage recorded by this object is left unchanged.
      * @param in
      * @param initialState
      * @param soFar
@@ -14,9 +14,18 @@ import mint.Configuration;
 import mint.model.Machine;
 import mint.model.dfa.TraceDFA;
 import mint.tracedata.TraceElement;
+import mint.tracedata.TraceSet;
 import org.jgrapht.graph.DefaultEdge;
 
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /*
  * Convenience methods for determining whether a sequence (given in the form of a sequence of TraceElement objects)
@@ -28,6 +37,12 @@ public class SimpleMachineAnalysis<T extends Machine> extends MachineAnalysis<T>
 
 	protected Set<DefaultEdge> transitionsCovered;
 
+	/*
+	 * The outgoing transitions of the states of the automaton that was walked last,
+	 * indexed by label (see TransitionTable).
+	 */
+	private volatile TransitionTable table;
+
 	public SimpleMachineAnalysis(T m) {
 		this.machine = m;
 		transitionsCovered = new HashSet<DefaultEdge>();
@@ -36,12 +51,7 @@ public class SimpleMachineAnalysis<T extends Machine> extends MachineAnalysis<T>
 
 	public static Set<DefaultEdge> step(Integer currentState, String label, TraceDFA<?> a) {
         assert(a.containsState(currentState));
-		Set<DefaultEdge> outgoing = new HashSet<DefaultEdge>();
-		for(DefaultEdge t: a.getOutgoingTransitions(currentState)){
-			if(a.getTransitionData(t).getLabel().equals(label))
-				outgoing.add(t);
-		}
-		return outgoing;
+		return a.getOutgoingTransitions(currentState, label);
 	}
 
 
@@ -56,9 +66,7 @@ public class SimpleMachineAnalysis<T extends Machine> extends MachineAnalysis<T>
 	}
 	
 	public WalkResult getState(List<TraceElement> s, TraceDFA automaton){
-		List<TraceElement> copy = new ArrayList<TraceElement>();
-		copy.addAll(s);
-		return walk(copy,machine.getInitialState(), new Stack<DefaultEdge>(),automaton);
+		return walk(s,machine.getInitialState(), new ArrayList<DefaultEdge>(),automaton);
 	}
 	
 	/*
@@ -70,9 +78,7 @@ public class SimpleMachineAnalysis<T extends Machine> extends MachineAnalysis<T>
 		//copy.addAll(s);
 		if(resetCoverage)
 			transitionsCovered = new HashSet<DefaultEdge>();
-		WalkResult walk = walk(s);
-		if(walk.getWalk()!=null)
-			transitionsCovered.addAll(walk.getWalk());
+		WalkResult walk = coveringWalk(s);
 		return walk.isAccept(automaton) == TraceDFA.Accept.ACCEPT;
 	}
 
@@ -85,47 +91,228 @@ public class SimpleMachineAnalysis<T extends Machine> extends MachineAnalysis<T>
 		//copy.addAll(s);
 		if(resetCoverage)
 			transitionsCovered = new HashSet<DefaultEdge>();
-		WalkResult walk = walk(s);
+		WalkResult walk = coveringWalk(s);
 		TraceDFA.Accept result = TraceDFA.Accept.UNDEFINED;
-		if(walk.getWalk()!=null) {
-			transitionsCovered.addAll(walk.getWalk());
+		if(walk.getWalk()!=null)
 			result = walk.isAccept(automaton);
-		}
 		return result;
 	}
 
 
 
 	protected WalkResult walk(List<TraceElement> in){
-		return walk(in,machine.getInitialState(), new Stack<DefaultEdge>(), machine.getAutomaton());
+		return walk(in,machine.getInitialState(), new ArrayList<DefaultEdge>(), machine.getAutomaton());
 	}
-	
+
+	/*
+	 * Walks in from the initial state of the machine, and adds the transitions
+	 * taken to the coverage (including those of a walk that cannot be completed).
+	 */
+	private WalkResult coveringWalk(List<TraceElement> in){
+		List<DefaultEdge> steps = new ArrayList<DefaultEdge>();
+		TraceDFA<?> automaton = machine.getAutomaton();
+		WalkResult result = walk(in, machine.getInitialState(), steps, automaton, getTable(automaton));
+		transitionsCovered.addAll(steps);
+		return result;
+	}
+
+	/*
+	 * Does not change the coverage recorded by this object.
+	 */
 	public WalkResult walk(List<TraceElement> in,
 						   Integer initialState,
 						   List<DefaultEdge> soFar, TraceDFA automaton) {
-        List<TraceElement> s = new ArrayList<TraceElement>();
-        s.addAll(in);
-		if(s.isEmpty()) {
-            return new WalkResult(initialState, soFar);
-        }
-		if(automaton.getAccept(initialState).equals(TraceDFA.Accept.REJECT) && Configuration.getInstance().PREFIX_CLOSED){
-			return new WalkResult(initialState,soFar);
+		return walk(in, initialState, soFar, automaton, getTable(automaton));
+	}
+
+	/*
+	 * Walks in step by step from initialState, appending the transitions taken to soFar
+	 * (which is the walk of the result, unless in cannot be walked to the end).
+	 */
+	private WalkResult walk(List<TraceElement> in, Integer initialState, List<DefaultEdge> soFar,
+							TraceDFA<?> automaton, TransitionTable transitionTable) {
+		boolean prefixClosed = Configuration.getInstance().PREFIX_CLOSED;
+		Integer state = initialState;
+		Iterator<TraceElement> elementIt = in.iterator();
+		while(elementIt.hasNext()) {
+			if(prefixClosed && automaton.getAccept(state).equals(TraceDFA.Accept.REJECT))
+				break;
+			TraceElement current = elementIt.next();
+			Set<DefaultEdge> transitions = transitionTable.getOutgoing(state, current.getName());
+			if(transitions.isEmpty())
+				return new WalkResult(state, null);
+			DefaultEdge next = chooseTransition(transitions,current,!elementIt.hasNext());
+			if(next == null)
+				return new WalkResult(state, null);
+			soFar.add(next);
+			state = automaton.getTransitionTarget(next);
+		}
+		return new WalkResult(state, soFar);
+	}
+
+	/**
+	 * Walk each of the traces through the machine (from its initial state), on
+	 * Configuration.WALK_THREADS threads. Coverage is counted for the transitions
+	 * taken by every walk, including those of walks that could not be completed,
+	 * and is not added to the coverage recorded by this object.
+	 * @param traces
+	 * @return the result of each walk (in the order of traces), and the coverage.
+	 */
+	public BatchWalkResult walkAll(List<List<TraceElement>> traces) {
+		return walkAll(traces, machine.getAutomaton());
+	}
+
+	/**
+	 * Walk each of the traces through the given automaton (from its initial
+	 * state), as walkAll(List) does through that of the machine.
+	 * @param traces
+	 * @param automaton
+	 * @return
+	 */
+	public BatchWalkResult walkAll(List<List<TraceElement>> traces, final TraceDFA<?> automaton) {
+		final TransitionTable transitionTable = getTable(automaton);
+		int threads = Configuration.getInstance().WALK_THREADS;
+		if(threads <= 0)
+			threads = Runtime.getRuntime().availableProcessors();
+		threads = Math.max(1, Math.min(threads, traces.size()));
+		if(threads == 1)
+			return walkAll(traces, automaton, transitionTable);
+		ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "walk-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		// each thread walks a contiguous chunk of the traces, so that the results can be put back in order.
+		List<Future<BatchWalkResult>> chunks = new ArrayList<Future<BatchWalkResult>>();
+		int chunkSize = (traces.size() + threads - 1) / threads;
+		for(int i = 0; i < traces.size(); i += chunkSize) {
+			final List<List<TraceElement>> chunk = traces.subList(i, Math.min(traces.size(), i + chunkSize));
+			chunks.add(executor.submit(new Callable<BatchWalkResult>() {
+				@Override
+				public BatchWalkResult call() {
+					return walkAll(chunk, automaton, transitionTable);
+				}
+			}));
+		}
+		List<TraceDFA.Accept> accepts = new ArrayList<TraceDFA.Accept>(traces.size());
+		Map<DefaultEdge,Integer> coverage = new HashMap<DefaultEdge,Integer>();
+		try {
+			for(Future<BatchWalkResult> chunk : chunks) {
+				BatchWalkResult result = chunk.get();
+				accepts.addAll(result.getAccepts());
+				for(Map.Entry<DefaultEdge,Integer> entry : result.getCoverage().entrySet())
+					count(coverage, entry.getKey(), entry.getValue());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while walking traces", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Failed to walk traces", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+		return new BatchWalkResult(accepts, coverage);
+	}
+
+	/**
+	 * Walk the positive traces of the set followed by its negative traces
+	 * (see walkAll(List)).
+	 * @param traces
+	 * @return
+	 */
+	public BatchWalkResult walkAll(TraceSet traces) {
+		List<List<TraceElement>> all = new ArrayList<List<TraceElement>>(traces.getPos());
+		all.addAll(traces.getNeg());
+		return walkAll(all);
+	}
+
+	private BatchWalkResult walkAll(List<List<TraceElement>> traces, TraceDFA<?> automaton,
+									TransitionTable transitionTable) {
+		List<TraceDFA.Accept> accepts = new ArrayList<TraceDFA.Accept>(traces.size());
+		Map<DefaultEdge,Integer> coverage = new HashMap<DefaultEdge,Integer>();
+		List<DefaultEdge> steps = new ArrayList<DefaultEdge>();
+		for(List<TraceElement> trace : traces) {
+			steps.clear();
+			WalkResult result = walk(trace, automaton.getInitialState(), steps, automaton, transitionTable);
+			accepts.add(result.isAccept(automaton));
+			for(DefaultEdge step : steps)
+				count(coverage, step, 1);
+		}
+		return new BatchWalkResult(accepts, coverage);
+	}
+
+	private static void count(Map<DefaultEdge,Integer> coverage, DefaultEdge transition, int times) {
+		Integer count = coverage.get(transition);
+		coverage.put(transition, count == null ? times : count + times);
+	}
+
+	private TransitionTable getTable(TraceDFA<?> automaton) {
+		TransitionTable current = table;
+		if(current == null || current.automaton != automaton) {
+			current = new TransitionTable(automaton);
+			table = current;
+		}
+		return current;
+	}
+
+	/*
+	 * The outgoing transitions of each state of an automaton by label, so that a step
+	 * of a walk is a lookup instead of a scan of (and a new set for) the transitions of
+	 * the state. The entry of a state is built when the state is first reached, and is
+	 * rebuilt whenever its number of outgoing transitions has changed. Entries can be
+	 * looked up and built by several threads at the same time.
+	 */
+	private static class TransitionTable {
+
+		final TraceDFA<?> automaton;
+		final Map<Integer,StateIndex> states = new ConcurrentHashMap<Integer,StateIndex>();
+
+		TransitionTable(TraceDFA<?> automaton) {
+			this.automaton = automaton;
+		}
+
+		Set<DefaultEdge> getOutgoing(Integer state, String label) {
+			Set<DefaultEdge> outgoing = automaton.getOutgoingTransitions(state);
+			StateIndex index = states.get(state);
+			if(index == null || index.outDegree != outgoing.size()) {
+				index = new StateIndex(automaton, outgoing);
+				states.put(state, index);
+			}
+			Set<DefaultEdge> edges = index.byLabel.get(label);
+			if(edges == null)
+				return Collections.emptySet();
+			return edges;
 		}
-		TraceElement current = s.get(0);
-		Set<DefaultEdge> transitions = automaton.getOutgoingTransitions(initialState, current.getName());
-		if(transitions.size()==0) {
-            return new WalkResult(initialState, null);
-        }
-		DefaultEdge next = chooseTransition(transitions,current,s.size()==1);
-		if(next == null) {
-            return new WalkResult(initialState, null);
-        }
-		s.remove(0);
-		Integer dest = automaton.getTransitionTarget(next);
+	}
+
+	private static class StateIndex {
+
+		final int outDegree;
+		final Map<String,Set<DefaultEdge>> byLabel = new HashMap<String,Set<DefaultEdge>>();
 
-		soFar.add(next);
-		transitionsCovered.add(next);
-		return walk(s,dest,soFar,automaton);
+		/*
+		 * The sets are handed out to chooseTransition, so they are only exposed as read-only views.
+		 */
+		StateIndex(TraceDFA<?> automaton, Set<DefaultEdge> outgoing) {
+			outDegree = outgoing.size();
+			for(DefaultEdge edge : outgoing) {
+				String label = automaton.getTransitionData(edge).getLabel();
+				Set<DefaultEdge> edges = byLabel.get(label);
+				if(edges == null) {
+					edges = new HashSet<DefaultEdge>();
+					byLabel.put(label, edges);
+				}
+				edges.add(edge);
+			}
+			for(Map.Entry<String,Set<DefaultEdge>> entry : byLabel.entrySet())
+				entry.setValue(Collections.unmodifiableSet(entry.getValue()));
+		}
 	}
 
 
@@ -147,10 +334,8 @@ public class SimpleMachineAnalysis<T extends Machine> extends MachineAnalysis<T>
 	
 
 	public void walk(Set<List<TraceElement>> testSet, TraceDFA automaton){
-		transitionsCovered = new HashSet<DefaultEdge>();
-		for (List<TraceElement> test : testSet) {
-			walk(test,false,automaton);
-		}
+		BatchWalkResult result = walkAll(new ArrayList<List<TraceElement>>(testSet), automaton);
+		transitionsCovered = new HashSet<DefaultEdge>(result.getCoverage().keySet());
 	}
 	
 	public void resetCoverage(){
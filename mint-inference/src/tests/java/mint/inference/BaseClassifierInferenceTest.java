@@ -0,0 +1,96 @@
+package mint.inference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Test;
+
+import mint.Configuration;
+import mint.tracedata.SimpleTraceElement;
+import mint.tracedata.TraceElement;
+import mint.tracedata.TraceSet;
+import mint.tracedata.types.DoubleVariableAssignment;
+import mint.tracedata.types.VariableAssignment;
+import weka.classifiers.Classifier;
+
+public class BaseClassifierInferenceTest {
+
+	@After
+	public void teardown() {
+		Configuration.reset();
+	}
+
+	private static TraceElement element(String name, double x) {
+		List<VariableAssignment<?>> data = new ArrayList<VariableAssignment<?>>();
+		data.add(new DoubleVariableAssignment("x", x));
+		return new SimpleTraceElement(name, data);
+	}
+
+	/*
+	 * Traces of events e0 ... e9, each followed by one of two events depending
+	 * on its x (with a different threshold for each event).
+	 */
+	private static TraceSet traces(int count, int offset) {
+		TraceSet traces = new TraceSet();
+		for (int i = 0; i < count; i++) {
+			List<TraceElement> trace = new ArrayList<TraceElement>();
+			for (int e = 0; e < 10; e++) {
+				double x = (i + offset + e) % 10;
+				TraceElement current = element("e" + e, x);
+				TraceElement next = element(x < e ? "low" : "high", x);
+				current.setNext(next);
+				trace.add(current);
+				trace.add(next);
+			}
+			traces.addPos(trace);
+		}
+		return traces;
+	}
+
+	private static BaseClassifierInference infer(int threads, TraceSet traces, TraceSet evalSet) {
+		Configuration.getInstance().CLASSIFIER_THREADS = threads;
+		return new BaseClassifierInference(traces, evalSet, Configuration.Data.J48);
+	}
+
+	@Test
+	public void testSameClassifiersForAnyNumberOfThreads() {
+		TraceSet traces = traces(40, 0);
+		TraceSet evalSet = traces(10, 3);
+		Map<String, Classifier> serial = infer(1, traces, evalSet).getClassifiers();
+		Map<String, Classifier> parallel = infer(4, traces, evalSet).getClassifiers();
+		assertEquals(serial.keySet(), parallel.keySet());
+		for (String function : serial.keySet()) {
+			assertEquals(serial.get(function).toString(), parallel.get(function).toString());
+		}
+	}
+
+	@Test
+	public void testEvaluationElementsOnlyInTestingData() {
+		TraceSet traces = traces(20, 0);
+		TraceSet evalSet = traces(5, 3);
+		BaseClassifierInference bci = infer(2, traces, evalSet);
+		int evaluated = 0;
+		for (List<TraceElement> trace : evalSet.getPos()) {
+			for (TraceElement element : trace) {
+				if (element.getNext() != null) {
+					evaluated++;
+					assertTrue(bci.getElementsToInstances().containsKey(element));
+				}
+			}
+		}
+		int testing = 0;
+		for (String function : bci.testingData.keySet()) {
+			testing += bci.testingData.get(function).numInstances();
+			assertFalse(bci.testingData.get(function).isEmpty());
+		}
+		assertEquals(evaluated, testing);
+		// every event but e0 (never followed by low) has a classifier
+		assertEquals(9, bci.getClassifiers().size());
+	}
+}
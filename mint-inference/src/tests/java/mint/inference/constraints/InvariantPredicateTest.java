@@ -0,0 +1,134 @@
+package mint.inference.constraints;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import daikon.inv.Invariant;
+import mint.inference.constraints.InvariantPredicate.Check;
+import mint.inference.constraints.InvariantPredicate.Outcome;
+import mint.inference.constraints.InvariantPredicate.Relation;
+import mint.tracedata.SimpleTraceElement;
+import mint.tracedata.TraceElement;
+import mint.tracedata.types.DoubleVariableAssignment;
+import mint.tracedata.types.IntegerVariableAssignment;
+import mint.tracedata.types.StringVariableAssignment;
+import mint.tracedata.types.VariableAssignment;
+
+/**
+ * Checks the predicates compiled from Daikon invariants against trace elements,
+ * without running Daikon: the checks are built by the methods that compile
+ * builds them with for each kind of invariant.
+ */
+public class InvariantPredicateTest {
+
+	private static TraceElement element(VariableAssignment<?>... data) {
+		return new SimpleTraceElement("e", data);
+	}
+
+	private static Outcome evaluate(TraceElement element, Check... checks) {
+		return new InvariantPredicate(new ArrayList<Check>(Arrays.asList(checks))).evaluate(element);
+	}
+
+	private static TraceElement x(double value) {
+		return element(new DoubleVariableAssignment("x", value));
+	}
+
+	private static TraceElement xy(double x, int y) {
+		return element(new DoubleVariableAssignment("x", x), new IntegerVariableAssignment("y", y));
+	}
+
+	@Test
+	public void testNoInvariants() {
+		InvariantPredicate predicate = new InvariantPredicate(Collections.<Invariant>emptySet());
+		assertEquals(0, predicate.size());
+		assertEquals(Outcome.HOLDS, predicate.evaluate(x(1D)));
+	}
+
+	@Test
+	public void testOneOf() {
+		Check check = InvariantPredicate.oneOf("x", new double[] { 1D, 3D });
+		assertEquals(Outcome.HOLDS, evaluate(x(3D), check));
+		assertEquals(Outcome.FAILS, evaluate(x(2D), check));
+		// integers are compared as numbers
+		assertEquals(Outcome.HOLDS, evaluate(element(new IntegerVariableAssignment("x", 1)), check));
+		// and strings are not constrained
+		assertEquals(Outcome.HOLDS, evaluate(element(new StringVariableAssignment("x", "2")), check));
+	}
+
+	@Test
+	public void testOneOfStrings() {
+		Check check = InvariantPredicate.oneOf("s", new String[] { "a", "b" });
+		assertEquals(Outcome.HOLDS, evaluate(element(new StringVariableAssignment("s", "b")), check));
+		assertEquals(Outcome.FAILS, evaluate(element(new StringVariableAssignment("s", "c")), check));
+		assertEquals(Outcome.HOLDS, evaluate(element(new DoubleVariableAssignment("s", 1D)), check));
+	}
+
+	@Test
+	public void testBounds() {
+		Check upper = InvariantPredicate.upperBound("x", 5D);
+		assertEquals(Outcome.HOLDS, evaluate(x(5D), upper));
+		assertEquals(Outcome.FAILS, evaluate(x(5.5D), upper));
+		Check lower = InvariantPredicate.lowerBound("x", -1D);
+		assertEquals(Outcome.HOLDS, evaluate(x(-1D), lower));
+		assertEquals(Outcome.FAILS, evaluate(x(-2D), lower));
+		assertEquals(Outcome.HOLDS, evaluate(x(0D), upper, lower));
+		assertEquals(Outcome.FAILS, evaluate(x(6D), lower, upper));
+	}
+
+	@Test
+	public void testNonZero() {
+		Check check = InvariantPredicate.nonZero("x");
+		assertEquals(Outcome.HOLDS, evaluate(x(0.1D), check));
+		assertEquals(Outcome.FAILS, evaluate(x(0D), check));
+		assertEquals(Outcome.FAILS, evaluate(element(new IntegerVariableAssignment("x", 0)), check));
+	}
+
+	@Test
+	public void testComparisons() {
+		assertRelation(Relation.EQUAL, true, false, false);
+		assertRelation(Relation.GREATER_EQUAL, true, true, false);
+		assertRelation(Relation.GREATER, false, true, false);
+		assertRelation(Relation.LESS_EQUAL, true, false, true);
+		assertRelation(Relation.LESS, false, false, true);
+		assertRelation(Relation.NOT_EQUAL, false, true, true);
+		assertNull(InvariantPredicate.compare(null, "x", "y"));
+	}
+
+	/*
+	 * Whether x relation y holds for x = y, x > y and x < y (with x a double and
+	 * y an integer).
+	 */
+	private static void assertRelation(Relation relation, boolean equal, boolean greater, boolean less) {
+		Check check = InvariantPredicate.compare(relation, "x", "y");
+		assertEquals(relation.toString(), equal ? Outcome.HOLDS : Outcome.FAILS, evaluate(xy(2D, 2), check));
+		assertEquals(relation.toString(), greater ? Outcome.HOLDS : Outcome.FAILS, evaluate(xy(3D, 2), check));
+		assertEquals(relation.toString(), less ? Outcome.HOLDS : Outcome.FAILS, evaluate(xy(1D, 2), check));
+	}
+
+	@Test
+	public void testNullVariables() {
+		DoubleVariableAssignment unknown = new DoubleVariableAssignment("x");
+		unknown.setNull(true);
+		Check upper = InvariantPredicate.upperBound("x", 5D);
+		// a variable without a value is left to the solver
+		assertEquals(Outcome.UNKNOWN, evaluate(element(unknown), upper));
+		assertEquals(Outcome.UNKNOWN, evaluate(element(), upper));
+		// as is a comparison with one
+		Check greater = InvariantPredicate.compare(Relation.GREATER, "x", "y");
+		assertEquals(Outcome.UNKNOWN, evaluate(element(new IntegerVariableAssignment("y", 1), unknown), greater));
+		// but an invariant that fails rules the element out regardless
+		Check nonZero = InvariantPredicate.nonZero("y");
+		List<Check> checks = Arrays.asList(upper, nonZero);
+		assertEquals(Outcome.FAILS,
+				new InvariantPredicate(checks).evaluate(element(unknown, new IntegerVariableAssignment("y", 0))));
+		assertEquals(Outcome.UNKNOWN,
+				new InvariantPredicate(checks).evaluate(element(unknown, new IntegerVariableAssignment("y", 1))));
+	}
+}
@@ -0,0 +1,200 @@
+package mint.inference.constraints;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import mint.inference.constraints.InvariantPredicate.Check;
+import mint.inference.constraints.InvariantPredicate.Outcome;
+import mint.inference.constraints.InvariantPredicate.Relation;
+import mint.tracedata.SimpleTraceElement;
+import mint.tracedata.TraceElement;
+import mint.tracedata.types.DoubleVariableAssignment;
+import mint.tracedata.types.IntegerVariableAssignment;
+import mint.tracedata.types.StringVariableAssignment;
+import mint.tracedata.types.VariableAssignment;
+
+/**
+ * Checks that the constraints that invariants are translated into for Z3 give
+ * the same verdict on concrete data as the checks that InvariantPredicate
+ * compiles them into. Skipped when the Z3 library cannot be loaded.
+ */
+public class InvariantsToZ3ConstraintsTest {
+
+	/*
+	 * An invariant, both as a check and as a constraint.
+	 */
+	private static abstract class Invariant {
+
+		final Check check;
+
+		Invariant(Check check) {
+			this.check = check;
+		}
+
+		abstract void addTo(InvariantsToZ3Constraints constraints);
+	}
+
+	private List<TraceElement> elements;
+
+	@Before
+	public void setUp() {
+		try {
+			new InvariantsToZ3Constraints().close();
+		} catch (LinkageError e) {
+			Assume.assumeTrue("Z3 is not available", false);
+		}
+		elements = new ArrayList<TraceElement>();
+		double[] xs = { -2D, -1D, -0.5D, 0D, 0.1D, 1D, 2D, 3D, 5D, 5.5D };
+		int[] ys = { -1, 0, 1, 2, 3 };
+		String[] ss = { "a", "b", "c" };
+		for (int i = 0; i < xs.length; i++) {
+			for (int j = 0; j < ys.length; j++) {
+				elements.add(element(new DoubleVariableAssignment("x", xs[i]),
+						new DoubleVariableAssignment("z", xs[(i + j) % xs.length]), new IntegerVariableAssignment("y", ys[j]),
+						new StringVariableAssignment("s", ss[(i + j) % ss.length])));
+			}
+		}
+	}
+
+	private static TraceElement element(VariableAssignment<?>... data) {
+		return new SimpleTraceElement("e", data);
+	}
+
+	private static Invariant oneOf(final String var, final double[] elts, final boolean real) {
+		return new Invariant(InvariantPredicate.oneOf(var, elts)) {
+			@Override
+			void addTo(InvariantsToZ3Constraints constraints) {
+				constraints.addOneOf(var, elts, real);
+			}
+		};
+	}
+
+	private static Invariant oneOf(final String var, final String[] elts) {
+		return new Invariant(InvariantPredicate.oneOf(var, elts)) {
+			@Override
+			void addTo(InvariantsToZ3Constraints constraints) {
+				constraints.addOneOf(var, elts);
+			}
+		};
+	}
+
+	private static Invariant upperBound(final String var, final double max, final boolean real) {
+		return new Invariant(InvariantPredicate.upperBound(var, max)) {
+			@Override
+			void addTo(InvariantsToZ3Constraints constraints) {
+				constraints.addUpperBound(var, max, real);
+			}
+		};
+	}
+
+	private static Invariant lowerBound(final String var, final double min, final boolean real) {
+		return new Invariant(InvariantPredicate.lowerBound(var, min)) {
+			@Override
+			void addTo(InvariantsToZ3Constraints constraints) {
+				constraints.addLowerBound(var, min, real);
+			}
+		};
+	}
+
+	private static Invariant nonZero(final String var, final boolean real) {
+		return new Invariant(InvariantPredicate.nonZero(var)) {
+			@Override
+			void addTo(InvariantsToZ3Constraints constraints) {
+				constraints.addNonZero(var, real);
+			}
+		};
+	}
+
+	private static Invariant compare(final Relation relation) {
+		return new Invariant(InvariantPredicate.compare(relation, "x", "z")) {
+			@Override
+			void addTo(InvariantsToZ3Constraints constraints) {
+				constraints.addComparison(relation, "x", "z", true);
+			}
+		};
+	}
+
+	private static List<Invariant> invariants() {
+		List<Invariant> invariants = new ArrayList<Invariant>();
+		invariants.add(oneOf("x", new double[] { -0.5D, 1D, 5.5D }, true));
+		invariants.add(oneOf("y", new double[] { 0D, 3D }, false));
+		invariants.add(oneOf("s", new String[] { "a", "c" }));
+		invariants.add(upperBound("x", 2D, true));
+		invariants.add(upperBound("y", 1D, false));
+		invariants.add(lowerBound("x", 0.1D, true));
+		invariants.add(lowerBound("y", 0D, false));
+		invariants.add(nonZero("x", true));
+		invariants.add(nonZero("y", false));
+		for (Relation relation : Relation.values())
+			invariants.add(compare(relation));
+		return invariants;
+	}
+
+	/*
+	 * Whether the element satisfies the invariants according to the solver (as
+	 * DaikonMachineDecorator solves them).
+	 */
+	private static boolean solve(TraceElement element, Invariant... invariants) {
+		InvariantsToZ3Constraints constraints = new InvariantsToZ3Constraints();
+		try {
+			for (Invariant invariant : invariants)
+				invariant.addTo(constraints);
+			if (element != null) {
+				for (VariableAssignment<?> var : element.getData())
+					constraints.addVariableAssignment(var);
+			}
+			return constraints.solve();
+		} finally {
+			constraints.close();
+		}
+	}
+
+	private static Outcome evaluate(TraceElement element, Invariant... invariants) {
+		List<Check> checks = new ArrayList<Check>();
+		for (Invariant invariant : invariants)
+			checks.add(invariant.check);
+		return new InvariantPredicate(checks).evaluate(element);
+	}
+
+	private void assertAgree(Invariant... invariants) {
+		for (TraceElement element : elements) {
+			Outcome outcome = evaluate(element, invariants);
+			assertEquals(element + " " + Arrays.asList(invariants), outcome == Outcome.HOLDS,
+					solve(element, invariants));
+		}
+	}
+
+	@Test
+	public void testSingleInvariants() {
+		for (Invariant invariant : invariants())
+			assertAgree(invariant);
+	}
+
+	@Test
+	public void testPairsOfInvariants() {
+		List<Invariant> invariants = invariants();
+		for (int i = 0; i < invariants.size(); i++) {
+			for (int j = i + 1; j < invariants.size(); j++)
+				assertAgree(invariants.get(i), invariants.get(j));
+		}
+	}
+
+	@Test
+	public void testBoundsOnTheirOwn() {
+		// without data, the invariants are only unsatisfiable if they contradict each other
+		assertTrue(solve(null, lowerBound("x", 0.1D, true), upperBound("x", 2D, true)));
+		assertFalse(solve(null, lowerBound("x", 3D, true), upperBound("x", 2D, true)));
+		assertTrue(solve(null, lowerBound("y", 1D, false), upperBound("y", 1D, false)));
+		assertFalse(solve(null, lowerBound("y", 1D, false), nonZero("y", false), upperBound("y", 1D, false),
+				oneOf("y", new double[] { 0D, 3D }, false)));
+	}
+}
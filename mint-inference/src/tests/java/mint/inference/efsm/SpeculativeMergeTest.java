@@ -0,0 +1,128 @@
+package mint.inference.efsm;
+
+import mint.Configuration;
+import mint.inference.efsm.mergingstate.RedBlueMergingState;
+import mint.inference.efsm.mergingstate.SimpleMergingState;
+import mint.inference.efsm.scoring.BasicScorer;
+import mint.inference.efsm.scoring.RedBlueScorer;
+import mint.inference.efsm.scoring.scoreComputation.ComputeScore;
+import mint.model.Machine;
+import mint.model.PayloadMachine;
+import mint.model.dfa.TraceDFA;
+import mint.model.prefixtree.FSMPrefixTreeFactory;
+import mint.tracedata.SimpleTraceElement;
+import mint.tracedata.TraceElement;
+import mint.tracedata.TraceSet;
+import mint.tracedata.types.VariableAssignment;
+import org.jgrapht.graph.DefaultEdge;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that trying several merge candidates at the same time infers the same
+ * machine as trying them one at a time.
+ */
+public class SpeculativeMergeTest {
+
+    Configuration configuration;
+
+    @Before
+    public void setup() {
+        Configuration.reset();
+        configuration = Configuration.getInstance();
+    }
+
+    @Test
+    public void testSpeculativeIsSameAsSequential() {
+        for (int seed = 0; seed < 12; seed++) {
+            TraceSet traces = randomTraces(new Random(seed));
+            for (int k = 0; k <= 2; k++) {
+                for (boolean redBlue : new boolean[]{false, true}) {
+                    configuration.COMPACT_DFA = seed % 2 == 0;
+                    configuration.K = k;
+                    String message = "seed " + seed + ", k = " + k + ", red-blue: " + redBlue;
+                    String expected = describe(infer(traces, redBlue, 1));
+                    assertEquals(message, expected, describe(infer(traces, redBlue, 2)));
+                    assertEquals(message, expected, describe(infer(traces, redBlue, 8)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testCarefulDeterminization() {
+        configuration.CAREFUL_DETERMINIZATION = true;
+        configuration.K = 1;
+        TraceSet traces = randomTraces(new Random(42));
+        assertEquals(describe(infer(traces, false, 1)), describe(infer(traces, false, 4)));
+        assertEquals(describe(infer(traces, true, 1)), describe(infer(traces, true, 4)));
+    }
+
+    @Test
+    public void testLargerRedBlue() {
+        // enough states for the sets of red and blue states to grow and shrink
+        configuration.K = 1;
+        TraceSet traces = randomTraces(new Random(7), 300, 12, new String[]{"a", "b", "c", "d", "e", "f"});
+        String expected = describe(infer(traces, true, 1));
+        assertEquals(expected, describe(infer(traces, true, 4)));
+    }
+
+    private Machine infer(TraceSet traces, boolean redBlue, int speculativeMerges) {
+        configuration.SPECULATIVE_MERGES = speculativeMerges;
+        Machine tree = new FSMPrefixTreeFactory(new PayloadMachine()).createPrefixTree(traces);
+        if (redBlue) {
+            RedBlueMergingState<Machine> state = new RedBlueMergingState<Machine>(tree);
+            RedBlueScorer<RedBlueMergingState<Machine>> scorer = new RedBlueScorer<RedBlueMergingState<Machine>>(configuration.K, new ComputeScore());
+            return new EDSMMerger<Machine, RedBlueMergingState<Machine>>(scorer, state).infer();
+        }
+        SimpleMergingState<Machine> state = new SimpleMergingState<Machine>(tree);
+        BasicScorer<SimpleMergingState<Machine>, ComputeScore> scorer = new BasicScorer<SimpleMergingState<Machine>, ComputeScore>(configuration.K, new ComputeScore());
+        return new EDSMMerger<Machine, SimpleMergingState<Machine>>(scorer, state).infer();
+    }
+
+    private static TraceSet randomTraces(Random r) {
+        return randomTraces(r, 20 + r.nextInt(60), 8, new String[]{"a", "b", "c", "d"});
+    }
+
+    private static TraceSet randomTraces(Random r, int n, int maxLength, String[] labels) {
+        TraceSet traces = new TraceSet();
+        for (int t = 0; t < n; t++) {
+            List<TraceElement> trace = new ArrayList<TraceElement>();
+            int length = 1 + r.nextInt(maxLength);
+            for (int i = 0; i < length; i++) {
+                trace.add(new SimpleTraceElement(labels[r.nextInt(r.nextBoolean() ? 2 : labels.length)], new VariableAssignment<?>[0]));
+            }
+            if (r.nextInt(5) == 0)
+                traces.addNeg(trace);
+            else
+                traces.addPos(trace);
+        }
+        return traces;
+    }
+
+    /*
+     * The states (with their acceptance) and transitions (with their targets and
+     * the sizes of their payloads) of the machine, in order of state ids.
+     */
+    private static String describe(Machine<Set<TraceElement>> m) {
+        TraceDFA<Set<TraceElement>> automaton = m.getAutomaton();
+        List<Integer> states = new ArrayList<Integer>(automaton.getStates());
+        Collections.sort(states);
+        StringBuilder sb = new StringBuilder();
+        for (Integer state : states) {
+            sb.append(state).append(automaton.getAccept(state)).append(':');
+            List<String> transitions = new ArrayList<String>();
+            for (DefaultEdge edge : automaton.getOutgoingTransitions(state)) {
+                transitions.add(automaton.getTransitionData(edge).getLabel() + "->" + automaton.getTransitionTarget(edge)
+                        + "/" + automaton.getTransitionData(edge).getPayLoad().size());
+            }
+            Collections.sort(transitions);
+            sb.append(transitions).append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,75 @@
+package mint.inference.efsm.mergingstate;
+
+import mint.model.statepair.OrderedStatePair;
+
+import java.util.Random;
+
+/**
+ * Times cascades of merges through a MergeTracker, as they occur when a
+ * merge is determinised. Run with the number of merges per cascade as an
+ * (optional) argument.
+ */
+public class MergeTrackerBenchmark {
+
+    public static void main(String[] args) {
+        int merges = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int repeats = 10;
+        MergeTracker mt = new MergeTracker();
+        for (int i = 0; i < 3; i++) {
+            // the first iteration is a warm-up.
+            report("chain (i+1 into i)", time(mt, chain(merges, false), repeats), merges);
+            report("chain (i into i+1)", time(mt, chain(merges, true), repeats), merges);
+            report("random", time(mt, random(merges, new Random(i)), repeats), merges);
+        }
+    }
+
+    private static OrderedStatePair[] chain(int merges, boolean reverse) {
+        OrderedStatePair[] cascade = new OrderedStatePair[merges];
+        for (int i = 0; i < merges; i++) {
+            cascade[i] = reverse ? new OrderedStatePair(i + 1, i) : new OrderedStatePair(i, i + 1);
+        }
+        return cascade;
+    }
+
+    /*
+     * Each merge is between two states that have not been merged away yet.
+     */
+    private static OrderedStatePair[] random(int merges, Random r) {
+        int[] live = new int[merges + 1];
+        for (int i = 0; i < live.length; i++)
+            live[i] = i;
+        int liveCount = live.length;
+        OrderedStatePair[] cascade = new OrderedStatePair[merges];
+        for (int i = 0; i < merges; i++) {
+            int first = r.nextInt(liveCount);
+            int second = r.nextInt(liveCount - 1);
+            if (second >= first)
+                second++;
+            cascade[i] = new OrderedStatePair(live[first], live[second]);
+            live[second] = live[--liveCount];
+        }
+        return cascade;
+    }
+
+    private static long time(MergeTracker mt, OrderedStatePair[] cascade, int repeats) {
+        long checksum = 0;
+        long start = System.nanoTime();
+        for (int r = 0; r < repeats; r++) {
+            for (OrderedStatePair sp : cascade) {
+                mt.registerMerge(sp);
+                checksum += mt.getMergedEquivalent(sp).getFirstState();
+            }
+            mt.clear();
+        }
+        long elapsed = (System.nanoTime() - start) / repeats;
+        if (checksum == 42)
+            System.out.println();
+        return elapsed;
+    }
+
+    private static void report(String name, long nanos, int merges) {
+        System.out.println(String.format("%-20s %,d merges: %8.2f ms per cascade (%.1f ns per merge)", name, merges,
+                nanos / 1e6, (double) nanos / merges));
+    }
+
+}
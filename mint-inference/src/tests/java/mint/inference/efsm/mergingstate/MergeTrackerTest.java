@@ -0,0 +1,65 @@
+package mint.inference.efsm.mergingstate;
+
+import mint.model.statepair.OrderedStatePair;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MergeTrackerTest {
+
+    @Test
+    public void testCascade() {
+        MergeTracker mt = new MergeTracker();
+        mt.registerMerge(new OrderedStatePair(1, 2));
+        mt.registerMerge(new OrderedStatePair(3, 4));
+        mt.registerMerge(new OrderedStatePair(1, 3));
+        mt.registerMerge(new OrderedStatePair(0, 1));
+        for (int s = 0; s <= 4; s++)
+            assertEquals(0, (int) mt.getMergedTo(s));
+        assertEquals(5, (int) mt.getMergedTo(5));
+        assertEquals(new OrderedStatePair(0, 5), mt.getMergedEquivalent(new OrderedStatePair(4, 5)));
+        assertEquals(Collections.singleton(0), new HashSet<Integer>(mt.getMergeTargets()));
+
+        mt.clear();
+        assertEquals(2, (int) mt.getMergedTo(2));
+        assertTrue(mt.getMergeTargets().isEmpty());
+    }
+
+    /*
+     * Compare against a map-based tracker, for random cascades of merges between live states.
+     */
+    @Test
+    public void testRandomCascades() {
+        Random r = new Random(0);
+        MergeTracker mt = new MergeTracker();
+        for (int round = 0; round < 20; round++) {
+            Map<Integer, Integer> expected = new HashMap<Integer, Integer>();
+            List<Integer> live = new ArrayList<Integer>();
+            for (int s = 0; s < 500; s++)
+                live.add(s);
+            for (int i = 0; i < 300; i++) {
+                Integer first = live.get(r.nextInt(live.size()));
+                Integer second = live.get(r.nextInt(live.size()));
+                if (first.equals(second))
+                    continue;
+                live.remove(second);
+                expected.put(second, first);
+                for (Integer f : expected.keySet()) {
+                    if (expected.get(f).equals(second))
+                        expected.put(f, first);
+                }
+                mt.registerMerge(new OrderedStatePair(first, second));
+            }
+            for (int s = 0; s < 600; s++) {
+                Integer to = expected.get(s);
+                assertEquals(to == null ? s : to, (int) mt.getMergedTo(s));
+            }
+            assertEquals(new HashSet<Integer>(expected.values()), new HashSet<Integer>(mt.getMergeTargets()));
+            mt.clear();
+        }
+    }
+
+}
@@ -0,0 +1,179 @@
+package mint.inference.efsm.scoring;
+
+import mint.Configuration;
+import mint.inference.efsm.EDSMMerger;
+import mint.inference.efsm.mergingstate.SimpleMergingState;
+import mint.inference.efsm.scoring.scoreComputation.ComputeScore;
+import mint.inference.efsm.scoring.scoreComputation.Score;
+import mint.model.Machine;
+import mint.model.PayloadMachine;
+import mint.model.dfa.TraceDFA;
+import mint.model.prefixtree.FSMPrefixTreeFactory;
+import mint.model.statepair.OrderedStatePairWithScore;
+import mint.model.statepair.StatePair;
+import mint.tracedata.SimpleTraceElement;
+import mint.tracedata.TraceElement;
+import mint.tracedata.TraceSet;
+import mint.tracedata.types.VariableAssignment;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the scoring pool belongs to the inference run, that failed score
+ * computations are not ignored, and that rescoring only the pairs affected by
+ * the last merges gives the same candidates as scoring every pair again.
+ */
+public class BasicScorerTest {
+
+    Configuration configuration;
+
+    @Before
+    public void setup() {
+        Configuration.reset();
+        configuration = Configuration.getInstance();
+        configuration.K = 1;
+    }
+
+    @Test
+    public void testInferShutsDownItsPool() {
+        final List<ExecutorService> executors = new ArrayList<ExecutorService>();
+        BasicScorer<SimpleMergingState<Machine>, ComputeScore> scorer = new BasicScorer<SimpleMergingState<Machine>, ComputeScore>(configuration.K, new ComputeScore()) {
+            @Override
+            public void setExecutor(ExecutorService executor) {
+                executors.add(executor);
+                super.setExecutor(executor);
+            }
+        };
+        new EDSMMerger<Machine, SimpleMergingState<Machine>>(scorer, new SimpleMergingState<Machine>(prefixTree())).infer();
+        assertEquals(2, executors.size());
+        assertNotNull(executors.get(0));
+        assertTrue(executors.get(0).isShutdown());
+        assertNull(executors.get(1));
+    }
+
+    @Test
+    public void testFailedComputationIsRethrown() {
+        assertRethrown(null);
+        ExecutorService pool = new ForkJoinPool(2);
+        try {
+            assertRethrown(pool);
+        }
+        finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private void assertRethrown(ExecutorService executor) {
+        ComputeScore<SimpleMergingState<Machine>> failing = new ComputeScore<SimpleMergingState<Machine>>() {
+            @Override
+            public ComputeScore newInstance(SimpleMergingState<Machine> mergingState, StatePair sp) {
+                return new ComputeScore<SimpleMergingState<Machine>>(mergingState, sp) {
+                    @Override
+                    public Score call() throws Exception {
+                        throw new IOException("failed");
+                    }
+                };
+            }
+        };
+        BasicScorer<SimpleMergingState<Machine>, ComputeScore> scorer = new BasicScorer<SimpleMergingState<Machine>, ComputeScore>(configuration.K, failing);
+        scorer.setExecutor(executor);
+        SimpleMergingState<Machine> state = new SimpleMergingState<Machine>(prefixTree());
+        try {
+            scorer.possibleMerges(state, state.getCurrent().getStates());
+            fail("A failed score computation should be rethrown");
+        } catch (IllegalStateException e) {
+            // (a ForkJoinPool wraps the exceptions of a Callable in RuntimeExceptions)
+            Throwable cause = e.getCause();
+            while (cause instanceof RuntimeException && cause.getCause() != null)
+                cause = cause.getCause();
+            assertTrue(String.valueOf(e.getCause()), cause instanceof IOException);
+        }
+    }
+
+    @Test
+    public void testIncrementalRescoringIsSameAsFull() {
+        for (int seed = 0; seed < 10; seed++) {
+            for (int k = 0; k <= 2; k++) {
+                configuration.K = k;
+                final String message = "seed " + seed + ", k = " + k;
+                final int[] rounds = new int[1];
+                BasicScorer<SimpleMergingState<Machine>, ComputeScore> scorer = new BasicScorer<SimpleMergingState<Machine>, ComputeScore>(k, new ComputeScore());
+                Machine tree = new FSMPrefixTreeFactory(new PayloadMachine()).createPrefixTree(randomTraces(new Random(seed)));
+                new EDSMMerger<Machine, SimpleMergingState<Machine>>(scorer, new SimpleMergingState<Machine>(tree)) {
+                    @Override
+                    protected LinkedList<OrderedStatePairWithScore> calculatePossibleMerges(Collection<Integer> from) {
+                        // the run's scorer takes the changed states first, so a new scorer scores every pair.
+                        LinkedList<OrderedStatePairWithScore> incremental = super.calculatePossibleMerges(from);
+                        BasicScorer<SimpleMergingState<Machine>, ComputeScore> full = new BasicScorer<SimpleMergingState<Machine>, ComputeScore>(configuration.K, new ComputeScore());
+                        assertEquals(message + ", round " + rounds[0], describe(full.possibleMerges(state, from)), describe(incremental));
+                        rounds[0]++;
+                        return incremental;
+                    }
+                }.infer();
+                assertTrue(message, rounds[0] > 1);
+            }
+        }
+    }
+
+    @Test
+    public void testStatesThatReach() {
+        Machine tree = prefixTree();
+        TraceDFA<?> automaton = tree.getAutomaton();
+        Integer initial = tree.getInitialState();
+        assertEquals(new HashSet<Integer>(Arrays.asList(initial)), BasicScorer.statesThatReach(automaton, Arrays.asList(initial)));
+        for (Integer state : automaton.getStates())
+            assertEquals(new HashSet<Integer>(automaton.nodesThatReach(state)), BasicScorer.statesThatReach(automaton, Arrays.asList(state)));
+        assertTrue(BasicScorer.statesThatReach(automaton, Arrays.asList(-1)).isEmpty());
+    }
+
+    private static String describe(List<OrderedStatePairWithScore> merges) {
+        StringBuilder sb = new StringBuilder();
+        for (OrderedStatePairWithScore pair : merges)
+            sb.append(pair.getFirstState()).append(',').append(pair.getSecondState()).append(':').append(pair.getScore()).append(' ');
+        return sb.toString();
+    }
+
+    private static TraceSet randomTraces(Random r) {
+        TraceSet traces = new TraceSet();
+        String[] labels = {"a", "b", "c"};
+        for (int t = 0; t < 30; t++) {
+            String[] trace = new String[1 + r.nextInt(7)];
+            for (int i = 0; i < trace.length; i++)
+                trace[i] = labels[r.nextInt(labels.length)];
+            if (r.nextInt(5) == 0)
+                traces.addNeg(trace(trace));
+            else
+                traces.addPos(trace(trace));
+        }
+        return traces;
+    }
+
+    private static Machine prefixTree() {
+        TraceSet traces = new TraceSet();
+        traces.addPos(trace("a", "b", "a"));
+        traces.addPos(trace("a", "a", "b"));
+        traces.addPos(trace("b", "a"));
+        traces.addNeg(trace("b", "b"));
+        return new FSMPrefixTreeFactory(new PayloadMachine()).createPrefixTree(traces);
+    }
+
+    private static List<TraceElement> trace(String... labels) {
+        List<TraceElement> trace = new ArrayList<TraceElement>();
+        for (String label : labels)
+            trace.add(new SimpleTraceElement(label, new VariableAssignment<?>[0]));
+        return trace;
+    }
+}
@@ -0,0 +1,189 @@
+package mint.inference.efsm.scoring.scoreComputation;
+
+import mint.Configuration;
+import mint.inference.efsm.EDSMMerger;
+import mint.inference.efsm.mergingstate.RedBlueMergingState;
+import mint.inference.efsm.mergingstate.SimpleMergingState;
+import mint.inference.efsm.scoring.BasicScorer;
+import mint.inference.efsm.scoring.RedBlueScorer;
+import mint.model.Machine;
+import mint.model.PayloadMachine;
+import mint.model.dfa.TraceDFA;
+import mint.model.prefixtree.FSMPrefixTreeFactory;
+import mint.model.statepair.OrderedStatePairWithScore;
+import mint.model.statepair.StatePair;
+import mint.tracedata.SimpleTraceElement;
+import mint.tracedata.TraceElement;
+import mint.tracedata.TraceSet;
+import mint.tracedata.types.VariableAssignment;
+import org.jgrapht.graph.DefaultEdge;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that sharing scores between computations gives the same scores, and
+ * so the same machines, as computing every score from scratch.
+ */
+public class ScoreCacheTest {
+
+    Configuration configuration;
+
+    @Before
+    public void setup() {
+        Configuration.reset();
+        configuration = Configuration.getInstance();
+    }
+
+    @Test
+    public void testSameScoresWithAndWithoutCache() {
+        for (boolean guarded : new boolean[]{false, true}) {
+            for (boolean careful : new boolean[]{false, true}) {
+                for (int seed = 0; seed < 8; seed++) {
+                    for (int k = 0; k <= 2; k++) {
+                        for (boolean redBlue : new boolean[]{false, true}) {
+                            configuration.CAREFUL_DETERMINIZATION = careful;
+                            configuration.K = k;
+                            String message = "seed " + seed + ", k = " + k + ", red-blue: " + redBlue + ", careful: " + careful + ", guarded: " + guarded;
+                            TraceSet traces = randomTraces(new Random(seed));
+                            String cached = describe(infer(traces, guarded, redBlue, true, message));
+                            assertEquals(message, describe(infer(traces, guarded, redBlue, false, message)), cached);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /*
+     * A machine in which two transitions with the same label can still be
+     * incompatible (as with guards): transitions labelled c are only compatible if
+     * they have been taken by the same number of trace elements.
+     */
+    private static class GuardedMachine extends PayloadMachine {
+        @Override
+        public boolean compatible(DefaultEdge transitionA, DefaultEdge transitionB) {
+            if (!super.compatible(transitionA, transitionB))
+                return false;
+            TraceDFA<Set<TraceElement>> automaton = getAutomaton();
+            return !automaton.getTransitionData(transitionA).getLabel().equals("c")
+                    || automaton.getTransitionData(transitionA).getPayLoad().size() == automaton.getTransitionData(transitionB).getPayLoad().size();
+        }
+    }
+
+    @Test
+    public void testDisabledCacheIsNotUsed() {
+        ScoreCache cache = new ScoreCache();
+        StatePair pair = new StatePair(1, 2);
+        cache.put(pair, new Score(3, 4));
+        assertEquals(3, cache.get(pair).getPrimaryScore());
+        assertEquals(1, cache.getHits());
+        cache.setEnabled(false);
+        assertEquals(null, cache.get(pair));
+        cache.put(new StatePair(2, 3), new Score(1));
+        cache.setEnabled(true);
+        assertEquals(null, cache.get(new StatePair(2, 3)));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(0.5D, cache.getHitRate(), 0D);
+        cache.advance();
+        assertEquals(null, cache.get(pair));
+    }
+
+    /*
+     * Infer a machine, and in every round check the score of every pair of states
+     * with the cache against the score computed without it.
+     */
+    private Machine infer(TraceSet traces, boolean guarded, boolean redBlue, boolean useCache, final String message) {
+        Machine tree = new FSMPrefixTreeFactory(guarded ? new GuardedMachine() : new PayloadMachine()).createPrefixTree(traces);
+        if (redBlue) {
+            RedBlueMergingState<Machine> state = new RedBlueMergingState<Machine>(tree);
+            state.getScoreCache().setEnabled(useCache);
+            RedBlueScorer<RedBlueMergingState<Machine>> scorer = new RedBlueScorer<RedBlueMergingState<Machine>>(configuration.K, new ComputeScore());
+            return new EDSMMerger<Machine, RedBlueMergingState<Machine>>(scorer, state) {
+                @Override
+                protected LinkedList<OrderedStatePairWithScore> calculatePossibleMerges(Collection<Integer> from) {
+                    LinkedList<OrderedStatePairWithScore> merges = super.calculatePossibleMerges(from);
+                    checkScores(state, message);
+                    return merges;
+                }
+            }.infer();
+        }
+        SimpleMergingState<Machine> state = new SimpleMergingState<Machine>(tree);
+        state.getScoreCache().setEnabled(useCache);
+        BasicScorer<SimpleMergingState<Machine>, ComputeScore> scorer = new BasicScorer<SimpleMergingState<Machine>, ComputeScore>(configuration.K, new ComputeScore());
+        return new EDSMMerger<Machine, SimpleMergingState<Machine>>(scorer, state) {
+            @Override
+            protected LinkedList<OrderedStatePairWithScore> calculatePossibleMerges(Collection<Integer> from) {
+                LinkedList<OrderedStatePairWithScore> merges = super.calculatePossibleMerges(from);
+                checkScores(state, message);
+                return merges;
+            }
+        }.infer();
+    }
+
+    private static <T extends SimpleMergingState<Machine>> void checkScores(T state, String message) {
+        ScoreCache cache = state.getScoreCache();
+        boolean enabled = cache.enabled;
+        List<Integer> states = new ArrayList<Integer>(state.getCurrent().getStates());
+        Collections.sort(states);
+        for (Integer a : states) {
+            for (Integer b : states) {
+                if (a.equals(b))
+                    continue;
+                StatePair pair = new StatePair(a, b);
+                cache.setEnabled(true);
+                Score shared = score(state, pair);
+                cache.setEnabled(false);
+                Score computed = score(state, pair);
+                cache.setEnabled(enabled);
+                assertEquals(message + ", " + pair, computed.getPrimaryScore(), shared.getPrimaryScore());
+                assertEquals(message + ", " + pair, computed.getSecondaryScore(), shared.getSecondaryScore());
+            }
+        }
+    }
+
+    private static <T extends SimpleMergingState<Machine>> Score score(T state, StatePair pair) {
+        try {
+            return new ComputeScore<T>(state, pair).call();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static TraceSet randomTraces(Random r) {
+        TraceSet traces = new TraceSet();
+        String[] labels = {"a", "b", "c"};
+        for (int t = 0; t < 15; t++) {
+            List<TraceElement> trace = new ArrayList<TraceElement>();
+            int length = 1 + r.nextInt(6);
+            for (int i = 0; i < length; i++)
+                trace.add(new SimpleTraceElement(labels[r.nextInt(labels.length)], new VariableAssignment<?>[0]));
+            if (r.nextInt(5) == 0)
+                traces.addNeg(trace);
+            else
+                traces.addPos(trace);
+        }
+        return traces;
+    }
+
+    private static String describe(Machine<Set<TraceElement>> m) {
+        TraceDFA<Set<TraceElement>> automaton = m.getAutomaton();
+        List<Integer> states = new ArrayList<Integer>(automaton.getStates());
+        Collections.sort(states);
+        StringBuilder sb = new StringBuilder();
+        for (Integer state : states) {
+            sb.append(state).append(automaton.getAccept(state)).append(':');
+            List<String> transitions = new ArrayList<String>();
+            for (DefaultEdge edge : automaton.getOutgoingTransitions(state))
+                transitions.add(automaton.getTransitionData(edge).getLabel() + "->" + automaton.getTransitionTarget(edge));
+            Collections.sort(transitions);
+            sb.append(transitions).append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,256 @@
+package mint.inference.evo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.commons.collections4.MultiValuedMap;
+import org.apache.commons.collections4.multimap.HashSetValuedHashMap;
+import org.junit.Test;
+
+import mint.inference.gp.Generator;
+import mint.inference.gp.SingleOutputGP;
+import mint.inference.gp.selection.SingleOutputTournament;
+import mint.inference.gp.tree.Node;
+import mint.inference.gp.tree.NonTerminal;
+import mint.inference.gp.tree.nonterminals.doubles.AddDoublesOperator;
+import mint.inference.gp.tree.nonterminals.doubles.MultiplyDoublesOperator;
+import mint.inference.gp.tree.nonterminals.doubles.SubtractDoublesOperator;
+import mint.inference.gp.tree.terminals.DoubleVariableAssignmentTerminal;
+import mint.tracedata.types.DoubleVariableAssignment;
+import mint.tracedata.types.VariableAssignment;
+
+public class TournamentSelectionTest {
+
+	private static Node<?> x() {
+		return new DoubleVariableAssignmentTerminal(new DoubleVariableAssignment("x"), false, false);
+	}
+
+	private static Node<?> constant(double value) {
+		return new DoubleVariableAssignmentTerminal(new DoubleVariableAssignment("c", value), true, false);
+	}
+
+	private static Node<?> binary(NonTerminal<?> op, Node<?> a, Node<?> b) {
+		op.addChild(a);
+		op.addChild(b);
+		return op;
+	}
+
+	private static MultiValuedMap<List<VariableAssignment<?>>, VariableAssignment<?>> trainingSet() {
+		return trainingSet(20);
+	}
+
+	private static MultiValuedMap<List<VariableAssignment<?>>, VariableAssignment<?>> trainingSet(int size) {
+		MultiValuedMap<List<VariableAssignment<?>>, VariableAssignment<?>> evals = new HashSetValuedHashMap<List<VariableAssignment<?>>, VariableAssignment<?>>();
+		for (int i = 0; i < size; i++) {
+			List<VariableAssignment<?>> inputs = new ArrayList<VariableAssignment<?>>();
+			inputs.add(new DoubleVariableAssignment("x", (double) i));
+			evals.put(inputs, new DoubleVariableAssignment("o", 2D * i + 1));
+		}
+		return evals;
+	}
+
+	/*
+	 * A population with some structurally identical individuals (x+1 and 1+x).
+	 */
+	private static List<Chromosome> population() {
+		List<Chromosome> population = new ArrayList<Chromosome>();
+		for (int i = 0; i < 5; i++) {
+			population.add(binary(new AddDoublesOperator(), x(), constant(i)));
+			population.add(binary(new AddDoublesOperator(), constant(i), x()));
+			population.add(binary(new MultiplyDoublesOperator(), x(), constant(i)));
+			population.add(binary(new SubtractDoublesOperator(), binary(new AddDoublesOperator(), x(), x()),
+					constant(-i)));
+		}
+		return population;
+	}
+
+	private static String select(GPConfiguration config, int generations) {
+		MultiValuedMap<List<VariableAssignment<?>>, VariableAssignment<?>> evals = trainingSet();
+		List<Chromosome> population = population();
+		FitnessCache cache = new FitnessCache();
+		Random rand = new Random(3);
+		StringBuilder selected = new StringBuilder();
+		for (int g = 0; g < generations; g++) {
+			SingleOutputTournament batch = new SingleOutputTournament(evals, population, 4, false, rand);
+			batch.setFitnessCache(cache);
+			batch.setExecutor(config.getExecutor());
+			batch.evaluateAll(population);
+			for (int t = 0; t < 5; t++) {
+				SingleOutputTournament selection = new SingleOutputTournament(evals, population, 4, false, rand);
+				selection.setFitnessCache(cache);
+				selection.setExecutor(config.getExecutor());
+				List<Chromosome> parents = selection.select(config, 2);
+				selected.append(parents).append(selection.getBestFitness()).append('\n');
+			}
+		}
+		// the tournaments find every individual that evaluateAll has cached
+		assertEquals(0, cache.getMisses());
+		return selected.toString();
+	}
+
+	@Test
+	public void testSameSelectionForAnyNumberOfThreads() {
+		String serial = select(new GPConfiguration(20, 0.9, 0.1, 4, 4, 1), 3);
+		assertEquals(serial, select(new GPConfiguration(20, 0.9, 0.1, 4, 4, 4), 3));
+		assertEquals(serial, select(new GPConfiguration(20, 0.9, 0.1, 4, 4, 7), 3));
+	}
+
+	@Test
+	public void testEvaluateAllFillsCache() throws InterruptedException {
+		GPConfiguration config = new GPConfiguration(20, 0.9, 0.1, 4, 4, 4);
+		FitnessCache cache = new FitnessCache();
+		List<Chromosome> population = population();
+		SingleOutputTournament selection = new SingleOutputTournament(trainingSet(), population, 4, false,
+				new Random(0));
+		selection.setFitnessCache(cache);
+		selection.setExecutor(config.getExecutor());
+		selection.evaluateAll(population);
+		// x+c and c+x are evaluated once
+		assertEquals(15, cache.size());
+		for (Chromosome individual : population) {
+			Chromosome copy = individual.copy();
+			double cached = cache.get(individual).getFitness();
+			assertEquals(individual.toString(), selection.getFitness(copy).call(), cached, 0D);
+		}
+		Chromosome exact = binary(new SubtractDoublesOperator(), binary(new AddDoublesOperator(), x(), x()),
+				constant(-1));
+		assertEquals(0D, selection.computeFitness(exact), 0D);
+	}
+
+	@Test
+	public void testRemoveSemanticDuplicates() {
+		List<Chromosome> population = population();
+		SingleOutputTournament selection = new SingleOutputTournament(trainingSet(), population, 4, false,
+				new Random(0));
+		selection.evaluateAll(population);
+		List<Chromosome> distinct = selection.removeSemanticDuplicates(population);
+		// c+x is the same as x+c, and x*1 as x+0 (but x*2 is not quite the same as
+		// (x+x)-(-0), as the multiplication keeps its result away from 0)
+		assertEquals(14, distinct.size());
+		assertEquals(population.get(0), distinct.get(0));
+		for (Chromosome individual : distinct) {
+			assertFalse(individual.toString().equals("(* x 1.0)"));
+		}
+		// individuals that have not been evaluated are kept
+		List<Chromosome> unknown = new ArrayList<Chromosome>();
+		unknown.add(binary(new MultiplyDoublesOperator(), x(), constant(7)));
+		unknown.add(binary(new MultiplyDoublesOperator(), x(), constant(7)));
+		assertEquals(2, selection.removeSemanticDuplicates(unknown).size());
+	}
+
+	@Test
+	public void testRacingPicksFittest() throws InterruptedException {
+		MultiValuedMap<List<VariableAssignment<?>>, VariableAssignment<?>> evals = trainingSet(200);
+		List<Chromosome> population = population();
+		FitnessCache cache = new FitnessCache();
+		SingleOutputTournament full = new SingleOutputTournament(evals, population, 4, false, new Random(0));
+		Random rand = new Random(1);
+		for (int t = 0; t < 30; t++) {
+			List<Chromosome> tournament = new ArrayList<Chromosome>();
+			for (int i = 0; i < 4; i++) {
+				tournament.add(population.get(rand.nextInt(population.size())).copy());
+			}
+			Chromosome fittest = null;
+			double best = Double.POSITIVE_INFINITY;
+			for (Chromosome individual : tournament) {
+				double fitness = full.getFitness(individual.copy()).call();
+				if (fitness < best) {
+					best = fitness;
+					fittest = individual;
+				}
+			}
+			SingleOutputTournament racing = new SingleOutputTournament(evals, population, 4, false, rand);
+			racing.setFitnessCache(cache);
+			racing.setRacing(true);
+			Chromosome winner = racing.evaluatePopulation(tournament);
+			assertEquals(fittest.toString(), winner.toString());
+			assertEquals(best, racing.computeFitness(winner), 0D);
+		}
+		assertTrue(cache.getSkippedExamples() > 0);
+		assertTrue(cache.getSkipRate() > 0D && cache.getSkipRate() < 1D);
+		// the fitness values that were cached are exact
+		for (Chromosome individual : population) {
+			FitnessCache.Result cached = cache.peek(individual);
+			if (cached != null)
+				assertEquals(full.getFitness(individual.copy()).call(), cached.getFitness(), 0D);
+		}
+	}
+
+	/*
+	 * Runs the same tournaments (of individuals that are not yet cached) with and
+	 * without racing, and records the winners and the best fitness and elite of
+	 * each selection.
+	 */
+	private static String tournaments(boolean racing) {
+		MultiValuedMap<List<VariableAssignment<?>>, VariableAssignment<?>> evals = trainingSet(200);
+		List<Chromosome> population = population();
+		FitnessCache cache = new FitnessCache();
+		Random rand = new Random(5);
+		StringBuilder selected = new StringBuilder();
+		for (int t = 0; t < 20; t++) {
+			SingleOutputTournament selection = new SingleOutputTournament(evals, population, 4, false, rand);
+			selection.setFitnessCache(cache);
+			selection.setRacing(racing);
+			List<Chromosome> winners = selection.select(new GPConfiguration(20, 0.9, 0.1, 4, 4), 3);
+			selected.append(winners).append(selection.getBestFitness()).append(selection.getElite())
+					.append('\n');
+		}
+		return selected.toString();
+	}
+
+	@Test
+	public void testRacingSelectsSameAsFullEvaluation() {
+		assertEquals(tournaments(false), tournaments(true));
+	}
+
+	/*
+	 * The number of distinct copies of x+1 (of which the population has ten) that
+	 * an iteration mutates.
+	 */
+	private static int mutatedCopies(GPConfiguration config) {
+		List<Chromosome> population = population();
+		for (int i = 0; i < 10; i++) {
+			population.add(binary(new AddDoublesOperator(), x(), constant(1)));
+		}
+		final Chromosome first = population.get(population.size() - 1);
+		final Set<Chromosome> mutated = Collections.newSetFromMap(new IdentityHashMap<Chromosome, Boolean>());
+		SingleOutputGP gp = new SingleOutputGP(new Generator(new Random(0)), trainingSet(), config);
+		AbstractIterator iterator = new AbstractIterator(new ArrayList<Chromosome>(), population, 0.5, 1.0,
+				new Random(0)) {
+			@Override
+			protected Chromosome mutate(Chromosome toMutate) {
+				if (toMutate.sameSyntax(first))
+					mutated.add(toMutate);
+				return toMutate.copy();
+			}
+
+			@Override
+			protected Chromosome crossOver(Chromosome parentA, Chromosome parentB) {
+				return parentA.copy();
+			}
+		};
+		iterator.iterate(gp);
+		return mutated.size();
+	}
+
+	@Test
+	public void testSemanticDeduplicationIsOptIn() {
+		GPConfiguration config = new GPConfiguration(30, 0.5, 1.0, 4, 4, 1);
+		assertFalse(config.isSemanticDeduplication());
+		assertTrue(mutatedCopies(config) > 1);
+		config.setSemanticDeduplication(true);
+		assertEquals(1, mutatedCopies(config));
+		// with racing, the generation is not evaluated before the tournaments, so
+		// duplicates are kept
+		config.setRacing(true);
+		assertTrue(mutatedCopies(config) > 1);
+	}
+}
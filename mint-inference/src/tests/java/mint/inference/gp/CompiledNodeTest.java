@@ -0,0 +1,351 @@
+package mint.inference.gp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.collections4.MultiValuedMap;
+import org.apache.commons.collections4.multimap.HashSetValuedHashMap;
+import org.junit.Test;
+
+import mint.inference.gp.fitness.singleOutput.SingleOutputDoubleFitness;
+import mint.inference.gp.tree.Datatype;
+import mint.inference.gp.tree.Node;
+import mint.inference.gp.tree.NonTerminal;
+import mint.inference.gp.tree.nonterminals.booleans.AndBooleanOperator;
+import mint.inference.gp.tree.nonterminals.booleans.EQBooleanOperator;
+import mint.inference.gp.tree.nonterminals.booleans.GTBooleanDoublesOperator;
+import mint.inference.gp.tree.nonterminals.booleans.GTBooleanIntegersOperator;
+import mint.inference.gp.tree.nonterminals.booleans.LTBooleanDoublesOperator;
+import mint.inference.gp.tree.nonterminals.booleans.LTBooleanIntegersOperator;
+import mint.inference.gp.tree.nonterminals.booleans.NotBooleanOperator;
+import mint.inference.gp.tree.nonterminals.booleans.OrBooleanOperator;
+import mint.inference.gp.tree.nonterminals.doubles.AddDoublesOperator;
+import mint.inference.gp.tree.nonterminals.doubles.CastDoublesOperator;
+import mint.inference.gp.tree.nonterminals.doubles.CosDoublesOperator;
+import mint.inference.gp.tree.nonterminals.doubles.DivideDoublesOperator;
+import mint.inference.gp.tree.nonterminals.doubles.ExpDoublesOperator;
+import mint.inference.gp.tree.nonterminals.doubles.IfThenElseOperator;
+import mint.inference.gp.tree.nonterminals.doubles.LogDoublesOperator;
+import mint.inference.gp.tree.nonterminals.doubles.MultiplyDoublesOperator;
+import mint.inference.gp.tree.nonterminals.doubles.PwrDoublesOperator;
+import mint.inference.gp.tree.nonterminals.doubles.SubtractDoublesOperator;
+import mint.inference.gp.tree.nonterminals.integers.AddIntegersOperator;
+import mint.inference.gp.tree.nonterminals.integers.CastIntegersOperator;
+import mint.inference.gp.tree.nonterminals.integers.IfThenElseIntegerOperator;
+import mint.inference.gp.tree.nonterminals.integers.MultiplyIntegersOperator;
+import mint.inference.gp.tree.nonterminals.integers.SubtractIntegersOperator;
+import mint.inference.gp.tree.terminals.BooleanVariableAssignmentTerminal;
+import mint.inference.gp.tree.terminals.DoubleVariableAssignmentTerminal;
+import mint.inference.gp.tree.terminals.IntegerVariableAssignmentTerminal;
+import mint.inference.gp.tree.terminals.StringVariableAssignmentTerminal;
+import mint.tracedata.types.BooleanVariableAssignment;
+import mint.tracedata.types.DoubleVariableAssignment;
+import mint.tracedata.types.IntegerVariableAssignment;
+import mint.tracedata.types.VariableAssignment;
+
+/**
+ * Checks that compiled trees compute the same values as the trees themselves.
+ */
+public class CompiledNodeTest {
+
+	private static final Datatype[] TYPES = { Datatype.DOUBLE, Datatype.INTEGER, Datatype.BOOLEAN };
+
+	@Test
+	public void testSameAsNodeExecutor() throws InterruptedException {
+		Random r = new Random(0);
+		int compiled = 0;
+		for (int t = 0; t < 3000; t++) {
+			Datatype type = TYPES[t % 3];
+			Node<?> tree = randomTree(r, type, 1 + r.nextInt(6));
+			CompiledNode program = CompiledNode.compile(tree);
+			if (program == null)
+				continue;
+			compiled++;
+			for (int i = 0; i < 20; i++) {
+				List<VariableAssignment<?>> inputs = randomInputs(r);
+				Object expected = execute(tree, inputs);
+				assertTrue(program.bind(inputs));
+				program.run();
+				assertEquals(tree + " " + inputs, expected, program.result());
+			}
+		}
+		assertTrue(compiled > 2000);
+	}
+
+	@Test
+	public void testColumnsSameAsRows() {
+		Random r = new Random(2);
+		MultiValuedMap<List<VariableAssignment<?>>, VariableAssignment<?>> evals = new HashSetValuedHashMap<List<VariableAssignment<?>>, VariableAssignment<?>>();
+		for (int i = 0; i < 50; i++) {
+			List<VariableAssignment<?>> inputs = randomInputs(r);
+			if (i % 5 == 0)
+				inputs.add(new IntegerVariableAssignment("x", r.nextInt(10))); // (bound again)
+			evals.put(inputs, new DoubleVariableAssignment("o", 0D));
+		}
+		EvaluationColumns columns = new EvaluationColumns(evals);
+		assertEquals(50, columns.size());
+		for (int t = 0; t < 1000; t++) {
+			CompiledNode program = CompiledNode.compile(randomTree(r, TYPES[t % 3], 1 + r.nextInt(6)));
+			if (program == null)
+				continue;
+			assertTrue(program.bind(columns));
+			program.runColumns();
+			for (int row = 0; row < columns.size(); row++) {
+				// (one row at a time, which does not touch the columns)
+				assertTrue(program.bind(columns.getInputs(row)));
+				program.run();
+				assertEquals(program.result(), program.result(row));
+			}
+		}
+	}
+
+	@Test
+	public void testLimits() throws InterruptedException {
+		SubtractDoublesOperator subtract = new SubtractDoublesOperator();
+		subtract.addChild(variable("x"));
+		subtract.addChild(variable("y"));
+		List<VariableAssignment<?>> inputs = new ArrayList<VariableAssignment<?>>();
+		inputs.add(new DoubleVariableAssignment("x", 1.23456));
+		inputs.add(new DoubleVariableAssignment("y", 7D));
+		CompiledNode program = CompiledNode.compile(subtract);
+		assertTrue(program.bind(inputs));
+		program.run();
+		assertEquals(execute(subtract, inputs), program.result());
+
+		subtract.setResVar(new DoubleVariableAssignment("res", -2D, 2D));
+		program = CompiledNode.compile(subtract);
+		assertTrue(program.bind(inputs));
+		program.run();
+		assertEquals(-2D, program.doubleResult(), 0);
+		assertEquals(execute(subtract, inputs), program.result());
+	}
+
+	@Test
+	public void testUnsupportedTrees() {
+		EQBooleanOperator strings = new EQBooleanOperator();
+		strings.addChild(new StringVariableAssignmentTerminal("a"));
+		strings.addChild(new StringVariableAssignmentTerminal("b"));
+		assertNull(CompiledNode.compile(strings));
+
+		AddDoublesOperator mistyped = new AddDoublesOperator();
+		mistyped.addChild(variable("x"));
+		mistyped.addChild(new IntegerVariableAssignmentTerminal("i", false));
+		assertNull(CompiledNode.compile(mistyped));
+
+		AddDoublesOperator missing = new AddDoublesOperator();
+		missing.addChild(variable("x"));
+		assertNull(CompiledNode.compile(missing));
+	}
+
+	@Test
+	public void testInputNamedLikeConstant() {
+		AddIntegersOperator add = new AddIntegersOperator();
+		add.addChild(new IntegerVariableAssignmentTerminal("i", false));
+		add.addChild(new IntegerVariableAssignmentTerminal(3));
+		CompiledNode program = CompiledNode.compile(add);
+		assertNotNull(program);
+		List<VariableAssignment<?>> inputs = new ArrayList<VariableAssignment<?>>();
+		inputs.add(new IntegerVariableAssignment("i", 4));
+		assertTrue(program.bind(inputs));
+		program.run();
+		assertEquals(7, program.intResult());
+		inputs.add(new IntegerVariableAssignment("3", 5));
+		assertFalse(program.bind(inputs));
+	}
+
+	@Test
+	public void testFitnessIsSameAsInterpreted() throws InterruptedException {
+		Random r = new Random(1);
+		MultiValuedMap<List<VariableAssignment<?>>, VariableAssignment<?>> evals = new HashSetValuedHashMap<List<VariableAssignment<?>>, VariableAssignment<?>>();
+		for (int i = 0; i < 30; i++) {
+			evals.put(randomInputs(r), new DoubleVariableAssignment("o", (r.nextDouble() - 0.5) * 20));
+		}
+		for (int t = 0; t < 300; t++) {
+			@SuppressWarnings("unchecked")
+			Node<VariableAssignment<Double>> tree = (Node<VariableAssignment<Double>>) randomTree(r, Datatype.DOUBLE,
+					1 + r.nextInt(6));
+			CompiledNode program = CompiledNode.compile(tree);
+			if (program == null || program.getReturnType() != Datatype.DOUBLE)
+				continue; // (the operators exit on ill-typed trees)
+			Double interpreted = new InterpretedFitness(evals, tree).call();
+			assertEquals(tree.toString(), interpreted, new SingleOutputDoubleFitness(evals, tree, 4).call());
+		}
+	}
+
+	private static class InterpretedFitness extends SingleOutputDoubleFitness {
+
+		InterpretedFitness(MultiValuedMap<List<VariableAssignment<?>>, VariableAssignment<?>> evals,
+				Node<VariableAssignment<Double>> individual) {
+			super(evals, individual, 4);
+		}
+
+		@Override
+		protected CompiledNode compile() {
+			return null;
+		}
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static Object execute(Node<?> tree, List<VariableAssignment<?>> inputs) throws InterruptedException {
+		return new NodeExecutor(tree).execute(inputs);
+	}
+
+	private static List<VariableAssignment<?>> randomInputs(Random r) {
+		List<VariableAssignment<?>> inputs = new ArrayList<VariableAssignment<?>>();
+		for (String name : new String[] { "x", "y" }) {
+			if (r.nextInt(5) == 0)
+				continue;
+			if (r.nextInt(4) == 0)
+				inputs.add(new IntegerVariableAssignment(name, r.nextInt(21) - 10));
+			else
+				inputs.add(new DoubleVariableAssignment(name, (r.nextDouble() - 0.5) * Math.pow(10, r.nextInt(5))));
+		}
+		for (String name : new String[] { "i", "j" }) {
+			if (r.nextInt(5) != 0)
+				inputs.add(new IntegerVariableAssignment(name, r.nextInt(201) - 100));
+		}
+		if (r.nextInt(5) != 0)
+			inputs.add(new BooleanVariableAssignment("p", r.nextBoolean()));
+		return inputs;
+	}
+
+	private static Node<?> variable(String name) {
+		return new DoubleVariableAssignmentTerminal(new DoubleVariableAssignment(name), false, false);
+	}
+
+	private static Node<?> randomTree(Random r, Datatype type, int depth) {
+		if (r.nextInt(25) == 0)
+			type = TYPES[r.nextInt(3)]; // (does not type check)
+		if (depth <= 1 || r.nextInt(4) == 0)
+			return randomTerminal(r, type);
+		NonTerminal<?> node;
+		Datatype[] children;
+		Datatype d = Datatype.DOUBLE, i = Datatype.INTEGER, b = Datatype.BOOLEAN;
+		if (type == Datatype.DOUBLE) {
+			switch (r.nextInt(10)) {
+			case 0:
+				node = new AddDoublesOperator();
+				break;
+			case 1:
+				node = new SubtractDoublesOperator();
+				break;
+			case 2:
+				node = new MultiplyDoublesOperator();
+				break;
+			case 3:
+				node = new DivideDoublesOperator();
+				break;
+			case 4:
+				node = new PwrDoublesOperator();
+				break;
+			case 5:
+				node = new CosDoublesOperator();
+				break;
+			case 6:
+				node = new ExpDoublesOperator();
+				break;
+			case 7:
+				node = new LogDoublesOperator();
+				break;
+			case 8:
+				node = new CastDoublesOperator();
+				break;
+			default:
+				node = new IfThenElseOperator();
+			}
+			if (node instanceof IfThenElseOperator)
+				children = new Datatype[] { b, d, d };
+			else if (node instanceof CastDoublesOperator)
+				children = new Datatype[] { r.nextBoolean() ? i : d };
+			else if (node.typeSignature().length == 2)
+				children = new Datatype[] { d };
+			else
+				children = new Datatype[] { d, d };
+		} else if (type == Datatype.INTEGER) {
+			switch (r.nextInt(5)) {
+			case 0:
+				node = new AddIntegersOperator();
+				children = new Datatype[] { i, i };
+				break;
+			case 1:
+				node = new SubtractIntegersOperator();
+				children = new Datatype[] { i, i };
+				break;
+			case 2:
+				node = new MultiplyIntegersOperator();
+				children = new Datatype[] { i, i };
+				break;
+			case 3:
+				node = new CastIntegersOperator();
+				children = new Datatype[] { d };
+				break;
+			default:
+				node = new IfThenElseIntegerOperator();
+				children = new Datatype[] { b, i, i };
+			}
+		} else {
+			switch (r.nextInt(8)) {
+			case 0:
+				node = new AndBooleanOperator();
+				children = new Datatype[] { b, b };
+				break;
+			case 1:
+				node = new OrBooleanOperator();
+				children = new Datatype[] { b, b };
+				break;
+			case 2:
+				node = new NotBooleanOperator();
+				children = new Datatype[] { b };
+				break;
+			case 3:
+				node = new GTBooleanDoublesOperator();
+				children = new Datatype[] { d, d };
+				break;
+			case 4:
+				node = new LTBooleanDoublesOperator();
+				children = new Datatype[] { d, d };
+				break;
+			case 5:
+				node = new GTBooleanIntegersOperator();
+				children = new Datatype[] { i, i };
+				break;
+			case 6:
+				node = new LTBooleanIntegersOperator();
+				children = new Datatype[] { i, i };
+				break;
+			default:
+				node = new EQBooleanOperator();
+				children = new Datatype[] { TYPES[r.nextInt(3)], TYPES[r.nextInt(3)] };
+			}
+		}
+		for (Datatype child : children) {
+			node.addChild(randomTree(r, child, depth - 1));
+		}
+		return node;
+	}
+
+	private static Node<?> randomTerminal(Random r, Datatype type) {
+		boolean constant = r.nextInt(3) == 0;
+		if (type == Datatype.DOUBLE) {
+			if (constant)
+				return new DoubleVariableAssignmentTerminal(
+						new DoubleVariableAssignment("c", (double) (r.nextInt(2001) - 1000) / 100), true, false);
+			return variable(r.nextBoolean() ? "x" : "y");
+		} else if (type == Datatype.INTEGER) {
+			if (constant)
+				return new IntegerVariableAssignmentTerminal(r.nextInt(21) - 10);
+			return new IntegerVariableAssignmentTerminal(r.nextBoolean() ? "i" : "j", false);
+		}
+		if (constant)
+			return new BooleanVariableAssignmentTerminal(new BooleanVariableAssignment("b", r.nextBoolean()), true,
+					false);
+		return new BooleanVariableAssignmentTerminal(new BooleanVariableAssignment("p"), false, false);
+	}
+}
@@ -0,0 +1,158 @@
+package mint.inference.gp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.commons.collections4.MultiValuedMap;
+import org.apache.commons.collections4.multimap.HashSetValuedHashMap;
+import org.junit.Test;
+
+import mint.inference.evo.AbstractEvo;
+import mint.inference.evo.Chromosome;
+import mint.inference.evo.GPConfiguration;
+import mint.inference.evo.IslandModel;
+import mint.inference.gp.tree.NonTerminal;
+import mint.inference.gp.tree.nonterminals.doubles.AddDoublesOperator;
+import mint.inference.gp.tree.nonterminals.doubles.MultiplyDoublesOperator;
+import mint.inference.gp.tree.nonterminals.doubles.SubtractDoublesOperator;
+import mint.inference.gp.tree.terminals.DoubleVariableAssignmentTerminal;
+import mint.inference.gp.tree.terminals.VariableTerminal;
+import mint.tracedata.types.DoubleVariableAssignment;
+import mint.tracedata.types.VariableAssignment;
+
+public class IslandModelTest {
+
+	private static Generator generator() {
+		Generator gpGenerator = new Generator(new Random(0));
+		List<NonTerminal<?>> doubleNonTerms = new ArrayList<NonTerminal<?>>();
+		doubleNonTerms.add(new AddDoublesOperator());
+		doubleNonTerms.add(new SubtractDoublesOperator());
+		doubleNonTerms.add(new MultiplyDoublesOperator());
+		gpGenerator.setDoubleFunctions(doubleNonTerms);
+
+		List<VariableTerminal<?>> doubleTerms = new ArrayList<VariableTerminal<?>>();
+		doubleTerms.add(new DoubleVariableAssignmentTerminal(new DoubleVariableAssignment("a"), false, false));
+		doubleTerms.add(new DoubleVariableAssignmentTerminal(new DoubleVariableAssignment("b"), false, false));
+		gpGenerator.setDoubleTerminals(doubleTerms);
+		return gpGenerator;
+	}
+
+	private static MultiValuedMap<List<VariableAssignment<?>>, VariableAssignment<?>> trainingSet() {
+		return trainingSet(0D);
+	}
+
+	/*
+	 * Outputs a*a+b+offset, which no tree of the generator computes exactly unless
+	 * the offset is a whole number.
+	 */
+	private static MultiValuedMap<List<VariableAssignment<?>>, VariableAssignment<?>> trainingSet(double offset) {
+		MultiValuedMap<List<VariableAssignment<?>>, VariableAssignment<?>> trainingSet = new HashSetValuedHashMap<List<VariableAssignment<?>>, VariableAssignment<?>>();
+		Random r = new Random(0);
+		for (int i = 0; i < 30; i++) {
+			List<VariableAssignment<?>> inputs = new ArrayList<VariableAssignment<?>>();
+			double a = 1 + r.nextInt(20);
+			double b = 1 + r.nextInt(20);
+			inputs.add(new DoubleVariableAssignment("a", a));
+			inputs.add(new DoubleVariableAssignment("b", b));
+			trainingSet.put(inputs, new DoubleVariableAssignment("c", a * a + b + offset));
+		}
+		return trainingSet;
+	}
+
+	private static GPConfiguration configuration(GPConfiguration.Topology topology) {
+		GPConfiguration config = new GPConfiguration(80, 0.9, 0.1, 4, 5);
+		config.setIslands(4);
+		config.setMigrationInterval(3);
+		config.setMigrants(2);
+		config.setTopology(topology);
+		return config;
+	}
+
+	@Test
+	public void testIslandsFindSolution() {
+		SingleOutputGP gp = new SingleOutputGP(generator(), trainingSet(),
+				configuration(GPConfiguration.Topology.RING), false);
+		Chromosome best = gp.evolve(40);
+		assertNotNull(best);
+		assertEquals(best, gp.getFittest());
+		assertEquals(0D, gp.getBestFitness(), 0D);
+		assertTrue(gp.isCorrect(best));
+		// the population is that of every island
+		assertEquals(4 * 20, gp.getPopulation().size());
+	}
+
+	@Test
+	public void testMigration() {
+		// (the islands must not find a perfect solution before they migrate)
+		SingleOutputGP gp = new SingleOutputGP(generator(), trainingSet(0.5D),
+				configuration(GPConfiguration.Topology.FULLY_CONNECTED), false);
+		final List<AbstractEvo> migrated = new ArrayList<AbstractEvo>();
+		IslandModel model = new IslandModel(gp, new Random(0)) {
+			@Override
+			protected void migrate() {
+				List<String> best = new ArrayList<String>();
+				for (AbstractEvo island : islands) {
+					best.add(island.getFittest().toString());
+				}
+				super.migrate();
+				migrated.addAll(islands);
+				for (AbstractEvo island : islands) {
+					List<Chromosome> population = island.getPopulation();
+					// the best individual of every other island is now in the
+					// population (in place of the last ones)
+					for (int i = 0; i < islands.size(); i++) {
+						if (islands.get(i) != island) {
+							boolean found = false;
+							for (Chromosome c : population.subList(population.size() - 6, population.size())) {
+								found |= c.toString().equals(best.get(i));
+							}
+							assertTrue(found);
+						}
+					}
+				}
+			}
+		};
+		model.evolve(4);
+		assertEquals(4, migrated.size());
+	}
+
+	@Test
+	public void testIslandsHaveDifferentSeeds() {
+		SingleOutputGP gp = new SingleOutputGP(generator(), trainingSet(), configuration(GPConfiguration.Topology.RING),
+				false);
+		Set<Long> first = new HashSet<Long>();
+		for (AbstractEvo island : new IslandModel(gp, new Random(0)).getIslands()) {
+			first.add(((GP<?>) island).getRandom().nextLong());
+		}
+		assertEquals(4, first.size());
+	}
+
+	@Test
+	public void testSinglePopulationWithoutIslands() {
+		SingleOutputGP gp = new SingleOutputGP(generator(), trainingSet(), configuration(GPConfiguration.Topology.RING),
+				false) {
+			@Override
+			protected boolean supportsIslands() {
+				return false;
+			}
+		};
+		assertNotNull(gp.evolve(3));
+		assertEquals(80, gp.getPopulation().size());
+	}
+
+	@Test
+	public void testSameResultAsAnyRun() {
+		String first = new SingleOutputGP(generator(), trainingSet(), configuration(GPConfiguration.Topology.RING),
+				false).evolve(10).toString();
+		String second = new SingleOutputGP(generator(), trainingSet(), configuration(GPConfiguration.Topology.RING),
+				false).evolve(10).toString();
+		assertEquals(first, second);
+	}
+}
@@ -0,0 +1,169 @@
+package mint.inference.gp.tree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import mint.inference.gp.CompiledNode;
+import mint.inference.gp.tree.nonterminals.booleans.AndBooleanOperator;
+import mint.inference.gp.tree.nonterminals.booleans.GTBooleanDoublesOperator;
+import mint.inference.gp.tree.nonterminals.booleans.LTBooleanDoublesOperator;
+import mint.inference.gp.tree.nonterminals.booleans.NotBooleanOperator;
+import mint.inference.gp.tree.nonterminals.booleans.OrBooleanOperator;
+import mint.inference.gp.tree.nonterminals.doubles.AddDoublesOperator;
+import mint.inference.gp.tree.nonterminals.doubles.DivideDoublesOperator;
+import mint.inference.gp.tree.nonterminals.doubles.IfThenElseOperator;
+import mint.inference.gp.tree.nonterminals.doubles.MultiplyDoublesOperator;
+import mint.inference.gp.tree.nonterminals.doubles.PwrDoublesOperator;
+import mint.inference.gp.tree.nonterminals.doubles.SubtractDoublesOperator;
+import mint.inference.gp.tree.terminals.BooleanVariableAssignmentTerminal;
+import mint.inference.gp.tree.terminals.DoubleVariableAssignmentTerminal;
+import mint.tracedata.types.BooleanVariableAssignment;
+import mint.tracedata.types.DoubleVariableAssignment;
+import mint.tracedata.types.VariableAssignment;
+
+public class AlgebraicSimplifierTest {
+
+	private static Node<?> var(String name) {
+		return new DoubleVariableAssignmentTerminal(new DoubleVariableAssignment(name), false, false);
+	}
+
+	private static Node<?> constant(double value) {
+		return new DoubleVariableAssignmentTerminal(new DoubleVariableAssignment(String.valueOf(value), value), true,
+				false);
+	}
+
+	private static Node<?> constant(boolean value) {
+		return new BooleanVariableAssignmentTerminal(new BooleanVariableAssignment(String.valueOf(value), value), true,
+				false);
+	}
+
+	private static Node<?> op(NonTerminal<?> op, Node<?>... children) {
+		for (Node<?> child : children) {
+			op.addChild(child);
+		}
+		return op;
+	}
+
+	@Test
+	public void testConstantFolding() {
+		Node<?> tree = op(new AddDoublesOperator(), constant(2D), op(new MultiplyDoublesOperator(), constant(3D),
+				constant(4D)));
+		Node<?> simplified = tree.simp();
+		assertTrue(simplified instanceof Terminal);
+		assertEquals(14D, ((Terminal<?>) simplified).getTerminal().getValue());
+		// the tree itself is left as it was
+		assertEquals("(+ 2.0 (* 3.0 4.0))", tree.toString());
+	}
+
+	@Test
+	public void testIdentitiesAndAnnihilators() {
+		assertEquals("x", op(new AddDoublesOperator(), constant(0D), var("x")).simp().toString());
+		assertEquals("x", op(new SubtractDoublesOperator(), var("x"), constant(0D)).simp().toString());
+		assertEquals("x", op(new MultiplyDoublesOperator(), constant(1D), var("x")).simp().toString());
+		assertEquals("x", op(new DivideDoublesOperator(), var("x"), constant(1D)).simp().toString());
+		assertEquals("x", op(new PwrDoublesOperator(), var("x"), constant(1D)).simp().toString());
+		assertEquals("0.0", op(new MultiplyDoublesOperator(), var("x"), constant(0D)).simp().toString());
+		assertEquals("1.0", op(new PwrDoublesOperator(), var("x"), constant(0D)).simp().toString());
+		assertEquals("(- x y)", op(new SubtractDoublesOperator(), var("x"), var("y")).simp().toString());
+
+		Node<?> gt = op(new GTBooleanDoublesOperator(), var("x"), var("y"));
+		assertEquals(gt.toString(), op(new AndBooleanOperator(), gt.copy(), constant(true)).simp().toString());
+		assertEquals("false", op(new AndBooleanOperator(), gt.copy(), constant(false)).simp().toString());
+		assertEquals(gt.toString(), op(new OrBooleanOperator(), constant(false), gt.copy()).simp().toString());
+		assertEquals(gt.toString(), op(new OrBooleanOperator(), gt.copy(), gt.copy()).simp().toString());
+		assertEquals(gt.toString(),
+				op(new NotBooleanOperator(), op(new NotBooleanOperator(), gt.copy())).simp().toString());
+		assertEquals("false", op(new LTBooleanDoublesOperator(), var("x"), var("x")).simp().toString());
+	}
+
+	@Test
+	public void testDeadBranches() {
+		Node<?> condition = op(new GTBooleanDoublesOperator(), constant(1D), constant(2D));
+		Node<?> ite = op(new IfThenElseOperator(), condition, var("x"), op(new AddDoublesOperator(), var("y"),
+				constant(0D)));
+		Node<?> simplified = ite.simp();
+		assertEquals("y", simplified.toString());
+		assertEquals(null, simplified.getParent());
+
+		Node<?> same = op(new IfThenElseOperator(), op(new LTBooleanDoublesOperator(), var("x"), var("y")), var("x"),
+				var("x"));
+		assertEquals("x", same.simp().toString());
+	}
+
+	@Test
+	public void testSameResults() throws InterruptedException {
+		Random r = new Random(0);
+		int simplified = 0;
+		for (int t = 0; t < 500; t++) {
+			Node<?> tree = randomDouble(r, 5);
+			Node<?> simp = tree.simp();
+			if (simp.size() < tree.size())
+				simplified++;
+			CompiledNode original = CompiledNode.compile(tree);
+			CompiledNode program = CompiledNode.compile(simp);
+			assertNotNull(tree.toString(), program);
+			// (with inputs within the range of the results of the operators)
+			for (int i = 0; i < 10; i++) {
+				List<VariableAssignment<?>> inputs = new ArrayList<VariableAssignment<?>>();
+				inputs.add(new DoubleVariableAssignment("x", (double) (1 + r.nextInt(9))));
+				inputs.add(new DoubleVariableAssignment("y", 1 + r.nextDouble() * 10));
+				original.bind(inputs);
+				original.run();
+				program.bind(inputs);
+				program.run();
+				assertEquals(tree + " -> " + simp, original.doubleResult(), program.doubleResult(), 1e-9);
+			}
+		}
+		assertTrue(simplified > 100);
+	}
+
+	private static Node<?> randomDouble(Random r, int depth) {
+		if (depth <= 1 || r.nextInt(4) == 0) {
+			switch (r.nextInt(5)) {
+			case 0:
+				return var("x");
+			case 1:
+				return var("y");
+			default:
+				return constant((double) r.nextInt(3));
+			}
+		}
+		switch (r.nextInt(5)) {
+		case 0:
+			return op(new AddDoublesOperator(), randomDouble(r, depth - 1), randomDouble(r, depth - 1));
+		case 1:
+			return op(new SubtractDoublesOperator(), randomDouble(r, depth - 1), randomDouble(r, depth - 1));
+		case 2:
+			return op(new MultiplyDoublesOperator(), randomDouble(r, depth - 1), randomDouble(r, depth - 1));
+		case 3:
+			return op(new PwrDoublesOperator(), randomDouble(r, depth - 1), constant((double) r.nextInt(3)));
+		default:
+			return op(new IfThenElseOperator(), randomBoolean(r, depth - 1), randomDouble(r, depth - 1),
+					randomDouble(r, depth - 1));
+		}
+	}
+
+	private static Node<?> randomBoolean(Random r, int depth) {
+		if (depth <= 1 || r.nextInt(4) == 0)
+			return constant(r.nextBoolean());
+		switch (r.nextInt(5)) {
+		case 0:
+			return op(new AndBooleanOperator(), randomBoolean(r, depth - 1), randomBoolean(r, depth - 1));
+		case 1:
+			return op(new OrBooleanOperator(), randomBoolean(r, depth - 1), randomBoolean(r, depth - 1));
+		case 2:
+			return op(new NotBooleanOperator(), randomBoolean(r, depth - 1));
+		case 3:
+			return op(new GTBooleanDoublesOperator(), randomDouble(r, depth - 1), randomDouble(r, depth - 1));
+		default:
+			return op(new LTBooleanDoublesOperator(), randomDouble(r, depth - 1), randomDouble(r, depth - 1));
+		}
+	}
+}
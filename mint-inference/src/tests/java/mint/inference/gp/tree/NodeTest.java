@@ -0,0 +1,84 @@
+package mint.inference.gp.tree;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import mint.inference.gp.Generator;
+import mint.inference.gp.tree.nonterminals.doubles.AddDoublesOperator;
+import mint.inference.gp.tree.nonterminals.doubles.MultiplyDoublesOperator;
+import mint.inference.gp.tree.nonterminals.doubles.SubtractDoublesOperator;
+import mint.inference.gp.tree.terminals.DoubleVariableAssignmentTerminal;
+import mint.inference.gp.tree.terminals.VariableTerminal;
+import mint.tracedata.types.DoubleVariableAssignment;
+
+public class NodeTest {
+
+	private static Generator generator(Random r) {
+		Generator gpGenerator = new Generator(r);
+		List<NonTerminal<?>> doubleNonTerms = new ArrayList<NonTerminal<?>>();
+		doubleNonTerms.add(new AddDoublesOperator());
+		doubleNonTerms.add(new SubtractDoublesOperator());
+		doubleNonTerms.add(new MultiplyDoublesOperator());
+		gpGenerator.setDoubleFunctions(doubleNonTerms);
+
+		List<VariableTerminal<?>> doubleTerms = new ArrayList<VariableTerminal<?>>();
+		doubleTerms.add(new DoubleVariableAssignmentTerminal(new DoubleVariableAssignment("x"), false, false));
+		doubleTerms.add(new DoubleVariableAssignmentTerminal(new DoubleVariableAssignment("y"), false, false));
+		gpGenerator.setDoubleTerminals(doubleTerms);
+		return gpGenerator;
+	}
+
+	/*
+	 * Checks the depth, height and size of every node of the tree against those
+	 * worked out from scratch, and returns the nodes.
+	 */
+	private static List<Node<?>> check(Node<?> node, int depth) {
+		assertEquals(depth, node.depth());
+		int height = 0;
+		int size = 1;
+		List<Node<?>> nodes = new ArrayList<Node<?>>();
+		nodes.add(node);
+		for (Node<?> child : node.getChildren()) {
+			assertEquals(node, child.getParent());
+			List<Node<?>> below = check(child, depth + 1);
+			height = Math.max(height, 1 + child.height());
+			size += below.size();
+			nodes.addAll(below);
+		}
+		assertEquals(height, node.height());
+		assertEquals(size, node.size());
+		assertEquals(depth + height, node.subTreeMaxdepth());
+		return nodes;
+	}
+
+	@Test
+	public void testMeasuresFollowChanges() {
+		Random r = new Random(0);
+		Generator g = generator(r);
+		for (int t = 0; t < 200; t++) {
+			Node<?> tree = g.generateRandomDoubleExpression(4);
+			Node<?> other = g.generateRandomDoubleExpression(4);
+			List<Node<?>> nodes = check(tree, 0);
+			List<Node<?>> otherNodes = check(other, 0);
+			for (int i = 0; i < 5; i++) {
+				Node<?> target = nodes.get(r.nextInt(nodes.size()));
+				switch (r.nextInt(3)) {
+				case 0:
+					target.swapWith(otherNodes.get(r.nextInt(otherNodes.size())).copy());
+					break;
+				case 1:
+					target.mutate(g, 2);
+					break;
+				default:
+					check(target.copy(), 0);
+				}
+				nodes = check(tree, 0);
+			}
+		}
+	}
+}
@@ -0,0 +1,135 @@
+package mint.inference.gp.tree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import mint.inference.evo.FitnessCache;
+import mint.inference.gp.tree.nonterminals.doubles.AddDoublesOperator;
+import mint.inference.gp.tree.nonterminals.doubles.SubtractDoublesOperator;
+import mint.inference.gp.tree.terminals.DoubleVariableAssignmentTerminal;
+import mint.tracedata.types.DoubleVariableAssignment;
+
+public class StructuralHashTest {
+
+	private DoubleVariableAssignmentTerminal var(String name) {
+		return new DoubleVariableAssignmentTerminal(new DoubleVariableAssignment(name), false, false);
+	}
+
+	private DoubleVariableAssignmentTerminal constant(double value) {
+		return new DoubleVariableAssignmentTerminal(new DoubleVariableAssignment("c", value), true, false);
+	}
+
+	private Node<?> binary(NonTerminal<?> op, Node<?> a, Node<?> b) {
+		op.addChild(a);
+		op.addChild(b);
+		return op;
+	}
+
+	@Test
+	public void testCopyHasSameHash() {
+		Node<?> tree = binary(new AddDoublesOperator(), var("x"),
+				binary(new SubtractDoublesOperator(), var("y"), constant(2D)));
+		assertEquals(tree.structuralHash(), tree.copy().structuralHash());
+	}
+
+	@Test
+	public void testCommutativeChildrenInAnyOrder() {
+		Node<?> xy = binary(new AddDoublesOperator(), var("x"), var("y"));
+		Node<?> yx = binary(new AddDoublesOperator(), var("y"), var("x"));
+		assertEquals(xy.structuralHash(), yx.structuralHash());
+
+		Node<?> xMinusY = binary(new SubtractDoublesOperator(), var("x"), var("y"));
+		Node<?> yMinusX = binary(new SubtractDoublesOperator(), var("y"), var("x"));
+		assertNotEquals(xMinusY.structuralHash(), yMinusX.structuralHash());
+		assertNotEquals(xy.structuralHash(), xMinusY.structuralHash());
+	}
+
+	@Test
+	public void testConstantsAndVariablesDiffer() {
+		assertNotEquals(constant(1D).structuralHash(), constant(2D).structuralHash());
+		assertNotEquals(var("x").structuralHash(), var("y").structuralHash());
+		assertEquals(constant(1D).structuralHash(), constant(1D).structuralHash());
+	}
+
+	@Test
+	public void testFitnessCache() {
+		FitnessCache cache = new FitnessCache(2);
+		assertNull(cache.get(var("a")));
+		cache.put(var("a"), 0.5D, "one");
+		cache.put(var("b"), 1.5D, "two");
+		assertEquals(0.5D, cache.get(var("a")).getFitness(), 0D);
+		// b is now the least recently used, so it is dropped for c
+		cache.put(var("c"), 2.5D, "three");
+		assertEquals(2, cache.size());
+		assertNull(cache.get(var("b")));
+		assertNotNull(cache.get(var("c")));
+		assertEquals("three", cache.get(var("c")).getSummary());
+		assertEquals(3, cache.getHits());
+		assertEquals(2, cache.getMisses());
+		assertEquals(0.6D, cache.getHitRate(), 1e-9);
+		assertEquals(0, cache.getCollisions());
+	}
+
+	/*
+	 * A variable whose structural hash is the same whatever its name.
+	 */
+	private static class CollidingTerminal extends DoubleVariableAssignmentTerminal {
+
+		CollidingTerminal(String name) {
+			super(new DoubleVariableAssignment(name), false, false);
+		}
+
+		@Override
+		public long structuralHash() {
+			return 1L;
+		}
+
+		@Override
+		public DoubleVariableAssignmentTerminal copy() {
+			return new CollidingTerminal(getName());
+		}
+	}
+
+	@Test
+	public void testFitnessCacheCollision() {
+		FitnessCache cache = new FitnessCache();
+		Node<?> x = binary(new AddDoublesOperator(), new CollidingTerminal("x"), constant(1D));
+		Node<?> y = binary(new AddDoublesOperator(), new CollidingTerminal("y"), constant(1D));
+		assertEquals(x.structuralHash(), y.structuralHash());
+		cache.put(x, 0.5D, "x");
+		assertNull(cache.get(y));
+		assertFalse(cache.contains(y));
+		assertNull(cache.peek(y));
+		assertEquals(3, cache.getCollisions());
+		// the commutative argument order does not matter
+		Node<?> swapped = binary(new AddDoublesOperator(), constant(1D), new CollidingTerminal("x"));
+		assertEquals("x", cache.get(swapped).getSummary());
+		// the entry is replaced by that of the last chromosome with the hash
+		cache.put(y, 1.5D, "y");
+		assertEquals(1, cache.size());
+		assertEquals(1.5D, cache.get(y).getFitness(), 0D);
+		assertNull(cache.get(x));
+	}
+
+	@Test
+	public void testSameStructure() {
+		Node<?> tree = binary(new AddDoublesOperator(), var("x"),
+				binary(new SubtractDoublesOperator(), var("y"), constant(2D)));
+		assertTrue(tree.sameStructure(tree.copy()));
+		assertTrue(tree.sameStructure(binary(new AddDoublesOperator(),
+				binary(new SubtractDoublesOperator(), var("y"), constant(2D)), var("x"))));
+		assertFalse(tree.sameStructure(binary(new AddDoublesOperator(), var("x"),
+				binary(new SubtractDoublesOperator(), constant(2D), var("y")))));
+		assertFalse(tree.sameStructure(binary(new AddDoublesOperator(), var("x"),
+				binary(new SubtractDoublesOperator(), var("y"), constant(3D)))));
+		assertFalse(binary(new AddDoublesOperator(), var("x"), var("x"))
+				.sameStructure(binary(new AddDoublesOperator(), var("x"), var("y"))));
+		assertFalse(var("x").sameStructure(tree));
+	}
+}
@@ -0,0 +1,240 @@
+package mint.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.jgrapht.graph.DefaultEdge;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import daikon.inv.Invariant;
+import mint.Configuration;
+import mint.model.dfa.TraceDFA;
+import mint.model.dfa.TransitionData;
+import mint.tracedata.SimpleTraceElement;
+import mint.tracedata.TraceElement;
+import mint.tracedata.types.BooleanVariableAssignment;
+import mint.tracedata.types.DoubleVariableAssignment;
+import mint.tracedata.types.StringVariableAssignment;
+import mint.tracedata.types.VariableAssignment;
+
+/**
+ * Checks the declarations and records written for Daikon, and how the
+ * transitions are split into jobs. Running the jobs in separate JVMs is only
+ * checked when Daikon is available.
+ */
+public class DaikonMachineDecoratorTest {
+
+	private static final String DOUBLE = "var-kind variable\ndec-type double\nrep-type double\ncomparability -1\n";
+	private static final String STRING = "var-kind variable\ndec-type java.lang.String\nrep-type java.lang.String\ncomparability -1\n";
+	private static final String BOOLEAN = "var-kind variable\ndec-type boolean\nrep-type boolean\ncomparability -1\n";
+
+	private TraceDFA<Set<TraceElement>> automaton;
+	private PayloadMachine machine;
+	private Integer init;
+
+	@Before
+	public void setUp() {
+		Configuration.reset();
+		automaton = new TraceDFA<Set<TraceElement>>();
+		init = automaton.addState();
+		automaton.setInitialState(init);
+		machine = new PayloadMachine();
+		machine.setAutomaton(automaton);
+	}
+
+	@After
+	public void teardown() {
+		Configuration.reset();
+	}
+
+	private static TraceElement element(String name, VariableAssignment<?>... data) {
+		return new SimpleTraceElement(name, data);
+	}
+
+	/*
+	 * Adds a transition from the initial state (the payload keeps the order of
+	 * the elements, so that the files written for it are known).
+	 */
+	private DefaultEdge transition(String label, TraceElement... elements) {
+		Set<TraceElement> payload = new LinkedHashSet<TraceElement>();
+		for (TraceElement element : elements)
+			payload.add(element);
+		return automaton.addTransition(init, automaton.addState(), new TransitionData<Set<TraceElement>>(label, payload));
+	}
+
+	/*
+	 * A transition with the given number of elements, where y is always x + 1.
+	 */
+	private DefaultEdge counting(String label, int elements) {
+		TraceElement[] payload = new TraceElement[elements];
+		for (int i = 0; i < elements; i++)
+			payload[i] = element(label, new DoubleVariableAssignment("x", (double) i),
+					new DoubleVariableAssignment("y", i + 1D));
+		return transition(label, payload);
+	}
+
+	private static String read(File file) throws IOException {
+		return new String(Files.readAllBytes(file.toPath()), Charset.forName("UTF-8"));
+	}
+
+	private static File job(DaikonMachineDecorator decorator, int job, String name) {
+		return new File(new File(decorator.workDir, "job" + job), name);
+	}
+
+	@Test
+	public void testWriter() throws IOException {
+		TraceElement first = element("a", new DoubleVariableAssignment("x", 1.5D),
+				new StringVariableAssignment("s", "one"), new BooleanVariableAssignment("b", true));
+		DefaultEdge edge = transition("a", first,
+				// without s
+				element("a", new DoubleVariableAssignment("x", 2D), new BooleanVariableAssignment("b", false)),
+				element("a", new DoubleVariableAssignment("x", 3D), new StringVariableAssignment("s", "two"),
+						new BooleanVariableAssignment("b", true)));
+		DaikonMachineDecorator decorator = new DaikonMachineDecorator(machine, 2, false);
+		String name = decorator.getName("a", edge);
+		assertTrue(name, name.startsWith("a." + init + ".") && name.endsWith(":::OBJECT"));
+
+		// the variables are declared (and recorded) in the order of the first element
+		Map<String, String> declarations = new HashMap<String, String>();
+		declarations.put("x", DOUBLE);
+		declarations.put("s", STRING);
+		declarations.put("b", BOOLEAN);
+		String[][] values = { { "1.5\n1\n", "\"one\"\n1\n", "true\n1\n" },
+				{ "2.0\n1\n", "nonsensical\n2\n", "false\n1\n" }, { "3.0\n1\n", "\"two\"\n1\n", "true\n1\n" } };
+		List<String> variables = Arrays.asList("x", "s", "b");
+		String decl = "ppt " + name + "\nppt-type object\n";
+		String[] records = { name + "\n", name + "\n", name + "\n" };
+		for (VariableAssignment<?> var : first.getData()) {
+			decl += "variable " + var.getName() + "\n" + declarations.get(var.getName());
+			for (int i = 0; i < records.length; i++)
+				records[i] += var.getName() + "\n" + values[i][variables.indexOf(var.getName())];
+		}
+		decl += "\n";
+		String dtrace = records[0] + "\n" + records[1] + "\n" + records[2] + "\n";
+
+		StringWriter declOut = new StringWriter();
+		StringWriter dtraceOut = new StringWriter();
+		decorator.computeForEdge(edge, declOut, dtraceOut);
+		assertEquals(decl, declOut.toString());
+		assertEquals(dtrace, dtraceOut.toString());
+
+		// the same is streamed to the files of the (only) job
+		assertEquals(1, decorator.jobs);
+		assertEquals("decl-version 2.0\n" + decl, read(job(decorator, 0, "model.decls")));
+		assertEquals(dtrace, read(job(decorator, 0, "model.dtrace")));
+	}
+
+	@Test
+	public void testTooFewElements() throws IOException {
+		transition("a", element("a", new DoubleVariableAssignment("x", 1D)));
+		DaikonMachineDecorator decorator = new DaikonMachineDecorator(machine, 2, false);
+		assertEquals(1, decorator.jobs);
+		assertEquals("decl-version 2.0\n", read(job(decorator, 0, "model.decls")));
+		assertEquals("", read(job(decorator, 0, "model.dtrace")));
+	}
+
+	@Test
+	public void testJobs() throws IOException {
+		Set<String> names = new HashSet<String>();
+		DaikonMachineDecorator decorator = jobs(3, 5, names);
+		assertEquals(3, decorator.jobs);
+		Map<String, Integer> jobOf = new HashMap<String, Integer>();
+		int[] sizes = new int[decorator.jobs];
+		for (int job = 0; job < decorator.jobs; job++) {
+			String decls = read(job(decorator, job, "model.decls"));
+			String dtrace = read(job(decorator, job, "model.dtrace"));
+			assertTrue(decls.startsWith("decl-version 2.0\n"));
+			for (String line : decls.split("\n")) {
+				if (!line.startsWith("ppt "))
+					continue;
+				String name = line.substring(4);
+				assertTrue(name, names.contains(name));
+				assertEquals(name, null, jobOf.put(name, job));
+				// the records of a transition go with its declaration
+				assertTrue(name, dtrace.contains(name + "\n"));
+				sizes[job]++;
+			}
+		}
+		// every transition with enough elements is in a job (round robin)
+		assertEquals(names, jobOf.keySet());
+		assertEquals(2, sizes[0]);
+		assertEquals(2, sizes[1]);
+		assertEquals(1, sizes[2]);
+	}
+
+	@Test
+	public void testNumberOfJobs() {
+		// no more jobs than transitions to infer invariants for
+		assertEquals(5, jobs(8, 5, new HashSet<String>()).jobs);
+		setUp();
+		assertEquals(1, jobs(0, 5, new HashSet<String>()).jobs);
+		setUp();
+		assertEquals(1, jobs(4, 0, new HashSet<String>()).jobs);
+	}
+
+	/*
+	 * Splits the given number of transitions (with enough elements, and one
+	 * without) into the given number of jobs, and adds their names to names.
+	 */
+	private DaikonMachineDecorator jobs(int jobs, int transitions, Set<String> names) {
+		Configuration.getInstance().DAIKON_JOBS = jobs;
+		Map<DefaultEdge, String> labels = new HashMap<DefaultEdge, String>();
+		for (int i = 0; i < transitions; i++)
+			labels.put(counting("t" + i, 3), "t" + i);
+		DefaultEdge small = counting("small", 1);
+		DaikonMachineDecorator decorator = new DaikonMachineDecorator(machine, 2, false);
+		for (Map.Entry<DefaultEdge, String> label : labels.entrySet())
+			names.add(decorator.getName(label.getValue(), label.getKey()));
+		assertFalse(names.contains(decorator.getName("small", small)));
+		return decorator;
+	}
+
+	@Test
+	public void testSeparateJobsInferSameInvariants() {
+		try {
+			Class.forName("daikon.PptSlice");
+		} catch (ClassNotFoundException e) {
+			Assume.assumeTrue("Daikon is not available", false);
+		}
+		Map<String, Set<String>> inProcess = invariants(1);
+		assertFalse(inProcess.get("t0").isEmpty());
+		assertEquals(inProcess, invariants(2));
+	}
+
+	private Map<String, Set<String>> invariants(int jobs) {
+		setUp();
+		Configuration.getInstance().DAIKON_JOBS = jobs;
+		for (int i = 0; i < 4; i++)
+			counting("t" + i, 8 + i);
+		DaikonMachineDecorator decorator = new DaikonMachineDecorator(machine, 2, true);
+		decorator.postProcess();
+		Map<String, Set<String>> invariants = new HashMap<String, Set<String>>();
+		for (DefaultEdge edge : automaton.getTransitions()) {
+			Set<String> formatted = new HashSet<String>();
+			Set<Invariant> inferred = decorator.getInvariants(edge);
+			if (inferred != null) {
+				for (Invariant invariant : inferred)
+					formatted.add(invariant.format());
+			}
+			invariants.put(automaton.getTransitionData(edge).getLabel(), formatted);
+		}
+		return invariants;
+	}
+}
@@ -0,0 +1,104 @@
+package mint.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.jgrapht.graph.DefaultEdge;
+import org.junit.After;
+import org.junit.Test;
+
+import mint.Configuration;
+import mint.inference.evo.GPConfiguration;
+import mint.inference.gp.tree.Node;
+import mint.model.dfa.TraceDFA;
+import mint.model.dfa.TransitionData;
+import mint.tracedata.SimpleTraceElement;
+import mint.tracedata.TraceElement;
+import mint.tracedata.types.DoubleVariableAssignment;
+import mint.tracedata.types.VariableAssignment;
+
+public class GPFunctionMachineDecoratorTest {
+
+	@After
+	public void teardown() {
+		Configuration.reset();
+	}
+
+	private static TraceElement element(String name, double x, double y) {
+		List<VariableAssignment<?>> data = new ArrayList<VariableAssignment<?>>();
+		DoubleVariableAssignment input = new DoubleVariableAssignment("x", x);
+		input.setParameter(true);
+		data.add(input);
+		data.add(new DoubleVariableAssignment("y", y));
+		return new SimpleTraceElement(name, data);
+	}
+
+	/*
+	 * The payload of a transition: events where y is given by a function of the
+	 * x of the event before.
+	 */
+	private static Set<TraceElement> payload(String name, double factor) {
+		Set<TraceElement> payload = new HashSet<TraceElement>();
+		for (int i = 1; i <= 6; i++) {
+			TraceElement current = element(name, i, 0D);
+			current.setNext(element("next", 0D, factor * i));
+			payload.add(current);
+		}
+		return payload;
+	}
+
+	private static GPFunctionMachineDecorator infer(int threads, List<DefaultEdge> edges) {
+		Configuration.getInstance().FUNCTION_THREADS = threads;
+		TraceDFA<Set<TraceElement>> automaton = new TraceDFA<Set<TraceElement>>();
+		Integer init = automaton.addState();
+		automaton.setInitialState(init);
+		Integer first = automaton.addState();
+		Integer second = automaton.addState();
+		edges.add(automaton.addTransition(init, first, new TransitionData<Set<TraceElement>>("a", payload("a", 2D))));
+		// the same training set as that of a
+		edges.add(automaton.addTransition(first, second, new TransitionData<Set<TraceElement>>("a", payload("a", 2D))));
+		edges.add(automaton.addTransition(init, second, new TransitionData<Set<TraceElement>>("b", payload("b", 3D))));
+		PayloadMachine machine = new PayloadMachine();
+		machine.setAutomaton(automaton);
+		GPFunctionMachineDecorator gpMachine = new GPFunctionMachineDecorator(machine, 2,
+				new GPConfiguration(30, 0.9, 0.1, 3, 5, 1), 5);
+		gpMachine.postProcess();
+		return gpMachine;
+	}
+
+	private static Node<?> function(GPFunctionMachineDecorator machine, DefaultEdge edge) {
+		Set<Node<?>> functions = machine.getFunctions(edge);
+		assertEquals(1, functions.size());
+		Node<?> function = functions.iterator().next();
+		assertEquals("y", machine.getVarNameForFunction(function));
+		return function;
+	}
+
+	@Test
+	public void testSameFunctionsForAnyNumberOfThreads() {
+		List<DefaultEdge> serialEdges = new ArrayList<DefaultEdge>();
+		GPFunctionMachineDecorator serial = infer(1, serialEdges);
+		List<DefaultEdge> parallelEdges = new ArrayList<DefaultEdge>();
+		GPFunctionMachineDecorator parallel = infer(4, parallelEdges);
+		for (int i = 0; i < serialEdges.size(); i++) {
+			assertEquals(function(serial, serialEdges.get(i)).toString(),
+					function(parallel, parallelEdges.get(i)).toString());
+		}
+	}
+
+	@Test
+	public void testIdenticalTransitionsShareFunction() {
+		List<DefaultEdge> edges = new ArrayList<DefaultEdge>();
+		GPFunctionMachineDecorator machine = infer(2, edges);
+		Node<?> a = function(machine, edges.get(0));
+		Node<?> sameAsA = function(machine, edges.get(1));
+		// a copy of the same function, so that the transitions do not share nodes
+		assertEquals(a.toString(), sameAsA.toString());
+		assertNotSame(a, sameAsA);
+	}
+}
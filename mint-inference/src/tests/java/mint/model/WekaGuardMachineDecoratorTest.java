@@ -0,0 +1,134 @@
+package mint.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.jgrapht.graph.DefaultEdge;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import mint.Configuration;
+import mint.inference.BaseClassifierInference;
+import mint.model.dfa.TraceDFA;
+import mint.model.dfa.TransitionData;
+import mint.tracedata.SimpleTraceElement;
+import mint.tracedata.TraceElement;
+import mint.tracedata.TraceSet;
+import mint.tracedata.types.DoubleVariableAssignment;
+import mint.tracedata.types.VariableAssignment;
+
+public class WekaGuardMachineDecoratorTest {
+
+	private List<TraceElement> low, high;
+	private WekaGuardMachineDecorator machine;
+	private TraceDFA<Set<TraceElement>> automaton;
+	private Integer init;
+
+	private static TraceElement element(String name, double x) {
+		List<VariableAssignment<?>> data = new ArrayList<VariableAssignment<?>>();
+		data.add(new DoubleVariableAssignment("x", x));
+		return new SimpleTraceElement(name, data);
+	}
+
+	/*
+	 * Traces where a is followed by b if its x is below 5, and by c otherwise.
+	 */
+	@Before
+	public void setUp() {
+		Configuration.reset();
+		low = new ArrayList<TraceElement>();
+		high = new ArrayList<TraceElement>();
+		TraceSet traces = new TraceSet();
+		for (int i = 0; i < 40; i++) {
+			double x = i % 10;
+			TraceElement a = element("a", x);
+			TraceElement next = element(x < 5 ? "b" : "c", x);
+			a.setNext(next);
+			List<TraceElement> trace = new ArrayList<TraceElement>();
+			trace.add(a);
+			trace.add(next);
+			traces.addPos(trace);
+			(x < 5 ? low : high).add(a);
+		}
+		BaseClassifierInference bci = new BaseClassifierInference(traces, Configuration.Data.J48);
+		automaton = new TraceDFA<Set<TraceElement>>();
+		init = automaton.addState();
+		automaton.setInitialState(init);
+		PayloadMachine kernel = new PayloadMachine();
+		kernel.setAutomaton(automaton);
+		machine = new WekaGuardMachineDecorator(kernel, true);
+		machine.setElementsToInstances(bci.getElementsToInstances());
+		machine.setModelMap(bci.getClassifiers());
+	}
+
+	@After
+	public void teardown() {
+		Configuration.reset();
+	}
+
+	private DefaultEdge transition(List<TraceElement> payload) {
+		return automaton.addTransition(init, automaton.addState(),
+				new TransitionData<Set<TraceElement>>("a", new HashSet<TraceElement>(payload)));
+	}
+
+	/*
+	 * The result of comparing the predictions for the instances of the payloads
+	 * from scratch.
+	 */
+	private boolean fromScratch(DefaultEdge a, DefaultEdge b) {
+		return machine.compatible(machine.getInstancesForTransition(a), machine.getInstancesForTransition(b), "a");
+	}
+
+	@Test
+	public void testCompatibleAsFromScratch() {
+		List<DefaultEdge> transitions = new ArrayList<DefaultEdge>();
+		transitions.add(transition(low));
+		transitions.add(transition(high));
+		transitions.add(transition(low.subList(0, 3)));
+		List<TraceElement> mixed = new ArrayList<TraceElement>(low.subList(0, 2));
+		mixed.addAll(high.subList(0, 2));
+		transitions.add(transition(mixed));
+		transitions.add(transition(new ArrayList<TraceElement>()));
+		for (DefaultEdge a : transitions) {
+			for (DefaultEdge b : transitions) {
+				assertEquals(fromScratch(a, b), machine.compatible(a, b));
+			}
+		}
+		assertFalse(machine.compatible(transitions.get(0), transitions.get(1)));
+		assertTrue(machine.compatible(transitions.get(0), transitions.get(2)));
+		assertTrue(machine.compatible(transitions.get(3), transitions.get(1)));
+		assertTrue(machine.compatible(high.get(0), transitions.get(1)));
+		assertFalse(machine.compatible(high.get(0), transitions.get(2)));
+	}
+
+	@Test
+	public void testPredictionsFollowMerges() {
+		DefaultEdge lowTransition = transition(low.subList(0, 3));
+		DefaultEdge highTransition = transition(high.subList(0, 3));
+		DefaultEdge otherHigh = transition(high.subList(3, 6));
+		assertFalse(machine.compatible(lowTransition, highTransition));
+
+		automaton.beginTransaction();
+		DefaultEdge merged = machine.mergeTransitions(init, highTransition, lowTransition);
+		assertEquals(lowTransition, merged);
+		assertTrue(machine.compatible(merged, otherHigh));
+		assertEquals(fromScratch(merged, otherHigh), machine.compatible(merged, otherHigh));
+		automaton.rollback();
+
+		// the predictions of the transitions are put back along with their data
+		assertFalse(machine.compatible(lowTransition, highTransition));
+		assertFalse(machine.compatible(lowTransition, otherHigh));
+
+		// merging in place (outside a transaction)
+		machine.mergeTransitions(init, otherHigh, lowTransition);
+		assertTrue(machine.compatible(lowTransition, highTransition));
+		assertEquals(fromScratch(lowTransition, highTransition), machine.compatible(lowTransition, highTransition));
+	}
+}
@@ -0,0 +1,227 @@
+package mint.model.dfa;
+
+import mint.Configuration;
+import mint.inference.InferenceBuilder;
+import mint.inference.efsm.mergingstate.SimpleMergingState;
+import mint.model.Machine;
+import mint.model.PayloadMachine;
+import mint.model.statepair.OrderedStatePair;
+import mint.tracedata.SimpleTraceElement;
+import mint.tracedata.TraceElement;
+import mint.tracedata.TraceSet;
+import mint.tracedata.types.VariableAssignment;
+import org.jgrapht.graph.DefaultEdge;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+public class CompactTraceDFATest {
+
+	CompactTraceDFA<Set<TraceElement>> automaton;
+	int a, b, c, d;
+	DefaultEdge ab, ac, cd;
+
+	@Before
+	public void setUp() {
+		automaton = new CompactTraceDFA<Set<TraceElement>>(2, 2);
+		a = automaton.getInitialState();
+		b = automaton.addState();
+		c = automaton.addState();
+		d = automaton.addState();
+		automaton.setAccept(d, TraceDFA.Accept.ACCEPT);
+		ab = automaton.addTransition(a, b, data("x"));
+		ac = automaton.addTransition(a, c, data("x"));
+		cd = automaton.addTransition(c, d, data("y"));
+	}
+
+	private TransitionData<Set<TraceElement>> data(String label) {
+		Set<TraceElement> payload = new HashSet<TraceElement>();
+		payload.add(new SimpleTraceElement(label, new VariableAssignment<?>[0]));
+		return new TransitionData<Set<TraceElement>>(label, payload);
+	}
+
+	@Test
+	public void testStructure() {
+		assertEquals(4, automaton.stateCount());
+		assertEquals(3, automaton.transitionCount());
+		assertEquals(2, automaton.getOutgoingTransitions(a).size());
+		assertEquals(1, automaton.getIncomingTransitions(d).size());
+		assertEquals(c, (int) automaton.getTransitionSource(cd));
+		assertEquals(d, (int) automaton.getTransitionTarget(cd));
+		assertEquals(TraceDFA.Accept.ACCEPT, automaton.getAccept(d));
+		assertEquals(TraceDFA.Accept.UNDEFINED, automaton.getAccept(b));
+		assertTrue(automaton.reachableFrom(a, d));
+		assertFalse(automaton.reachableFrom(b, d));
+		assertEquals(3, automaton.nodesThatReach(d).size());
+		assertTrue(automaton.consistentStates());
+		assertTrue(automaton.consistentTransitions());
+	}
+
+	@Test
+	public void testLabelIndex() {
+		assertEquals(2, automaton.getOutgoingTransitions(a, "x").size());
+		assertTrue(automaton.getOutgoingTransitions(a, "y").isEmpty());
+		assertTrue(automaton.getOutgoingTransitions(a, "z").isEmpty());
+
+		automaton.removeTransition(ab);
+		assertEquals(1, automaton.getOutgoingTransitions(a, "x").size());
+		assertTrue(automaton.getOutgoingTransitions(a, "x").contains(ac));
+
+		automaton.removeState(c);
+		assertTrue(automaton.getOutgoingTransitions(a, "x").isEmpty());
+		assertEquals(0, automaton.getIncomingTransitions(d).size());
+		assertEquals(0, automaton.transitionCount());
+
+		DefaultEdge ad = automaton.addTransition(a, d, data("x"));
+		assertEquals(1, automaton.getOutgoingTransitions(a, "x").size());
+		assertTrue(automaton.getOutgoingTransitions(a, "x").contains(ad));
+	}
+
+	@Test
+	public void testRollbackRestoresMerge() {
+		Machine<Set<TraceElement>> m = new PayloadMachine();
+		m.setAutomaton(automaton);
+		automaton.beginTransaction();
+		m.merge(new OrderedStatePair(b, c), new SimpleMergingState<Machine>(m));
+		assertEquals(3, automaton.stateCount());
+		assertEquals(b, (int) automaton.getTransitionSource(automaton.getOutgoingTransitions(b, "y").iterator().next()));
+		automaton.rollback();
+
+		assertEquals(4, automaton.stateCount());
+		assertEquals(3, automaton.transitionCount());
+		assertTrue(automaton.getTransitions().contains(ab));
+		assertTrue(automaton.getTransitions().contains(ac));
+		assertTrue(automaton.getTransitions().contains(cd));
+		assertEquals(c, (int) automaton.getTransitionSource(cd));
+		assertEquals(2, automaton.getOutgoingTransitions(a, "x").size());
+		assertEquals(1, automaton.getOutgoingTransitions(c, "y").size());
+		assertTrue(automaton.getOutgoingTransitions(b, "y").isEmpty());
+		assertEquals(TraceDFA.Accept.ACCEPT, automaton.getAccept(d));
+		assertTrue(automaton.consistentStates());
+		assertTrue(automaton.consistentTransitions());
+	}
+
+	@Test
+	public void testRollbackRestoresTransitionOrder() {
+		DefaultEdge ad = automaton.addTransition(a, d, data("x"));
+		List<DefaultEdge> outgoing = new ArrayList<DefaultEdge>(automaton.getOutgoingTransitions(a));
+		List<DefaultEdge> labelled = new ArrayList<DefaultEdge>(automaton.getOutgoingTransitions(a, "x"));
+		List<DefaultEdge> incoming = new ArrayList<DefaultEdge>(automaton.getIncomingTransitions(d));
+		Machine<Set<TraceElement>> m = new PayloadMachine();
+		m.setAutomaton(automaton);
+		automaton.beginTransaction();
+		m.merge(new OrderedStatePair(b, c), new SimpleMergingState<Machine>(m));
+		automaton.removeTransition(ad);
+		automaton.rollback();
+
+		assertEquals(outgoing, new ArrayList<DefaultEdge>(automaton.getOutgoingTransitions(a)));
+		assertEquals(labelled, new ArrayList<DefaultEdge>(automaton.getOutgoingTransitions(a, "x")));
+		assertEquals(incoming, new ArrayList<DefaultEdge>(automaton.getIncomingTransitions(d)));
+	}
+
+	@Test
+	public void testInferenceIsSameAsDefault() {
+		for (Configuration.Strategy strategy : new Configuration.Strategy[] { Configuration.Strategy.redblue,
+				Configuration.Strategy.exhaustive, Configuration.Strategy.noloops }) {
+			for (int k = 0; k <= 2; k++) {
+				for (int seed = 0; seed < 6; seed++) {
+					String message = strategy + ", k = " + k + ", seed " + seed;
+					Machine<?> expected = infer(strategy, k, seed, false);
+					Machine<?> compact = infer(strategy, k, seed, true);
+					assertTrue(message, compact.getAutomaton() instanceof CompactTraceDFA);
+					assertFalse(message, expected.getAutomaton() instanceof CompactTraceDFA);
+					assertEquals(message, describe(expected.getAutomaton()), describe(compact.getAutomaton()));
+				}
+			}
+		}
+	}
+
+	private static Machine<?> infer(Configuration.Strategy strategy, int k, int seed, boolean compact) {
+		Configuration.reset();
+		Configuration configuration = Configuration.getInstance();
+		configuration.STRATEGY = strategy;
+		configuration.K = k;
+		configuration.DATA = false;
+		configuration.PREFIX_CLOSED = seed % 2 == 0;
+		configuration.COMPACT_DFA = compact;
+		Random r = new Random(seed);
+		TraceSet traces = new TraceSet();
+		String[] labels = { "a", "b", "c", "d" };
+		for (int t = 0; t < 25; t++) {
+			List<TraceElement> trace = new ArrayList<TraceElement>();
+			int length = 1 + r.nextInt(9);
+			for (int i = 0; i < length; i++)
+				trace.add(new SimpleTraceElement(labels[r.nextInt(labels.length)], new VariableAssignment<?>[0]));
+			if (r.nextInt(5) == 0)
+				traces.addNeg(trace);
+			else
+				traces.addPos(trace);
+		}
+		try {
+			return new InferenceBuilder(configuration).getInference(traces).infer();
+		} finally {
+			Configuration.reset();
+		}
+	}
+
+	/*
+	 * The states of the automaton in breadth-first order from the initial state,
+	 * with their acceptance and their transitions (labels, targets and payload
+	 * sizes), independent of the ids of the states.
+	 */
+	private static String describe(TraceDFA<?> automaton) {
+		Map<Integer, Integer> ids = new HashMap<Integer, Integer>();
+		Deque<Integer> todo = new ArrayDeque<Integer>();
+		ids.put(automaton.getInitialState(), 0);
+		todo.add(automaton.getInitialState());
+		StringBuilder sb = new StringBuilder();
+		while (!todo.isEmpty()) {
+			Integer state = todo.poll();
+			sb.append(ids.get(state)).append(automaton.getAccept(state)).append(':');
+			List<String> transitions = new ArrayList<String>();
+			List<DefaultEdge> outgoing = new ArrayList<DefaultEdge>(automaton.getOutgoingTransitions(state));
+			for (DefaultEdge edge : outgoing) {
+				Integer target = automaton.getTransitionTarget(edge);
+				if (!ids.containsKey(target)) {
+					ids.put(target, ids.size());
+					todo.add(target);
+				}
+				TransitionData<?> data = automaton.getTransitionData(edge);
+				transitions.add(data.getLabel() + "->" + ids.get(target) + "/" + ((Set<?>) data.getPayLoad()).size());
+			}
+			Collections.sort(transitions);
+			sb.append(transitions).append('\n');
+		}
+		return automaton.getStates().size() + " states, " + automaton.getTransitions().size() + " transitions\n" + sb;
+	}
+
+	@Test
+	public void testClone() {
+		CompactTraceDFA<Set<TraceElement>> cloned = automaton.clone();
+		cloned.removeState(c);
+		assertEquals(4, automaton.stateCount());
+		assertEquals(3, automaton.transitionCount());
+		assertEquals(3, cloned.stateCount());
+		assertEquals(1, cloned.transitionCount());
+		assertFalse(cloned.containsTransition(ab));
+		DefaultEdge clonedAb = cloned.getOutgoingTransitions(a, "x").iterator().next();
+		assertNotSame(ab, clonedAb);
+		assertEquals(b, (int) cloned.getTransitionTarget(clonedAb));
+	}
+
+}
@@ -0,0 +1,138 @@
+package mint.model.dfa;
+
+import mint.inference.efsm.mergingstate.SimpleMergingState;
+import mint.model.Machine;
+import mint.model.PayloadMachine;
+import mint.model.statepair.OrderedStatePair;
+import mint.tracedata.SimpleTraceElement;
+import mint.tracedata.TraceElement;
+import mint.tracedata.types.VariableAssignment;
+import org.jgrapht.graph.DefaultEdge;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class OverlayTraceDFATest {
+
+	PayloadMachine m;
+	TraceDFA<Set<TraceElement>> automaton;
+	int a, b, c, d;
+	DefaultEdge ab, ac, cd;
+
+	@Before
+	public void setUp() {
+		automaton = new TraceDFA<Set<TraceElement>>();
+		a = automaton.getInitialState();
+		b = automaton.addState();
+		c = automaton.addState();
+		d = automaton.addState();
+		automaton.setAccept(d, TraceDFA.Accept.ACCEPT);
+		ab = automaton.addTransition(a, b, data("x"));
+		ac = automaton.addTransition(a, c, data("x"));
+		cd = automaton.addTransition(c, d, data("y"));
+		m = new PayloadMachine();
+		m.setAutomaton(automaton);
+	}
+
+	private TransitionData<Set<TraceElement>> data(String label) {
+		Set<TraceElement> payload = new HashSet<TraceElement>();
+		payload.add(new SimpleTraceElement(label, new VariableAssignment<?>[0]));
+		return new TransitionData<Set<TraceElement>>(label, payload);
+	}
+
+	/*
+	 * Merges b and c, and the two transitions from a, in the given machine.
+	 */
+	private DefaultEdge merge(Machine<Set<TraceElement>> machine) {
+		machine.merge(new OrderedStatePair(b, c), new SimpleMergingState<Machine>(machine));
+		TraceDFA<Set<TraceElement>> dfa = machine.getAutomaton();
+		Set<DefaultEdge> rerouted = new HashSet<DefaultEdge>(dfa.getOutgoingTransitions(a, "x"));
+		rerouted.remove(ab);
+		return machine.mergeTransitions(a, ab, rerouted.iterator().next());
+	}
+
+	/*
+	 * The states (with their acceptance) and transitions (with their labels,
+	 * targets and payload sizes, in order) of the automaton.
+	 */
+	private static String describe(TraceDFA<Set<TraceElement>> dfa) {
+		List<Integer> states = new ArrayList<Integer>(dfa.getStates());
+		Collections.sort(states);
+		StringBuilder sb = new StringBuilder();
+		for (Integer state : states) {
+			sb.append(state).append(dfa.getAccept(state)).append(':');
+			for (DefaultEdge edge : dfa.getOutgoingTransitions(state))
+				sb.append(dfa.getTransitionData(edge).getLabel()).append("->").append(dfa.getTransitionTarget(edge))
+						.append('/').append(dfa.getTransitionData(edge).getPayLoad().size()).append(' ');
+			sb.append('\n');
+		}
+		return sb.toString();
+	}
+
+	@Test
+	public void testMergeLeavesBaseUnchanged() {
+		String before = describe(automaton);
+		Set<TraceElement> abPayload = automaton.getTransitionData(ab).getPayLoad();
+		PayloadMachine copy = m.copy();
+		DefaultEdge merged = merge(copy);
+		TraceDFA<Set<TraceElement>> overlay = copy.getAutomaton();
+
+		assertEquals(3, overlay.stateCount());
+		assertEquals(2, overlay.transitionCount());
+		assertFalse(overlay.containsState(c));
+		assertEquals(2, overlay.getTransitionData(merged).getPayLoad().size());
+		assertEquals(b, (int) overlay.getTransitionSource(overlay.getOutgoingTransitions(b, "y").iterator().next()));
+		assertTrue(overlay.consistentTransitions());
+
+		assertEquals(before, describe(automaton));
+		assertEquals(1, abPayload.size());
+		assertEquals(abPayload, automaton.getTransitionData(ab).getPayLoad());
+	}
+
+	@Test
+	public void testApplyIsSameAsMerge() {
+		automaton.addTransition(a, d, data("z"));
+		PayloadMachine copy = m.copy();
+		merge(copy);
+		String merged = describe(copy.getAutomaton());
+
+		((OverlayTraceDFA<Set<TraceElement>>) copy.getAutomaton()).applyTo(automaton);
+		assertEquals(merged, describe(automaton));
+		assertTrue(automaton.consistentStates());
+		assertTrue(automaton.consistentTransitions());
+
+		// the same as merging the machine itself, including the order of the transitions
+		setUp();
+		automaton.addTransition(a, d, data("z"));
+		merge(m);
+		assertEquals(merged, describe(automaton));
+	}
+
+	@Test
+	public void testOwnsOnlyReplacedData() {
+		OverlayTraceDFA<Set<TraceElement>> overlay = new OverlayTraceDFA<Set<TraceElement>>(automaton);
+		assertFalse(overlay.ownsTransitionData(ab));
+		assertTrue(overlay.getTransitionData(ab) == automaton.getTransitionData(ab));
+
+		overlay.replaceTransitionData(ab, data("x"));
+		assertTrue(overlay.ownsTransitionData(ab));
+		assertFalse(overlay.getTransitionData(ab) == automaton.getTransitionData(ab));
+		assertFalse(overlay.ownsTransitionData(ac));
+
+		DefaultEdge added = overlay.addTransition(b, d, data("w"));
+		assertFalse(automaton.containsTransition(added));
+		assertTrue(overlay.getOutgoingTransitions(b).contains(added));
+		assertEquals(3, automaton.transitionCount());
+		assertEquals(4, overlay.transitionCount());
+	}
+
+}
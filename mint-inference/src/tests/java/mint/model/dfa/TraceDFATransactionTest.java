@@ -0,0 +1,118 @@
+package mint.model.dfa;
+
+import mint.inference.efsm.mergingstate.SimpleMergingState;
+import mint.model.Machine;
+import mint.model.PayloadMachine;
+import mint.model.statepair.OrderedStatePair;
+import mint.tracedata.SimpleTraceElement;
+import mint.tracedata.TraceElement;
+import mint.tracedata.types.VariableAssignment;
+import org.jgrapht.graph.DefaultEdge;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TraceDFATransactionTest {
+
+	Machine<Set<TraceElement>> m;
+	TraceDFA<Set<TraceElement>> automaton;
+	int a, b, c, d;
+	DefaultEdge ab, ac, cd;
+
+	@Before
+	public void setUp() {
+		automaton = new TraceDFA<Set<TraceElement>>();
+		a = automaton.getInitialState();
+		b = automaton.addState();
+		c = automaton.addState();
+		d = automaton.addState();
+		automaton.setAccept(d, TraceDFA.Accept.ACCEPT);
+		ab = automaton.addTransition(a, b, data("x"));
+		ac = automaton.addTransition(a, c, data("x"));
+		cd = automaton.addTransition(c, d, data("y"));
+		m = new PayloadMachine();
+		m.setAutomaton(automaton);
+	}
+
+	private TransitionData<Set<TraceElement>> data(String label) {
+		Set<TraceElement> payload = new HashSet<TraceElement>();
+		payload.add(new SimpleTraceElement(label, new VariableAssignment<?>[0]));
+		return new TransitionData<Set<TraceElement>>(label, payload);
+	}
+
+	@Test
+	public void testRollbackRestoresMerge() {
+		automaton.beginTransaction();
+		m.merge(new OrderedStatePair(b, c), new SimpleMergingState<Machine>(m));
+		Set<DefaultEdge> rerouted = new HashSet<DefaultEdge>(automaton.getOutgoingTransitions(a));
+		rerouted.remove(ab);
+		DefaultEdge merged = m.mergeTransitions(a, ab, rerouted.iterator().next());
+		assertEquals(3, automaton.stateCount());
+		assertEquals(2, automaton.getTransitionData(merged).getPayLoad().size());
+		automaton.rollback();
+
+		assertFalse(automaton.inTransaction());
+		assertEquals(4, automaton.stateCount());
+		assertEquals(3, automaton.transitionCount());
+		assertTrue(automaton.getTransitions().contains(ab));
+		assertTrue(automaton.getTransitions().contains(ac));
+		assertTrue(automaton.getTransitions().contains(cd));
+		assertEquals(c, (int) automaton.getTransitionSource(cd));
+		assertEquals(TraceDFA.Accept.ACCEPT, automaton.getAccept(d));
+		assertEquals(TraceDFA.Accept.UNDEFINED, automaton.getAccept(c));
+		assertTrue(automaton.consistentStates());
+		assertTrue(automaton.consistentTransitions());
+	}
+
+	@Test
+	public void testRollbackRestoresPayloads() {
+		Set<TraceElement> abPayload = automaton.getTransitionData(ab).getPayLoad();
+		automaton.beginTransaction();
+		m.merge(new OrderedStatePair(b, c), new SimpleMergingState<Machine>(m));
+		Set<DefaultEdge> rerouted = new HashSet<DefaultEdge>(automaton.getOutgoingTransitions(a));
+		rerouted.remove(ab);
+		DefaultEdge merged = m.mergeTransitions(a, rerouted.iterator().next(), ab);
+		assertEquals(2, automaton.getTransitionData(merged).getPayLoad().size());
+		automaton.rollback();
+
+		// the failed merge leaves no trace elements behind on the transitions it merged
+		assertEquals(1, automaton.getTransitionData(ab).getPayLoad().size());
+		assertEquals(1, automaton.getTransitionData(ac).getPayLoad().size());
+		assertEquals(1, abPayload.size());
+	}
+
+	@Test
+	public void testRollbackRestoresTransitionOrder() {
+		DefaultEdge ad = automaton.addTransition(a, d, data("z"));
+		List<DefaultEdge> outgoing = new ArrayList<DefaultEdge>(automaton.getOutgoingTransitions(a));
+		List<DefaultEdge> incoming = new ArrayList<DefaultEdge>(automaton.getIncomingTransitions(d));
+		automaton.beginTransaction();
+		m.merge(new OrderedStatePair(b, c), new SimpleMergingState<Machine>(m));
+		automaton.removeTransition(ad);
+		automaton.rollback();
+
+		assertEquals(outgoing, new ArrayList<DefaultEdge>(automaton.getOutgoingTransitions(a)));
+		assertEquals(incoming, new ArrayList<DefaultEdge>(automaton.getIncomingTransitions(d)));
+	}
+
+	@Test
+	public void testCommitKeepsMerge() {
+		automaton.beginTransaction();
+		m.merge(new OrderedStatePair(b, c), new SimpleMergingState<Machine>(m));
+		automaton.commit();
+		automaton.rollback();
+
+		assertEquals(3, automaton.stateCount());
+		assertFalse(automaton.containsState(c));
+		assertEquals(b, (int) automaton.getTransitionSource(automaton.getOutgoingTransitions(b, "y").iterator().next()));
+	}
+
+}
@@ -0,0 +1,133 @@
+package mint.model.prefixtree;
+
+import mint.Configuration;
+import mint.model.Machine;
+import mint.model.PayloadMachine;
+import mint.model.SimpleMachine;
+import mint.model.dfa.TraceDFA;
+import mint.tracedata.SimpleTraceElement;
+import mint.tracedata.TraceElement;
+import mint.tracedata.TraceSet;
+import mint.tracedata.types.VariableAssignment;
+import org.jgrapht.graph.DefaultEdge;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that bulk-loading a TraceSet (sequentially or in parallel) builds the
+ * same prefix tree as adding the traces one at a time.
+ */
+public class PrefixTreeFactoryTest {
+
+    Configuration configuration;
+
+    @Before
+    public void setup() {
+        Configuration.reset();
+        configuration = Configuration.getInstance();
+    }
+
+    /*
+     * Adds the traces one at a time, as factories for machines that do not
+     * just compare labels do.
+     */
+    private static class IncrementalFactory extends FSMPrefixTreeFactory {
+        IncrementalFactory() {
+            super(new PayloadMachine());
+        }
+
+        @Override
+        protected boolean compatibleByLabel() {
+            return false;
+        }
+    }
+
+    @Test
+    public void testBulkLoadIsSameAsIncremental() {
+        for (int seed = 0; seed < 20; seed++) {
+            for (boolean prefixClosed : new boolean[]{false, true}) {
+                configuration.PREFIX_CLOSED = prefixClosed;
+                TraceSet traces = randomTraces(new Random(seed));
+                String expected = describe(new IncrementalFactory().createPrefixTree(traces));
+                configuration.PREFIX_TREE_THREADS = 1;
+                assertEquals(expected, describe(new FSMPrefixTreeFactory(new PayloadMachine()).createPrefixTree(traces)));
+                configuration.PREFIX_TREE_THREADS = 4;
+                assertEquals(expected, describe(new FSMPrefixTreeFactory(new PayloadMachine()).createPrefixTree(traces)));
+            }
+        }
+    }
+
+    @Test
+    public void testObserversAreNotified() {
+        final List<StateSequence> notified = new ArrayList<StateSequence>();
+        FSMPrefixTreeFactory factory = new FSMPrefixTreeFactory(new PayloadMachine());
+        factory.addObserver(new Observer() {
+            @Override
+            public void update(Observable o, Object arg) {
+                notified.add((StateSequence) arg);
+            }
+        });
+        SimpleMachine tree = factory.createPrefixTree(randomTraces(new Random(1)));
+        assertEquals(tree.getStates().size() - 1, notified.size());
+    }
+
+    @Test
+    public void testLongTrace() {
+        TraceSet traces = new TraceSet();
+        List<TraceElement> trace = new ArrayList<TraceElement>();
+        for (int i = 0; i < 200000; i++) {
+            trace.add(new SimpleTraceElement("e" + (i % 3), new VariableAssignment<?>[0]));
+        }
+        traces.addPos(trace);
+        traces.addPos(trace);
+        assertEquals(200001, new IncrementalFactory().createPrefixTree(traces).getStates().size());
+        assertEquals(200001, new FSMPrefixTreeFactory(new PayloadMachine()).createPrefixTree(traces).getStates().size());
+    }
+
+    private static TraceSet randomTraces(Random r) {
+        TraceSet traces = new TraceSet();
+        String[] labels = {"a", "b", "c", "d"};
+        for (int t = 0; t < 60; t++) {
+            List<TraceElement> trace = new ArrayList<TraceElement>();
+            int length = r.nextInt(8);
+            for (int i = 0; i < length; i++) {
+                trace.add(new SimpleTraceElement(labels[r.nextInt(r.nextBoolean() ? 2 : labels.length)], new VariableAssignment<?>[0]));
+            }
+            if (r.nextInt(4) == 0)
+                traces.addNeg(trace);
+            else
+                traces.addPos(trace);
+        }
+        return traces;
+    }
+
+    /*
+     * The states (with their acceptance) and transitions (with their targets and
+     * payloads) of the machine, in order of state ids.
+     */
+    private static String describe(Machine<Set<TraceElement>> m) {
+        TraceDFA<Set<TraceElement>> automaton = m.getAutomaton();
+        List<Integer> states = new ArrayList<Integer>(automaton.getStates());
+        Collections.sort(states);
+        StringBuilder sb = new StringBuilder();
+        for (Integer state : states) {
+            sb.append(state).append(automaton.getAccept(state)).append(':');
+            List<String> transitions = new ArrayList<String>();
+            for (DefaultEdge edge : automaton.getOutgoingTransitions(state)) {
+                List<Integer> payload = new ArrayList<Integer>();
+                for (TraceElement element : automaton.getTransitionData(edge).getPayLoad()) {
+                    payload.add(element.getID());
+                }
+                Collections.sort(payload);
+                transitions.add(automaton.getTransitionData(edge).getLabel() + "->" + automaton.getTransitionTarget(edge) + payload);
+            }
+            Collections.sort(transitions);
+            sb.append(transitions).append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -3,16 +3,21 @@ package mint.model.walk;
 import mint.Configuration;
 import mint.inference.InferenceBuilder;
 import mint.model.Machine;
+import mint.model.PayloadMachine;
 import mint.model.dfa.TraceDFA;
+import mint.model.dfa.TransitionData;
 import mint.tracedata.SimpleTraceElement;
 import mint.tracedata.TraceElement;
 import mint.tracedata.TraceSet;
 import mint.tracedata.types.VariableAssignment;
+import org.jgrapht.graph.DefaultEdge;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
 
 /**
  * Created by neilwalkinshaw on 23/09/2017.
@@ -39,6 +44,11 @@ public class SimpleMachineAnalysisTest {
         analysis = new SimpleMachineAnalysis(inferred);
     }
 
+    @After
+    public void teardown() {
+        Configuration.reset();
+    }
+
     @Test
     public void walkAcceptUndefinedInputs() throws Exception {
         List<TraceElement> testSequence = new ArrayList<TraceElement>();
@@ -57,4 +67,114 @@ public class SimpleMachineAnalysisTest {
         assert(analysis.walkAccept(testSequence,true,inferred.getAutomaton()) == TraceDFA.Accept.REJECT);
     }
 
-}
\ No newline at end of file
+    private static List<TraceElement> trace(String... labels) {
+        List<TraceElement> trace = new ArrayList<TraceElement>();
+        for (String label : labels)
+            trace.add(new SimpleTraceElement(label, new VariableAssignment[]{}));
+        return trace;
+    }
+
+    /*
+     * 0 -a-> 1 -b-> 0, 1 -c-> 2 (accepting), 0 -d-> 3 (rejecting), 2 -a-> 1
+     */
+    private static PayloadMachine machine() {
+        TraceDFA<Set<TraceElement>> automaton = new TraceDFA<Set<TraceElement>>();
+        Integer[] states = new Integer[4];
+        for (int i = 0; i < states.length; i++)
+            states[i] = automaton.addState();
+        automaton.setInitialState(states[0]);
+        automaton.setAccept(states[2], TraceDFA.Accept.ACCEPT);
+        automaton.setAccept(states[3], TraceDFA.Accept.REJECT);
+        automaton.addTransition(states[0], states[1], new TransitionData<Set<TraceElement>>("a", new HashSet<TraceElement>()));
+        automaton.addTransition(states[1], states[0], new TransitionData<Set<TraceElement>>("b", new HashSet<TraceElement>()));
+        automaton.addTransition(states[1], states[2], new TransitionData<Set<TraceElement>>("c", new HashSet<TraceElement>()));
+        automaton.addTransition(states[0], states[3], new TransitionData<Set<TraceElement>>("d", new HashSet<TraceElement>()));
+        automaton.addTransition(states[2], states[1], new TransitionData<Set<TraceElement>>("a", new HashSet<TraceElement>()));
+        PayloadMachine machine = new PayloadMachine();
+        machine.setAutomaton(automaton);
+        return machine;
+    }
+
+    @Test
+    public void walkAllIsSameAsWalkingOneAtATime() throws Exception {
+        String[] labels = {"a", "b", "c", "d"};
+        for (boolean prefixClosed : new boolean[]{false, true}) {
+            Configuration.getInstance().PREFIX_CLOSED = prefixClosed;
+            PayloadMachine machine = machine();
+            Random r = new Random(0);
+            List<List<TraceElement>> traces = new ArrayList<List<TraceElement>>();
+            for (int i = 0; i < 200; i++) {
+                String[] trace = new String[r.nextInt(8)];
+                for (int j = 0; j < trace.length; j++)
+                    trace[j] = labels[r.nextInt(labels.length)];
+                traces.add(trace(trace));
+            }
+            SimpleMachineAnalysis<PayloadMachine> single = new SimpleMachineAnalysis<PayloadMachine>(machine);
+            List<TraceDFA.Accept> expected = new ArrayList<TraceDFA.Accept>();
+            Map<DefaultEdge, Integer> counts = new HashMap<DefaultEdge, Integer>();
+            for (List<TraceElement> trace : traces) {
+                expected.add(single.walkAccept(trace, false, machine.getAutomaton()));
+                List<DefaultEdge> steps = new ArrayList<DefaultEdge>();
+                single.walk(trace, machine.getInitialState(), steps, machine.getAutomaton());
+                for (DefaultEdge step : steps)
+                    counts.put(step, counts.containsKey(step) ? counts.get(step) + 1 : 1);
+            }
+            for (int threads : new int[]{1, 4}) {
+                Configuration.getInstance().WALK_THREADS = threads;
+                SimpleMachineAnalysis<PayloadMachine> batch = new SimpleMachineAnalysis<PayloadMachine>(machine);
+                BatchWalkResult result = batch.walkAll(traces);
+                assertEquals(expected, result.getAccepts());
+                assertEquals(counts, result.getCoverage());
+                batch.walk(new HashSet<List<TraceElement>>(traces), machine.getAutomaton());
+                assertEquals(single.getNumberTransitionsCovered(), batch.getNumberTransitionsCovered());
+            }
+        }
+    }
+
+    @Test
+    public void walkFollowsNewTransitions() throws Exception {
+        Configuration.getInstance().PREFIX_CLOSED = false;
+        PayloadMachine machine = machine();
+        SimpleMachineAnalysis<PayloadMachine> analysis = new SimpleMachineAnalysis<PayloadMachine>(machine);
+        TraceDFA<Set<TraceElement>> automaton = machine.getAutomaton();
+        assertEquals(TraceDFA.Accept.UNDEFINED, analysis.walkAccept(trace("a", "e"), true, automaton));
+        Integer state = analysis.getState(trace("a"), automaton).getTarget();
+        automaton.addTransition(state, automaton.getInitialState(), new TransitionData<Set<TraceElement>>("e", new HashSet<TraceElement>()));
+        automaton.setAccept(automaton.getInitialState(), TraceDFA.Accept.ACCEPT);
+        assertEquals(TraceDFA.Accept.ACCEPT, analysis.walkAccept(trace("a", "e"), true, automaton));
+        assertEquals(TraceDFA.Accept.ACCEPT, analysis.walkAll(Collections.singletonList(trace("a", "e"))).getAccept(0));
+    }
+
+    @Test
+    public void walkFromStateDoesNotCover() throws Exception {
+        PayloadMachine machine = machine();
+        SimpleMachineAnalysis<PayloadMachine> analysis = new SimpleMachineAnalysis<PayloadMachine>(machine);
+        List<DefaultEdge> steps = new ArrayList<DefaultEdge>();
+        analysis.walk(trace("a", "c"), machine.getInitialState(), steps, machine.getAutomaton());
+        assertEquals(2, steps.size());
+        analysis.getState(trace("a", "b"), machine.getAutomaton());
+        assertEquals(0, analysis.getNumberTransitionsCovered());
+        // walks that cannot be completed still cover the transitions they take
+        analysis.walkAccept(trace("a", "c", "b"), false, machine.getAutomaton());
+        assertEquals(2, analysis.getNumberTransitionsCovered());
+    }
+
+    @Test
+    public void walkTestSetOnGivenAutomaton() throws Exception {
+        PayloadMachine machine = machine();
+        TraceDFA<Set<TraceElement>> other = new TraceDFA<Set<TraceElement>>();
+        Integer initial = other.addState();
+        other.setInitialState(initial);
+        other.addTransition(initial, initial, new TransitionData<Set<TraceElement>>("d", new HashSet<TraceElement>()));
+        SimpleMachineAnalysis<PayloadMachine> analysis = new SimpleMachineAnalysis<PayloadMachine>(machine);
+        Set<List<TraceElement>> testSet = new HashSet<List<TraceElement>>();
+        testSet.add(trace("d", "d"));
+        testSet.add(trace("a", "c"));
+        analysis.walk(testSet, other);
+        assertEquals(1, analysis.getNumberTransitionsCovered());
+        assertEquals(1D, analysis.getProportionTransitionsCovered(other), 0D);
+        analysis.walk(testSet, machine.getAutomaton());
+        assertEquals(3, analysis.getNumberTransitionsCovered());
+    }
+
+}